@@ -34,4 +34,12 @@ public class ClusterConfig extends Properties {
     public int getAckTimeoutMillis() {
         return Integer.parseInt(getProperty("acktimeout", "2000"));
     }
+
+    /**
+     * @return seconds the changes are kept in the cluster wide change log, for the nodes that
+     *     missed them to catch up. Used by the delta sync method only, defaults to 600s.
+     */
+    public int getChangeLogTTL() {
+        return Integer.parseInt(getProperty("changelog_ttl", "600"));
+    }
 }
@@ -127,6 +127,18 @@ public class ConfigChangeEvent extends Event {
 
     private String nativeName;
 
+    /** id of the change log the event belongs to, unique to each run of the originating node */
+    String changeLog;
+
+    /** position of the event in its change log, starting from 1 */
+    long sequence;
+
+    /** time the event was published at, in milliseconds */
+    long timestamp;
+
+    /** the changed object, serialized, for the synchronizers applying the change themselves */
+    String payload;
+
     public ConfigChangeEvent(String id, String name, Class<? extends Info> clazz, Type type) {
         super();
         this.id = id;
@@ -266,4 +278,35 @@ public class ConfigChangeEvent extends Event {
     public void setNewValues(List<Object> newValues) {
         this.newValues = newValues;
     }
+
+    public String getChangeLog() {
+        return changeLog;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    /** Places the event in the specified change log */
+    public void setSequence(String changeLog, long sequence) {
+        this.changeLog = changeLog;
+        this.sequence = sequence;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    @Nullable
+    public String getPayload() {
+        return payload;
+    }
+
+    public void setPayload(String payload) {
+        this.payload = payload;
+    }
 }
@@ -0,0 +1,403 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static java.lang.String.format;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.geoserver.cluster.hazelcast.HazelcastUtil.localAddress;
+
+import com.google.common.collect.ImmutableList;
+import com.hazelcast.core.IMap;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import org.geoserver.GeoServerConfigurationLock;
+import org.geoserver.GeoServerConfigurationLock.LockType;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogFacade;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.Info;
+import org.geoserver.catalog.LayerGroupInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.LockingCatalogFacade;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StoreInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.event.impl.CatalogAddEventImpl;
+import org.geoserver.catalog.event.impl.CatalogRemoveEventImpl;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.DefaultCatalogFacade;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.catalog.impl.ProxyUtils;
+import org.geoserver.cluster.ConfigChangeEvent;
+import org.geoserver.cluster.ConfigChangeEvent.Type;
+import org.geoserver.cluster.Event;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerConfigPersister;
+import org.geoserver.config.GeoServerResourcePersister;
+import org.geoserver.config.UpdateSequenceListener;
+import org.geoserver.config.util.XStreamPersister;
+import org.geoserver.config.util.XStreamPersisterFactory;
+import org.geoserver.platform.GeoServerExtensions;
+
+/**
+ * Synchronizer that applies the catalog changes of the other nodes one by one, instead of reloading
+ * the whole configuration.
+ *
+ * <p>The changed objects travel serialized along with the events, and are applied directly to the
+ * {@link CatalogFacade}, after which the local catalog listeners are notified. Each node numbers
+ * the events it publishes, and keeps them in a cluster wide change log for {@link
+ * org.geoserver.cluster.ClusterConfig#getChangeLogTTL() a while}, so that a node noticing a gap in
+ * the sequence can catch up by applying the changes it missed. The synchronizer falls back on a
+ * full reload, like the {@link ReloadHzSynchronizer}, when the missed changes are not in the change
+ * log anymore, and for the changes it cannot apply one by one, such as the ones to the global
+ * configuration, the services, the workspaces and the namespaces.
+ *
+ * <p>The changes are applied by the reload thread, so that they never overlap with a reload, while
+ * holding the {@link GeoServerConfigurationLock configuration lock}. Updated objects are changed in
+ * place, and can be looked up all along.
+ *
+ * <p>The time spent applying the changes and the time it took them to reach the node are recorded
+ * in the {@code stall} and {@code convergence} timers of the {@link #getMetrics() metrics}.
+ *
+ * <p>This synchronizer assumes a shared data directory among nodes in the cluster.
+ */
+public class DeltaHzSynchronizer extends ReloadHzSynchronizer {
+
+    static final String CHANGE_LOG_NAME = "geoserver.config.changelog";
+
+    /** the cluster wide change log, with the recent events of all nodes */
+    final IMap<String, ConfigChangeEvent> changeLog;
+
+    /** id of the change log of this node, changes on every restart */
+    final String changeLogId = UUID.randomUUID().toString();
+
+    /** sequence of the last event published by this node */
+    private long sequence;
+
+    /** sequence of the last event applied, by change log */
+    final Map<String, Long> applied = new ConcurrentHashMap<>();
+
+    private XStreamPersister persister;
+
+    public DeltaHzSynchronizer(HzCluster cluster, GeoServer gs) {
+        super(cluster, gs);
+        changeLog = cluster.getHz().getMap(CHANGE_LOG_NAME);
+    }
+
+    @Override
+    BlockingQueue<Runnable> getWorkQueue() {
+        // the deltas share the reload thread, none of them can be discarded
+        return new LinkedBlockingQueue<>();
+    }
+
+    static String changeLogKey(String changeLog, long sequence) {
+        return changeLog + ":" + sequence;
+    }
+
+    @Override
+    protected void dispatch(Event e) {
+        if (eventLock.get() || !(e instanceof ConfigChangeEvent)) {
+            super.dispatch(e);
+            return;
+        }
+        ConfigChangeEvent ce = (ConfigChangeEvent) e;
+        if (ce.getChangeType() == Type.MODIFY) {
+            // changes are applied on post modify, once complete
+            return;
+        }
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(format("%s - Publishing event %s", nodeId(), e));
+        }
+        e.setSource(localAddress(cluster.getHz()));
+        int ttl = configWatcher.get().getChangeLogTTL();
+        synchronized (this) {
+            ce.setSequence(changeLogId, ++sequence);
+            ce.setTimestamp(System.currentTimeMillis());
+            // logged before publishing, so that it's there for the nodes noticing a gap
+            changeLog.put(changeLogKey(changeLogId, sequence), ce, ttl, TimeUnit.SECONDS);
+            topic.publish(e);
+        }
+
+        incCounter(getClass(), "dispatched");
+    }
+
+    @Override
+    ConfigChangeEvent newChangeEvent(Info subj, Type type) {
+        ConfigChangeEvent event = super.newChangeEvent(subj, type);
+        if (subj instanceof CatalogInfo && (type == Type.ADD || type == Type.POST_MODIFY)) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                XStreamPersister xp = getPersister();
+                synchronized (xp) {
+                    xp.save(subj, out);
+                }
+                event.setPayload(new String(out.toByteArray(), UTF_8));
+            } catch (Exception e) {
+                // the other nodes will reload the configuration
+                LOGGER.log(Level.WARNING, format("%s - Failed to serialize %s", nodeId(), subj), e);
+            }
+        }
+        return event;
+    }
+
+    @Override
+    protected Future<?> processEvent(Event event) {
+        if (!(event instanceof ConfigChangeEvent)
+                || ((ConfigChangeEvent) event).getChangeLog() == null) {
+            return super.processEvent(event);
+        }
+        // applied on the reload thread, so that deltas and reloads never overlap
+        return reloadService.submit(() -> applyChanges((ConfigChangeEvent) event));
+    }
+
+    /** Applies the changes for the event, or reloads the configuration if they cannot be */
+    void applyChanges(ConfigChangeEvent event) {
+        List<ConfigChangeEvent> changes = collectChanges(event);
+        if (changes.isEmpty()) {
+            return;
+        }
+
+        long start = System.currentTimeMillis();
+        boolean applied = true;
+        // the changes are not published back, and not mixed with the ones made locally
+        eventLock.set(true);
+        GeoServerConfigurationLock configurationLock =
+                GeoServerExtensions.bean(GeoServerConfigurationLock.class);
+        if (configurationLock != null) {
+            configurationLock.lock(LockType.WRITE);
+        }
+        try {
+            for (ConfigChangeEvent change : changes) {
+                if (change == null || !apply(change)) {
+                    applied = false;
+                    break;
+                }
+            }
+        } finally {
+            if (configurationLock != null) {
+                configurationLock.unlock();
+            }
+            eventLock.set(false);
+        }
+        if (applied) {
+            long end = System.currentTimeMillis();
+            updateTimer(getClass(), "stall", end - start);
+            updateTimer(getClass(), "convergence", end - event.getTimestamp());
+            return;
+        }
+
+        incCounter(getClass(), "fallbacks");
+        reload();
+    }
+
+    /**
+     * Returns the changes to apply for the event, in order: the ones of the same change log that
+     * did not make it to this node, if any, followed by the event itself. A {@code null} item
+     * stands for a missed change that is not in the cluster change log anymore. The list is empty
+     * if the event has been applied already, while catching up.
+     */
+    List<ConfigChangeEvent> collectChanges(ConfigChangeEvent event) {
+        String log = event.getChangeLog();
+        long sequence = event.getSequence();
+        Long last = applied.get(log);
+        if (last != null && sequence <= last) {
+            return Collections.emptyList();
+        }
+        applied.put(log, sequence);
+
+        List<ConfigChangeEvent> changes = new ArrayList<>();
+        if (last != null && sequence > last + 1) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(
+                        format(
+                                "%s - Missed events %d to %d from %s, catching up",
+                                nodeId(), last + 1, sequence - 1, event.getSource()));
+            }
+            incCounter(getClass(), "gaps");
+            for (long s = last + 1; s < sequence; s++) {
+                changes.add(changeLog.get(changeLogKey(log, s)));
+            }
+        }
+        changes.add(event);
+        return changes;
+    }
+
+    /** Applies the change to the local catalog, returns false if it cannot be applied */
+    @SuppressWarnings("unchecked")
+    boolean apply(ConfigChangeEvent event) {
+        Class<? extends Info> clazz = event.getObjectInterface();
+        Catalog catalog = cluster.getRawCatalog();
+        CatalogFacade facade =
+                catalog instanceof CatalogImpl
+                        ? ProxyUtils.unwrap(
+                                ((CatalogImpl) catalog).getFacade(), LockingCatalogFacade.class)
+                        : null;
+        if (clazz == null
+                || !(StoreInfo.class.isAssignableFrom(clazz)
+                        || ResourceInfo.class.isAssignableFrom(clazz)
+                        || LayerInfo.class.isAssignableFrom(clazz)
+                        || LayerGroupInfo.class.isAssignableFrom(clazz)
+                        || StyleInfo.class.isAssignableFrom(clazz))
+                || !(facade instanceof DefaultCatalogFacade)) {
+            return false;
+        }
+        try {
+            LOGGER.fine(format("%s - Applying event %s", nodeId(), event));
+            boolean applied =
+                    applyCatalogChange(
+                            (CatalogImpl) catalog,
+                            (DefaultCatalogFacade) facade,
+                            event,
+                            (Class<CatalogInfo>) clazz);
+            if (applied) {
+                incCounter(getClass(), "deltas");
+            }
+            return applied;
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, format("%s - Failed to apply event %s", nodeId(), event), e);
+            return false;
+        }
+    }
+
+    private boolean applyCatalogChange(
+            CatalogImpl catalog,
+            DefaultCatalogFacade facade,
+            ConfigChangeEvent event,
+            Class<CatalogInfo> clazz)
+            throws IOException {
+        CatalogInfo current =
+                EventHzSynchronizer.getCatalogInfo(catalog, event.getObjectId(), clazz);
+        CatalogEvent notification;
+        switch (event.getChangeType()) {
+            case REMOVE:
+                if (current == null) {
+                    return true;
+                }
+                current = ModificationProxy.unwrap(current);
+                remove(facade, current);
+                CatalogRemoveEventImpl removed = new CatalogRemoveEventImpl();
+                removed.setSource(current);
+                notification = removed;
+                break;
+            case ADD:
+            case POST_MODIFY:
+                String payload = event.getPayload();
+                if (payload == null) {
+                    return false;
+                }
+                CatalogInfo info;
+                XStreamPersister xp = getPersister();
+                synchronized (xp) {
+                    info = xp.load(new ByteArrayInputStream(payload.getBytes(UTF_8)), clazz);
+                }
+                catalog.resolve(info);
+                if (current == null) {
+                    add(facade, info);
+                    CatalogAddEventImpl added = new CatalogAddEventImpl();
+                    added.setSource(info);
+                    notification = added;
+                } else {
+                    // update in place, so that the objects referencing it keep on doing so, and
+                    // it can be looked up all along, even if renamed
+                    notification = facade.update(current, info, clazz);
+                }
+                break;
+            default:
+                // nothing to apply until post modify
+                return true;
+        }
+
+        notify(catalog, notification);
+        return true;
+    }
+
+    private void add(CatalogFacade facade, CatalogInfo info) {
+        if (info instanceof StoreInfo) {
+            facade.add((StoreInfo) info);
+        } else if (info instanceof ResourceInfo) {
+            facade.add((ResourceInfo) info);
+        } else if (info instanceof LayerInfo) {
+            facade.add((LayerInfo) info);
+        } else if (info instanceof LayerGroupInfo) {
+            facade.add((LayerGroupInfo) info);
+        } else if (info instanceof StyleInfo) {
+            facade.add((StyleInfo) info);
+        } else {
+            throw new IllegalArgumentException("Unexpected catalog object " + info);
+        }
+    }
+
+    private void remove(CatalogFacade facade, CatalogInfo info) {
+        if (info instanceof StoreInfo) {
+            facade.remove((StoreInfo) info);
+        } else if (info instanceof ResourceInfo) {
+            facade.remove((ResourceInfo) info);
+        } else if (info instanceof LayerInfo) {
+            facade.remove((LayerInfo) info);
+        } else if (info instanceof LayerGroupInfo) {
+            facade.remove((LayerGroupInfo) info);
+        } else if (info instanceof StyleInfo) {
+            facade.remove((StyleInfo) info);
+        } else {
+            throw new IllegalArgumentException("Unexpected catalog object " + info);
+        }
+    }
+
+    /** Notifies the local listeners, but the ones that would write the shared data directory */
+    private void notify(Catalog catalog, CatalogEvent event) {
+        for (CatalogListener l : ImmutableList.copyOf(catalog.getListeners())) {
+            if (l == this
+                    || l instanceof GeoServerConfigPersister
+                    || l instanceof GeoServerResourcePersister
+                    || l instanceof UpdateSequenceListener) {
+                continue;
+            }
+            try {
+                if (event instanceof CatalogAddEvent) {
+                    l.handleAddEvent((CatalogAddEvent) event);
+                } else if (event instanceof CatalogRemoveEvent) {
+                    l.handleRemoveEvent((CatalogRemoveEvent) event);
+                } else if (event instanceof CatalogPostModifyEvent) {
+                    l.handlePostModifyEvent((CatalogPostModifyEvent) event);
+                }
+            } catch (Exception ex) {
+                LOGGER.log(
+                        Level.WARNING,
+                        format("%s - Event dispatch failed: %s", nodeId(), event),
+                        ex);
+            }
+        }
+    }
+
+    synchronized XStreamPersister getPersister() {
+        if (persister == null) {
+            XStreamPersisterFactory factory =
+                    GeoServerExtensions.bean(XStreamPersisterFactory.class);
+            if (factory == null) {
+                factory = new XStreamPersisterFactory();
+            }
+            persister = factory.createXMLPersister();
+            persister.setCatalog(cluster.getRawCatalog());
+        }
+        return persister;
+    }
+}
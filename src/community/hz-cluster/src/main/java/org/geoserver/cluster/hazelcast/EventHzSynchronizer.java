@@ -56,6 +56,7 @@ import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.LoggingInfo;
 import org.geoserver.config.ServiceInfo;
 import org.geoserver.config.SettingsInfo;
+import org.geoserver.config.UpdateSequenceListener;
 
 /**
  * Synchronizer that converts cluster events and dispatches them the GeoServer config/catalog.
@@ -254,12 +255,8 @@ public class EventHzSynchronizer extends HzSynchronizer {
         try {
             for (CatalogListener l : ImmutableList.copyOf(cat.getListeners())) {
                 // Don't notify self otherwise the event bounces back out into the
-                // cluster.
-                if (l != this
-                        && isStarted()
-                        && // HACK-HACK-HACK -- prevent infinite loop with update sequence listener
-                        !"org.geoserver.config.UpdateSequenceListener"
-                                .equals(l.getClass().getCanonicalName())) {
+                // cluster, nor the update sequence listener, to prevent an infinite loop
+                if (l != this && isStarted() && !(l instanceof UpdateSequenceListener)) {
                     notifyMethod.invoke(l, evt);
                 }
             }
@@ -393,7 +390,7 @@ public class EventHzSynchronizer extends HzSynchronizer {
         }
     }
 
-    private CatalogInfo getCatalogInfo(Catalog cat, String id, Class<? extends Info> clazz) {
+    static CatalogInfo getCatalogInfo(Catalog cat, String id, Class<? extends Info> clazz) {
         CatalogInfo subj = null;
         if (WorkspaceInfo.class.isAssignableFrom(clazz)) {
             subj = cat.getWorkspace(id);
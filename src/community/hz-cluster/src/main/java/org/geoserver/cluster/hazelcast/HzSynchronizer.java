@@ -282,6 +282,16 @@ public abstract class HzSynchronizer extends GeoServerSynchronizer
         this.registry.counter(MetricRegistry.name(clazz, name)).inc();
     }
 
+    /** Records a duration, in milliseconds, with the timer for the specified class and name. */
+    protected void updateTimer(Class<?> clazz, String name, long millis) {
+        this.registry.timer(MetricRegistry.name(clazz, name)).update(millis, TimeUnit.MILLISECONDS);
+    }
+
+    /** The counters and timers of the events sent, received and processed by this node */
+    public MetricRegistry getMetrics() {
+        return registry;
+    }
+
     protected String nodeId() {
         return HazelcastUtil.nodeId(cluster);
     }
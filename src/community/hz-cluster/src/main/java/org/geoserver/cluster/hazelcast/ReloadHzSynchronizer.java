@@ -59,18 +59,7 @@ public class ReloadHzSynchronizer extends HzSynchronizer {
         // submit task and return immediately. The task will be ignored if another one is already
         // scheduled
         try {
-            return reloadService.submit(
-                    () -> {
-                        // lock during event processing
-                        eventLock.set(true);
-                        try {
-                            gs.reload();
-                        } catch (Exception e) {
-                            LOGGER.log(Level.WARNING, "Reload failed", e);
-                        } finally {
-                            eventLock.set(false);
-                        }
-                    });
+            return reloadService.submit(this::reload);
         } catch (RejectedExecutionException e) {
             if (LOGGER.isLoggable(Level.FINEST)) {
                 LOGGER.finest(
@@ -80,6 +69,21 @@ public class ReloadHzSynchronizer extends HzSynchronizer {
         }
     }
 
+    /** Reloads the configuration, to be called from the {@link #reloadService} */
+    void reload() {
+        // lock during event processing
+        eventLock.set(true);
+        long start = System.currentTimeMillis();
+        try {
+            gs.reload();
+        } catch (Exception e) {
+            LOGGER.log(Level.WARNING, "Reload failed", e);
+        } finally {
+            eventLock.set(false);
+            updateTimer(getClass(), "stall", System.currentTimeMillis() - start);
+        }
+    }
+
     @Override
     protected void dispatch(Event e) {
         // check lock, if locked it means event in response to configuration reload, don't propagate
@@ -0,0 +1,426 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.cluster.hazelcast;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.codahale.metrics.MetricRegistry;
+import com.hazelcast.core.IMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.easymock.Capture;
+import org.easymock.CaptureType;
+import org.geoserver.catalog.CatalogFactory;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.NamespaceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.catalog.impl.CatalogImpl;
+import org.geoserver.catalog.impl.FeatureTypeInfoImpl;
+import org.geoserver.catalog.impl.LayerInfoImpl;
+import org.geoserver.catalog.impl.ModificationProxy;
+import org.geoserver.cluster.ConfigChangeEvent;
+import org.geoserver.cluster.ConfigChangeEvent.Type;
+import org.geoserver.cluster.Event;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeltaHzSynchronizerTest extends HzSynchronizerTest {
+
+    static final String REMOTE_LOG = "remote-log";
+
+    IMap<String, ConfigChangeEvent> changeLog;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUpChangeLog() {
+        changeLog = createMock(IMap.class);
+        expect(hz.<String, ConfigChangeEvent>getMap(DeltaHzSynchronizer.CHANGE_LOG_NAME))
+                .andStubReturn(changeLog);
+        expect(clusterConfig.getChangeLogTTL()).andStubReturn(600);
+    }
+
+    @Override
+    protected DeltaHzSynchronizer getSynchronizer() {
+        return new DeltaHzSynchronizer(cluster, getGeoServer()) {
+
+            @Override
+            ScheduledExecutorService getNewExecutor() {
+                return getMockExecutor();
+            }
+
+            @Override
+            public boolean isStarted() {
+                return true;
+            }
+        };
+    }
+
+    /** A catalog with a single layer, ws:roads */
+    private CatalogImpl newLocalCatalog() {
+        CatalogImpl catalog = new CatalogImpl();
+        catalog.setResourceLoader(new GeoServerResourceLoader());
+        CatalogFactory factory = catalog.getFactory();
+
+        WorkspaceInfo ws = factory.createWorkspace();
+        ws.setName("ws");
+        catalog.add(ws);
+        NamespaceInfo ns = factory.createNamespace();
+        ns.setPrefix("ws");
+        ns.setURI("http://ws");
+        catalog.add(ns);
+        DataStoreInfo ds = factory.createDataStore();
+        ds.setEnabled(true);
+        ds.setName("ds");
+        ds.setWorkspace(ws);
+        catalog.add(ds);
+        StyleInfo style = factory.createStyle();
+        style.setName("style");
+        style.setFilename("style.sld");
+        catalog.add(style);
+
+        FeatureTypeInfo ft = newFeatureType(catalog, "ft-1", "roads");
+        catalog.add(ft);
+        catalog.add(newLayer(catalog, "layer-1", ft));
+        return catalog;
+    }
+
+    /** A detached feature type, as the other nodes would serialize it */
+    private FeatureTypeInfo newFeatureType(CatalogImpl catalog, String id, String name) {
+        FeatureTypeInfoImpl ft = (FeatureTypeInfoImpl) catalog.getFactory().createFeatureType();
+        ft.setId(id);
+        ft.setEnabled(true);
+        ft.setName(name);
+        ft.setNativeName(name);
+        ft.setStore(ModificationProxy.unwrap(catalog.getDataStoreByName("ds")));
+        ft.setNamespace(ModificationProxy.unwrap(catalog.getNamespaceByPrefix("ws")));
+        return ft;
+    }
+
+    private LayerInfo newLayer(CatalogImpl catalog, String id, FeatureTypeInfo ft) {
+        LayerInfoImpl layer = (LayerInfoImpl) catalog.getFactory().createLayer();
+        layer.setId(id);
+        layer.setEnabled(true);
+        layer.setResource(ft);
+        layer.setDefaultStyle(ModificationProxy.unwrap(catalog.getStyleByName("style")));
+        return layer;
+    }
+
+    private ConfigChangeEvent change(
+            DeltaHzSynchronizer sync, CatalogInfo info, Type type, long sequence) {
+        ConfigChangeEvent event = sync.newChangeEvent(info, type);
+        event.setSource(remoteAddress);
+        event.setSequence(REMOTE_LOG, sequence);
+        event.setTimestamp(System.currentTimeMillis());
+        return event;
+    }
+
+    private long count(DeltaHzSynchronizer sync, String name) {
+        String prefix = sync.getClass().getName();
+        return sync.getMetrics().counter(MetricRegistry.name(prefix, name)).getCount();
+    }
+
+    private ConfigChangeEvent event(long sequence, Type type) {
+        ConfigChangeEvent event =
+                new ConfigChangeEvent("layer-" + sequence, "layer", LayerInfo.class, type);
+        event.setSource(remoteAddress);
+        event.setSequence(REMOTE_LOG, sequence);
+        return event;
+    }
+
+    @Test
+    public void testDispatchSequencesEvents() throws Exception {
+        Capture<Event> published = new Capture<>(CaptureType.ALL);
+        topic.publish(capture(published));
+        expectLastCall().times(2);
+        expect(
+                        changeLog.put(
+                                anyString(),
+                                anyObject(ConfigChangeEvent.class),
+                                eq(600L),
+                                eq(TimeUnit.SECONDS)))
+                .andReturn(null)
+                .times(2);
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        initSynchronizer(sync);
+        sync.dispatch(new ConfigChangeEvent("layer", "layer", LayerInfo.class, Type.ADD));
+        // modify events are not published, only the post modify ones are
+        sync.dispatch(new ConfigChangeEvent("layer", "layer", LayerInfo.class, Type.MODIFY));
+        sync.dispatch(new ConfigChangeEvent("layer", "layer", LayerInfo.class, Type.REMOVE));
+
+        List<Event> events = published.getValues();
+        assertEquals(2, events.size());
+        ConfigChangeEvent added = (ConfigChangeEvent) events.get(0);
+        ConfigChangeEvent removed = (ConfigChangeEvent) events.get(1);
+        assertEquals(Type.ADD, added.getChangeType());
+        assertEquals(Type.REMOVE, removed.getChangeType());
+        assertEquals(sync.changeLogId, added.getChangeLog());
+        assertEquals(sync.changeLogId, removed.getChangeLog());
+        assertEquals(1, added.getSequence());
+        assertEquals(2, removed.getSequence());
+        assertTrue(added.getTimestamp() > 0);
+        verify(changeLog);
+    }
+
+    @Test
+    public void testCatchUpFromChangeLog() throws Exception {
+        ConfigChangeEvent e2 = event(2, Type.ADD);
+        ConfigChangeEvent e3 = event(3, Type.POST_MODIFY);
+        expect(changeLog.get(DeltaHzSynchronizer.changeLogKey(REMOTE_LOG, 2))).andReturn(e2);
+        expect(changeLog.get(DeltaHzSynchronizer.changeLogKey(REMOTE_LOG, 3))).andReturn(e3);
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        ConfigChangeEvent e1 = event(1, Type.ADD);
+        List<ConfigChangeEvent> changes = sync.collectChanges(e1);
+        assertEquals(1, changes.size());
+        assertSame(e1, changes.get(0));
+
+        // events 2 and 3 got lost
+        ConfigChangeEvent e4 = event(4, Type.REMOVE);
+        changes = sync.collectChanges(e4);
+        assertEquals(3, changes.size());
+        assertSame(e2, changes.get(0));
+        assertSame(e3, changes.get(1));
+        assertSame(e4, changes.get(2));
+
+        // late events are not applied twice
+        assertTrue(sync.collectChanges(event(3, Type.POST_MODIFY)).isEmpty());
+        assertEquals(1, sync.collectChanges(event(5, Type.ADD)).size());
+        verify(changeLog);
+    }
+
+    @Test
+    public void testExpiredChanges() throws Exception {
+        expect(changeLog.get(DeltaHzSynchronizer.changeLogKey(REMOTE_LOG, 2))).andReturn(null);
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        sync.collectChanges(event(1, Type.ADD));
+        List<ConfigChangeEvent> changes = sync.collectChanges(event(3, Type.ADD));
+        assertEquals(2, changes.size());
+        assertNull(changes.get(0));
+        verify(changeLog);
+    }
+
+    @Test
+    public void testFallbackToReload() throws Exception {
+        // the mock catalog is not a CatalogImpl, changes cannot be applied to its facade
+        getGeoServer().reload();
+        expectLastCall();
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        Future<?> reload = sync.processEvent(event(1, Type.ADD));
+        assertNotNull(reload);
+        reload.get();
+
+        MetricRegistry metrics = sync.getMetrics();
+        String prefix = sync.getClass().getName();
+        assertEquals(1, metrics.counter(MetricRegistry.name(prefix, "fallbacks")).getCount());
+        assertEquals(1, metrics.timer(MetricRegistry.name(prefix, "stall")).getCount());
+        verify(changeLog);
+    }
+
+    @Test
+    public void testApplyAdd() throws Exception {
+        CatalogImpl local = newLocalCatalog();
+        expect(cluster.getRawCatalog()).andReturn(local).anyTimes();
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        RecordingListener listener = new RecordingListener();
+        local.addListener(listener);
+
+        FeatureTypeInfo ft = newFeatureType(local, "ft-2", "rivers");
+        sync.processEvent(change(sync, ft, Type.ADD, 1)).get();
+        sync.processEvent(change(sync, newLayer(local, "layer-2", ft), Type.ADD, 2)).get();
+
+        FeatureTypeInfo rivers = local.getFeatureTypeByName("ws", "rivers");
+        assertEquals("ft-2", rivers.getId());
+        assertEquals("ds", rivers.getStore().getName());
+        LayerInfo layer = local.getLayerByName("ws:rivers");
+        assertEquals("layer-2", layer.getId());
+        assertEquals("style", layer.getDefaultStyle().getName());
+        assertEquals(1, local.getLayers(rivers).size());
+
+        assertEquals(2, listener.events.size());
+        assertTrue(listener.events.get(0) instanceof CatalogAddEvent);
+        assertSame(ModificationProxy.unwrap(rivers), listener.events.get(0).getSource());
+        assertTrue(listener.events.get(1) instanceof CatalogAddEvent);
+        assertSame(ModificationProxy.unwrap(layer), listener.events.get(1).getSource());
+        assertEquals(2, count(sync, "deltas"));
+        assertEquals(0, count(sync, "fallbacks"));
+    }
+
+    @Test
+    public void testApplyRename() throws Exception {
+        CatalogImpl local = newLocalCatalog();
+        expect(cluster.getRawCatalog()).andReturn(local).anyTimes();
+        Capture<Event> published = new Capture<>(CaptureType.ALL);
+        topic.publish(capture(published));
+        expectLastCall().anyTimes();
+        expect(
+                        changeLog.put(
+                                anyString(),
+                                anyObject(ConfigChangeEvent.class),
+                                anyLong(),
+                                anyObject(TimeUnit.class)))
+                .andStubReturn(null);
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        initSynchronizer(sync);
+        FeatureTypeInfo roads = ModificationProxy.unwrap(local.getFeatureTypeByName("roads"));
+        LayerInfo layer = ModificationProxy.unwrap(local.getLayerByName("ws:roads"));
+        RecordingListener listener = new RecordingListener();
+        local.addListener(listener);
+        // a listener changing the catalog in turn, these changes must not be published
+        local.addListener(sync);
+        local.addListener(
+                new RecordingListener() {
+                    @Override
+                    public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+                        if (event.getSource() instanceof FeatureTypeInfo) {
+                            LayerInfo l = local.getLayerByName("ws:highways");
+                            l.setAdvertised(false);
+                            local.save(l);
+                        }
+                    }
+                });
+
+        FeatureTypeInfo changed = newFeatureType(local, "ft-1", "highways");
+        changed.setTitle("Highways");
+        sync.processEvent(change(sync, changed, Type.POST_MODIFY, 1)).get();
+
+        // updated in place, the layer follows
+        assertNull(local.getFeatureTypeByName("ws", "roads"));
+        FeatureTypeInfo highways = local.getFeatureTypeByName("ws", "highways");
+        assertSame(roads, ModificationProxy.unwrap(highways));
+        assertEquals("Highways", highways.getTitle());
+        assertNull(local.getLayerByName("ws:roads"));
+        assertSame(layer, ModificationProxy.unwrap(local.getLayerByName("ws:highways")));
+        assertSame(roads, layer.getResource());
+        assertEquals(1, local.getLayers(highways).size());
+        assertFalse(layer.isAdvertised());
+
+        CatalogPostModifyEvent modified = (CatalogPostModifyEvent) listener.events.get(0);
+        assertSame(roads, modified.getSource());
+        assertTrue(modified.getPropertyNames().contains("name"));
+        assertTrue(modified.getPropertyNames().contains("title"));
+        assertEquals(1, count(sync, "deltas"));
+        assertFalse(published.hasCaptured());
+    }
+
+    @Test
+    public void testApplyClearedProperty() throws Exception {
+        CatalogImpl local = newLocalCatalog();
+        FeatureTypeInfo roads = local.getFeatureTypeByName("roads");
+        roads.setTitle("Roads");
+        roads.setAbstract("Main roads");
+        local.save(roads);
+        expect(cluster.getRawCatalog()).andReturn(local).anyTimes();
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        RecordingListener listener = new RecordingListener();
+        local.addListener(listener);
+
+        // the title got removed on the other node
+        FeatureTypeInfo changed = newFeatureType(local, "ft-1", "roads");
+        changed.setAbstract("Main roads");
+        sync.processEvent(change(sync, changed, Type.POST_MODIFY, 1)).get();
+
+        roads = local.getFeatureTypeByName("ws", "roads");
+        assertNull(roads.getTitle());
+        assertEquals("Main roads", roads.getAbstract());
+        CatalogPostModifyEvent modified = (CatalogPostModifyEvent) listener.events.get(0);
+        int title = modified.getPropertyNames().indexOf("title");
+        assertEquals("Roads", modified.getOldValues().get(title));
+        assertNull(modified.getNewValues().get(title));
+    }
+
+    @Test
+    public void testApplyRemove() throws Exception {
+        CatalogImpl local = newLocalCatalog();
+        expect(cluster.getRawCatalog()).andReturn(local).anyTimes();
+        replay(changeLog);
+
+        DeltaHzSynchronizer sync = getSynchronizer();
+        FeatureTypeInfo roads = ModificationProxy.unwrap(local.getFeatureTypeByName("roads"));
+        LayerInfo layer = ModificationProxy.unwrap(local.getLayerByName("ws:roads"));
+        RecordingListener listener = new RecordingListener();
+        local.addListener(listener);
+
+        sync.processEvent(change(sync, layer, Type.REMOVE, 1)).get();
+        sync.processEvent(change(sync, roads, Type.REMOVE, 2)).get();
+
+        assertNull(local.getLayerByName("ws:roads"));
+        assertNull(local.getFeatureTypeByName("ws", "roads"));
+        assertTrue(local.getLayers(roads).isEmpty());
+        assertEquals(2, listener.events.size());
+        assertTrue(listener.events.get(0) instanceof CatalogRemoveEvent);
+        assertSame(layer, listener.events.get(0).getSource());
+        assertTrue(listener.events.get(1) instanceof CatalogRemoveEvent);
+        assertSame(roads, listener.events.get(1).getSource());
+        assertEquals(2, count(sync, "deltas"));
+    }
+
+    static class RecordingListener implements CatalogListener {
+
+        List<CatalogEvent> events = new ArrayList<>();
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void reloaded() {}
+    }
+}
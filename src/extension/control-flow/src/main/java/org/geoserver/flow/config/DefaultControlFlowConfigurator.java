@@ -20,11 +20,15 @@ import org.geoserver.flow.ControlFlowConfigurator;
 import org.geoserver.flow.FlowController;
 import org.geoserver.flow.controller.BasicOWSController;
 import org.geoserver.flow.controller.CookieKeyGenerator;
+import org.geoserver.flow.controller.CostFlowController;
+import org.geoserver.flow.controller.CostThreadBlocker;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.HttpHeaderPriorityProvider;
 import org.geoserver.flow.controller.IpFlowController;
 import org.geoserver.flow.controller.IpKeyGenerator;
 import org.geoserver.flow.controller.KeyGenerator;
+import org.geoserver.flow.controller.LockFreeThreadBlocker;
+import org.geoserver.flow.controller.OWSRequestCostEstimator;
 import org.geoserver.flow.controller.OWSRequestMatcher;
 import org.geoserver.flow.controller.PriorityProvider;
 import org.geoserver.flow.controller.PriorityThreadBlocker;
@@ -115,6 +119,8 @@ public class DefaultControlFlowConfigurator
         Properties p = configFile.getProperties();
         List<FlowController> newControllers = new ArrayList<>();
         PriorityProvider priorityProvider = getPriorityProvider(p);
+        String blockerType = (String) p.get("ows.blocker");
+        boolean lockFree = blockerType != null && "lockfree".equalsIgnoreCase(blockerType.trim());
 
         for (Object okey : p.keySet()) {
             String key = ((String) okey).trim();
@@ -128,7 +134,8 @@ public class DefaultControlFlowConfigurator
                 // some properties are not integers
                 if ("ip.blacklist".equals(key)
                         || "ip.whitelist".equals(key)
-                        || "ows.priority.http".equals(key)) {
+                        || "ows.priority.http".equals(key)
+                        || "ows.blocker".equals(key)) {
                     continue;
                 } else {
                     if (!key.startsWith("user.ows") && !key.startsWith("ip.ows")) {
@@ -156,10 +163,10 @@ public class DefaultControlFlowConfigurator
             if ("ows.global".equalsIgnoreCase(key)) {
                 controller =
                         new GlobalFlowController(
-                                queueSize, buildBlocker(queueSize, priorityProvider));
+                                queueSize, buildBlocker(queueSize, priorityProvider, lockFree));
             } else if ("ows".equals(keys[0])) {
                 // todo: check, if possible, if the service, method and output format actually exist
-                ThreadBlocker threadBlocker = buildBlocker(queueSize, priorityProvider);
+                ThreadBlocker threadBlocker = buildBlocker(queueSize, priorityProvider, lockFree);
                 if (keys.length >= 4) {
                     controller =
                             new BasicOWSController(
@@ -169,6 +176,16 @@ public class DefaultControlFlowConfigurator
                 } else if (keys.length == 2) {
                     controller = new BasicOWSController(keys[1], queueSize, threadBlocker);
                 }
+            } else if ("cost".equals(keys[0]) && keys.length >= 2 && "ows".equals(keys[1])) {
+                String service = keys.length >= 3 ? keys[2] : null;
+                String request = keys.length >= 4 ? keys[3] : null;
+                String format = keys.length >= 5 ? keys[4] : null;
+                CostThreadBlocker blocker =
+                        new CostThreadBlocker(
+                                queueSize, new OWSRequestCostEstimator(), priorityProvider);
+                controller =
+                        new CostFlowController(
+                                new OWSRequestMatcher(service, request, format), blocker);
             } else if ("user".equals(keys[0])) {
                 if (keys.length == 1) {
                     controller = new UserConcurrentFlowController(queueSize);
@@ -259,10 +276,14 @@ public class DefaultControlFlowConfigurator
      * @param queueSize The count of concurrent requests allowed to run
      * @param priorityProvider The priority provider (if not null, a {@link
      *     org.geoserver.flow.controller.PriorityThreadBlocker} will be built
+     * @param lockFree If true, a {@link LockFreeThreadBlocker} will be built
      * @return a {@link ThreadBlocker}
      */
-    private ThreadBlocker buildBlocker(int queueSize, PriorityProvider priorityProvider) {
-        if (priorityProvider != null) {
+    private ThreadBlocker buildBlocker(
+            int queueSize, PriorityProvider priorityProvider, boolean lockFree) {
+        if (lockFree) {
+            return new LockFreeThreadBlocker(queueSize, priorityProvider);
+        } else if (priorityProvider != null) {
             return new PriorityThreadBlocker(queueSize, priorityProvider);
         } else {
             return new SimpleThreadBlocker(queueSize);
@@ -0,0 +1,31 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+/**
+ * A flow controller limiting the total estimated cost of the running requests, matching them by
+ * service, method and output format
+ */
+public class CostFlowController extends SingleQueueFlowController {
+
+    public CostFlowController(OWSRequestMatcher matcher, CostThreadBlocker blocker) {
+        super(matcher, (int) Math.min(blocker.getBudget(), Integer.MAX_VALUE), blocker);
+    }
+
+    /** Returns the number of requests waiting to be admitted */
+    public int getQueueDepth() {
+        return ((CostThreadBlocker) blocker).getQueueDepth();
+    }
+
+    /** Returns the total cost of the requests currently running */
+    public long getAdmittedCost() {
+        return ((CostThreadBlocker) blocker).getAdmittedCost();
+    }
+
+    @Override
+    public String toString() {
+        return "CostFlowController(" + matcher + "," + blocker + ")";
+    }
+}
@@ -0,0 +1,215 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A {@link ThreadBlocker} admitting requests against a cost budget, rather than a number of
+ * requests. Each request cost is estimated by a {@link RequestCostEstimator}, a request is
+ * blocked if the sum of the costs of the running requests plus its own would exceed the budget.
+ * Requests more expensive than the whole budget are run alone.
+ *
+ * <p>Blocked requests are awaken in order, by priority if a {@link PriorityProvider} is
+ * available, and then first come first served. The first request in the queue is not overtaken by
+ * cheaper ones, so that expensive requests do not starve.
+ */
+public class CostThreadBlocker implements ThreadBlocker {
+
+    static final Logger LOGGER = Logging.getLogger(CostThreadBlocker.class);
+
+    private final long budget;
+
+    private final RequestCostEstimator costEstimator;
+
+    private final PriorityProvider priorityProvider;
+
+    /** The blocked requests */
+    private final PriorityQueue<WaitToken> queue = new PriorityQueue<>();
+
+    /**
+     * The costs of the requests admitted by this blocker. Flow controllers might not all be called
+     * if one fails, but all get a "requestComplete" for cleanup, so need to know if this blocker
+     * was called before, or not
+     */
+    private final Map<Request, Long> running = new HashMap<>();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private long admittedCost;
+
+    private long totalAdmittedCost;
+
+    private long totalAdmittedRequests;
+
+    /**
+     * Builds a new blocker
+     *
+     * @param budget The maximum total cost of the requests running at the same time
+     * @param costEstimator The estimator of each request cost
+     * @param priorityProvider The provider of the blocked requests priority, can be null
+     */
+    public CostThreadBlocker(
+            long budget, RequestCostEstimator costEstimator, PriorityProvider priorityProvider) {
+        this.budget = budget;
+        this.costEstimator = costEstimator;
+        this.priorityProvider = priorityProvider;
+    }
+
+    @Override
+    public boolean requestIncoming(Request request, long timeout) throws InterruptedException {
+        // cap at the budget, so that very expensive requests can still run, alone
+        long cost = Math.min(Math.max(costEstimator.getCost(request), 1), budget);
+        WaitToken token;
+        synchronized (this) {
+            if (queue.isEmpty() && admittedCost + cost <= budget) {
+                admit(request, cost);
+                return true;
+            }
+            int priority = priorityProvider != null ? priorityProvider.getPriority(request) : 0;
+            token = new WaitToken(request, cost, priority, sequence.getAndIncrement());
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.log(
+                        Level.FINER,
+                        "Admitted cost at "
+                                + admittedCost
+                                + ", queuing request with cost "
+                                + cost
+                                + " and priority "
+                                + priority);
+            }
+            queue.add(token);
+        }
+
+        if (timeout > 0) {
+            if (!token.latch.await(timeout, TimeUnit.MILLISECONDS)) {
+                synchronized (this) {
+                    // might have been admitted in the meantime
+                    if (!token.admitted) {
+                        queue.remove(token);
+                        // it might have been blocking cheaper requests behind it
+                        admitNext();
+                        return false;
+                    }
+                }
+            }
+        } else {
+            token.latch.await();
+        }
+        return true;
+    }
+
+    @Override
+    public void requestComplete(Request request) {
+        synchronized (this) {
+            // only requests that got admitted have a cost to give back
+            Long cost = running.remove(request);
+            if (cost != null) {
+                admittedCost -= cost;
+                admitNext();
+            }
+        }
+    }
+
+    private void admit(Request request, long cost) {
+        // this needs to be called within a synchronized section
+        assert Thread.holdsLock(this);
+        running.merge(request, cost, Long::sum);
+        admittedCost += cost;
+        totalAdmittedCost += cost;
+        totalAdmittedRequests++;
+    }
+
+    /** Admits the requests at the head of the queue, as long as they fit the budget */
+    private void admitNext() {
+        // this needs to be called within a synchronized section
+        assert Thread.holdsLock(this);
+        WaitToken token;
+        while ((token = queue.peek()) != null && admittedCost + token.cost <= budget) {
+            queue.poll();
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.log(Level.FINER, "Releasing request with cost " + token.cost);
+            }
+            admit(token.request, token.cost);
+            token.admitted = true;
+            token.latch.countDown();
+        }
+    }
+
+    @Override
+    public synchronized int getRunningRequestsCount() {
+        return running.size();
+    }
+
+    /** Returns the number of requests waiting to be admitted */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** Returns the total cost of the requests currently admitted */
+    public synchronized long getAdmittedCost() {
+        return admittedCost;
+    }
+
+    /** Returns the total cost of the requests admitted since startup */
+    public synchronized long getTotalAdmittedCost() {
+        return totalAdmittedCost;
+    }
+
+    /** Returns the number of requests admitted since startup */
+    public synchronized long getTotalAdmittedRequests() {
+        return totalAdmittedRequests;
+    }
+
+    /** Returns the maximum total cost of the requests running at the same time */
+    public long getBudget() {
+        return budget;
+    }
+
+    public RequestCostEstimator getCostEstimator() {
+        return costEstimator;
+    }
+
+    public PriorityProvider getPriorityProvider() {
+        return priorityProvider;
+    }
+
+    @Override
+    public String toString() {
+        return "CostThreadBlocker(budget=" + budget + ")";
+    }
+
+    /** Holds a blocked request, sorted by priority, higher to lower, and arrival order */
+    private static class WaitToken implements Comparable<WaitToken> {
+        final CountDownLatch latch = new CountDownLatch(1);
+        final Request request;
+        final long cost;
+        final int priority;
+        final long order;
+        boolean admitted;
+
+        WaitToken(Request request, long cost, int priority, long order) {
+            this.request = request;
+            this.cost = cost;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(WaitToken o) {
+            int diff = Integer.compare(o.priority, priority);
+            return diff != 0 ? diff : Long.compare(order, o.order);
+        }
+    }
+}
@@ -0,0 +1,211 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.ows.Request;
+import org.geotools.util.logging.Logging;
+
+/**
+ * A {@link ThreadBlocker} with the same semantics as {@link PriorityThreadBlocker} (or {@link
+ * SimpleThreadBlocker}, if no {@link PriorityProvider} is given), that does not use monitors. The
+ * running requests are counted with an atomic permit counter, the blocked ones are kept in a
+ * concurrent skip list ordered by priority and arrival, and parked until a permit is handed over
+ * to them. Requests arriving while others are queued get in line, they cannot barge in front of
+ * them.
+ */
+public class LockFreeThreadBlocker implements ThreadBlocker {
+
+    static final Logger LOGGER = Logging.getLogger(LockFreeThreadBlocker.class);
+
+    static final int WAITING = 0;
+
+    static final int ADMITTED = 1;
+
+    static final int CANCELLED = 2;
+
+    private final int maxRunningRequests;
+
+    private final PriorityProvider priorityProvider;
+
+    /** Number of permits handed out, can temporarily exceed the running requests count */
+    private final AtomicInteger permits = new AtomicInteger();
+
+    /** The blocked requests */
+    private final ConcurrentSkipListSet<WaitToken> queue = new ConcurrentSkipListSet<>();
+
+    /**
+     * The requests running on this blocker. Flow controllers might not all be called if one fails,
+     * but all get a "requestComplete" for cleanup, so need to know if this blocker was called
+     * before, or not
+     */
+    private final Set<Request> running = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * Builds a new blocker
+     *
+     * @param queueSize The maximum number of requests running at the same time
+     * @param priorityProvider The provider of the blocked requests priority, if null, requests
+     *     are served first come first served
+     */
+    public LockFreeThreadBlocker(int queueSize, PriorityProvider priorityProvider) {
+        this.maxRunningRequests = queueSize;
+        this.priorityProvider = priorityProvider;
+    }
+
+    @Override
+    public boolean requestIncoming(Request request, long timeout) throws InterruptedException {
+        // fast path, nobody waiting and a free slot
+        if (queue.isEmpty() && tryAcquire()) {
+            running.add(request);
+            return true;
+        }
+
+        int priority = priorityProvider != null ? priorityProvider.getPriority(request) : 0;
+        long order = sequence.getAndIncrement();
+        WaitToken token = new WaitToken(request, Thread.currentThread(), priority, order);
+        if (LOGGER.isLoggable(Level.FINER)) {
+            LOGGER.log(Level.FINER, "Queuing request with priority " + priority);
+        }
+        queue.add(token);
+        // a permit might have been released before we got in the queue
+        dispatch();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(timeout, 0));
+        while (token.state.get() == WAITING) {
+            if (timeout > 0) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            } else {
+                LockSupport.park(this);
+            }
+            if (Thread.interrupted()) {
+                cancel(token);
+                throw new InterruptedException();
+            }
+        }
+        return !cancel(token);
+    }
+
+    /**
+     * Cancels the wait of the token, unless it has been admitted already
+     *
+     * @return true if the token got cancelled, false if it has been admitted
+     */
+    private boolean cancel(WaitToken token) {
+        if (token.state.compareAndSet(WAITING, CANCELLED)) {
+            queue.remove(token);
+            if (LOGGER.isLoggable(Level.FINER)) {
+                LOGGER.log(Level.FINER, "Request with priority " + token.priority + " timed out");
+            }
+            return true;
+        }
+        return false;
+    }
+
+    @Override
+    public void requestComplete(Request request) {
+        // only removes requests that actually got a permit, when a timeout happens some flow
+        // controllers won't have requestIncoming called, but will have requestComplete called
+        if (running.remove(request)) {
+            permits.decrementAndGet();
+            dispatch();
+        }
+    }
+
+    /** Hands over the free permits to the queued requests, highest priority first */
+    private void dispatch() {
+        while (!queue.isEmpty() && tryAcquire()) {
+            WaitToken token = queue.pollFirst();
+            // registered before admission, the request could complete as soon as admitted
+            if (token != null) {
+                running.add(token.request);
+            }
+            if (token != null && token.state.compareAndSet(WAITING, ADMITTED)) {
+                if (LOGGER.isLoggable(Level.FINER)) {
+                    LOGGER.log(Level.FINER, "Releasing request with priority " + token.priority);
+                }
+                LockSupport.unpark(token.thread);
+            } else {
+                // raced with another dispatcher, or the request got cancelled. If the
+                // cancelled request already completed, that released the permit
+                if (token == null || running.remove(token.request)) {
+                    permits.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            int current = permits.get();
+            if (current >= maxRunningRequests) {
+                return false;
+            }
+            if (permits.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public int getRunningRequestsCount() {
+        return running.size();
+    }
+
+    /** Returns the number of requests waiting for execution */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the priority provider, issuing a priority for each request to be put in queue
+     *
+     * @return
+     */
+    public PriorityProvider getPriorityProvider() {
+        return priorityProvider;
+    }
+
+    @Override
+    public String toString() {
+        return "LockFreeThreadBlocker(" + maxRunningRequests + ")";
+    }
+
+    /** Holds a blocked request, sorted by priority, higher to lower, and arrival order */
+    private static class WaitToken implements Comparable<WaitToken> {
+        final AtomicInteger state = new AtomicInteger(WAITING);
+        final Request request;
+        final Thread thread;
+        final int priority;
+        final long order;
+
+        WaitToken(Request request, Thread thread, int priority, long order) {
+            this.request = request;
+            this.thread = thread;
+            this.priority = priority;
+            this.order = order;
+        }
+
+        @Override
+        public int compareTo(WaitToken o) {
+            int diff = Integer.compare(o.priority, priority);
+            return diff != 0 ? diff : Long.compare(order, o.order);
+        }
+    }
+}
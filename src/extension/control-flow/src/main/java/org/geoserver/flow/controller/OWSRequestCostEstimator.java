@@ -0,0 +1,159 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.ows.Request;
+import org.geoserver.ows.util.OwsUtils;
+import org.geoserver.platform.Operation;
+import org.geotools.util.logging.Logging;
+
+/**
+ * {@link RequestCostEstimator} based on the request parameters, the unit of cost is a 256x256
+ * image, or a thousand features:
+ *
+ * <ul>
+ *   <li>WMS GetMap: output pixels, multiplied by the number of layers
+ *   <li>WFS GetFeature: the requested number of features (count/maxFeatures), multiplied by the
+ *       number of feature types. Requests without a limit are given a cost of {@link
+ *       #UNBOUNDED_FEATURES} features.
+ *   <li>WCS GetCoverage: the output grid size, when specified
+ * </ul>
+ *
+ * All other requests have a cost of one. The parameters are taken from the KVP request, or from
+ * the parsed request object for POST requests.
+ */
+public class OWSRequestCostEstimator implements RequestCostEstimator {
+
+    static final Logger LOGGER = Logging.getLogger(OWSRequestCostEstimator.class);
+
+    /** Number of pixels in a cost unit */
+    static final long PIXELS_UNIT = 256 * 256;
+
+    /** Number of features in a cost unit */
+    static final long FEATURES_UNIT = 1000;
+
+    /** Number of features assumed for a GetFeature without limits */
+    static final long UNBOUNDED_FEATURES = 10000;
+
+    @Override
+    public long getCost(Request request) {
+        try {
+            String service = request.getService();
+            String method = request.getRequest();
+            if (service == null || method == null) {
+                return 1;
+            }
+            long cost = 1;
+            if ("WMS".equalsIgnoreCase(service) && "GetMap".equalsIgnoreCase(method)) {
+                long pixels =
+                        getLong(request, "WIDTH", "width") * getLong(request, "HEIGHT", "height");
+                cost = units(pixels, PIXELS_UNIT) * count(getString(request, "LAYERS"));
+            } else if ("WFS".equalsIgnoreCase(service)
+                    && ("GetFeature".equalsIgnoreCase(method)
+                            || "GetPropertyValue".equalsIgnoreCase(method))) {
+                long features = getLong(request, "COUNT", "count");
+                if (features <= 0) {
+                    features = getLong(request, "MAXFEATURES", "maxFeatures");
+                }
+                if (features <= 0) {
+                    features = UNBOUNDED_FEATURES;
+                }
+                String typeNames = getString(request, "TYPENAMES");
+                if (typeNames == null) {
+                    typeNames = getString(request, "TYPENAME");
+                }
+                cost = units(features, FEATURES_UNIT) * count(typeNames);
+            } else if ("WCS".equalsIgnoreCase(service)
+                    && "GetCoverage".equalsIgnoreCase(method)) {
+                long pixels = getLong(request, "WIDTH", null) * getLong(request, "HEIGHT", null);
+                if (pixels <= 0) {
+                    pixels = getScaleSize(getString(request, "SCALESIZE"));
+                }
+                cost = units(pixels, PIXELS_UNIT);
+            }
+            return Math.max(cost, 1);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to estimate the request cost, assuming 1", e);
+            return 1;
+        }
+    }
+
+    /** Number of units, rounded up, at least one */
+    static long units(long amount, long unit) {
+        return amount <= 0 ? 1 : (amount + unit - 1) / unit;
+    }
+
+    /** Number of elements in a comma separated list, at least one */
+    static int count(String list) {
+        if (list == null || list.trim().isEmpty()) {
+            return 1;
+        }
+        return list.split(",").length;
+    }
+
+    /** Product of the sizes in a WCS 2.0 SCALESIZE parameter, e.g. "x(1000),y(500)" */
+    static long getScaleSize(String scaleSize) {
+        if (scaleSize == null) {
+            return 0;
+        }
+        long result = 1;
+        for (String axis : scaleSize.split(",")) {
+            int open = axis.indexOf('(');
+            int close = axis.indexOf(')');
+            if (open < 0 || close < open) {
+                return 0;
+            }
+            result *= Long.parseLong(axis.substring(open + 1, close).trim());
+        }
+        return result;
+    }
+
+    private String getString(Request request, String key) {
+        Map rawKvp = request.getRawKvp();
+        if (rawKvp != null) {
+            Object value = rawKvp.get(key);
+            if (value != null) {
+                return value.toString();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the numeric value of a KVP parameter, or of a property of the parsed request, or 0 if
+     * not found
+     */
+    private long getLong(Request request, String key, String property) {
+        String value = getString(request, key);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        Object parsed = getParsedRequest(request);
+        if (property != null && parsed != null && OwsUtils.has(parsed, property)) {
+            Object result = OwsUtils.get(parsed, property);
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+        }
+        return 0;
+    }
+
+    private Object getParsedRequest(Request request) {
+        Operation operation = request.getOperation();
+        if (operation != null
+                && operation.getParameters() != null
+                && operation.getParameters().length > 0) {
+            return operation.getParameters()[0];
+        }
+        return null;
+    }
+}
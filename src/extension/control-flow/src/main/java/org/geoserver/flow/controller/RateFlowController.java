@@ -7,7 +7,7 @@ package org.geoserver.flow.controller;
 import com.google.common.base.Predicate;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletResponse;
@@ -15,21 +15,27 @@ import org.geoserver.flow.ControlFlowCallback;
 import org.geoserver.flow.FlowController;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
-import org.geotools.util.CanonicalSet;
 import org.geotools.util.logging.Logging;
 
 /**
  * Limits the rate of requests, and slows them down after the number of requests per unit of time is
  * filled, or throws a HTTP 429 if no delay if configured
  *
+ * <p>The accounting uses the generic cell rate algorithm (a token bucket variant), which works as a
+ * sliding window: each request uses up {@code timeInterval / maxRequests} of the window, and the
+ * capacity is given back continuously as time passes, instead of being reset at fixed period
+ * boundaries. The state of each user is a single number updated with compare and set, so that
+ * concurrent requests never block each other. Users whose bucket got back to full capacity are
+ * evicted, as their state carries no information.
+ *
  * @author Andrea Aime - GeoSolutions
  */
 public class RateFlowController implements FlowController {
 
-    /** The next epoc at which the counter will reset */
+    /** The epoch at which the rate limiter will be back to full capacity */
     public static final String X_RATE_LIMIT_RESET = "X-Rate-Limit-Reset";
 
-    /** How many request remain in this time slot before the rate limiting occurs */
+    /** How many request remain before the rate limiting occurs */
     public static final String X_RATE_LIMIT_REMAINING = "X-Rate-Limit-Remaining";
 
     /** How many requests per time slot before the rate limiting kicks in */
@@ -38,6 +44,12 @@ public class RateFlowController implements FlowController {
     /** The context in which the rate limiting occurs */
     public static final String X_RATE_LIMIT_CONTEXT = "X-Rate-Limit-Context";
 
+    /** The action taken on the requests exceeding the limit */
+    public static final String X_RATE_LIMIT_ACTION = "X-Rate-Limit-Action";
+
+    /** Number of seconds before a request will be accepted again, added to limited requests */
+    public static final String RETRY_AFTER = "Retry-After";
+
     static final Logger LOGGER = Logging.getLogger(ControlFlowCallback.class);
 
     /** The minimum number of counters we have need to have around before a cleanup is initiated */
@@ -50,27 +62,40 @@ public class RateFlowController implements FlowController {
             Integer.parseInt(
                     System.getProperty("org.geoserver.flow.countersCleanupInterval", "10000"));
 
-    final class Counter {
-        volatile long timePeriodId;
+    /** Marks a counter that has been evicted, and must not be used anymore */
+    static final long EVICTED = Long.MIN_VALUE;
 
-        AtomicInteger requests = new AtomicInteger(0);
-
-        public int addRequest(long currPeriodId) {
-            if (currPeriodId != timePeriodId) {
-                synchronized (this) {
-                    if (currPeriodId != timePeriodId) {
-                        timePeriodId = currPeriodId;
-                        requests.set(0);
-                    }
-                }
-            }
+    /**
+     * The rate limiting state of a user, the theoretical arrival time of the next request, that
+     * is, the time at which the bucket will be back to full capacity. Times are expressed in
+     * "units", milliseconds since the controller creation multiplied by the max number of
+     * requests, so that each request costs exactly {@link #timeInterval} units.
+     */
+    static final class Counter extends AtomicLong {
 
-            // increment and return if we have gone above the limit
-            return requests.incrementAndGet();
+        Counter(long tat) {
+            super(tat);
         }
+    }
+
+    /** The outcome of a request accounting */
+    static final class Result {
+        final boolean allowed;
+
+        /** Requests still allowed in the window */
+        final long remaining;
 
-        public synchronized long getTimePeriodId() {
-            return timePeriodId;
+        /** Milliseconds before the bucket is back at full capacity */
+        final long resetDelay;
+
+        /** Milliseconds before a request will be allowed, for limited requests */
+        final long retryDelay;
+
+        Result(boolean allowed, long remaining, long resetDelay, long retryDelay) {
+            this.allowed = allowed;
+            this.remaining = remaining;
+            this.resetDelay = resetDelay;
+            this.retryDelay = retryDelay;
         }
     }
 
@@ -83,9 +108,6 @@ public class RateFlowController implements FlowController {
     /** Contains all active counters */
     Map<String, Counter> counters = new ConcurrentHashMap<>();
 
-    /** Used to make user keys unique before using them as synchronization locks */
-    CanonicalSet<String> canonicalizer = CanonicalSet.newInstance(String.class);
-
     /** Checks if we should apply this request rate limit to the request */
     Predicate<Request> matcher;
 
@@ -97,8 +119,17 @@ public class RateFlowController implements FlowController {
 
     String action;
 
-    /** Last time we've performed a queue cleanup */
-    volatile long lastCleanup = System.currentTimeMillis();
+    /** The origin of the unit based time */
+    final long origin = System.currentTimeMillis();
+
+    /**
+     * The time interval used for the accounting, capped so that the unit based computations
+     * cannot overflow
+     */
+    final long window;
+
+    /** Last time we've performed a counters cleanup */
+    final AtomicLong lastCleanup = new AtomicLong(System.currentTimeMillis());
 
     /**
      * Builds a UserFlowController that will trigger stale queue expiration once 100 queues have
@@ -115,6 +146,7 @@ public class RateFlowController implements FlowController {
         this.timeInterval = timeInterval;
         this.delay = delay;
         this.keyGenerator = keyGenerator;
+        this.window = Math.min(timeInterval, Long.MAX_VALUE / 4 / Math.max(maxRequests, 1));
 
         if (delay > 0) {
             this.action = "Delay excess requests " + delay + "ms";
@@ -133,40 +165,23 @@ public class RateFlowController implements FlowController {
             return true;
         }
 
-        boolean retval = true;
         long now = System.currentTimeMillis();
-        long currPeriodId = now / timeInterval;
         String userKey = keyGenerator.getUserKey(request);
-
-        // grab/generate the counter
-        Counter counter = counters.get(userKey);
-        if (counter == null) {
-            userKey = canonicalizer.unique(userKey);
-            synchronized (userKey) {
-                counter = counters.get(userKey);
-                if (counter == null) {
-                    counter = new Counter();
-                    counters.put(userKey, counter);
-                }
-            }
-        }
-
-        // update the counters
-        int requests = counter.addRequest(currPeriodId);
-        int residual = maxRequests - requests;
+        Result result = acquire(userKey, now);
 
         // set the headers
         HttpServletResponse response = request.getHttpResponse();
         response.addHeader(X_RATE_LIMIT_CONTEXT, matcher.toString());
         response.addIntHeader(X_RATE_LIMIT_LIMIT, maxRequests);
-        response.addIntHeader(X_RATE_LIMIT_REMAINING, Math.max(residual, 0));
-        response.addDateHeader(X_RATE_LIMIT_RESET, ((currPeriodId + 1) * timeInterval));
-        response.addHeader("X-Rate-Limit-Action", action);
-        // counter cleanup handling
+        response.addIntHeader(X_RATE_LIMIT_REMAINING, (int) result.remaining);
+        response.addDateHeader(X_RATE_LIMIT_RESET, now + result.resetDelay);
+        response.addHeader(X_RATE_LIMIT_ACTION, action);
         if (LOGGER.isLoggable(Level.FINE)) {
-            LOGGER.fine(this + ", residual in current time period " + residual);
+            LOGGER.fine(this + ", remaining requests " + result.remaining);
         }
-        if (residual < 0) {
+        if (!result.allowed) {
+            // round up, the client should not retry too early
+            response.addHeader(RETRY_AFTER, String.valueOf((result.retryDelay + 999) / 1000));
             if (delay <= 0) {
                 throw new HttpErrorCodeException(
                         429,
@@ -186,28 +201,76 @@ public class RateFlowController implements FlowController {
             }
         }
 
-        // cleanup stale counters if necessary
-        long elapsed = now - lastCleanup;
-        if (counters.size() > COUNTERS_CLEANUP_THRESHOLD
-                && (elapsed > (timeInterval) || (elapsed > 10000))) {
-            int cleanupCount = 0;
-            synchronized (this) {
-                for (Map.Entry<String, Counter> entry : counters.entrySet()) {
-                    Counter c = entry.getValue();
-                    long timePeriodId = c.getTimePeriodId();
-                    long age = (currPeriodId - timePeriodId) * timeInterval;
-                    if (age > COUNTERS_CLEANUP_THRESHOLD) {
-                        counters.remove(entry.getKey());
-                    }
+        cleanupCounters(now);
+
+        return true;
+    }
+
+    /**
+     * Accounts for a request of the given user, consuming capacity only if the request is
+     * allowed
+     */
+    Result acquire(String userKey, long now) {
+        long nowUnits = (now - origin) * maxRequests;
+        long capacity = window * maxRequests;
+        while (true) {
+            Counter counter = counters.get(userKey);
+            if (counter == null) {
+                counter = counters.computeIfAbsent(userKey, k -> new Counter(nowUnits));
+            }
+            while (true) {
+                long tat = counter.get();
+                if (tat == EVICTED) {
+                    // lost the race with the cleanup, start over with a new counter
+                    counters.remove(userKey, counter);
+                    break;
                 }
-                lastCleanup = now;
-                if (LOGGER.isLoggable(Level.FINE)) {
-                    LOGGER.fine(this + ", purged " + cleanupCount + " stale counters");
+                long start = Math.max(tat, nowUnits);
+                long next = start + window;
+                if (next - nowUnits > capacity) {
+                    // over the limit, leave the state alone
+                    long retry = next - capacity - nowUnits;
+                    return new Result(false, 0, toMillis(tat - nowUnits), toMillis(retry));
+                }
+                if (counter.compareAndSet(tat, next)) {
+                    long remaining = (capacity - (next - nowUnits)) / window;
+                    return new Result(true, remaining, toMillis(next - nowUnits), 0);
                 }
             }
         }
+    }
+
+    /** Converts a duration in units to milliseconds, rounding up */
+    private long toMillis(long units) {
+        return units <= 0 ? 0 : (units + maxRequests - 1) / maxRequests;
+    }
 
-        return retval;
+    /**
+     * Evicts the counters of users whose capacity is fully restored, if there are enough of them
+     * and enough time passed since the last cleanup. Only one thread performs the cleanup, the
+     * others move on.
+     */
+    void cleanupCounters(long now) {
+        long last = lastCleanup.get();
+        long elapsed = now - last;
+        if (counters.size() > COUNTERS_CLEANUP_THRESHOLD
+                && (elapsed > timeInterval || elapsed > COUNTERS_CLEANUP_INTERVAL)
+                && lastCleanup.compareAndSet(last, now)) {
+            long nowUnits = (now - origin) * maxRequests;
+            int cleanupCount = 0;
+            for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+                Counter c = entry.getValue();
+                long tat = c.get();
+                // a full bucket is equivalent to no bucket at all
+                if (tat != EVICTED && tat <= nowUnits && c.compareAndSet(tat, EVICTED)) {
+                    counters.remove(entry.getKey(), c);
+                    cleanupCount++;
+                }
+            }
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.fine(this + ", purged " + cleanupCount + " stale counters");
+            }
+        }
     }
 
     public KeyGenerator getKeyGenerator() {
@@ -0,0 +1,22 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import org.geoserver.ows.Request;
+
+/**
+ * Estimates the cost of a request, used by the {@link CostThreadBlocker} to admit requests against
+ * a global cost budget, instead of just counting them
+ */
+public interface RequestCostEstimator {
+
+    /**
+     * Returns the estimated cost of the request, in abstract units
+     *
+     * @param request The request whose cost needs to be evaluated
+     * @return A positive cost, the cheapest requests should have a cost of 1
+     */
+    long getCost(Request request);
+}
@@ -18,10 +18,14 @@ import java.util.Properties;
 import org.geoserver.flow.ControllerPriorityComparator;
 import org.geoserver.flow.FlowController;
 import org.geoserver.flow.controller.BasicOWSController;
+import org.geoserver.flow.controller.CostFlowController;
+import org.geoserver.flow.controller.CostThreadBlocker;
 import org.geoserver.flow.controller.GlobalFlowController;
 import org.geoserver.flow.controller.HttpHeaderPriorityProvider;
 import org.geoserver.flow.controller.IpFlowController;
 import org.geoserver.flow.controller.IpRequestMatcher;
+import org.geoserver.flow.controller.LockFreeThreadBlocker;
+import org.geoserver.flow.controller.OWSRequestCostEstimator;
 import org.geoserver.flow.controller.PriorityThreadBlocker;
 import org.geoserver.flow.controller.RateFlowController;
 import org.geoserver.flow.controller.SingleIpFlowController;
@@ -183,6 +187,50 @@ public class DefaultControlFlowConfigurationTest {
         assertPriorityThreadBlocker(blocker, "gs-priority", 3);
     }
 
+    @Test
+    public void testParsingLockFree() throws Exception {
+        Properties p = new Properties();
+        p.put("ows.priority.http", "gs-priority,3");
+        p.put("ows.blocker", "lockfree");
+        p.put("ows.wms", "6");
+
+        DefaultControlFlowConfigurator configurator =
+                new DefaultControlFlowConfigurator(new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        assertEquals(1, controllers.size());
+
+        BasicOWSController controller = (BasicOWSController) controllers.get(0);
+        assertThat(controller.getBlocker(), CoreMatchers.instanceOf(LockFreeThreadBlocker.class));
+        LockFreeThreadBlocker blocker = (LockFreeThreadBlocker) controller.getBlocker();
+        assertThat(
+                blocker.getPriorityProvider(),
+                CoreMatchers.instanceOf(HttpHeaderPriorityProvider.class));
+    }
+
+    @Test
+    public void testParsingCost() throws Exception {
+        Properties p = new Properties();
+        p.put("ows.priority.http", "gs-priority,3");
+        p.put("cost.ows.wms.getmap", "400");
+
+        DefaultControlFlowConfigurator configurator =
+                new DefaultControlFlowConfigurator(new FixedWatcher(p));
+        List<FlowController> controllers = configurator.buildFlowControllers();
+        assertEquals(1, controllers.size());
+
+        assertTrue(controllers.get(0) instanceof CostFlowController);
+        CostFlowController controller = (CostFlowController) controllers.get(0);
+        assertEquals("wms.getmap", controller.getMatcher().toString());
+        CostThreadBlocker blocker = (CostThreadBlocker) controller.getBlocker();
+        assertEquals(400, blocker.getBudget());
+        assertThat(
+                blocker.getCostEstimator(),
+                CoreMatchers.instanceOf(OWSRequestCostEstimator.class));
+        assertThat(
+                blocker.getPriorityProvider(),
+                CoreMatchers.instanceOf(HttpHeaderPriorityProvider.class));
+    }
+
     public void assertPriorityThreadBlocker(
             ThreadBlocker blocker, String headerName, int defaultPriority) {
         assertThat(blocker, CoreMatchers.instanceOf(PriorityThreadBlocker.class));
@@ -0,0 +1,131 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+
+public class CostFlowControllerTest extends AbstractFlowControllerTest {
+
+    @Test
+    public void testCostEstimates() {
+        OWSRequestCostEstimator estimator = new OWSRequestCostEstimator();
+        assertEquals(
+                8,
+                estimator.getCost(
+                        buildRequest(
+                                "WMS", "GetMap", "WIDTH", "512", "HEIGHT", "512", "LAYERS",
+                                "a,b")));
+        assertEquals(
+                1,
+                estimator.getCost(
+                        buildRequest("WMS", "GetMap", "WIDTH", "256", "HEIGHT", "256")));
+        assertEquals(3, estimator.getCost(buildRequest("WFS", "GetFeature", "COUNT", "2500")));
+        assertEquals(
+                6,
+                estimator.getCost(
+                        buildRequest(
+                                "WFS", "GetFeature", "MAXFEATURES", "3000", "TYPENAME", "a,b")));
+        assertEquals(10, estimator.getCost(buildRequest("WFS", "GetFeature")));
+        assertEquals(
+                16,
+                estimator.getCost(
+                        buildRequest("WCS", "GetCoverage", "SCALESIZE", "x(1000),y(1000)")));
+        assertEquals(1, estimator.getCost(buildRequest("WMS", "GetCapabilities")));
+        // invalid values do not break the estimation
+        assertEquals(
+                1,
+                estimator.getCost(buildRequest("WMS", "GetMap", "WIDTH", "abc", "HEIGHT", "1")));
+    }
+
+    @Test
+    public void testBudget() throws Exception {
+        CostThreadBlocker blocker = new CostThreadBlocker(10, r -> getTestCost(r), null);
+        Request first = buildCostRequest(6);
+        assertTrue(blocker.requestIncoming(first, 1000));
+        assertEquals(6, blocker.getAdmittedCost());
+
+        // does not fit, and times out
+        Request second = buildCostRequest(6);
+        assertFalse(blocker.requestIncoming(second, 50));
+        assertEquals(0, blocker.getQueueDepth());
+        // the cleanup after the timeout does not give back any cost
+        blocker.requestComplete(second);
+        assertEquals(6, blocker.getAdmittedCost());
+
+        // a cheap one fits
+        Request third = buildCostRequest(4);
+        assertTrue(blocker.requestIncoming(third, 1000));
+        assertEquals(10, blocker.getAdmittedCost());
+        assertEquals(2, blocker.getRunningRequestsCount());
+
+        // this one has to wait for the others to complete
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Request fourth = buildCostRequest(8);
+            Future<Boolean> future = executor.submit(() -> blocker.requestIncoming(fourth, -1));
+            long start = System.currentTimeMillis();
+            while (blocker.getQueueDepth() == 0 && System.currentTimeMillis() - start < MAX_WAIT) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, blocker.getQueueDepth());
+            blocker.requestComplete(third);
+            // not enough yet
+            assertEquals(1, blocker.getQueueDepth());
+            blocker.requestComplete(first);
+            assertTrue(future.get(MAX_WAIT, TimeUnit.MILLISECONDS));
+            assertEquals(8, blocker.getAdmittedCost());
+            assertEquals(0, blocker.getQueueDepth());
+            blocker.requestComplete(fourth);
+            assertEquals(0, blocker.getAdmittedCost());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExpensiveRunsAlone() throws Exception {
+        CostThreadBlocker blocker = new CostThreadBlocker(10, r -> getTestCost(r), null);
+        Request expensive = buildCostRequest(100);
+        assertTrue(blocker.requestIncoming(expensive, 1000));
+        assertEquals(10, blocker.getAdmittedCost());
+        assertFalse(blocker.requestIncoming(buildCostRequest(1), 50));
+        blocker.requestComplete(expensive);
+        assertEquals(0, blocker.getAdmittedCost());
+        // the timed out one was never admitted
+        assertEquals(1, blocker.getTotalAdmittedRequests());
+        assertEquals(10, blocker.getTotalAdmittedCost());
+    }
+
+    private long getTestCost(Request request) {
+        return Long.parseLong((String) request.getRawKvp().get("COST"));
+    }
+
+    private Request buildCostRequest(long cost) {
+        return buildRequest("WMS", "GetMap", "COST", String.valueOf(cost));
+    }
+
+    private Request buildRequest(String service, String method, String... kvp) {
+        Request request = buildIpRequest("127.0.0.1", "");
+        request.setService(service);
+        request.setRequest(method);
+        Map<String, Object> rawKvp = new HashMap<>();
+        for (int i = 0; i < kvp.length; i += 2) {
+            rawKvp.put(kvp[i], kvp[i + 1]);
+        }
+        request.setRawKvp(rawKvp);
+        return request;
+    }
+}
@@ -0,0 +1,174 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.flow.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.flow.controller.FlowControllerTestingThread.ThreadState;
+import org.geoserver.ows.Request;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+public class LockFreeFlowControllerTest extends AbstractFlowControllerTest {
+
+    static final String PRIORITY_HEADER_NAME = "priorityHeader";
+
+    @Test
+    public void testPriorityOrder() throws Exception {
+        HttpHeaderPriorityProvider priorityProvider =
+                new HttpHeaderPriorityProvider(PRIORITY_HEADER_NAME, 0);
+        LockFreeThreadBlocker blocker = new LockFreeThreadBlocker(1, priorityProvider);
+        GlobalFlowController controller = new GlobalFlowController(1, blocker);
+
+        // make three testing threads that will "process" forever, until we interrupt them
+        FlowControllerTestingThread t1 =
+                new FlowControllerTestingThread(buildRequest(1), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t2 =
+                new FlowControllerTestingThread(buildRequest(2), 0, Long.MAX_VALUE, controller);
+        FlowControllerTestingThread t3 =
+                new FlowControllerTestingThread(buildRequest(3), 0, Long.MAX_VALUE, controller);
+        try {
+            t1.start();
+            waitBlocked(t1, MAX_WAIT);
+            t2.start();
+            waitBlocked(t2, MAX_WAIT);
+            t3.start();
+            waitBlocked(t3, MAX_WAIT);
+
+            assertEquals(ThreadState.PROCESSING, t1.state);
+            assertEquals(ThreadState.STARTED, t2.state);
+            assertEquals(ThreadState.STARTED, t3.state);
+            assertEquals(2, blocker.getQueueDepth());
+
+            // t3 has the higher priority
+            t1.interrupt();
+            waitTerminated(t1, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t3, MAX_WAIT);
+            assertEquals(ThreadState.STARTED, t2.state);
+
+            t3.interrupt();
+            waitTerminated(t3, MAX_WAIT);
+            waitState(ThreadState.PROCESSING, t2, MAX_WAIT);
+
+            t2.interrupt();
+            waitTerminated(t2, MAX_WAIT);
+            assertEquals(0, blocker.getRunningRequestsCount());
+            assertEquals(0, blocker.getQueueDepth());
+        } finally {
+            waitAndKill(t1, MAX_WAIT);
+            waitAndKill(t2, MAX_WAIT);
+            waitAndKill(t3, MAX_WAIT);
+        }
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        LockFreeThreadBlocker blocker = new LockFreeThreadBlocker(1, null);
+        Request first = buildRequest(null);
+        assertTrue(blocker.requestIncoming(first, 100));
+
+        Request second = buildRequest(null);
+        long start = System.currentTimeMillis();
+        assertFalse(blocker.requestIncoming(second, 100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(0, blocker.getQueueDepth());
+        // the cleanup of the timed out request does not free the slot
+        blocker.requestComplete(second);
+        assertEquals(1, blocker.getRunningRequestsCount());
+
+        blocker.requestComplete(first);
+        assertTrue(blocker.requestIncoming(second, 100));
+    }
+
+    @Test
+    public void testConcurrency() throws Exception {
+        int maxRunning = 3;
+        LockFreeThreadBlocker blocker = new LockFreeThreadBlocker(maxRunning, null);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxObserved = new AtomicInteger();
+        AtomicInteger completed = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 16; i++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (int j = 0; j < 200; j++) {
+                                        Request request = buildRequest(null);
+                                        blocker.requestIncoming(request, -1);
+                                        int current = running.incrementAndGet();
+                                        maxObserved.accumulateAndGet(current, Math::max);
+                                        Thread.yield();
+                                        running.decrementAndGet();
+                                        blocker.requestComplete(request);
+                                        completed.incrementAndGet();
+                                    }
+                                    return null;
+                                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(MAX_WAIT * 4, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(16 * 200, completed.get());
+        assertTrue(maxObserved.get() <= maxRunning);
+        assertEquals(0, blocker.getRunningRequestsCount());
+        assertEquals(0, blocker.getQueueDepth());
+    }
+
+    @Test
+    public void testShortRequestsReleaseSlots() throws Exception {
+        // requests completing right after admission, racing with the dispatcher
+        LockFreeThreadBlocker blocker = new LockFreeThreadBlocker(1, null);
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    for (int j = 0; j < 500; j++) {
+                                        Request request = buildRequest(null);
+                                        assertTrue(blocker.requestIncoming(request, -1));
+                                        blocker.requestComplete(request);
+                                    }
+                                    return null;
+                                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(MAX_WAIT * 4, TimeUnit.MILLISECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, blocker.getRunningRequestsCount());
+        assertEquals(0, blocker.getQueueDepth());
+        // the slot is really free
+        assertTrue(blocker.requestIncoming(buildRequest(null), 100));
+    }
+
+    private Request buildRequest(Integer priority) {
+        Request request = new Request();
+        MockHttpServletRequest hr = new MockHttpServletRequest();
+        if (priority != null) {
+            hr.addHeader(PRIORITY_HEADER_NAME, String.valueOf(priority));
+        }
+        request.setHttpRequest(hr);
+
+        return request;
+    }
+}
@@ -6,6 +6,14 @@ package org.geoserver.flow.controller;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import javax.servlet.http.Cookie;
 import org.geoserver.ows.HttpErrorCodeException;
 import org.geoserver.ows.Request;
@@ -125,4 +133,116 @@ public class RateFlowControllerTest extends AbstractFlowControllerTest {
             assertEquals(429, e.getErrorCode());
         }
     }
+
+    @Test
+    public void testSlidingWindow() {
+        RateFlowController controller =
+                new RateFlowController(new OWSRequestMatcher(), 2, 1000, 0, new IpKeyGenerator());
+        long now = controller.origin;
+        assertTrue(controller.acquire("user", now).allowed);
+        RateFlowController.Result second = controller.acquire("user", now);
+        assertTrue(second.allowed);
+        assertEquals(0, second.remaining);
+        assertEquals(1000, second.resetDelay);
+
+        RateFlowController.Result third = controller.acquire("user", now + 100);
+        assertFalse(third.allowed);
+        // half of the window needs to pass before another request is allowed
+        assertEquals(400, third.retryDelay);
+        assertFalse(controller.acquire("user", now + 499).allowed);
+        assertTrue(controller.acquire("user", now + 500).allowed);
+        assertFalse(controller.acquire("user", now + 500).allowed);
+
+        // the full capacity is back after a whole window
+        RateFlowController.Result refilled = controller.acquire("user", now + 2000);
+        assertTrue(refilled.allowed);
+        assertEquals(1, refilled.remaining);
+
+        // other users are not affected
+        assertTrue(controller.acquire("other", now + 100).allowed);
+    }
+
+    @Test
+    public void testRetryAfterHeader() {
+        RateFlowController controller =
+                new RateFlowController(new OWSRequestMatcher(), 1, 60000, 0, new IpKeyGenerator());
+        Request request = buildIpRequest("127.0.0.1", "");
+        assertTrue(controller.requestIncoming(request, Integer.MAX_VALUE));
+        MockHttpServletResponse response = (MockHttpServletResponse) request.getHttpResponse();
+        assertNull(response.getHeader(RateFlowController.RETRY_AFTER));
+
+        request = buildIpRequest("127.0.0.1", "");
+        try {
+            controller.requestIncoming(request, Integer.MAX_VALUE);
+            fail("Should have failed with a 429");
+        } catch (HttpErrorCodeException e) {
+            assertEquals(429, e.getErrorCode());
+        }
+        response = (MockHttpServletResponse) request.getHttpResponse();
+        int retryAfter = Integer.parseInt(response.getHeader(RateFlowController.RETRY_AFTER));
+        assertTrue(retryAfter > 0 && retryAfter <= 60);
+    }
+
+    @Test
+    public void testConcurrentRequests() throws Exception {
+        int maxRequests = 100;
+        RateFlowController controller =
+                new RateFlowController(
+                        new OWSRequestMatcher(), maxRequests, Long.MAX_VALUE, 0, null);
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicInteger allowed = new AtomicInteger();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    latch.await();
+                                    for (int j = 0; j < 1000; j++) {
+                                        long now = System.currentTimeMillis();
+                                        if (controller.acquire("user", now).allowed) {
+                                            allowed.incrementAndGet();
+                                        }
+                                    }
+                                    return null;
+                                }));
+            }
+            latch.countDown();
+            for (Future<?> future : futures) {
+                future.get(MAX_WAIT, TimeUnit.MILLISECONDS);
+            }
+            // no request lost or granted in excess
+            assertEquals(maxRequests, allowed.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testIdleCountersEvicted() {
+        int threshold = RateFlowController.COUNTERS_CLEANUP_THRESHOLD;
+        try {
+            RateFlowController.COUNTERS_CLEANUP_THRESHOLD = 10;
+            RateFlowController controller =
+                    new RateFlowController(
+                            new OWSRequestMatcher(), 10, 1000, 0, new IpKeyGenerator());
+            long now = controller.origin;
+            for (int i = 0; i < 20; i++) {
+                controller.acquire("user" + i, now);
+            }
+            controller.acquire("active", now + 1000);
+            assertEquals(21, controller.counters.size());
+
+            // only the counters of users that got back to full capacity are evicted
+            controller.cleanupCounters(now + 1001);
+            assertEquals(1, controller.counters.size());
+            assertTrue(controller.counters.containsKey("active"));
+            // a new request starts from a full bucket
+            assertEquals(9, controller.acquire("user0", now + 1002).remaining);
+        } finally {
+            RateFlowController.COUNTERS_CLEANUP_THRESHOLD = threshold;
+        }
+    }
 }
@@ -0,0 +1,306 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.importer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.importer.job.ProgressMonitor;
+import org.geoserver.importer.transform.VectorTransformChain;
+import org.geotools.data.DataStore;
+import org.geotools.data.FeatureReader;
+import org.geotools.data.FeatureWriter;
+import org.geotools.data.Transaction;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.util.logging.Logging;
+import org.locationtech.jts.geom.Geometry;
+import org.opengis.feature.simple.SimpleFeature;
+import org.opengis.feature.simple.SimpleFeatureType;
+
+/**
+ * Copies the features of a reader into a target store as a pipeline: a thread reads the source
+ * features in batches, a pool of threads converts them to the target type, and the calling thread
+ * applies the inline transforms and writes them, committing the transaction every {@code
+ * commitSize} features. The number of pending batches is bounded, so that reading cannot get too
+ * far ahead of writing.
+ *
+ * <p>The inline transforms are not required to be thread safe, so they are run by the calling
+ * thread, in the source order. The progress is tracked in the {@link ImportTask}, along with the
+ * number of features committed, which allows a failed or canceled copy to be resumed after the
+ * last committed batch.
+ */
+class BatchedFeatureCopier {
+
+    static final Logger LOGGER = Logging.getLogger(BatchedFeatureCopier.class);
+
+    /** Max number of features handed over to a conversion thread at once */
+    static final int MAX_BATCH_SIZE = 1000;
+
+    /** Marks the end of the source features */
+    static final Future<Batch> END = CompletableFuture.completedFuture(null);
+
+    static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    final ImportTask task;
+
+    final DataStore dataStore;
+
+    final Transaction transaction;
+
+    final String typeName;
+
+    final FeatureDataConverter converter;
+
+    final VectorTransformChain tx;
+
+    final int commitSize;
+
+    final int threads;
+
+    final int batchSize;
+
+    volatile boolean stopped;
+
+    BatchedFeatureCopier(
+            ImportTask task,
+            DataStore dataStore,
+            Transaction transaction,
+            String typeName,
+            FeatureDataConverter converter,
+            VectorTransformChain tx,
+            int commitSize,
+            int threads) {
+        if (commitSize <= 0) {
+            throw new IllegalArgumentException("Commit size must be positive: " + commitSize);
+        }
+        this.task = task;
+        this.dataStore = dataStore;
+        this.transaction = transaction;
+        this.typeName = typeName;
+        this.converter = converter;
+        this.tx = tx;
+        this.commitSize = commitSize;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.min(commitSize, MAX_BATCH_SIZE);
+    }
+
+    /**
+     * Copies the features, skipping the ones already committed by a previous run
+     *
+     * @return the number of features skipped by the inline transforms
+     */
+    int copy(FeatureReader<SimpleFeatureType, SimpleFeature> reader) throws Exception {
+        ProgressMonitor monitor = task.progress();
+        final int resumeFrom = task.getNumberCommitted();
+        int committed = resumeFrom;
+        int processed = resumeFrom;
+        int skipped = 0;
+        task.setNumberProcessed(processed);
+        if (resumeFrom > 0) {
+            LOGGER.info(
+                    "Resuming the import of " + typeName + " after " + resumeFrom + " features");
+        }
+
+        ExecutorService readerExecutor = Executors.newSingleThreadExecutor(this::newThread);
+        ExecutorService converters =
+                threads > 1 ? Executors.newFixedThreadPool(threads, this::newThread) : null;
+        // a couple of batches per conversion thread keeps them all busy
+        BlockingQueue<Future<Batch>> queue = new ArrayBlockingQueue<>(threads * 2);
+        Future<?> reading = null;
+        FeatureWriter<SimpleFeatureType, SimpleFeature> writer = null;
+        try {
+            SimpleFeatureType targetType = dataStore.getSchema(typeName);
+            reading =
+                    readerExecutor.submit(
+                            () -> read(reader, resumeFrom, targetType, converters, queue));
+
+            while (!monitor.isCanceled()) {
+                Future<Batch> future = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (future == null) {
+                    continue;
+                } else if (future == END) {
+                    break;
+                }
+                Batch batch = getBatch(future);
+                for (int i = 0; i < batch.sources.size() && !monitor.isCanceled(); i++) {
+                    if (writer == null) {
+                        writer = dataStore.getFeatureWriterAppend(typeName, transaction);
+                    }
+                    SimpleFeature next = writer.next();
+                    next.setAttributes(batch.targets.get(i).getAttributes());
+
+                    // apply the feature transform
+                    next = tx.inline(task, dataStore, batch.sources.get(i), next);
+
+                    if (next == null) {
+                        skipped++;
+                    } else {
+                        writer.write();
+                    }
+                    task.setNumberProcessed(++processed);
+
+                    if (processed - committed >= commitSize) {
+                        // writers might buffer features, close before committing
+                        writer.close();
+                        writer = null;
+                        transaction.commit();
+                        committed = processed;
+                        task.setNumberCommitted(committed);
+                    }
+                }
+            }
+
+            if (!monitor.isCanceled()) {
+                if (writer != null) {
+                    writer.close();
+                    writer = null;
+                }
+                transaction.commit();
+                task.setNumberCommitted(processed);
+            }
+        } finally {
+            stopped = true;
+            if (writer != null) {
+                try {
+                    writer.close();
+                } catch (Exception e) {
+                    LOGGER.log(Level.WARNING, "Error closing the feature writer", e);
+                }
+            }
+            // make sure the reader is not used anymore once we return
+            if (reading != null) {
+                try {
+                    reading.get();
+                } catch (Exception e) {
+                    LOGGER.log(Level.FINE, "Feature reading ended with an error", e);
+                }
+            }
+            readerExecutor.shutdownNow();
+            if (converters != null) {
+                converters.shutdownNow();
+            }
+        }
+
+        return skipped;
+    }
+
+    /** Reads the source features and queues their conversion, runs in a separate thread */
+    void read(
+            FeatureReader<SimpleFeatureType, SimpleFeature> reader,
+            int skip,
+            SimpleFeatureType targetType,
+            ExecutorService converters,
+            BlockingQueue<Future<Batch>> queue) {
+        try {
+            // these have been committed by a previous run already
+            for (int i = 0; i < skip && !stopped && reader.hasNext(); i++) {
+                reader.next();
+            }
+            Batch batch = new Batch(batchSize);
+            while (!stopped && reader.hasNext()) {
+                batch.sources.add(reader.next());
+                if (batch.sources.size() == batchSize) {
+                    put(queue, convert(batch, targetType, converters));
+                    batch = new Batch(batchSize);
+                }
+            }
+            if (!batch.sources.isEmpty()) {
+                put(queue, convert(batch, targetType, converters));
+            }
+        } catch (Throwable t) {
+            CompletableFuture<Batch> failed = new CompletableFuture<>();
+            failed.completeExceptionally(t);
+            put(queue, failed);
+        } finally {
+            put(queue, END);
+        }
+    }
+
+    /** Converts the batch using the pool, if available, or in the current thread otherwise */
+    Future<Batch> convert(Batch batch, SimpleFeatureType targetType, ExecutorService converters) {
+        if (converters != null) {
+            return converters.submit(() -> batch.convert(targetType, converter));
+        }
+        CompletableFuture<Batch> result = new CompletableFuture<>();
+        try {
+            result.complete(batch.convert(targetType, converter));
+        } catch (Throwable t) {
+            result.completeExceptionally(t);
+        }
+        return result;
+    }
+
+    /** Queues the batch, waiting for space unless the copy has been stopped */
+    void put(BlockingQueue<Future<Batch>> queue, Future<Batch> batch) {
+        try {
+            while (!stopped) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    Batch getBatch(Future<Batch> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "importer-copy-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /** A batch of source features, along with their conversion to the target type */
+    static class Batch {
+
+        final List<SimpleFeature> sources;
+
+        final List<SimpleFeature> targets;
+
+        Batch(int size) {
+            this.sources = new ArrayList<>(size);
+            this.targets = new ArrayList<>(size);
+        }
+
+        Batch convert(SimpleFeatureType targetType, FeatureDataConverter converter) {
+            for (SimpleFeature source : sources) {
+                SimpleFeature target = SimpleFeatureBuilder.template(targetType, null);
+                converter.convert(source, target);
+
+                // @hack #45678 - mask empty geometry or postgis will complain
+                Geometry geom = (Geometry) target.getDefaultGeometry();
+                if (geom != null && geom.isEmpty()) {
+                    target.setDefaultGeometry(null);
+                }
+                targets.add(target);
+            }
+            return this;
+        }
+    }
+}
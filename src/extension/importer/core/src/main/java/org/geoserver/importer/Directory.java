@@ -21,6 +21,12 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.ZipOutputStream;
@@ -31,6 +37,7 @@ import org.apache.commons.vfs2.FileName;
 import org.apache.commons.vfs2.FileObject;
 import org.apache.commons.vfs2.VFS;
 import org.geoserver.importer.job.ProgressMonitor;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.util.IOUtils;
 import org.geotools.util.logging.Logging;
 
@@ -40,6 +47,8 @@ public class Directory extends FileData {
 
     private static final long serialVersionUID = 1L;
 
+    private static final AtomicInteger SCAN_THREAD_COUNTER = new AtomicInteger();
+
     /** list of files contained in directory */
     protected List<FileData> files = new ArrayList<FileData>();
 
@@ -66,7 +75,7 @@ public class Directory extends FileData {
     }
 
     public static Directory createFromArchive(File archive) throws IOException {
-        VFSWorker vfs = new VFSWorker();
+        VFSWorker vfs = new VFSWorker(getScanThreads());
         if (!vfs.canHandle(archive)) {
             throw new IOException(archive.getPath() + " is not a recognizable  format");
         }
@@ -89,9 +98,21 @@ public class Directory extends FileData {
         return files;
     }
 
+    /**
+     * Returns the number of threads used to unpack archives and scan the directory contents, as
+     * configured in the importer (see {@link ImporterInfo#getScanThreads()})
+     */
+    static int getScanThreads() {
+        Importer importer = GeoServerExtensions.bean(Importer.class);
+        if (importer != null) {
+            return importer.getConfiguration().getScanThreads();
+        }
+        return ImporterInfoImpl.DEFAULT_SCAN_THREADS;
+    }
+
     public void unpack(File file) throws IOException {
         // if the file is an archive, unpack it
-        VFSWorker vfs = new VFSWorker();
+        VFSWorker vfs = new VFSWorker(getScanThreads());
         if (vfs.canHandle(file)) {
             LOGGER.fine(
                     "unpacking " + file.getAbsolutePath() + " to " + this.file.getAbsolutePath());
@@ -128,6 +149,25 @@ public class Directory extends FileData {
 
     @Override
     public void prepare(ProgressMonitor m) throws IOException {
+        int threads = getScanThreads();
+        ExecutorService executor = null;
+        if (threads > 1) {
+            executor = Executors.newFixedThreadPool(threads, Directory::newScanThread);
+        }
+        try {
+            prepare(m, executor);
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Scans the directory and its sub-directories, sniffing the format of the files and gathering
+     * their related files in parallel, when an executor is provided
+     */
+    protected void prepare(ProgressMonitor m, ExecutorService executor) throws IOException {
         files = new ArrayList<FileData>();
 
         // recursively search for spatial files, maintain a queue of directories to recurse into
@@ -157,7 +197,8 @@ public class Directory extends FileData {
             }
             Set<File> all = new LinkedHashSet<File>(Arrays.asList(fileList));
 
-            // scan all the files looking for spatial ones
+            // scan all the files looking for spatial ones, keeping their order
+            List<Future<? extends FileData>> found = new ArrayList<>();
             File[] files = dir.listFiles();
             if (files != null) {
                 for (File f : files) {
@@ -176,9 +217,9 @@ public class Directory extends FileData {
                         // are all hidden files anyway
                         if (!"__MACOSX".equals(f.getName())) {
                             Directory d = new Directory(f);
-                            d.prepare(m);
+                            d.prepare(m, executor);
 
-                            this.files.add(d);
+                            found.add(CompletableFuture.completedFuture(d));
                         }
                         // q.push(f);
                         continue;
@@ -190,22 +231,24 @@ public class Directory extends FileData {
                         continue;
                     }
 
-                    // determine if this is a spatial format or not
-                    DataFormat format = DataFormat.lookup(f);
-
-                    if (format != null) {
-                        SpatialFile sf = newSpatialFile(f, format);
-
-                        // gather up the related files
-                        sf.prepare(m);
-
-                        this.files.add(sf);
-
-                        all.removeAll(sf.allFiles());
+                    if (executor != null) {
+                        found.add(executor.submit(() -> lookupSpatialFile(f, m)));
+                    } else {
+                        found.add(CompletableFuture.completedFuture(lookupSpatialFile(f, m)));
                     }
                 }
             }
 
+            for (Future<? extends FileData> future : found) {
+                FileData data = get(future);
+                if (data != null) {
+                    this.files.add(data);
+                }
+                if (data instanceof SpatialFile) {
+                    all.removeAll(((SpatialFile) data).allFiles());
+                }
+            }
+
             // take any left overs and add them as unspatial/unrecognized
             for (File f : all) {
                 this.files.add(new ASpatialFile(f));
@@ -244,6 +287,53 @@ public class Directory extends FileData {
         //        }
     }
 
+    /**
+     * Returns the prepared spatial file for the given file, or null if the file is not in a
+     * recognized spatial format
+     */
+    SpatialFile lookupSpatialFile(File f, ProgressMonitor m) throws IOException {
+        if (m.isCanceled()) {
+            return null;
+        }
+        // determine if this is a spatial format or not
+        DataFormat format = DataFormat.lookup(f);
+
+        if (format != null) {
+            SpatialFile sf = newSpatialFile(f, format);
+
+            // gather up the related files
+            sf.prepare(m);
+            return sf;
+        }
+        return null;
+    }
+
+    private static <T> T get(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while scanning files", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private static Thread newScanThread(Runnable runnable) {
+        String name = "importer-scan-" + SCAN_THREAD_COUNTER.incrementAndGet();
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
     /**
      * Creates a new spatial file.
      *
@@ -414,6 +504,18 @@ public class Directory extends FileData {
         // lock folder before it gets removed from JobQueue cleaner
         lockDirectory();
 
+        VFSWorker vfs = new VFSWorker(getScanThreads());
+        if (childName != null && vfs.isZip(childName)) {
+            // extract on the fly, without staging the archive on disk first
+            try {
+                vfs.extractTo(in, this.file);
+            } catch (IOException ioe) {
+                LOGGER.warning("Possible invalid archive uploaded to " + file.getAbsolutePath());
+                throw ioe;
+            }
+            return;
+        }
+
         File dest = child(childName);
 
         IOUtils.copy(in, dest);
@@ -5,40 +5,157 @@
  */
 package org.geoserver.importer;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
 import org.geotools.referencing.CRS;
-import org.geotools.util.SoftValueHashMap;
+import org.geotools.util.logging.Logging;
 import org.opengis.referencing.FactoryException;
-import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
 /**
- * Caches expensive EPSG code lookups
+ * Caches expensive EPSG code lookups, keyed by the WKT definition of the CRS (e.g., the contents
+ * of a .prj file). The cache is thread safe, shared by all imports, and persisted in the data
+ * directory, so that the same definitions are not matched against the EPSG database over and over,
+ * not even across restarts. Remove the {@link #CACHE_FILE} to have the lookups performed again.
+ *
+ * <p>The new matches are saved at most every {@link #SAVE_INTERVAL} milliseconds. The failed
+ * lookups are not persisted, and are retried after {@link #FAILED_LOOKUP_TTL} milliseconds, in
+ * case the EPSG database got extended meanwhile.
  *
  * @author Andrea Aime - GeoSolutions
  */
 class EPSGCodeLookupCache {
 
-    /** Marker for failed lookups */
-    static final Integer FAILED_LOOKUP = Integer.MIN_VALUE;
+    static final Logger LOGGER = Logging.getLogger(EPSGCodeLookupCache.class);
+
+    /** Time a failed lookup is remembered for, in milliseconds */
+    static final long FAILED_LOOKUP_TTL = 10 * 60 * 1000;
+
+    /** Min time between two saves of the cache, in milliseconds */
+    static final long SAVE_INTERVAL = 10 * 1000;
+
+    /** Location of the persisted lookups, in the data directory */
+    static final String CACHE_FILE = "importer/epsg-codes.properties";
+
+    /** Max number of cached lookups */
+    static final int MAX_ENTRIES = 10000;
 
     /** The lookup cache */
-    SoftValueHashMap<CoordinateReferenceSystem, Integer> cache =
-            new SoftValueHashMap<CoordinateReferenceSystem, Integer>(100);
+    final Map<String, Integer> cache = new ConcurrentHashMap<>();
+
+    /** Expiration time of the failed lookups, kept in memory only */
+    final Map<String, Long> failures = new ConcurrentHashMap<>();
+
+    /** True if the cache has matches not saved yet */
+    volatile boolean dirty;
+
+    /** Time of the last save */
+    volatile long lastSave;
 
-    public Integer lookupEPSGCode(CoordinateReferenceSystem crs) throws FactoryException {
-        Integer code = cache.get(crs);
-        if (code == null) {
-            code = CRS.lookupEpsgCode(crs, true);
+    /** The data directory the cache has been loaded from */
+    GeoServerResourceLoader loader;
+
+    /** Where the cache has been loaded from and is saved to, if any */
+    Resource resource;
+
+    /**
+     * Returns the EPSG code matching the WKT definition, or null if the definition does not match
+     * any EPSG code
+     */
+    public Integer lookupEPSGCode(String wkt) throws FactoryException {
+        checkLoaded();
+        String key = wkt.trim();
+        Integer code = cache.get(key);
+        if (code == null && !isFailed(key)) {
+            code = CRS.lookupEpsgCode(CRS.parseWKT(key), true);
             if (code == null) {
-                cache.put(crs, FAILED_LOOKUP);
-            } else {
-                cache.put(crs, code);
+                failed(key);
+            } else if (cache.size() < MAX_ENTRIES && cache.putIfAbsent(key, code) == null) {
+                dirty = true;
             }
         }
-
-        if (FAILED_LOOKUP.equals(code)) {
-            code = null;
+        if (dirty && System.currentTimeMillis() - lastSave >= SAVE_INTERVAL) {
+            save();
         }
 
         return code;
     }
+
+    private boolean isFailed(String key) {
+        Long expiration = failures.get(key);
+        return expiration != null && expiration > System.currentTimeMillis();
+    }
+
+    private void failed(String key) {
+        long now = System.currentTimeMillis();
+        if (failures.size() >= MAX_ENTRIES) {
+            failures.values().removeIf(expiration -> expiration <= now);
+        }
+        if (failures.size() < MAX_ENTRIES) {
+            failures.put(key, now + FAILED_LOOKUP_TTL);
+        }
+    }
+
+    /** Loads the persisted lookups, when first used or when the data directory changes */
+    private synchronized void checkLoaded() {
+        GeoServerResourceLoader current = getResourceLoader();
+        if (current == null || current == loader) {
+            return;
+        }
+        loader = current;
+        resource = current.get(CACHE_FILE);
+        cache.clear();
+        failures.clear();
+        dirty = false;
+        if (resource.getType() != Resource.Type.RESOURCE) {
+            return;
+        }
+        Properties props = new Properties();
+        try (InputStream is = resource.in()) {
+            props.load(is);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the EPSG lookup cache from " + resource, e);
+            return;
+        }
+        for (String wkt : props.stringPropertyNames()) {
+            try {
+                cache.put(wkt, Integer.valueOf(props.getProperty(wkt)));
+            } catch (NumberFormatException e) {
+                LOGGER.fine("Skipping invalid EPSG lookup cache entry " + props.getProperty(wkt));
+            }
+        }
+    }
+
+    private synchronized void save() {
+        if (!dirty) {
+            return;
+        }
+        dirty = false;
+        if (resource == null) {
+            return;
+        }
+        lastSave = System.currentTimeMillis();
+        Properties props = new Properties();
+        for (Map.Entry<String, Integer> entry : cache.entrySet()) {
+            props.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+        }
+        try (OutputStream os = resource.out()) {
+            props.store(os, "EPSG codes matching the CRS definitions found in imported data");
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the EPSG lookup cache to " + resource, e);
+        }
+    }
+
+    /** Returns the loader of the data directory the cache is persisted to, if any */
+    GeoServerResourceLoader getResourceLoader() {
+        return GeoServerExtensions.bean(GeoServerResourceLoader.class);
+    }
 }
@@ -98,6 +98,9 @@ public class ImportTask implements Serializable {
 
     int numberProcessed;
 
+    /** number of features already committed to the target store, by batched imports */
+    int numberCommitted;
+
     String typeName;
 
     String typeSpec;
@@ -236,6 +239,19 @@ public class ImportTask implements Serializable {
         this.numberProcessed = numberProcessed;
     }
 
+    /**
+     * Returns the number of source features already committed to the target store by a batched
+     * import (see {@link ImporterInfo#getCommitSize()}), a failed or canceled batched import
+     * resumes after them when run again
+     */
+    public int getNumberCommitted() {
+        return numberCommitted;
+    }
+
+    public void setNumberCommitted(int numberCommitted) {
+        this.numberCommitted = numberCommitted;
+    }
+
     public int getTotalToProcess() {
         return totalToProcess;
     }
@@ -262,7 +278,10 @@ public class ImportTask implements Serializable {
     }
 
     public boolean readyForImport() {
-        return state == State.READY || state == State.CANCELED;
+        return state == State.READY
+                || state == State.CANCELED
+                // batched imports can be resumed from the last committed batch
+                || (state == State.ERROR && numberCommitted > 0);
     }
 
     public ProgressMonitor progress() {
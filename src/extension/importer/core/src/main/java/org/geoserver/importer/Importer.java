@@ -1345,8 +1345,17 @@ public class Importer implements DisposableBean, ApplicationListener {
 
             featureType = featureDataConverter.convertType(featureType, format, data, task);
             UpdateMode updateMode = task.getUpdateMode();
+            // batched imports resume after the last committed batch, the target is already set up
+            final boolean batched =
+                    configuration.getCommitSize() > 0 && !(format instanceof DataStoreFormat);
+            final boolean resume = batched && task.getNumberCommitted() > 0;
+            if (!resume) {
+                task.setNumberCommitted(0);
+            }
             final String uniquifiedFeatureTypeName;
-            if (updateMode == UpdateMode.CREATE) {
+            if (resume) {
+                uniquifiedFeatureTypeName = featureTypeName;
+            } else if (updateMode == UpdateMode.CREATE) {
                 // find a unique type name in the target store
                 uniquifiedFeatureTypeName = findUniqueNativeFeatureTypeName(featureType, store);
 
@@ -1388,11 +1397,15 @@ public class Importer implements DisposableBean, ApplicationListener {
                 uniquifiedFeatureTypeName = featureTypeName;
             }
 
-            if (updateMode == UpdateMode.REPLACE) {
+            if (updateMode == UpdateMode.REPLACE && !resume) {
 
                 FeatureStore fs = (FeatureStore) dataStore.getFeatureSource(featureTypeName);
                 fs.setTransaction(transaction);
                 fs.removeFeatures(Filter.INCLUDE);
+                if (batched) {
+                    // the batches are committed on their own, the removal has to go first
+                    transaction.commit();
+                }
             }
 
             // Move features
@@ -1548,39 +1561,54 @@ public class Importer implements DisposableBean, ApplicationListener {
         task.setTotalToProcess(format.getFeatureCount(task.getData(), task));
 
         LOGGER.fine("begining import - lowlevel api");
+        final int commitSize = configuration.getCommitSize();
         try {
-            writer =
-                    dataStoreDestination.getFeatureWriterAppend(
-                            uniquifiedFeatureTypeName, transaction);
+            if (commitSize > 0) {
+                BatchedFeatureCopier copier =
+                        new BatchedFeatureCopier(
+                                task,
+                                dataStoreDestination,
+                                transaction,
+                                uniquifiedFeatureTypeName,
+                                featureDataConverter,
+                                tx,
+                                commitSize,
+                                configuration.getTransformThreads());
+                skipped = copier.copy(reader);
+            } else {
+                writer =
+                        dataStoreDestination.getFeatureWriterAppend(
+                                uniquifiedFeatureTypeName, transaction);
 
-            while (reader.hasNext()) {
-                if (monitor.isCanceled()) {
-                    break;
-                }
-                SimpleFeature feature = (SimpleFeature) reader.next();
-                SimpleFeature next = (SimpleFeature) writer.next();
-
-                // (JD) TODO: some formats will rearrange the geometry type (like shapefile) which
-                // makes the geometry the first attribute regardless, so blindly copying over
-                // attributes won't work unless the source type also has the geometry as the
-                // first attribute in the schema
-                featureDataConverter.convert(feature, next);
-
-                // @hack #45678 - mask empty geometry or postgis will complain
-                Geometry geom = (Geometry) next.getDefaultGeometry();
-                if (geom != null && geom.isEmpty()) {
-                    next.setDefaultGeometry(null);
-                }
+                while (reader.hasNext()) {
+                    if (monitor.isCanceled()) {
+                        break;
+                    }
+                    SimpleFeature feature = (SimpleFeature) reader.next();
+                    SimpleFeature next = (SimpleFeature) writer.next();
+
+                    // (JD) TODO: some formats will rearrange the geometry type (like shapefile)
+                    // which makes the geometry the first attribute regardless, so blindly copying
+                    // over attributes won't work unless the source type also has the geometry as
+                    // the first attribute in the schema
+                    featureDataConverter.convert(feature, next);
+
+                    // @hack #45678 - mask empty geometry or postgis will complain
+                    Geometry geom = (Geometry) next.getDefaultGeometry();
+                    if (geom != null && geom.isEmpty()) {
+                        next.setDefaultGeometry(null);
+                    }
 
-                // apply the feature transform
-                next = tx.inline(task, dataStoreDestination, feature, next);
+                    // apply the feature transform
+                    next = tx.inline(task, dataStoreDestination, feature, next);
 
-                if (next == null) {
-                    skipped++;
-                } else {
-                    writer.write();
+                    if (next == null) {
+                        skipped++;
+                    } else {
+                        writer.write();
+                    }
+                    task.setNumberProcessed(++cnt);
                 }
-                task.setNumberProcessed(++cnt);
             }
             if (skipped > 0) {
                 task.addMessage(Level.WARNING, skipped + " features were skipped.");
@@ -1602,11 +1630,21 @@ public class Importer implements DisposableBean, ApplicationListener {
                 LOGGER.log(Level.WARNING, "Error rolling back transaction", e1);
             }
 
-            // attempt to drop the type that was created as well
-            try {
-                dropSchema(dataStoreDestination, featureTypeName);
-            } catch (Exception e1) {
-                LOGGER.log(Level.WARNING, "Error dropping schema in rollback", e1);
+            if (commitSize > 0 && task.getNumberCommitted() > 0) {
+                // keep the committed batches, running the task again resumes from there
+                LOGGER.info(
+                        "Import into "
+                                + uniquifiedFeatureTypeName
+                                + " stopped, "
+                                + task.getNumberCommitted()
+                                + " features are committed");
+            } else {
+                // attempt to drop the type that was created as well
+                try {
+                    dropSchema(dataStoreDestination, featureTypeName);
+                } catch (Exception e1) {
+                    LOGGER.log(Level.WARNING, "Error dropping schema in rollback", e1);
+                }
             }
         }
         return error;
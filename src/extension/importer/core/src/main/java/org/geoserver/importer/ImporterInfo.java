@@ -18,6 +18,22 @@ public interface ImporterInfo extends Serializable {
     /** Maximum number of synchronous imports, negative or zero for no limit */
     public int getMaxAsynchronousImports();
 
+    /**
+     * Number of features loaded in each transaction when importing vector data into a store,
+     * negative or zero to load all the features in a single transaction. When positive, failed or
+     * canceled imports keep the committed batches and resume from there when run again
+     */
+    public int getCommitSize();
+
+    /**
+     * Number of threads converting the features of a batched import (see {@link
+     * #getCommitSize()}), while the calling thread writes them in the target store
+     */
+    public int getTransformThreads();
+
+    /** Number of threads unpacking archives and scanning the files of an upload */
+    public int getScanThreads();
+
     /** @see #getUploadRoot() */
     public void setUploadRoot(String uploadRoot);
 
@@ -26,4 +42,13 @@ public interface ImporterInfo extends Serializable {
 
     /** @see #getMaxAsynchronousImports() */
     public void setMaxAsynchronousImports(int maxAsynchronousImports);
+
+    /** @see #getCommitSize() */
+    public void setCommitSize(int commitSize);
+
+    /** @see #getTransformThreads() */
+    public void setTransformThreads(int transformThreads);
+
+    /** @see #getScanThreads() */
+    public void setScanThreads(int scanThreads);
 }
@@ -30,6 +30,12 @@ public class ImporterInfoDAO {
 
     public static final String MAX_SYNCH_KEY = "importer.maxSynch";
 
+    public static final String COMMIT_SIZE_KEY = "importer.commitSize";
+
+    public static final String TRANSFORM_THREADS_KEY = "importer.transformThreads";
+
+    public static final String SCAN_THREADS_KEY = "importer.scanThreads";
+
     /**
      * Reads the importer configuration from the specified resource, or returns a default
      *
@@ -56,6 +62,14 @@ public class ImporterInfoDAO {
                 getConfig(props, MAX_ASYNCH_KEY, Integer.class, () -> processors));
         info.setMaxSynchronousImports(
                 getConfig(props, MAX_SYNCH_KEY, Integer.class, () -> processors));
+        info.setCommitSize(getConfig(props, COMMIT_SIZE_KEY, Integer.class, () -> 0));
+        info.setTransformThreads(getConfig(props, TRANSFORM_THREADS_KEY, Integer.class, () -> 1));
+        info.setScanThreads(
+                getConfig(
+                        props,
+                        SCAN_THREADS_KEY,
+                        Integer.class,
+                        () -> ImporterInfoImpl.DEFAULT_SCAN_THREADS));
     }
 
     private <T> T getConfig(
@@ -104,6 +118,10 @@ public class ImporterInfoDAO {
         props.setProperty(MAX_SYNCH_KEY, String.valueOf(configuration.getMaxSynchronousImports()));
         props.setProperty(
                 MAX_ASYNCH_KEY, String.valueOf(configuration.getMaxAsynchronousImports()));
+        props.setProperty(COMMIT_SIZE_KEY, String.valueOf(configuration.getCommitSize()));
+        props.setProperty(
+                TRANSFORM_THREADS_KEY, String.valueOf(configuration.getTransformThreads()));
+        props.setProperty(SCAN_THREADS_KEY, String.valueOf(configuration.getScanThreads()));
         try (OutputStream os = resource.out()) {
             props.store(os, null);
         }
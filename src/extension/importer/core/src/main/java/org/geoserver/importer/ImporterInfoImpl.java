@@ -9,9 +9,15 @@ import java.util.Objects;
 /** See @{@link ImporterInfo} */
 public class ImporterInfoImpl implements ImporterInfo {
 
+    /** The default number of scan threads, one per processor */
+    static final int DEFAULT_SCAN_THREADS = Runtime.getRuntime().availableProcessors();
+
     String uploadRoot;
     int maxSynchronousImports;
     int maxAsynchronousImports;
+    int commitSize;
+    int transformThreads = 1;
+    int scanThreads = DEFAULT_SCAN_THREADS;
 
     public ImporterInfoImpl() {}
 
@@ -19,6 +25,9 @@ public class ImporterInfoImpl implements ImporterInfo {
         this.uploadRoot = configuration.getUploadRoot();
         this.maxSynchronousImports = configuration.getMaxSynchronousImports();
         this.maxAsynchronousImports = configuration.getMaxAsynchronousImports();
+        this.commitSize = configuration.getCommitSize();
+        this.transformThreads = configuration.getTransformThreads();
+        this.scanThreads = configuration.getScanThreads();
     }
 
     public int getMaxSynchronousImports() {
@@ -47,6 +56,33 @@ public class ImporterInfoImpl implements ImporterInfo {
         this.uploadRoot = uploadRoot;
     }
 
+    @Override
+    public int getCommitSize() {
+        return commitSize;
+    }
+
+    public void setCommitSize(int commitSize) {
+        this.commitSize = commitSize;
+    }
+
+    @Override
+    public int getTransformThreads() {
+        return transformThreads;
+    }
+
+    public void setTransformThreads(int transformThreads) {
+        this.transformThreads = transformThreads;
+    }
+
+    @Override
+    public int getScanThreads() {
+        return scanThreads;
+    }
+
+    public void setScanThreads(int scanThreads) {
+        this.scanThreads = scanThreads;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -54,11 +90,20 @@ public class ImporterInfoImpl implements ImporterInfo {
         ImporterInfoImpl that = (ImporterInfoImpl) o;
         return maxSynchronousImports == that.maxSynchronousImports
                 && maxAsynchronousImports == that.maxAsynchronousImports
+                && commitSize == that.commitSize
+                && transformThreads == that.transformThreads
+                && scanThreads == that.scanThreads
                 && Objects.equals(uploadRoot, that.uploadRoot);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(uploadRoot, maxSynchronousImports, maxAsynchronousImports);
+        return Objects.hash(
+                uploadRoot,
+                maxSynchronousImports,
+                maxAsynchronousImports,
+                commitSize,
+                transformThreads,
+                scanThreads);
     }
 }
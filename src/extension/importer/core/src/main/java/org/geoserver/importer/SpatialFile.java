@@ -9,10 +9,12 @@ import static org.apache.commons.io.FilenameUtils.getBaseName;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.Striped;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.Lock;
 import java.util.logging.Level;
 import javax.annotation.Nullable;
 import org.apache.commons.io.FileUtils;
@@ -30,6 +32,8 @@ public class SpatialFile extends FileData {
 
     static EPSGCodeLookupCache EPSG_LOOKUP_CACHE = new EPSGCodeLookupCache();
 
+    static final Striped<Lock> PRJ_LOCKS = Striped.lock(64);
+
     /** .prj file */
     File prjFile;
 
@@ -142,23 +146,27 @@ public class SpatialFile extends FileData {
     }
 
     public void fixPrjFile() throws IOException {
-        CoordinateReferenceSystem crs = readPrjToCRS();
-        if (crs == null) {
+        File prj = getPrjFile();
+        if (prj == null || !prj.exists()) {
             return;
         }
 
+        // files sharing the same base name share the prj file too, and can be prepared in parallel
+        Lock lock = PRJ_LOCKS.get(prj.getAbsolutePath());
+        lock.lock();
         try {
-            CoordinateReferenceSystem epsgCrs = null;
-            Integer epsgCode = EPSG_LOOKUP_CACHE.lookupEPSGCode(crs);
+            String wkt = FileUtils.readFileToString(prj, "UTF-8");
+            Integer epsgCode = EPSG_LOOKUP_CACHE.lookupEPSGCode(wkt);
             if (epsgCode != null) {
-                epsgCrs = CRS.decode("EPSG:" + epsgCode);
-            }
-            if (epsgCrs != null) {
-                String epsgWKT = epsgCrs.toWKT();
-                FileUtils.writeStringToFile(getPrjFile(), epsgWKT, "UTF-8");
+                String epsgWKT = CRS.decode("EPSG:" + epsgCode).toWKT();
+                if (!epsgWKT.equals(wkt)) {
+                    FileUtils.writeStringToFile(prj, epsgWKT, "UTF-8");
+                }
             }
         } catch (FactoryException e) {
             throw (IOException) new IOException().initCause(e);
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -6,16 +6,28 @@
 package org.geoserver.importer;
 
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.IOFileFilter;
 import org.apache.commons.io.filefilter.TrueFileFilter;
 import org.apache.commons.vfs2.AllFileSelector;
@@ -49,7 +61,19 @@ public class VFSWorker {
                     ".jar",
                     ".kmz");
 
-    public VFSWorker() {}
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    /** Number of threads extracting the entries of zip archives */
+    private final int threads;
+
+    public VFSWorker() {
+        this(1);
+    }
+
+    /** @param threads the number of threads extracting the entries of zip archives in parallel */
+    public VFSWorker(int threads) {
+        this.threads = Math.max(1, threads);
+    }
 
     public boolean canHandle(final File file) {
         final String name = file.getName().toLowerCase();
@@ -175,6 +199,10 @@ public class VFSWorker {
      * exist.
      */
     public void extractTo(File archiveFile, File targetFolder) throws IOException {
+        if (isZip(archiveFile.getName())) {
+            extractZip(archiveFile, targetFolder);
+            return;
+        }
 
         FileSystemManager manager = VFS.getManager();
         String sourceURI = resolveArchiveURI(archiveFile);
@@ -202,6 +230,122 @@ public class VFSWorker {
         manager.closeFileSystem(source.getFileSystem());
     }
 
+    /**
+     * Returns true if the name is the one of a zip based archive, which can be extracted in
+     * parallel, or straight from a stream
+     */
+    public boolean isZip(String name) {
+        String lowerCase = name.toLowerCase();
+        return lowerCase.endsWith(".zip")
+                || lowerCase.endsWith(".kmz")
+                || lowerCase.endsWith(".jar");
+    }
+
+    /**
+     * Extracts the zip archive read from the stream into {@code targetFolder}, without staging the
+     * archive on disk. The stream is fully consumed, but not closed.
+     */
+    public void extractTo(InputStream in, File targetFolder) throws IOException {
+        ZipInputStream zis = new ZipInputStream(in);
+        ZipEntry entry;
+        int count = 0;
+        while ((entry = zis.getNextEntry()) != null) {
+            count++;
+            File target = resolveEntry(targetFolder, entry.getName());
+            if (entry.isDirectory()) {
+                mkdirs(target);
+            } else {
+                LOGGER.fine("Uncompressing " + entry.getName());
+                mkdirs(target.getParentFile());
+                try (OutputStream out = new FileOutputStream(target)) {
+                    IOUtils.copy(zis, out);
+                }
+            }
+        }
+        if (count == 0) {
+            throw new IOException("Not a zip archive, or an empty one");
+        }
+    }
+
+    /** Extracts a zip archive, decompressing its entries in parallel */
+    void extractZip(File archiveFile, File targetFolder) throws IOException {
+        try (ZipFile zip = new ZipFile(archiveFile)) {
+            List<? extends ZipEntry> entries = Collections.list(zip.entries());
+            mkdirs(targetFolder);
+            if (threads == 1 || entries.size() < 2) {
+                for (ZipEntry entry : entries) {
+                    extractEntry(zip, entry, targetFolder);
+                }
+                return;
+            }
+
+            ExecutorService executor =
+                    Executors.newFixedThreadPool(
+                            Math.min(threads, entries.size()), VFSWorker::newThread);
+            try {
+                List<Future<Void>> futures = new ArrayList<>();
+                for (ZipEntry entry : entries) {
+                    futures.add(
+                            executor.submit(
+                                    () -> {
+                                        extractEntry(zip, entry, targetFolder);
+                                        return null;
+                                    }));
+                }
+                for (Future<Void> future : futures) {
+                    future.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while extracting " + archiveFile, e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to extract " + archiveFile, e.getCause());
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private void extractEntry(ZipFile zip, ZipEntry entry, File targetFolder) throws IOException {
+        File target = resolveEntry(targetFolder, entry.getName());
+        if (entry.isDirectory()) {
+            mkdirs(target);
+            return;
+        }
+        LOGGER.fine("Uncompressing " + entry.getName());
+        mkdirs(target.getParentFile());
+        try (InputStream in = zip.getInputStream(entry);
+                OutputStream out = new FileOutputStream(target)) {
+            IOUtils.copy(in, out);
+        }
+    }
+
+    /** Resolves the archive entry in the target folder, making sure it does not escape it */
+    private File resolveEntry(File targetFolder, String name) throws IOException {
+        File target = new File(targetFolder, name);
+        String root = targetFolder.getCanonicalPath() + File.separator;
+        if (!target.getCanonicalPath().startsWith(root)) {
+            throw new IOException("Archive entry " + name + " is outside of the target folder");
+        }
+        return target;
+    }
+
+    private void mkdirs(File dir) throws IOException {
+        // other threads might be creating the same directory, only check the outcome
+        if (!dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("Unable to create directory " + dir);
+        }
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "importer-unzip-" + THREAD_COUNTER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
     @SuppressWarnings("unchecked")
     public Collection<File> listFilesInFolder(
             final File targetFolder, final FilenameFilter fileNameFilter) {
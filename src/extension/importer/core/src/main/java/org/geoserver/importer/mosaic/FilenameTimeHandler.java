@@ -90,7 +90,8 @@ public class FilenameTimeHandler extends TimeHandler {
         }
 
         try {
-            return timeFormat.parse(m.group(1));
+            // granules are prepared in parallel, and the format is not thread safe
+            return ((SimpleDateFormat) timeFormat.clone()).parse(m.group(1));
         } catch (ParseException e) {
             String msg =
                     "Failure parsing timestamp with pattern "
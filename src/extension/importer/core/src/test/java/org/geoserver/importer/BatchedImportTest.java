@@ -0,0 +1,152 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.importer;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.DataStoreInfo;
+import org.geoserver.importer.transform.AbstractInlineVectorTransform;
+import org.geotools.data.DataStore;
+import org.geotools.data.Query;
+import org.junit.After;
+import org.junit.Test;
+import org.opengis.feature.simple.SimpleFeature;
+
+public class BatchedImportTest extends ImporterTestSupport {
+
+    /** Fails the import at the given feature, when set */
+    static final AtomicInteger FAIL_AT = new AtomicInteger();
+
+    static final class FailingTransform extends AbstractInlineVectorTransform {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        transient int count;
+
+        @Override
+        public SimpleFeature apply(
+                ImportTask task,
+                DataStore dataStore,
+                SimpleFeature oldFeature,
+                SimpleFeature feature)
+                throws Exception {
+            if (++count == FAIL_AT.get()) {
+                throw new IllegalStateException("Failing at feature " + count);
+            }
+            return feature;
+        }
+    }
+
+    /** Cancels the import after processing 13 features */
+    static final class CancelingTransform extends AbstractInlineVectorTransform {
+        /** serialVersionUID */
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public SimpleFeature apply(
+                ImportTask task,
+                DataStore dataStore,
+                SimpleFeature oldFeature,
+                SimpleFeature feature)
+                throws Exception {
+            if (task.getNumberProcessed() == 12) {
+                task.progress().setCanceled(true);
+            }
+            return feature;
+        }
+    }
+
+    @After
+    public void resetConfiguration() throws Exception {
+        FAIL_AT.set(0);
+        ImporterInfo config = importer.getConfiguration();
+        config.setCommitSize(0);
+        config.setTransformThreads(1);
+        importer.setConfiguration(config);
+    }
+
+    @Test
+    public void testBatchedImport() throws Exception {
+        configure(7, 3);
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "batched");
+
+        File dir = unpack("shape/bugsites_esri_prj.tar.gz");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        importer.run(context);
+
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+        int count = getCount(task);
+        assertEquals(task.getTotalToProcess(), count);
+        assertEquals(count, task.getNumberProcessed());
+        assertEquals(count, task.getNumberCommitted());
+        runChecks("bugsites");
+    }
+
+    @Test
+    public void testResumeAfterFailure() throws Exception {
+        configure(7, 2);
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "resumed");
+
+        File dir = unpack("shape/bugsites_esri_prj.tar.gz");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.getTransform().add(new FailingTransform());
+
+        FAIL_AT.set(20);
+        importer.run(context);
+
+        // the first two batches are kept, the third one has been rolled back
+        assertEquals(ImportTask.State.ERROR, task.getState());
+        assertEquals(14, task.getNumberCommitted());
+        assertEquals(14, getCount(task));
+
+        // running again picks up from the last committed batch
+        FAIL_AT.set(0);
+        importer.run(context);
+
+        assertEquals(ImportTask.State.COMPLETE, task.getState());
+        int count = getCount(task);
+        assertEquals(task.getTotalToProcess(), count);
+        assertEquals(count, task.getNumberCommitted());
+        runChecks("bugsites");
+    }
+
+    @Test
+    public void testCanceledKeepsCommittedBatches() throws Exception {
+        configure(5, 1);
+        Catalog cat = getCatalog();
+        DataStoreInfo ds = createH2DataStore(cat.getDefaultWorkspace().getName(), "canceled");
+
+        File dir = unpack("shape/bugsites_esri_prj.tar.gz");
+        ImportContext context = importer.createContext(new Directory(dir), ds);
+        ImportTask task = context.getTasks().get(0);
+        task.getTransform().add(new CancelingTransform());
+        importer.run(context);
+
+        // the third batch has been rolled back
+        assertEquals(ImportTask.State.CANCELED, task.getState());
+        assertEquals(10, task.getNumberCommitted());
+        assertEquals(10, getCount(task));
+    }
+
+    void configure(int commitSize, int transformThreads) throws Exception {
+        ImporterInfo config = importer.getConfiguration();
+        config.setCommitSize(commitSize);
+        config.setTransformThreads(transformThreads);
+        importer.setConfiguration(config);
+    }
+
+    int getCount(ImportTask task) throws Exception {
+        DataStore store = (DataStore) task.getStore().getDataStore(null);
+        String typeName = task.getLayer().getResource().getNativeName();
+        return store.getFeatureSource(typeName).getCount(Query.ALL);
+    }
+}
@@ -8,14 +8,25 @@ package org.geoserver.importer;
 import static org.geoserver.importer.ImporterTestUtils.unpack;
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import junit.framework.TestCase;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
+import org.geoserver.importer.job.ProgressMonitor;
 import org.geoserver.importer.mosaic.Mosaic;
 
 public class DirectoryTest extends TestCase {
@@ -136,4 +147,90 @@ public class DirectoryTest extends TestCase {
         assertTrue(d.getFiles().get(1) instanceof SpatialFile);
         assertTrue(d.getFiles().get(2) instanceof ASpatialFile);
     }
+
+    public void testParallelScanKeepsOrder() throws Exception {
+        File dir = unpack("shape/archsites_epsg_prj.zip");
+        // many copies of the same shapefile, and a few non spatial files in between
+        File[] originals = dir.listFiles();
+        for (int i = 0; i < 20; i++) {
+            for (File f : originals) {
+                FileUtils.copyFile(f, new File(dir, f.getName().replace("archsites", "arch" + i)));
+            }
+            FileUtils.touch(new File(dir, "notes" + i + ".txt"));
+        }
+
+        Directory d = new Directory(dir);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            d.prepare(new ProgressMonitor(), executor);
+        } finally {
+            executor.shutdown();
+        }
+
+        List<String> expected = new ArrayList<>();
+        for (File f : dir.listFiles()) {
+            if ("shp".equals(FilenameUtils.getExtension(f.getName()))) {
+                expected.add(f.getName());
+            }
+        }
+        List<String> actual = new ArrayList<>();
+        for (FileData data : d.getFiles()) {
+            if (data instanceof SpatialFile) {
+                actual.add(data.getFile().getName());
+                assertEquals(2, ((SpatialFile) data).getSuppFiles().size());
+                assertNotNull(((SpatialFile) data).getPrjFile());
+            }
+        }
+        assertEquals(expected, actual);
+        assertEquals(41, d.getFiles().size());
+    }
+
+    public void testStreamedZipUpload() throws Exception {
+        File zip = ImporterTestUtils.file("shape/archsites_epsg_prj.zip");
+        Directory d = Directory.createNew(ImporterTestUtils.tmpDir());
+        try (InputStream in = new FileInputStream(zip)) {
+            d.accept("archsites_epsg_prj.zip", in);
+        }
+
+        // extracted, without leaving the archive around
+        assertFalse(new File(d.getFile(), "archsites_epsg_prj.zip").exists());
+        d.prepare();
+        assertEquals(1, d.getFiles().size());
+        assertEquals("archsites.shp", d.getFiles().get(0).getFile().getName());
+    }
+
+    public void testParallelZipExtraction() throws Exception {
+        File zip = ImporterTestUtils.file("shape/archsites_epsg_prj.zip");
+        File parallel = ImporterTestUtils.tmpDir();
+        new VFSWorker(4).extractTo(zip, parallel);
+        File sequential = ImporterTestUtils.tmpDir();
+        new VFSWorker().extractTo(zip, sequential);
+
+        String[] names = sequential.list();
+        Arrays.sort(names);
+        String[] parallelNames = parallel.list();
+        Arrays.sort(parallelNames);
+        assertTrue(Arrays.equals(names, parallelNames));
+        for (String name : names) {
+            File expected = new File(sequential, name);
+            assertTrue(FileUtils.contentEquals(expected, new File(parallel, name)));
+        }
+    }
+
+    public void testZipEntryOutsideTarget() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zos = new ZipOutputStream(bytes)) {
+            zos.putNextEntry(new ZipEntry("../escaped.txt"));
+            zos.write("boom".getBytes("UTF-8"));
+            zos.closeEntry();
+        }
+
+        File target = ImporterTestUtils.tmpDir();
+        try {
+            new VFSWorker().extractTo(new ByteArrayInputStream(bytes.toByteArray()), target);
+            fail("Should have failed, the entry is outside of the target folder");
+        } catch (IOException e) {
+            assertFalse(new File(target.getParentFile(), "escaped.txt").exists());
+        }
+    }
 }
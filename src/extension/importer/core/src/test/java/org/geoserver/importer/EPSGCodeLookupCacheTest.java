@@ -0,0 +1,93 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.importer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Resource;
+import org.geotools.referencing.CRS;
+import org.geotools.referencing.crs.DefaultEngineeringCRS;
+import org.junit.Test;
+
+public class EPSGCodeLookupCacheTest {
+
+    @Test
+    public void testLookupsPersisted() throws Exception {
+        GeoServerResourceLoader loader = new GeoServerResourceLoader(ImporterTestUtils.tmpDir());
+        String wkt = CRS.decode("EPSG:4326").toWKT();
+
+        EPSGCodeLookupCache cache = new TestCache(loader);
+        assertEquals(Integer.valueOf(4326), cache.lookupEPSGCode(wkt));
+        // leading and trailing spaces do not matter
+        assertEquals(Integer.valueOf(4326), cache.lookupEPSGCode("\n" + wkt + " "));
+        // no match, remembered in memory only
+        String engineering = DefaultEngineeringCRS.GENERIC_2D.toWKT();
+        assertNull(cache.lookupEPSGCode(engineering));
+        assertTrue(cache.failures.containsKey(engineering.trim()));
+
+        Resource resource = loader.get(EPSGCodeLookupCache.CACHE_FILE);
+        assertEquals(Resource.Type.RESOURCE, resource.getType());
+
+        // a new cache picks up the persisted lookups
+        EPSGCodeLookupCache reloaded = new TestCache(loader);
+        assertEquals(Integer.valueOf(4326), reloaded.lookupEPSGCode(wkt));
+        assertEquals(1, reloaded.cache.size());
+        assertTrue(reloaded.failures.isEmpty());
+    }
+
+    @Test
+    public void testSavesBatched() throws Exception {
+        GeoServerResourceLoader loader = new GeoServerResourceLoader(ImporterTestUtils.tmpDir());
+        String wgs84 = CRS.decode("EPSG:4326").toWKT();
+        String utm = CRS.decode("EPSG:32632").toWKT();
+
+        // the first match is saved right away, the following ones only after the interval
+        EPSGCodeLookupCache cache = new TestCache(loader);
+        assertEquals(Integer.valueOf(4326), cache.lookupEPSGCode(wgs84));
+        assertEquals(Integer.valueOf(32632), cache.lookupEPSGCode(utm));
+        assertTrue(cache.dirty);
+        assertEquals(1, new TestCache(loader).getLoadedSize());
+
+        // saved with the next lookup past the interval, even if a cache hit
+        cache.lastSave -= EPSGCodeLookupCache.SAVE_INTERVAL;
+        assertEquals(Integer.valueOf(4326), cache.lookupEPSGCode(wgs84));
+        assertFalse(cache.dirty);
+        assertEquals(2, new TestCache(loader).getLoadedSize());
+    }
+
+    @Test
+    public void testNoDataDirectory() throws Exception {
+        String wkt = CRS.decode("EPSG:32632").toWKT();
+
+        EPSGCodeLookupCache cache = new TestCache(null);
+        assertEquals(Integer.valueOf(32632), cache.lookupEPSGCode(wkt));
+        assertEquals(1, cache.cache.size());
+    }
+
+    static class TestCache extends EPSGCodeLookupCache {
+
+        final GeoServerResourceLoader testLoader;
+
+        TestCache(GeoServerResourceLoader testLoader) {
+            this.testLoader = testLoader;
+        }
+
+        @Override
+        GeoServerResourceLoader getResourceLoader() {
+            return testLoader;
+        }
+
+        /** Returns the number of persisted lookups */
+        int getLoadedSize() throws Exception {
+            // loads the cache from the data directory
+            lookupEPSGCode(CRS.decode("EPSG:4326").toWKT());
+            return cache.size();
+        }
+    }
+}
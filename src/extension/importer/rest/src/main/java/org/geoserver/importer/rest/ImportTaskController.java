@@ -104,6 +104,9 @@ public class ImportTaskController extends ImportBaseController {
             if (inProgress != null) {
                 progress.put("progress", inProgress.getNumberProcessed());
                 progress.put("total", inProgress.getTotalToProcess());
+                if (inProgress.getNumberCommitted() > 0) {
+                    progress.put("committed", inProgress.getNumberCommitted());
+                }
                 progress.put("state", inProgress.getState().toString());
             } else {
                 ImportTask task = task(id, taskId);
@@ -5,26 +5,57 @@
  */
 package org.geoserver.monitor;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.geoserver.monitor.Query.Comparison;
 import org.geoserver.monitor.Query.SortOrder;
 import org.geoserver.ows.util.OwsUtils;
-
+import org.geoserver.platform.GeoServerExtensions;
+import org.geoserver.platform.GeoServerResourceLoader;
+import org.geoserver.platform.resource.Paths;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Stores the live requests, and the most recent completed ones, in memory. The completed requests
+ * are kept in a ring buffer indexed by start time, and can optionally be journaled to disk to
+ * survive restarts.
+ *
+ * <p>Configuration, in <code>monitor.properties</code>:
+ *
+ * <ul>
+ *   <li><code>memory.maxHistory</code>: number of completed requests retained (defaults to {@value
+ *       #DEFAULT_MAX_HISTORY})
+ *   <li><code>memory.persist</code>: if true the completed requests are also appended to {@value
+ *       #JOURNAL_FILE} in the monitoring directory, and reloaded on startup (defaults to false)
+ * </ul>
+ */
 public class MemoryMonitorDAO implements MonitorDAO {
 
+    static final Logger LOGGER = Logging.getLogger(MemoryMonitorDAO.class);
+
     public static final String NAME = "memory";
 
-    Queue<RequestData> live = new ConcurrentLinkedQueue<RequestData>();
-    Queue<RequestData> history = new ConcurrentLinkedQueue<RequestData>();
+    /** Default number of completed requests kept in memory */
+    static final int DEFAULT_MAX_HISTORY = 1000;
+
+    /** Name of the request history journal, in the monitoring directory */
+    static final String JOURNAL_FILE = "history.journal";
+
+    Map<Long, RequestData> live = new ConcurrentSkipListMap<Long, RequestData>();
+    RequestRingBuffer history = new RequestRingBuffer(DEFAULT_MAX_HISTORY);
+    RequestJournal journal;
 
     AtomicLong REQUEST_ID_GEN = new AtomicLong(1);
 
@@ -34,7 +65,41 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     @Override
-    public void init(MonitorConfig config) {}
+    public void init(MonitorConfig config) {
+        Integer maxHistory = config.getProperty(NAME, "maxHistory", Integer.class);
+        if (maxHistory != null && maxHistory > 0) {
+            history = new RequestRingBuffer(maxHistory);
+        }
+        Boolean persist = config.getProperty(NAME, "persist", Boolean.class);
+        if (Boolean.TRUE.equals(persist)) {
+            GeoServerResourceLoader loader =
+                    GeoServerExtensions.bean(GeoServerResourceLoader.class);
+            if (loader != null) {
+                File file = loader.get(Paths.path("monitoring", JOURNAL_FILE)).file();
+                initJournal(file);
+            }
+        }
+    }
+
+    /** Loads the request history from the journal, and starts appending to it */
+    void initJournal(File file) {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new RequestJournal(file, history.capacity);
+        try {
+            long maxId = 0;
+            for (RequestData data : journal.open()) {
+                history.add(data);
+                maxId = Math.max(maxId, data.getId());
+            }
+            // do not reuse the ids of the reloaded requests
+            long nextId = maxId + 1;
+            REQUEST_ID_GEN.accumulateAndGet(nextId, Math::max);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Failed to load the request history from " + file, e);
+        }
+    }
 
     public RequestData init(RequestData data) {
         data.setId(REQUEST_ID_GEN.getAndIncrement());
@@ -42,40 +107,58 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     public void add(RequestData data) {
-        live.add(data);
+        live.put(data.getId(), data);
     }
 
     public void update(RequestData data) {}
 
     public void save(RequestData data) {
-        live.remove(data);
+        live.remove(data.getId());
         history.add(data);
-
-        if (history.size() > 100) {
-            history.poll();
+        if (journal != null) {
+            journal.append(data);
         }
     }
 
     public RequestData getRequest(long id) {
-        for (RequestData r : getRequests()) {
-            if (r.getId() == id) {
-                return r;
-            }
+        RequestData data = live.get(id);
+        if (data == null) {
+            data = history.get(id);
         }
-        return null;
+        return data;
     }
 
     public List<RequestData> getRequests() {
-        List<RequestData> requests = new LinkedList();
-        requests.addAll(live);
-        requests.addAll(history);
+        List<RequestData> requests = new ArrayList<>(live.size() + history.size());
+        requests.addAll(live.values());
+        history.forEach(requests::add);
         return requests;
     }
 
     public List<RequestData> getRequests(Query q) {
-        List<RequestData> requests = getRequests();
+        List<Predicate> predicates = getPredicates(q);
+        List<RequestData> requests = new ArrayList<>();
+        visit(q, predicates, requests::add);
+
+        if (q.getSortBy() != null) {
+            Collections.sort(requests, new Sorter(q.getSortBy(), q.getSortOrder()));
+        } else if (q.getFromDate() != null || q.getToDate() != null) {
+            Collections.sort(requests, new Sorter("startTime", SortOrder.DESC));
+        }
 
-        List<Predicate> predicates = new ArrayList();
+        if (q.getOffset() != null || q.getCount() != null) {
+            int from = q.getOffset() != null ? (int) Math.min(q.getOffset(), requests.size()) : 0;
+            int to = requests.size();
+            if (q.getCount() != null) {
+                to = (int) Math.min(to, from + q.getCount());
+            }
+            requests = new ArrayList<>(requests.subList(from, to));
+        }
+        return requests;
+    }
+
+    List<Predicate> getPredicates(Query q) {
+        List<Predicate> predicates = new ArrayList<>();
         if (q.getFilter() != null) {
             Filter f = q.getFilter();
             predicates.add(new PropertyCompare(f.getLeft(), f.getType(), f.getRight()));
@@ -83,36 +166,25 @@ public class MemoryMonitorDAO implements MonitorDAO {
         if (q.getFromDate() != null || q.getToDate() != null) {
             predicates.add(new DateRange(q.getFromDate(), q.getToDate()));
         }
+        return predicates;
+    }
 
-        int i = 1, count = 0;
-
-        O:
-        for (Iterator<RequestData> it = requests.iterator(); it.hasNext(); ) {
-            RequestData r = it.next();
-            for (Predicate p : predicates) {
-                if (!p.matches(r)) {
-                    it.remove();
-                    continue O;
-                }
-            }
-
-            if (q.getOffset() != null && q.getOffset() >= i++) {
-                it.remove();
-                continue;
-            }
-            if (q.getCount() != null && q.getCount() <= count) {
-                it.remove();
-                continue;
-            }
-            count++;
-        }
-
-        if (q.getSortBy() != null) {
-            Collections.sort(requests, new Sorter(q.getSortBy(), q.getSortOrder()));
-        } else if (q.getFromDate() != null || q.getToDate() != null) {
-            Collections.sort(requests, new Sorter("startTime", SortOrder.DESC));
-        }
-        return requests;
+    /**
+     * Visits the live and completed requests matching the predicates, only scanning the history
+     * segments overlapping the query time range
+     */
+    void visit(Query q, List<Predicate> predicates, Consumer<RequestData> consumer) {
+        Consumer<RequestData> filtered =
+                r -> {
+                    for (Predicate p : predicates) {
+                        if (!p.matches(r)) {
+                            return;
+                        }
+                    }
+                    consumer.accept(r);
+                };
+        live.values().forEach(filtered);
+        history.forEach(q.getFromDate(), q.getToDate(), filtered);
     }
 
     public void getRequests(Query query, RequestDataVisitor visitor) {
@@ -122,7 +194,12 @@ public class MemoryMonitorDAO implements MonitorDAO {
     }
 
     public long getCount(Query query) {
-        return getRequests(query).size();
+        if (query.getOffset() != null || query.getCount() != null) {
+            return getRequests(query).size();
+        }
+        AtomicLong count = new AtomicLong();
+        visit(query, getPredicates(query), r -> count.incrementAndGet());
+        return count.get();
     }
 
     public Iterator<RequestData> getIterator(Query query) {
@@ -161,11 +238,22 @@ public class MemoryMonitorDAO implements MonitorDAO {
     public void clear() {
         live.clear();
         history.clear();
+        if (journal != null) {
+            try {
+                journal.rewrite(Collections.emptyList());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to clear the request history journal", e);
+            }
+        }
     }
 
     public void dispose() {
         live.clear();
         history.clear();
+        if (journal != null) {
+            journal.close();
+            journal = null;
+        }
         REQUEST_ID_GEN = new AtomicLong(1);
     }
 
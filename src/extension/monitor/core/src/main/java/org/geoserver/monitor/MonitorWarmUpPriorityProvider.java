@@ -0,0 +1,50 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.geoserver.catalog.WarmUpPriorityProvider;
+
+/**
+ * Prioritizes the resource pool warm-up based on the number of requests each layer received in the
+ * recent monitoring history.
+ */
+public class MonitorWarmUpPriorityProvider implements WarmUpPriorityProvider {
+
+    /** How far back in time the history is inspected */
+    static final long HISTORY_SPAN = 7 * 24 * 60 * 60 * 1000L;
+
+    Monitor monitor;
+
+    public MonitorWarmUpPriorityProvider(Monitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public Map<String, Long> getLayerPriorities() {
+        if (!monitor.isEnabled()) {
+            return Collections.emptyMap();
+        }
+        Map<String, Long> priorities = new HashMap<>();
+        long now = System.currentTimeMillis();
+        Query query =
+                new Query().properties("resources").between(new Date(now - HISTORY_SPAN), null);
+        monitor.query(
+                query,
+                (data, aggregates) -> {
+                    List<String> resources = data.getResources();
+                    if (resources != null) {
+                        for (String resource : resources) {
+                            priorities.merge(resource, 1L, Long::sum);
+                        }
+                    }
+                });
+        return priorities;
+    }
+}
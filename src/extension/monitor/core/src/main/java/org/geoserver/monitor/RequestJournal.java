@@ -0,0 +1,250 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Append only file of completed requests, used by {@link MemoryMonitorDAO} to retain the request
+ * history across restarts.
+ *
+ * <p>Each record is a length prefixed serialized {@link RequestData}. The journal is compacted to
+ * the most recent requests when opened, and again once it holds twice as many records as needed.
+ *
+ * <p>Requests are appended by a background writer thread, which writes and flushes them in batches
+ * and runs the compaction, so that request threads only pay for a queue insertion.
+ */
+class RequestJournal {
+
+    static final Logger LOGGER = Logging.getLogger(RequestJournal.class);
+
+    /** Guards against corrupted record lengths */
+    static final int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    /** Max number of requests waiting to be written, past it new requests are not journaled */
+    static final int MAX_PENDING = 10000;
+
+    /** Tells the writer thread to stop */
+    static final RequestData END_MARKER = new RequestData();
+
+    final File file;
+
+    /** Max number of records to retain */
+    final int retain;
+
+    final BlockingQueue<RequestData> queue = new LinkedBlockingQueue<>(MAX_PENDING);
+
+    volatile Thread writer;
+
+    /** Only accessed by the writer thread once the journal is open */
+    DataOutputStream out;
+
+    int records;
+
+    RequestJournal(File file, int retain) {
+        this.file = file;
+        this.retain = retain;
+    }
+
+    /** Reads the most recent records, compacts the file, and opens it for appending */
+    synchronized List<RequestData> open() throws IOException {
+        List<RequestData> requests = read();
+        rewrite(requests);
+        Thread writer = new Thread(this::writeLoop, "RequestJournalWriter");
+        writer.setDaemon(true);
+        writer.start();
+        this.writer = writer;
+        return requests;
+    }
+
+    /** Reads the last {@link #retain} records, skipping a truncated tail */
+    List<RequestData> read() throws IOException {
+        Deque<RequestData> requests = new ArrayDeque<>();
+        if (!file.exists()) {
+            return new ArrayList<>(requests);
+        }
+        try (DataInputStream in =
+                new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                byte[] record;
+                try {
+                    int length = in.readInt();
+                    if (length < 0 || length > MAX_RECORD_SIZE) {
+                        LOGGER.warning("Corrupted request record found in " + file);
+                        break;
+                    }
+                    record = new byte[length];
+                    in.readFully(record);
+                } catch (EOFException e) {
+                    // end of file, or a record only partially written before a crash
+                    break;
+                }
+                RequestData data = deserialize(record);
+                if (data != null) {
+                    requests.addLast(data);
+                    if (requests.size() > retain) {
+                        requests.removeFirst();
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(requests);
+    }
+
+    /** Queues a completed request for appending */
+    void append(RequestData data) {
+        if (writer == null) {
+            return;
+        }
+        if (!queue.offer(data)) {
+            LOGGER.warning("Request journal queue is full, request " + data.getId() + " skipped");
+        }
+    }
+
+    /** Writes the queued requests in batches, until the end marker is found */
+    void writeLoop() {
+        List<RequestData> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                boolean end = false;
+                try {
+                    for (RequestData data : batch) {
+                        if (data == END_MARKER) {
+                            end = true;
+                            break;
+                        } else if (out != null) {
+                            write(out, data);
+                            records++;
+                        }
+                    }
+                    if (out != null) {
+                        out.flush();
+                        if (records >= retain * 2) {
+                            rewrite(read());
+                        }
+                    }
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Failed to write requests to " + file, e);
+                }
+                batch.clear();
+                if (end) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.FINE, "Request journal writer interrupted", e);
+        } finally {
+            closeOutput();
+        }
+    }
+
+    /** Replaces the journal contents with the given requests */
+    void rewrite(List<RequestData> requests) throws IOException {
+        closeOutput();
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+        File tmp = new File(file.getPath() + ".tmp");
+        try (DataOutputStream tmpOut =
+                new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            for (RequestData data : requests) {
+                write(tmpOut, data);
+            }
+        }
+        Files.move(
+                tmp.toPath(),
+                file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        records = requests.size();
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
+    }
+
+    /** Writes out the queued requests and stops the writer thread */
+    synchronized void close() {
+        Thread writer = this.writer;
+        if (writer == null) {
+            return;
+        }
+        this.writer = null;
+        try {
+            queue.put(END_MARKER);
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            LOGGER.log(Level.WARNING, "Failed to properly close the request journal", e);
+        }
+    }
+
+    private void closeOutput() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Failed to close " + file, e);
+            }
+            out = null;
+        }
+    }
+
+    private void write(DataOutputStream out, RequestData data) throws IOException {
+        byte[] record = serialize(data);
+        if (record != null) {
+            out.writeInt(record.length);
+            out.write(record);
+        }
+    }
+
+    private byte[] serialize(RequestData data) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream oos = new ObjectOutputStream(bytes)) {
+            oos.writeObject(data);
+        } catch (IOException e) {
+            // the error might not be serializable, retry without it
+            if (data.getError() == null) {
+                LOGGER.log(Level.FINE, "Failed to serialize request " + data.getId(), e);
+                return null;
+            }
+            RequestData copy = data.clone();
+            copy.setError(null);
+            return serialize(copy);
+        }
+        return bytes.toByteArray();
+    }
+
+    private RequestData deserialize(byte[] record) {
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(record))) {
+            return (RequestData) ois.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOGGER.log(Level.FINE, "Skipping unreadable request record in " + file, e);
+            return null;
+        }
+    }
+}
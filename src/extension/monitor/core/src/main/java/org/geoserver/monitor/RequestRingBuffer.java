@@ -0,0 +1,196 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.monitor;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Lock free, fixed capacity ring buffer of completed requests, overwriting the oldest ones once
+ * full.
+ *
+ * <p>The slots are grouped in segments, each one tracking the range of request start times it
+ * contains, so that time bounded scans only visit the segments overlapping the requested range.
+ * Requests are also indexed by id.
+ */
+class RequestRingBuffer {
+
+    /** Number of slots per time indexed segment */
+    static final int SEGMENT_SIZE = 256;
+
+    /** A ring slot, holding the request written at a given sequence number */
+    static final class Entry {
+        final long sequence;
+
+        final RequestData data;
+
+        Entry(long sequence, RequestData data) {
+            this.sequence = sequence;
+            this.data = data;
+        }
+    }
+
+    /**
+     * The start time range of the requests written in a segment during one pass over the ring
+     * (the generation), linked to the range of the previous pass, as its requests are kept until
+     * overwritten one by one
+     */
+    static final class Segment {
+        final long generation;
+
+        final AtomicLong minTime = new AtomicLong(Long.MAX_VALUE);
+
+        final AtomicLong maxTime = new AtomicLong(Long.MIN_VALUE);
+
+        volatile Segment previous;
+
+        Segment(long generation, Segment previous) {
+            this.generation = generation;
+            this.previous = previous;
+            if (previous != null) {
+                // the requests of the pass before the previous one have all been overwritten
+                previous.previous = null;
+            }
+        }
+
+        void include(long time) {
+            minTime.accumulateAndGet(time, Math::min);
+            maxTime.accumulateAndGet(time, Math::max);
+        }
+
+        boolean overlaps(long from, long to) {
+            if (minTime.get() <= to && maxTime.get() >= from) {
+                return true;
+            }
+            Segment p = previous;
+            return p != null && p.overlaps(from, to);
+        }
+    }
+
+    final int capacity;
+
+    final AtomicReferenceArray<Entry> slots;
+
+    final AtomicReferenceArray<Segment> segments;
+
+    final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+
+    /** The next sequence number to be written */
+    final AtomicLong head = new AtomicLong();
+
+    /** @param capacity the max number of requests, rounded up to a multiple of the segment size */
+    RequestRingBuffer(int capacity) {
+        int segmentCount = Math.max(1, (capacity + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+        this.capacity = segmentCount * SEGMENT_SIZE;
+        this.slots = new AtomicReferenceArray<>(this.capacity);
+        this.segments = new AtomicReferenceArray<>(segmentCount);
+    }
+
+    /** Appends a request, returning the one it replaced, if any */
+    RequestData add(RequestData data) {
+        long sequence = head.getAndIncrement();
+        int slot = (int) (sequence % capacity);
+        int segmentIndex = slot / SEGMENT_SIZE;
+        long generation = sequence / SEGMENT_SIZE;
+        Segment segment =
+                segments.updateAndGet(
+                        segmentIndex,
+                        s ->
+                                s == null || s.generation < generation
+                                        ? new Segment(generation, s)
+                                        : s);
+        Date start = data.getStartTime();
+        if (start != null) {
+            segment.include(start.getTime());
+        } else {
+            // never skip segments containing requests without a time
+            segment.include(Long.MIN_VALUE);
+        }
+
+        Entry entry = new Entry(sequence, data);
+        Entry previous = slots.getAndSet(slot, entry);
+        byId.put(data.getId(), entry);
+        if (previous != null) {
+            byId.remove(previous.data.getId(), previous);
+            return previous.data;
+        }
+        return null;
+    }
+
+    /** Returns the request with the given id, or null if not found */
+    RequestData get(long id) {
+        Entry entry = byId.get(id);
+        return entry != null ? entry.data : null;
+    }
+
+    /** Number of requests currently stored */
+    int size() {
+        return (int) Math.min(head.get(), capacity);
+    }
+
+    /** Visits the stored requests, from the oldest to the newest */
+    void forEach(Consumer<RequestData> consumer) {
+        forEach(null, null, consumer);
+    }
+
+    /**
+     * Visits the stored requests, from the oldest to the newest, skipping the segments that
+     * cannot contain requests started in the given time range. The requests are not filtered
+     * individually, the time range is just a hint.
+     *
+     * @param from the lower bound of the range, or null if unbounded
+     * @param to the upper bound of the range, or null if unbounded
+     */
+    void forEach(Date from, Date to, Consumer<RequestData> consumer) {
+        long fromTime = from != null ? from.getTime() : Long.MIN_VALUE;
+        long toTime = to != null ? to.getTime() : Long.MAX_VALUE;
+        boolean bounded = from != null || to != null;
+
+        long end = head.get();
+        long first = Math.max(0, end - capacity);
+        long sequence = first;
+        while (sequence < end) {
+            int slot = (int) (sequence % capacity);
+            if (bounded && (slot % SEGMENT_SIZE == 0 || sequence == first)) {
+                Segment segment = segments.get(slot / SEGMENT_SIZE);
+                if (segment == null || !segment.overlaps(fromTime, toTime)) {
+                    // jump to the start of the next segment
+                    sequence += SEGMENT_SIZE - (slot % SEGMENT_SIZE);
+                    continue;
+                }
+            }
+            Entry entry = slots.get(slot);
+            // the slot might not have been written yet, or already overwritten
+            if (entry != null && entry.sequence == sequence) {
+                consumer.accept(entry.data);
+            }
+            sequence++;
+        }
+    }
+
+    /** Returns the stored requests, from the oldest to the newest */
+    List<RequestData> toList() {
+        List<RequestData> result = new ArrayList<>(size());
+        forEach(result::add);
+        return result;
+    }
+
+    void clear() {
+        for (int i = 0; i < slots.length(); i++) {
+            slots.set(i, null);
+        }
+        for (int i = 0; i < segments.length(); i++) {
+            segments.set(i, null);
+        }
+        byId.clear();
+        head.set(0);
+    }
+}
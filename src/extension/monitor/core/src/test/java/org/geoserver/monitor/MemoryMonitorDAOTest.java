@@ -5,13 +5,142 @@
  */
 package org.geoserver.monitor;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Date;
+import java.util.List;
 import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class MemoryMonitorDAOTest extends MonitorDAOTestSupport {
 
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
     @BeforeClass
     public static void createDAO() throws Exception {
         dao = new MemoryMonitorDAO();
         setUpData();
     }
+
+    @Test
+    public void testHistoryOverwrite() throws Exception {
+        RequestRingBuffer ring = new RequestRingBuffer(10);
+        assertEquals(RequestRingBuffer.SEGMENT_SIZE, ring.capacity);
+        for (int i = 0; i < ring.capacity + 10; i++) {
+            ring.add(request(i, i));
+        }
+        assertEquals(ring.capacity, ring.size());
+        // the oldest requests have been overwritten, and are no longer indexed
+        assertNull(ring.get(9));
+        assertNotNull(ring.get(10));
+        List<RequestData> requests = ring.toList();
+        assertEquals(10, requests.get(0).getId());
+        assertEquals(ring.capacity + 9, requests.get(requests.size() - 1).getId());
+    }
+
+    @Test
+    public void testHistorySegmentSkipping() throws Exception {
+        RequestRingBuffer ring = new RequestRingBuffer(RequestRingBuffer.SEGMENT_SIZE * 4);
+        for (int i = 0; i < ring.capacity; i++) {
+            ring.add(request(i, i * 1000));
+        }
+        // only the segment containing the range is visited
+        int[] visited = new int[1];
+        ring.forEach(new Date(300 * 1000), new Date(310 * 1000), r -> visited[0]++);
+        assertEquals(RequestRingBuffer.SEGMENT_SIZE, visited[0]);
+    }
+
+    @Test
+    public void testHistorySegmentSkippingAfterWrapAround() throws Exception {
+        RequestRingBuffer ring = new RequestRingBuffer(RequestRingBuffer.SEGMENT_SIZE * 2);
+        // fill the ring, then overwrite just the first slots of the first segment
+        for (int i = 0; i < ring.capacity + 10; i++) {
+            ring.add(request(i, i * 1000));
+        }
+        // the requests of the first pass not overwritten yet are still found
+        int[] counts = countInRange(ring, 100, 110);
+        assertEquals(11, counts[0]);
+        assertEquals(RequestRingBuffer.SEGMENT_SIZE, counts[1]);
+        // and so are the new ones
+        counts = countInRange(ring, ring.capacity + 5, ring.capacity + 6);
+        assertEquals(2, counts[0]);
+        assertEquals(RequestRingBuffer.SEGMENT_SIZE, counts[1]);
+        // the first segment is skipped when neither pass overlaps the range
+        counts = countInRange(ring, 300, 310);
+        assertEquals(11, counts[0]);
+        assertEquals(RequestRingBuffer.SEGMENT_SIZE, counts[1]);
+    }
+
+    /** Returns the number of requests in the range, and the number of requests visited */
+    private int[] countInRange(RequestRingBuffer ring, long fromSeconds, long toSeconds) {
+        Date from = new Date(fromSeconds * 1000);
+        Date to = new Date(toSeconds * 1000);
+        int[] counts = new int[2];
+        ring.forEach(
+                from,
+                to,
+                r -> {
+                    if (!r.getStartTime().before(from) && !r.getStartTime().after(to)) {
+                        counts[0]++;
+                    }
+                    counts[1]++;
+                });
+        return counts;
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        File file = new File(folder.getRoot(), "history.journal");
+        MemoryMonitorDAO memory = new MemoryMonitorDAO();
+        memory.initJournal(file);
+        for (int i = 0; i < 5; i++) {
+            RequestData data = memory.init(request(0, i));
+            memory.add(data);
+            memory.save(data);
+        }
+        memory.dispose();
+
+        MemoryMonitorDAO reloaded = new MemoryMonitorDAO();
+        reloaded.initJournal(file);
+        try {
+            assertEquals(5, reloaded.getRequests().size());
+            assertEquals("/4", reloaded.getRequest(5).getPath());
+            // ids are not reused
+            assertTrue(reloaded.init(new RequestData()).getId() > 5);
+        } finally {
+            reloaded.dispose();
+        }
+    }
+
+    @Test
+    public void testJournalCompaction() throws Exception {
+        File file = new File(folder.getRoot(), "history.journal");
+        RequestJournal journal = new RequestJournal(file, 10);
+        assertTrue(journal.open().isEmpty());
+        for (int i = 0; i < 35; i++) {
+            journal.append(request(i, i));
+        }
+        // writes out the queued requests
+        journal.close();
+
+        // compacted once past 20 records, then appended to
+        List<RequestData> requests = new RequestJournal(file, 100).read();
+        assertTrue(requests.size() < 35);
+        assertEquals(34, requests.get(requests.size() - 1).getId());
+        assertEquals(10, new RequestJournal(file, 10).read().size());
+    }
+
+    RequestData request(long id, long time) {
+        RequestData data = new RequestData();
+        data.setId(id);
+        data.setPath("/" + time);
+        data.setStartTime(new Date(time));
+        return data;
+    }
 }
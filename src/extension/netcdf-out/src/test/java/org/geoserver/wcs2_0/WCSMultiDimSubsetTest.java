@@ -10,6 +10,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Field;
 import java.util.Set;
+import java.util.concurrent.ThreadPoolExecutor;
 import javax.xml.namespace.QName;
 import org.geoserver.catalog.CoverageInfo;
 import org.geoserver.catalog.DimensionPresentation;
@@ -17,6 +18,7 @@ import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.data.test.CiteTestData;
 import org.geoserver.data.test.SystemTestData;
 import org.geoserver.wcs.CoverageCleanerCallback;
+import org.geoserver.wcs2_0.response.DimensionBean;
 import org.geoserver.wcs2_0.response.GranuleStack;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.gce.imagemosaic.ImageMosaicFormat;
@@ -145,4 +147,53 @@ public class WCSMultiDimSubsetTest extends WCSNetCDFBaseTest {
             }
         }
     }
+
+    /** The granules read in parallel are stacked in the same order as the ones read serially */
+    @Test
+    public void parallelGranuleReads() throws Exception {
+        String request =
+                "wcs?request=GetCoverage&service=WCS&version=2.0.1"
+                        + "&coverageId=wcs__lambert&&Format=application/custom";
+        String readers = System.getProperty(GetCoverage.GRANULE_READERS_KEY);
+        try {
+            System.setProperty(GetCoverage.GRANULE_READERS_KEY, "4");
+            ThreadPoolExecutor pool = GetCoverage.getGranuleReadersPool();
+            long tasks = pool.getTaskCount();
+
+            System.setProperty(GetCoverage.GRANULE_READERS_KEY, "1");
+            GranuleStack serial = getGranuleStack(request);
+            assertTrue(serial.getGranules().size() > 1);
+            assertEquals(tasks, pool.getTaskCount());
+
+            // all granules but the first one, used to estimate the output size, go through the pool
+            System.setProperty(GetCoverage.GRANULE_READERS_KEY, "4");
+            GranuleStack parallel = getGranuleStack(request);
+            assertEquals(tasks + serial.getGranules().size() - 1, pool.getTaskCount());
+            assertEquals(serial.getGranules().size(), parallel.getGranules().size());
+            for (int i = 0; i < serial.getGranules().size(); i++) {
+                GridCoverage2D expected = serial.getGranules().get(i);
+                GridCoverage2D actual = parallel.getGranules().get(i);
+                assertEquals(expected.getEnvelope2D(), actual.getEnvelope2D());
+                for (DimensionBean dimension : serial.getDimensions()) {
+                    String name = dimension.getName();
+                    assertEquals(expected.getProperty(name), actual.getProperty(name));
+                }
+            }
+        } finally {
+            if (readers == null) {
+                System.clearProperty(GetCoverage.GRANULE_READERS_KEY);
+            } else {
+                System.setProperty(GetCoverage.GRANULE_READERS_KEY, readers);
+            }
+        }
+    }
+
+    private GranuleStack getGranuleStack(String request) throws Exception {
+        MockHttpServletResponse response = getAsServletResponse(request);
+        assertNotNull(response);
+        GridCoverage2D result =
+                applicationContext.getBean(WCSResponseInterceptor.class).getLastResult();
+        assertTrue(result instanceof GranuleStack);
+        return (GranuleStack) result;
+    }
 }
@@ -10,8 +10,6 @@ import java.awt.Rectangle;
 import java.io.IOException;
 import java.util.Map;
 import java.util.logging.Logger;
-import no.ecc.vectortile.VectorTileEncoder;
-import no.ecc.vectortile.VectorTileEncoderNoClip;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.map.RawMap;
 import org.geoserver.wms.vector.VectorTileBuilder;
@@ -23,13 +21,12 @@ import org.locationtech.jts.geom.Geometry;
 public class MapBoxTileBuilder implements VectorTileBuilder {
     private static final Logger LOGGER = Logging.getLogger(MapBoxTileBuilder.class);
 
-    private VectorTileEncoder encoder;
+    private MapBoxTileEncoder encoder;
 
     public MapBoxTileBuilder(Rectangle mapSize, ReferencedEnvelope mapArea) {
         final int extent = Math.max(mapSize.width, mapSize.height);
         final int polygonClipBuffer = extent / 32;
-        final boolean autoScale = false;
-        this.encoder = new VectorTileEncoderNoClip(extent, polygonClipBuffer, autoScale);
+        this.encoder = new MapBoxTileEncoder(extent, polygonClipBuffer);
     }
 
     @Override
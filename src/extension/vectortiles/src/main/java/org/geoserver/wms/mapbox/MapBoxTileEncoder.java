@@ -0,0 +1,537 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.mapbox;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.locationtech.jts.algorithm.Area;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryCollection;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiLineString;
+import org.locationtech.jts.geom.MultiPoint;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.Polygon;
+
+/**
+ * Encodes features into a Mapbox Vector Tile (version 2 of the specification) as they are added,
+ * writing the geometry commands and the protobuf messages straight into reusable buffers.
+ *
+ * <p>Unlike {@link no.ecc.vectortile.VectorTileEncoder}, the features are not retained until the
+ * tile is built and no intermediate command lists, coordinate arrays or protobuf builders are
+ * created. The geometries are expected to be in tile coordinates already, clipped and simplified
+ * (no clipping is performed here, other than dropping points outside of the buffered tile).
+ */
+class MapBoxTileEncoder {
+
+    // vector_tile.proto field numbers
+    static final int TILE_LAYERS = 3;
+
+    static final int LAYER_NAME = 1;
+    static final int LAYER_FEATURES = 2;
+    static final int LAYER_KEYS = 3;
+    static final int LAYER_VALUES = 4;
+    static final int LAYER_EXTENT = 5;
+    static final int LAYER_VERSION = 15;
+
+    static final int FEATURE_ID = 1;
+    static final int FEATURE_TAGS = 2;
+    static final int FEATURE_TYPE = 3;
+    static final int FEATURE_GEOMETRY = 4;
+
+    static final int VALUE_STRING = 1;
+    static final int VALUE_FLOAT = 2;
+    static final int VALUE_DOUBLE = 3;
+    static final int VALUE_SINT = 6;
+    static final int VALUE_BOOL = 7;
+
+    // wire types
+    static final int VARINT = 0;
+    static final int FIXED64 = 1;
+    static final int LENGTH_DELIMITED = 2;
+    static final int FIXED32 = 5;
+
+    // geometry types
+    static final int UNKNOWN = 0;
+    static final int POINT = 1;
+    static final int LINESTRING = 2;
+    static final int POLYGON = 3;
+
+    // geometry commands
+    static final int MOVE_TO = 1;
+    static final int LINE_TO = 2;
+    static final int CLOSE_PATH = 7;
+
+    private final int extent;
+
+    private final int clipBuffer;
+
+    private final Map<String, Layer> layers = new LinkedHashMap<>();
+
+    /** Geometry commands of the feature being encoded */
+    private final IntBuffer commands = new IntBuffer();
+
+    /** Key/value indexes of the feature being encoded */
+    private final IntBuffer tags = new IntBuffer();
+
+    /** Cursor position of the feature being encoded */
+    private int x, y;
+
+    /**
+     * @param extent the tile extent, that is, its size in tile coordinates
+     * @param clipBuffer points farther than this from the tile area are dropped
+     */
+    MapBoxTileEncoder(int extent, int clipBuffer) {
+        this.extent = extent;
+        this.clipBuffer = clipBuffer;
+    }
+
+    /**
+     * Encodes a feature in the given layer. Features without a geometry, or whose geometry
+     * collapses to nothing once snapped to the tile grid, are skipped.
+     *
+     * @param id the feature id, a negative value means no id
+     */
+    public void addFeature(
+            String layerName, Map<String, ?> attributes, Geometry geometry, long id) {
+        // plain collections cannot be encoded, add their components as separate features
+        if (geometry.getClass().equals(GeometryCollection.class)) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                addFeature(layerName, attributes, geometry.getGeometryN(i), id);
+            }
+            return;
+        }
+        if (geometry.isEmpty()) {
+            return;
+        }
+
+        x = y = 0;
+        commands.clear();
+        int type = encode(geometry);
+        if (commands.size == 0) {
+            return;
+        }
+
+        Layer layer = layers.computeIfAbsent(layerName, Layer::new);
+        tags.clear();
+        for (Map.Entry<String, ?> e : attributes.entrySet()) {
+            if (e.getValue() != null) {
+                tags.add(layer.key(e.getKey()));
+                tags.add(layer.value(e.getValue()));
+            }
+        }
+
+        int size = 0;
+        if (id >= 0) {
+            size += 1 + varintSize(id);
+        }
+        if (tags.size > 0) {
+            int tagsSize = tags.packedSize();
+            size += 1 + varintSize(tagsSize) + tagsSize;
+        }
+        size += 2;
+        int geometrySize = commands.packedSize();
+        size += 1 + varintSize(geometrySize) + geometrySize;
+
+        ByteBuffer out = layer.features;
+        out.writeTag(LAYER_FEATURES, LENGTH_DELIMITED);
+        out.writeVarint(size);
+        if (id >= 0) {
+            out.writeTag(FEATURE_ID, VARINT);
+            out.writeVarint(id);
+        }
+        if (tags.size > 0) {
+            out.writeTag(FEATURE_TAGS, LENGTH_DELIMITED);
+            out.writePacked(tags);
+        }
+        out.writeTag(FEATURE_TYPE, VARINT);
+        out.writeVarint(type);
+        out.writeTag(FEATURE_GEOMETRY, LENGTH_DELIMITED);
+        out.writePacked(commands);
+    }
+
+    /** Returns the encoded tile */
+    public byte[] encode() {
+        ByteBuffer tile = new ByteBuffer();
+        ByteBuffer message = new ByteBuffer();
+        for (Layer layer : layers.values()) {
+            message.clear();
+            message.writeTag(LAYER_NAME, LENGTH_DELIMITED);
+            message.writeBytes(layer.name);
+            message.write(layer.features);
+            for (byte[] key : layer.keys) {
+                message.writeTag(LAYER_KEYS, LENGTH_DELIMITED);
+                message.writeBytes(key);
+            }
+            message.write(layer.values);
+            message.writeTag(LAYER_EXTENT, VARINT);
+            message.writeVarint(extent);
+            message.writeTag(LAYER_VERSION, VARINT);
+            message.writeVarint(2);
+
+            tile.writeTag(TILE_LAYERS, LENGTH_DELIMITED);
+            tile.writeVarint(message.size);
+            tile.write(message);
+        }
+        return tile.toByteArray();
+    }
+
+    /** Writes the geometry commands, returns the geometry type */
+    private int encode(Geometry geometry) {
+        if (geometry instanceof Point) {
+            Point point = (Point) geometry;
+            double px = point.getX();
+            double py = point.getY();
+            if (px >= -clipBuffer
+                    && px <= extent + clipBuffer
+                    && py >= -clipBuffer
+                    && py <= extent + clipBuffer) {
+                encodePoints(point.getCoordinateSequence());
+            }
+            return POINT;
+        } else if (geometry instanceof MultiPoint) {
+            encodePoints((MultiPoint) geometry);
+            return POINT;
+        } else if (geometry instanceof LineString) {
+            encodePath(((LineString) geometry).getCoordinateSequence(), false, false, 1);
+            return LINESTRING;
+        } else if (geometry instanceof MultiLineString) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                LineString line = (LineString) geometry.getGeometryN(i);
+                encodePath(line.getCoordinateSequence(), false, false, 1);
+            }
+            return LINESTRING;
+        } else if (geometry instanceof Polygon) {
+            encodePolygon((Polygon) geometry);
+            return POLYGON;
+        } else if (geometry instanceof MultiPolygon) {
+            for (int i = 0; i < geometry.getNumGeometries(); i++) {
+                encodePolygon((Polygon) geometry.getGeometryN(i));
+            }
+            return POLYGON;
+        }
+        return UNKNOWN;
+    }
+
+    private void encodePoints(CoordinateSequence sequence) {
+        commands.add(command(MOVE_TO, 1));
+        moveTo(sequence, 0, false);
+    }
+
+    private void encodePoints(MultiPoint points) {
+        int countIndex = commands.size;
+        commands.add(0);
+        int count = 0;
+        for (int i = 0; i < points.getNumGeometries(); i++) {
+            CoordinateSequence sequence = ((Point) points.getGeometryN(i)).getCoordinateSequence();
+            if (sequence.size() > 0 && moveTo(sequence, 0, count > 0)) {
+                count++;
+            }
+        }
+        if (count == 0) {
+            commands.clear();
+        } else {
+            commands.data[countIndex] = command(MOVE_TO, count);
+        }
+    }
+
+    /**
+     * Polygons need the exterior ring in clockwise order, and the interior ones in counter
+     * clockwise order, in tile coordinates (y axis pointing down), which is the other way around
+     * from the JTS orientation
+     */
+    private void encodePolygon(Polygon polygon) {
+        CoordinateSequence shell = polygon.getExteriorRing().getCoordinateSequence();
+        double area = Area.ofRingSigned(shell);
+        if (Math.round(area) == 0) {
+            return;
+        }
+        if (!encodePath(shell, area > 0, true, 2)) {
+            return;
+        }
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            CoordinateSequence hole = polygon.getInteriorRingN(i).getCoordinateSequence();
+            area = Area.ofRingSigned(hole);
+            if (Math.round(area) != 0) {
+                encodePath(hole, area < 0, true, 2);
+            }
+        }
+    }
+
+    /**
+     * Writes a MoveTo/LineTo sequence, skipping the points that snap to the previous one
+     *
+     * @param reverse whether to walk the sequence backwards
+     * @param closePath whether the sequence is a ring, to be closed with a ClosePath command
+     * @param minLineTo the minimum number of LineTo commands for the path not to be degenerate
+     * @return false if the path is degenerate and has been dropped
+     */
+    private boolean encodePath(
+            CoordinateSequence sequence, boolean reverse, boolean closePath, int minLineTo) {
+        int n = sequence.size();
+        if (closePath
+                && n > 1
+                && sequence.getX(0) == sequence.getX(n - 1)
+                && sequence.getY(0) == sequence.getY(n - 1)) {
+            // the ClosePath command takes care of the last point
+            n--;
+        }
+        if (n == 0) {
+            return false;
+        }
+
+        final int start = commands.size;
+        final int startX = x;
+        final int startY = y;
+        commands.add(command(MOVE_TO, 1));
+        moveTo(sequence, reverse ? n - 1 : 0, false);
+        int lineToIndex = commands.size;
+        commands.add(0);
+        int count = 0;
+        for (int i = 1; i < n; i++) {
+            if (moveTo(sequence, reverse ? n - 1 - i : i, true)) {
+                count++;
+            }
+        }
+        if (count < minLineTo) {
+            commands.size = start;
+            x = startX;
+            y = startY;
+            return false;
+        }
+        commands.data[lineToIndex] = command(LINE_TO, count);
+        if (closePath) {
+            commands.add(command(CLOSE_PATH, 1));
+        }
+        return true;
+    }
+
+    /**
+     * Writes the parameters moving the cursor to the i-th point of the sequence
+     *
+     * @param skipSame whether to skip the point if it snaps to the current cursor position
+     * @return false if the point has been skipped
+     */
+    private boolean moveTo(CoordinateSequence sequence, int i, boolean skipSame) {
+        int px = (int) Math.round(sequence.getX(i));
+        int py = (int) Math.round(sequence.getY(i));
+        if (skipSame && px == x && py == y) {
+            return false;
+        }
+        commands.add(zigZag(px - x));
+        commands.add(zigZag(py - y));
+        x = px;
+        y = py;
+        return true;
+    }
+
+    static int command(int id, int count) {
+        return (count << 3) | (id & 0x7);
+    }
+
+    static int zigZag(int n) {
+        return (n << 1) ^ (n >> 31);
+    }
+
+    static long zigZag(long n) {
+        return (n << 1) ^ (n >> 63);
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    /** Keys, values and encoded features of a layer */
+    static class Layer {
+
+        final byte[] name;
+
+        /** The UTF-8 encoded keys, in index order */
+        final List<byte[]> keys = new ArrayList<>();
+
+        final Map<String, Integer> keyIndexes = new HashMap<>();
+
+        final Map<Object, Integer> valueIndexes = new HashMap<>();
+
+        /** The encoded Value messages, including their field headers */
+        final ByteBuffer values = new ByteBuffer();
+
+        /** The encoded Feature messages, including their field headers */
+        final ByteBuffer features = new ByteBuffer();
+
+        Layer(String name) {
+            this.name = name.getBytes(StandardCharsets.UTF_8);
+        }
+
+        int key(String key) {
+            Integer index = keyIndexes.get(key);
+            if (index == null) {
+                index = keyIndexes.size();
+                keyIndexes.put(key, index);
+                keys.add(key.getBytes(StandardCharsets.UTF_8));
+            }
+            return index;
+        }
+
+        int value(Object value) {
+            if (!(value instanceof String
+                    || value instanceof Integer
+                    || value instanceof Long
+                    || value instanceof Short
+                    || value instanceof Byte
+                    || value instanceof Float
+                    || value instanceof Double
+                    || value instanceof Boolean)) {
+                value = value.toString();
+            }
+            Integer index = valueIndexes.get(value);
+            if (index == null) {
+                index = valueIndexes.size();
+                valueIndexes.put(value, index);
+                writeValue(value);
+            }
+            return index;
+        }
+
+        private void writeValue(Object value) {
+            values.writeTag(LAYER_VALUES, LENGTH_DELIMITED);
+            if (value instanceof String) {
+                byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                values.writeVarint(1 + varintSize(bytes.length) + bytes.length);
+                values.writeTag(VALUE_STRING, LENGTH_DELIMITED);
+                values.writeBytes(bytes);
+            } else if (value instanceof Float) {
+                values.writeVarint(5);
+                values.writeTag(VALUE_FLOAT, FIXED32);
+                values.writeFixed32(Float.floatToIntBits((Float) value));
+            } else if (value instanceof Double) {
+                values.writeVarint(9);
+                values.writeTag(VALUE_DOUBLE, FIXED64);
+                values.writeFixed64(Double.doubleToLongBits((Double) value));
+            } else if (value instanceof Boolean) {
+                values.writeVarint(2);
+                values.writeTag(VALUE_BOOL, VARINT);
+                values.writeVarint(((Boolean) value) ? 1 : 0);
+            } else {
+                long zigZag = zigZag(((Number) value).longValue());
+                values.writeVarint(1 + varintSize(zigZag));
+                values.writeTag(VALUE_SINT, VARINT);
+                values.writeVarint(zigZag);
+            }
+        }
+    }
+
+    /** A growable list of ints, reused across features */
+    static class IntBuffer {
+
+        int[] data = new int[256];
+
+        int size;
+
+        void add(int value) {
+            if (size == data.length) {
+                data = Arrays.copyOf(data, size * 2);
+            }
+            data[size++] = value;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        /** Size of the values as packed unsigned varints */
+        int packedSize() {
+            int result = 0;
+            for (int i = 0; i < size; i++) {
+                result += varintSize(data[i] & 0xFFFFFFFFL);
+            }
+            return result;
+        }
+    }
+
+    /** A growable byte array with the protobuf primitives */
+    static class ByteBuffer {
+
+        byte[] data = new byte[1024];
+
+        int size;
+
+        private void ensureCapacity(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void writeTag(int field, int wireType) {
+            writeVarint((field << 3) | wireType);
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7FL) != 0) {
+                data[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            data[size++] = (byte) value;
+        }
+
+        void writeFixed32(int value) {
+            ensureCapacity(4);
+            for (int i = 0; i < 4; i++) {
+                data[size++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        void writeFixed64(long value) {
+            ensureCapacity(8);
+            for (int i = 0; i < 8; i++) {
+                data[size++] = (byte) (value >>> (i * 8));
+            }
+        }
+
+        /** Writes the bytes, prefixed by their length */
+        void writeBytes(byte[] bytes) {
+            writeVarint(bytes.length);
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        /** Writes the values as packed unsigned varints, prefixed by their length */
+        void writePacked(IntBuffer values) {
+            writeVarint(values.packedSize());
+            for (int i = 0; i < values.size; i++) {
+                writeVarint(values.data[i] & 0xFFFFFFFFL);
+            }
+        }
+
+        /** Appends the contents of another buffer */
+        void write(ByteBuffer other) {
+            ensureCapacity(other.size);
+            System.arraycopy(other.data, 0, data, size, other.size);
+            size += other.size;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
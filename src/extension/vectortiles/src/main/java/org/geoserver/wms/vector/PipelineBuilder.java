@@ -70,6 +70,9 @@ public class PipelineBuilder {
 
         public double pixelSizeInTargetCRS; // approximate size of a pixel in the Target CRS
 
+        // the screen simplification distance, in the data's CRS
+        public double sourceCRSSimplificationDistance;
+
         public int queryBuffer;
     }
 
@@ -132,6 +135,8 @@ public class PipelineBuilder {
         context.sourceToScreen =
                 ConcatenatedTransform.create(context.sourceToTargetCrs, context.targetToScreen);
 
+        context.screenSimplificationDistance = PIXEL_BASE_SAMPLE_SIZE / overSampleFactor;
+
         double[] spans_sourceCRS;
         double[] spans_targetCRS;
         try {
@@ -150,11 +155,17 @@ public class PipelineBuilder {
             // so we are getting at least A pixels around.
             context.pixelSizeInTargetCRS = Math.max(spans_targetCRS[0], spans_targetCRS[1]);
 
+            double[] simplification_sourceCRS =
+                    Decimator.computeGeneralizationDistances(
+                            screenToWorld,
+                            context.paintArea,
+                            context.screenSimplificationDistance);
+            context.sourceCRSSimplificationDistance =
+                    Math.min(simplification_sourceCRS[0], simplification_sourceCRS[1]);
         } catch (TransformException e) {
             throw new RuntimeException(e);
         }
 
-        context.screenSimplificationDistance = PIXEL_BASE_SAMPLE_SIZE / overSampleFactor;
         // use min so generalize "less" (if pixel is different size in X and Y)
         context.targetCRSSimplificationDistance =
                 Math.min(spans_targetCRS[0], spans_targetCRS[1]) / overSampleFactor;
@@ -167,6 +178,14 @@ public class PipelineBuilder {
         return context;
     }
 
+    /**
+     * The distance, in the data's CRS, below which the vertices of a geometry can be merged without
+     * visible changes in the tile. Data sources can use it to return pre-generalized geometries.
+     */
+    public double getSourceCRSSimplificationDistance() {
+        return context.sourceCRSSimplificationDistance;
+    }
+
     /**
      * Prepares features for subsequent manipulation
      *
@@ -10,12 +10,20 @@ import static org.geotools.renderer.lite.VectorMapRenderUtils.getStyleQuery;
 
 import com.google.common.base.Stopwatch;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
 import org.geoserver.wms.MapProducerCapabilities;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
@@ -27,6 +35,7 @@ import org.geotools.feature.FeatureIterator;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.map.Layer;
 import org.geotools.renderer.lite.VectorMapRenderUtils;
+import org.geotools.styling.visitor.StyleAttributeExtractor;
 import org.geotools.util.factory.Hints;
 import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Geometry;
@@ -37,6 +46,7 @@ import org.opengis.feature.GeometryAttribute;
 import org.opengis.feature.Property;
 import org.opengis.feature.type.FeatureType;
 import org.opengis.feature.type.GeometryDescriptor;
+import org.opengis.feature.type.PropertyDescriptor;
 import org.opengis.referencing.FactoryException;
 import org.opengis.referencing.crs.CoordinateReferenceSystem;
 
@@ -45,6 +55,12 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
     /** A logger for this class. */
     private static final Logger LOGGER = Logging.getLogger(VectorTileMapOutputFormat.class);
 
+    /**
+     * Resource metadata key listing, comma separated, the attributes to include in vector tiles,
+     * besides the ones used by the style. When missing, all attributes are included.
+     */
+    public static final String ATTRIBUTES_KEY = "vectorTiles.attributes";
+
     private final VectorTileBuilderFactory tileBuilderFactory;
 
     private boolean clipToMapBounds;
@@ -104,7 +120,9 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
         vectorTileBuilder = this.tileBuilderFactory.newBuilder(paintArea, renderingArea);
 
         CoordinateReferenceSystem sourceCrs;
-        for (Layer layer : mapContent.layers()) {
+        List<Layer> layers = mapContent.layers();
+        for (int layerIndex = 0; layerIndex < layers.size(); layerIndex++) {
+            Layer layer = layers.get(layerIndex);
 
             FeatureSource<?, ?> featureSource = layer.getFeatureSource();
             GeometryDescriptor geometryDescriptor =
@@ -122,11 +140,19 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
                                     paintArea,
                                     VectorMapRenderUtils.getMapScale(mapContent, renderingArea),
                                     (FeatureType) featureSource.getSchema()));
-            Pipeline pipeline =
-                    getPipeline(mapContent, renderingArea, paintArea, sourceCrs, buffer);
+            PipelineBuilder pipelineBuilder =
+                    getPipelineBuilder(renderingArea, paintArea, sourceCrs, buffer);
+            Pipeline pipeline = getPipeline(pipelineBuilder);
 
             Query query = getStyleQuery(layer, mapContent);
             query.getHints().remove(Hints.SCREENMAP);
+            addGeneralizationHints(
+                    query, featureSource, pipelineBuilder.getSourceCRSSimplificationDistance());
+            List<String> attributes =
+                    getAttributes(layer, getResource(mapContent, layerIndex, layer));
+            if (attributes != null) {
+                query.setPropertyNames(attributes);
+            }
 
             FeatureCollection<?, ?> features = featureSource.getFeatures(query);
 
@@ -143,23 +169,96 @@ public class VectorTileMapOutputFormat extends AbstractMapOutputFormat {
             final Rectangle paintArea,
             CoordinateReferenceSystem sourceCrs,
             int buffer) {
-        Pipeline pipeline;
+        return getPipeline(getPipelineBuilder(renderingArea, paintArea, sourceCrs, buffer));
+    }
+
+    private PipelineBuilder getPipelineBuilder(
+            final ReferencedEnvelope renderingArea,
+            final Rectangle paintArea,
+            CoordinateReferenceSystem sourceCrs,
+            int buffer) {
         try {
-            final PipelineBuilder builder =
-                    PipelineBuilder.newBuilder(
-                            renderingArea, paintArea, sourceCrs, overSamplingFactor, buffer);
-
-            pipeline =
-                    builder.preprocess()
-                            .transform(transformToScreenCoordinates)
-                            .clip(clipToMapBounds, transformToScreenCoordinates)
-                            .simplify(transformToScreenCoordinates)
-                            .collapseCollections()
-                            .build();
+            return PipelineBuilder.newBuilder(
+                    renderingArea, paintArea, sourceCrs, overSamplingFactor, buffer);
         } catch (FactoryException e) {
             throw new ServiceException(e);
         }
-        return pipeline;
+    }
+
+    private Pipeline getPipeline(PipelineBuilder builder) {
+        return builder.preprocess()
+                .transform(transformToScreenCoordinates)
+                .clip(clipToMapBounds, transformToScreenCoordinates)
+                .simplify(transformToScreenCoordinates)
+                .collapseCollections()
+                .build();
+    }
+
+    /**
+     * Lets the data source return geometries generalized up to the distance the pipeline would
+     * simplify them anyways, if it supports it (e.g., pre-generalized stores, or databases able to
+     * simplify geometries on the fly)
+     */
+    void addGeneralizationHints(Query query, FeatureSource<?, ?> source, double distance) {
+        if (!(distance > 0) || Double.isInfinite(distance)) {
+            return;
+        }
+        Set<RenderingHints.Key> supportedHints = source.getSupportedHints();
+        if (supportedHints == null) {
+            return;
+        }
+        // same as the StreamingRenderer, generalization is not used as it might break topology
+        if (supportedHints.contains(Hints.GEOMETRY_DISTANCE)) {
+            query.getHints().put(Hints.GEOMETRY_DISTANCE, distance);
+        } else if (supportedHints.contains(Hints.GEOMETRY_SIMPLIFICATION)) {
+            query.getHints().put(Hints.GEOMETRY_SIMPLIFICATION, distance);
+        }
+    }
+
+    /** Returns the configuration of the layer, if it can be found in the request */
+    private ResourceInfo getResource(WMSMapContent mapContent, int layerIndex, Layer layer) {
+        GetMapRequest request = mapContent.getRequest();
+        if (request == null || request.getLayers().size() <= layerIndex) {
+            return null;
+        }
+        MapLayerInfo info = request.getLayers().get(layerIndex);
+        ResourceInfo resource = info.getResource();
+        if (resource == null || !resource.prefixedName().equals(layer.getTitle())) {
+            return null;
+        }
+        return resource;
+    }
+
+    /**
+     * Returns the attributes to be included in the tiles, that is, the ones configured in the
+     * {@link #ATTRIBUTES_KEY} resource metadata along with the ones used by the style, or {@code
+     * null} to include all of them
+     */
+    List<String> getAttributes(Layer layer, ResourceInfo resource) {
+        String configured =
+                resource == null ? null : resource.getMetadata().get(ATTRIBUTES_KEY, String.class);
+        if (configured == null || configured.trim().isEmpty()) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        for (String name : configured.split(",")) {
+            names.add(name.trim());
+        }
+        StyleAttributeExtractor extractor = new StyleAttributeExtractor();
+        layer.getStyle().accept(extractor);
+        names.addAll(extractor.getAttributeNameSet());
+
+        // keep the schema order, and the default geometry
+        FeatureType schema = layer.getFeatureSource().getSchema();
+        GeometryDescriptor geometry = schema.getGeometryDescriptor();
+        List<String> attributes = new ArrayList<>();
+        for (PropertyDescriptor pd : schema.getDescriptors()) {
+            String name = pd.getName().getLocalPart();
+            if (pd.equals(geometry) || names.contains(name)) {
+                attributes.add(name);
+            }
+        }
+        return attributes;
     }
 
     private Map<String, Object> getProperties(ComplexAttribute feature) {
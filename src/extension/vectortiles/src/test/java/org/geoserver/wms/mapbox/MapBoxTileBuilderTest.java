@@ -15,6 +15,9 @@ import com.google.common.collect.ListMultimap;
 import java.awt.Rectangle;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import no.ecc.vectortile.VectorTileDecoder;
 import no.ecc.vectortile.VectorTileDecoder.Feature;
@@ -24,6 +27,7 @@ import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.junit.Test;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.MultiPolygon;
 import org.locationtech.jts.geom.Point;
 import org.locationtech.jts.io.ParseException;
 import org.locationtech.jts.io.WKTReader;
@@ -177,6 +181,129 @@ public class MapBoxTileBuilderTest {
         assertEquals(0, features.get("Lines").get(1).getId());
     }
 
+    @Test
+    public void testPolygons() throws Exception {
+        MapBoxTileBuilder tileBuilder = tileBuilder(256, 256);
+
+        // both orientations of the shell and holes, the encoder has to fix them
+        Geometry polygon =
+                geom(
+                        "POLYGON((10 10, 100 10, 100 100, 10 100, 10 10), "
+                                + "(20 20, 20 50, 50 50, 20 20))");
+        Geometry reversed = polygon.reverse();
+        Geometry multiPolygon =
+                geom(
+                        "MULTIPOLYGON(((10 10, 50 10, 50 50, 10 10)), "
+                                + "((100 100, 200 100, 200 200, 100 200, 100 100), "
+                                + "(120 120, 150 120, 150 150, 120 150, 120 120)))");
+        Map<String, Object> props = ImmutableMap.<String, Object>of("name", "poly");
+        tileBuilder.addFeature("Polygons", "Polygons.1", "unused", polygon, props);
+        tileBuilder.addFeature("Polygons", "Polygons.2", "unused", reversed, props);
+        tileBuilder.addFeature("Polygons", "Polygons.3", "unused", multiPolygon, props);
+
+        RawMap map = tileBuilder.build(mock(WMSMapContent.class));
+
+        ListMultimap<String, Feature> features = decode(map);
+
+        List<Feature> polygons = features.get("Polygons");
+        assertEquals(3, polygons.size());
+        assertTrue(polygon.equalsTopo(polygons.get(0).getGeometry()));
+        assertTrue(polygon.equalsTopo(polygons.get(1).getGeometry()));
+        assertTrue(multiPolygon.equalsTopo(polygons.get(2).getGeometry()));
+        assertTrue(polygons.get(2).getGeometry() instanceof MultiPolygon);
+    }
+
+    @Test
+    public void testMultiGeometries() throws Exception {
+        MapBoxTileBuilder tileBuilder = tileBuilder(256, 256);
+
+        Geometry points = geom("MULTIPOINT((1 1), (10 20), (10 20), (30 5))");
+        Geometry lines = geom("MULTILINESTRING((0 0, 10 10, 10 10.2, 20 0), (50 50, 60 60))");
+        Geometry collection = geom("GEOMETRYCOLLECTION(POINT(5 5), LINESTRING(0 0, 5 5))");
+        Map<String, Object> props = ImmutableMap.<String, Object>of("name", "multi");
+        tileBuilder.addFeature("Points", "Points.1", "unused", points, props);
+        tileBuilder.addFeature("Lines", "Lines.1", "unused", lines, props);
+        tileBuilder.addFeature("Mixed", "Mixed.1", "unused", collection, props);
+
+        RawMap map = tileBuilder.build(mock(WMSMapContent.class));
+
+        ListMultimap<String, Feature> features = decode(map);
+
+        // duplicate points are removed, as well as points snapping to the previous one
+        assertEquals(
+                geom("MULTIPOINT((1 1), (10 20), (30 5))"),
+                features.get("Points").get(0).getGeometry());
+        assertEquals(
+                geom("MULTILINESTRING((0 0, 10 10, 20 0), (50 50, 60 60))"),
+                features.get("Lines").get(0).getGeometry());
+        // collections are split in separate features
+        List<Feature> mixed = features.get("Mixed");
+        assertEquals(2, mixed.size());
+        assertEquals(geom("POINT(5 5)"), mixed.get(0).getGeometry());
+        assertEquals(geom("LINESTRING(0 0, 5 5)"), mixed.get(1).getGeometry());
+        assertEquals(1, mixed.get(1).getId());
+    }
+
+    @Test
+    public void testDegenerateGeometries() throws Exception {
+        MapBoxTileBuilder tileBuilder = tileBuilder(256, 256);
+
+        Map<String, Object> props = ImmutableMap.<String, Object>of("name", "degenerate");
+        // collapses to a single point once snapped to the grid
+        tileBuilder.addFeature(
+                "Lines", "Lines.1", "unused", geom("LINESTRING(10 10, 10.1 10.1)"), props);
+        // no area
+        tileBuilder.addFeature(
+                "Polygons",
+                "Polygons.1",
+                "unused",
+                geom("POLYGON((10 10, 10.2 10, 10.2 10.2, 10 10))"),
+                props);
+        // way outside the tile
+        tileBuilder.addFeature("Points", "Points.1", "unused", geom("POINT(1000 1000)"), props);
+        tileBuilder.addFeature("Points", "Points.2", "unused", geom("POINT(5 5)"), props);
+
+        RawMap map = tileBuilder.build(mock(WMSMapContent.class));
+
+        ListMultimap<String, Feature> features = decode(map);
+
+        assertEquals(ImmutableSet.of("Points"), features.keySet());
+        assertEquals(2, features.get("Points").get(0).getId());
+    }
+
+    @Test
+    public void testAttributeTypes() throws Exception {
+        MapBoxTileBuilder tileBuilder = tileBuilder(256, 256);
+
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("string", "\u00e0 string");
+        props.put("int", 42);
+        props.put("negative", -42L);
+        props.put("float", 1.5f);
+        props.put("double", 3.25d);
+        props.put("boolean", true);
+        props.put("date", new Date(0));
+        tileBuilder.addFeature("Points", "Points.1", "unused", geom("POINT(1 1)"), props);
+        Map<String, Object> props2 = new LinkedHashMap<>(props);
+        props2.put("int", 43);
+        tileBuilder.addFeature("Points", "Points.2", "unused", geom("POINT(2 2)"), props2);
+
+        RawMap map = tileBuilder.build(mock(WMSMapContent.class));
+
+        ListMultimap<String, Feature> features = decode(map);
+
+        Map<String, Object> attributes = features.get("Points").get(0).getAttributes();
+        assertEquals("\u00e0 string", attributes.get("string"));
+        assertEquals(42L, attributes.get("int"));
+        assertEquals(-42L, attributes.get("negative"));
+        assertEquals(1.5f, attributes.get("float"));
+        assertEquals(3.25d, attributes.get("double"));
+        assertEquals(true, attributes.get("boolean"));
+        assertEquals(new Date(0).toString(), attributes.get("date"));
+        assertEquals(43L, features.get("Points").get(1).getAttributes().get("int"));
+        assertEquals("\u00e0 string", features.get("Points").get(1).getAttributes().get("string"));
+    }
+
     private MapBoxTileBuilder tileBuilder(int width, int height) {
         MapBoxTileBuilderFactory builderFact = new MapBoxTileBuilderFactory();
         Rectangle screenSize = new Rectangle(width, height);
@@ -11,14 +11,18 @@ import static org.mockito.Mockito.*;
 
 import com.google.common.collect.ImmutableSet;
 import java.awt.Rectangle;
+import java.awt.RenderingHints;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import org.apache.wicket.spring.test.ApplicationContextMock;
+import org.geoserver.catalog.MetadataMap;
+import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.SLDHandler;
 import org.geoserver.config.GeoServerLoader;
 import org.geoserver.platform.GeoServerExtensionsHelper;
@@ -28,6 +32,7 @@ import org.geoserver.wms.WMS;
 import org.geoserver.wms.WMSMapContent;
 import org.geoserver.wms.WebMap;
 import org.geotools.data.DataUtilities;
+import org.geotools.data.FeatureSource;
 import org.geotools.data.Query;
 import org.geotools.data.memory.MemoryDataStore;
 import org.geotools.feature.simple.SimpleFeatureBuilder;
@@ -40,7 +45,9 @@ import org.geotools.map.MapContent;
 import org.geotools.referencing.CRS;
 import org.geotools.styling.NamedLayer;
 import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
 import org.geotools.styling.StyledLayerDescriptor;
+import org.geotools.util.factory.Hints;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -406,6 +413,67 @@ public class VectorTileMapOutputFormatTest {
                         any(Map.class));
     }
 
+    @Test
+    public void testGeneralizationHints() throws Exception {
+        FeatureSource<?, ?> source = mock(FeatureSource.class);
+
+        when(source.getSupportedHints())
+                .thenReturn(
+                        ImmutableSet.<RenderingHints.Key>of(
+                                Hints.GEOMETRY_DISTANCE, Hints.GEOMETRY_SIMPLIFICATION));
+        Query query = new Query();
+        outputFormat.addGeneralizationHints(query, source, 0.5);
+        assertEquals(0.5, query.getHints().get(Hints.GEOMETRY_DISTANCE));
+        assertNull(query.getHints().get(Hints.GEOMETRY_SIMPLIFICATION));
+
+        when(source.getSupportedHints())
+                .thenReturn(ImmutableSet.<RenderingHints.Key>of(Hints.GEOMETRY_SIMPLIFICATION));
+        query = new Query();
+        outputFormat.addGeneralizationHints(query, source, 0.5);
+        assertNull(query.getHints().get(Hints.GEOMETRY_DISTANCE));
+        assertEquals(0.5, query.getHints().get(Hints.GEOMETRY_SIMPLIFICATION));
+
+        // not supported
+        when(source.getSupportedHints()).thenReturn(ImmutableSet.<RenderingHints.Key>of());
+        query = new Query();
+        outputFormat.addGeneralizationHints(query, source, 0.5);
+        assertTrue(query.getHints().isEmpty());
+    }
+
+    @Test
+    public void testSimplificationDistance() throws Exception {
+        ReferencedEnvelope mapBounds = new ReferencedEnvelope(0, 25.6, 0, 25.6, WGS84);
+        PipelineBuilder builder =
+                PipelineBuilder.newBuilder(mapBounds, new Rectangle(256, 256), WGS84, 2, 0);
+        // 0.1 degrees per pixel, simplified at 0.25 / 2 pixels
+        assertEquals(0.0125, builder.getSourceCRSSimplificationDistance(), 1e-3);
+    }
+
+    @Test
+    public void testAttributes() throws Exception {
+        ResourceInfo resource = mock(ResourceInfo.class);
+        MetadataMap metadata = new MetadataMap();
+        when(resource.getMetadata()).thenReturn(metadata);
+
+        // no configuration, all attributes
+        assertNull(outputFormat.getAttributes(pointLayer, resource));
+        assertNull(outputFormat.getAttributes(pointLayer, null));
+
+        // only the configured ones, plus the geometry
+        metadata.put(VectorTileMapOutputFormat.ATTRIBUTES_KEY, "ip, missing");
+        assertEquals(
+                Arrays.asList("ip", "geom"), outputFormat.getAttributes(pointLayer, resource));
+
+        // and the ones used by the style
+        StyleBuilder sb = new StyleBuilder();
+        Style style = sb.createStyle(sb.createPointSymbolizer());
+        style.featureTypeStyles().get(0).rules().get(0).setFilter(ECQL.toFilter("sp = 'a'"));
+        FeatureLayer styledLayer = new FeatureLayer(pointLayer.getFeatureSource(), style);
+        assertEquals(
+                Arrays.asList("sp", "ip", "geom"),
+                outputFormat.getAttributes(styledLayer, resource));
+    }
+
     private WMSMapContent createMapContent(
             ReferencedEnvelope mapBounds, Rectangle renderingArea, Integer buffer, Layer... layers)
             throws Exception {
@@ -10,11 +10,15 @@ import static com.google.common.base.Throwables.throwIfUnchecked;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.thoughtworks.xstream.XStream;
 import java.io.ByteArrayInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Reader;
@@ -33,6 +37,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Supplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import org.geoserver.catalog.WorkspaceInfo;
 import org.geoserver.config.AsynchResourceIterator;
 import org.geoserver.config.util.SecureXStream;
@@ -50,12 +57,33 @@ import org.geowebcache.config.ContextualConfigurationProvider.Context;
 import org.geowebcache.config.XMLConfiguration;
 import org.geowebcache.storage.blobstore.file.FilePathUtils;
 
+/**
+ * {@link TileLayerCatalog} storing each {@link GeoServerTileLayerInfo} as an XML file in the {@code
+ * gwc-layers} directory.
+ *
+ * <p>Only the id and name of each tile layer are kept in memory, indexed at {@link #initialize()}
+ * by a lightweight scan of the files, while the tile layer infos are depersisted on demand and
+ * kept in a bounded LRU cache of recently used ones, sized by the {@link #CACHE_SIZE_PROPERTY}
+ * system property.
+ */
 public class DefaultTileLayerCatalog implements TileLayerCatalog {
 
     private static final Logger LOGGER = Logging.getLogger(DefaultTileLayerCatalog.class);
 
     private static final String LAYERINFO_DIRECTORY = "gwc-layers";
 
+    /** System property setting the max number of depersisted tile layer infos kept in memory */
+    static final String CACHE_SIZE_PROPERTY = "gwc.layerinfo.cache.size";
+
+    static final int DEFAULT_CACHE_SIZE = 1000;
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newFactory();
+
+    static {
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XML_INPUT_FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    }
+
     /**
      * Thread factory used to load {@link GeoServerTileLayerInfo} objects at {@link
      * #initialize()}/{@link #reset()}. A short lived {@link ForkJoinPool} will be created with this
@@ -90,11 +118,15 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
      */
     private static ThreadLocal<XStream> INITIALIZATION_SERIALIZER = new ThreadLocal<>();
 
-    private ConcurrentMap<String, GeoServerTileLayerInfo> layersById;
+    /** Layer names by id, the index of the tile layers available in the store */
+    private ConcurrentMap<String, String> namesById;
 
     /** View of layer ids by name */
     private Map<String, String> layersByName;
 
+    /** The recently used tile layer infos, depersisted on demand */
+    private final Cache<String, GeoServerTileLayerInfo> layersById;
+
     private final Supplier<XStream> xstreamProvider;
     private final XStream serializer;
 
@@ -119,12 +151,24 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
     DefaultTileLayerCatalog(
             GeoServerResourceLoader resourceLoader, Supplier<XStream> xstreamProvider)
             throws IOException {
+        this(
+                resourceLoader,
+                xstreamProvider,
+                Integer.getInteger(CACHE_SIZE_PROPERTY, DEFAULT_CACHE_SIZE));
+    }
+
+    DefaultTileLayerCatalog(
+            GeoServerResourceLoader resourceLoader,
+            Supplier<XStream> xstreamProvider,
+            int cacheSize)
+            throws IOException {
 
         this.resourceLoader = resourceLoader;
         this.baseDirectory = LAYERINFO_DIRECTORY;
 
         this.layersByName = new ConcurrentHashMap<>();
-        this.layersById = new ConcurrentHashMap<>();
+        this.namesById = new ConcurrentHashMap<>();
+        this.layersById = CacheBuilder.newBuilder().maximumSize(Math.max(0, cacheSize)).build();
         this.listeners = new ArrayList<>();
         this.initialized = false;
 
@@ -156,7 +200,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
         if (event.getKind() == Kind.ENTRY_DELETE) {
             // resource is no longer available, figure out the id the hard(ish) way
             String layerIdName =
-                    this.layersById
+                    this.namesById
                             .keySet()
                             .parallelStream()
                             .map(this::layerIdToFileName)
@@ -169,20 +213,19 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
             }
             Preconditions.checkState(layerIdName.endsWith(".xml"));
             final String layerId = layerIdName.substring(0, layerIdName.lastIndexOf(".xml"));
-            GeoServerTileLayerInfo removed = this.layersById.remove(layerId);
+            String removed = this.namesById.remove(layerId);
+            this.layersById.invalidate(layerId);
             if (removed != null) {
-                this.layersByName.remove(removed.getName());
+                this.layersByName.remove(removed, layerId);
             }
             listeners.forEach(l -> l.onEvent(layerId, TileLayerCatalogListener.Type.DELETE));
             return;
         }
 
         final Resource resource = resourceLoader.get(baseDirectory).get(path);
-        GeoServerTileLayerInfoImpl layerInfo;
+        String[] idAndName;
         try {
-            // do not call load(resource) here, the layer would end up in this.layersById
-            // even if it wasn't created by this instance
-            layerInfo = depersist(resource);
+            idAndName = index(resource, this.serializer);
         } catch (IOException e) {
             LOGGER.log(
                     Level.SEVERE,
@@ -190,8 +233,8 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
                     e);
             return;
         }
-        final String layerId = layerInfo.getId();
-        final GeoServerTileLayerInfo currentInfo = this.layersById.get(layerId);
+        final String layerId = idAndName[0];
+        final String currentName = this.namesById.get(layerId);
 
         final TileLayerCatalogListener.Type tileEventType =
                 event.getKind() == Kind.ENTRY_CREATE
@@ -199,17 +242,20 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
                         : TileLayerCatalogListener.Type.MODIFY;
 
         if (event.getKind() == Kind.ENTRY_MODIFY
-                && currentInfo != null
-                && !currentInfo.getName().contentEquals(layerInfo.getName())) {
-            layersByName.remove(currentInfo.getName());
+                && currentName != null
+                && !currentName.contentEquals(idAndName[1])) {
+            layersByName.remove(currentName);
         }
-        saveInternal(layerInfo);
+        // the file changed behind our back, the info will be depersisted again on demand
+        layersById.invalidate(layerId);
+        saveInternal(layerId, idAndName[1]);
         listeners.forEach(l -> l.onEvent(layerId, tileEventType));
     }
 
     @Override
     public void reset() {
-        layersById.clear();
+        namesById.clear();
+        layersById.invalidateAll();
         layersByName.clear();
         this.initialized = false;
     }
@@ -240,7 +286,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
         } finally {
             pool.shutdownNow();
         }
-        LOGGER.info(String.format("Loaded %,d tile layers in %s", layersById.size(), sw.stop()));
+        LOGGER.info(String.format("Indexed %,d tile layers in %s", namesById.size(), sw.stop()));
         this.initialized = true;
     }
 
@@ -249,34 +295,106 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
      * #INITIALIZATION_SERIALIZER} ThreadLocal safely, it'll be cleaned as the threads in the
      * forkjoinpool die
      */
-    private GeoServerTileLayerInfoImpl initializationLoad(Resource res) {
-        XStream unmarshaller = INITIALIZATION_SERIALIZER.get();
-        if (unmarshaller == null) {
-            unmarshaller = newXStream();
-            INITIALIZATION_SERIALIZER.set(unmarshaller);
-        }
-        GeoServerTileLayerInfoImpl info;
+    private void initializationLoad(Resource res) {
+        String[] idAndName;
         try {
-            info = depersist(res, unmarshaller);
+            idAndName = index(res, null);
         } catch (Exception e) {
             LOGGER.log(
                     Level.SEVERE,
                     "Error depersisting tile layer information from file " + res.name(),
                     e);
-            return null;
+            return;
         }
-        saveInternal(info);
+        saveInternal(idAndName[0], idAndName[1]);
         if (LOGGER.isLoggable(Level.FINER)) {
-            LOGGER.finer("Loaded tile layer '" + info.getName() + "'");
+            LOGGER.finer("Indexed tile layer '" + idAndName[1] + "'");
         }
-        return info;
+    }
+
+    /**
+     * Reads the id and name of the tile layer stored in the resource, without depersisting the
+     * whole tile layer info unless the file is not laid out as expected
+     *
+     * @param unmarshaller the XStream to use as a fallback, or {@code null} to use the {@link
+     *     #INITIALIZATION_SERIALIZER} one
+     * @return the id and name of the tile layer
+     */
+    private String[] index(final Resource res, XStream unmarshaller) throws IOException {
+        String[] idAndName;
+        try (InputStream in = new ByteArrayInputStream(res.getContents())) {
+            idAndName = scanIdAndName(in);
+        } catch (XMLStreamException e) {
+            throw new IOException("Error reading tile layer information from " + res.path(), e);
+        }
+        if (idAndName[0] == null || idAndName[1] == null) {
+            // unexpected layout, let XStream figure it out
+            if (unmarshaller == null) {
+                unmarshaller = INITIALIZATION_SERIALIZER.get();
+                if (unmarshaller == null) {
+                    unmarshaller = newXStream();
+                    INITIALIZATION_SERIALIZER.set(unmarshaller);
+                }
+            }
+            GeoServerTileLayerInfoImpl info = depersist(res, unmarshaller);
+            idAndName = new String[] {info.getId(), info.getName()};
+        }
+        Preconditions.checkState(idAndName[0] != null, "No tile layer id in %s", res.path());
+        return idAndName;
+    }
+
+    /**
+     * Pulls the {@code id} and {@code name} elements out of the root element children, stopping as
+     * soon as both have been found (the id is the first element written by XStream, the name
+     * follows shortly)
+     */
+    static String[] scanIdAndName(InputStream in) throws XMLStreamException {
+        String[] idAndName = new String[2];
+        XMLStreamReader reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        try {
+            int depth = 0;
+            while (reader.hasNext() && (idAndName[0] == null || idAndName[1] == null)) {
+                int event = reader.next();
+                if (event == XMLStreamReader.START_ELEMENT) {
+                    depth++;
+                    if (depth == 2) {
+                        String element = reader.getLocalName();
+                        if ("id".equals(element)) {
+                            idAndName[0] = reader.getElementText();
+                            depth--;
+                        } else if ("name".equals(element)) {
+                            idAndName[1] = reader.getElementText();
+                            depth--;
+                        }
+                    }
+                } else if (event == XMLStreamReader.END_ELEMENT) {
+                    depth--;
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return idAndName;
     }
 
     @Override
     public GeoServerTileLayerInfo getLayerById(final String id) {
         checkInitialized();
-        GeoServerTileLayerInfo layer = layersById.get(id);
-        return layer == null ? null : layer.clone();
+        if (id == null || !namesById.containsKey(id)) {
+            return null;
+        }
+        GeoServerTileLayerInfo layer;
+        try {
+            layer = layersById.get(id, () -> loadInternal(id));
+        } catch (ExecutionException | UncheckedExecutionException e) {
+            if (e.getCause() instanceof FileNotFoundException) {
+                // removed behind our back, the file event will update the index
+                return null;
+            }
+            throwIfUnchecked(e.getCause());
+            throw new IllegalStateException("Error loading tile layer " + id, e.getCause());
+        }
+        return layer.clone();
     }
 
     /**
@@ -302,13 +420,13 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
     @Override
     public Set<String> getLayerIds() {
         checkInitialized();
-        return ImmutableSet.copyOf(layersById.keySet());
+        return ImmutableSet.copyOf(namesById.keySet());
     }
 
     @Override
     public boolean exists(String layerId) {
         checkInitialized();
-        return layersById.containsKey(layerId);
+        return namesById.containsKey(layerId);
     }
 
     @Override
@@ -320,16 +438,23 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
     @Override
     public GeoServerTileLayerInfo delete(final String tileLayerId) {
         checkInitialized();
+        final String name = tileLayerId != null ? namesById.get(tileLayerId) : null;
+        if (name == null) {
+            return null;
+        }
         try {
-            GeoServerTileLayerInfo currValue = layersById.remove(tileLayerId);
-            if (currValue != null) {
-                Resource file = getFile(tileLayerId);
-                layersByName.remove(currValue.getName());
-                file.delete();
-                listeners.forEach(
-                        l -> l.onEvent(tileLayerId, TileLayerCatalogListener.Type.DELETE));
-                return currValue;
+            // the deleted info is returned, read from disk only if not cached
+            GeoServerTileLayerInfo currValue = layersById.getIfPresent(tileLayerId);
+            if (currValue == null) {
+                currValue = loadInternal(tileLayerId);
             }
+            Resource file = getFile(tileLayerId);
+            namesById.remove(tileLayerId);
+            layersById.invalidate(tileLayerId);
+            layersByName.remove(name, tileLayerId);
+            file.delete();
+            listeners.forEach(l -> l.onEvent(tileLayerId, TileLayerCatalogListener.Type.DELETE));
+            return currValue.clone();
         } catch (IOException notFound) {
             LOGGER.log(Level.FINEST, "Deleting " + tileLayerId, notFound);
         }
@@ -375,6 +500,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
             }
             persist(newValue);
             layersByName.put(newValue.getName(), newValue.getId());
+            namesById.put(newValue.getId(), newValue.getName());
             layersById.put(newValue.getId(), newValue.clone());
         } catch (Exception e) {
             if (e instanceof ExecutionException) {
@@ -385,9 +511,9 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
         return oldValue;
     }
 
-    private void saveInternal(GeoServerTileLayerInfoImpl info) {
-        layersByName.put(info.getName(), info.getId());
-        layersById.put(info.getId(), info);
+    private void saveInternal(String id, String name) {
+        layersByName.put(name, id);
+        namesById.put(id, name);
     }
 
     private void persist(GeoServerTileLayerInfo real) throws IOException {
@@ -500,7 +626,7 @@ public class DefaultTileLayerCatalog implements TileLayerCatalog {
     @Override
     public String getLayerName(String layerId) {
         checkInitialized();
-        return layersById.get(layerId).getName();
+        return namesById.get(layerId);
     }
 
     @Override
@@ -28,6 +28,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -615,10 +616,31 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
         }
 
         final GeoServerMetaTile metaTile = createMetaTile(tile, metaX, metaY);
+        final String metaKey = buildLockKey(tile, metaTile);
+
+        // if another request is rendering the same meta tile, wait for it and use its result
+        final MetaTileCoalescer coalescer = MetaTileCoalescer.get();
+        CompletableFuture<Void> flight = null;
+        if (tryCache
+                && coalescer.isEnabled()
+                && getExpireCache(zLevel) != GWCVars.CACHE_DISABLE_CACHE) {
+            flight = new CompletableFuture<>();
+            CompletableFuture<Void> leader = coalescer.join(metaKey, flight);
+            if (leader != null) {
+                flight = null;
+                if (coalescer.await(metaKey, leader) && tryCacheFetch(tile)) {
+                    coalescer.coalesced();
+                    metaTile.dispose();
+                    return finalizeTile(tile);
+                }
+                coalescer.fallback();
+            }
+        }
+
         Lock lock = null;
         try {
             /* ****************** Acquire lock ******************* */
-            lock = GWC.get().getLockProvider().getLock(buildLockKey(tile, metaTile));
+            lock = GWC.get().getLockProvider().getLock(metaKey);
             // got the lock on the meta tile, try again
             if (tryCache && tryCacheFetch(tile)) {
                 LOGGER.finest(
@@ -651,6 +673,9 @@ public class GeoServerTileLayer extends TileLayer implements ProxyLayer {
             if (lock != null) {
                 lock.release();
             }
+            if (flight != null) {
+                coalescer.done(metaKey, flight);
+            }
             metaTile.dispose();
         }
 
@@ -0,0 +1,137 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.layer;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Keeps track of the meta tiles being rendered in this process, so that concurrent requests for
+ * tiles of the same meta tile wait for the one render in flight, rather than queuing on the meta
+ * tile lock and checking the cache one after the other.
+ *
+ * <p>The first request for a meta tile becomes the leader, and calls {@link #done(String,
+ * CompletableFuture)} once the tiles have been rendered and stored. The followers {@link #await}
+ * for it and then fetch their tile from the cache, falling back on the regular locking path if the
+ * leader failed, took longer than the configured timeout, or did not store the tiles.
+ *
+ * <p>The wait timeout is set in milliseconds by the {@link #TIMEOUT_PROPERTY} system property, a
+ * zero or negative value disables coalescing.
+ */
+public class MetaTileCoalescer {
+
+    static final Logger LOGGER = Logging.getLogger(MetaTileCoalescer.class);
+
+    /** System property setting the max time, in milliseconds, a follower waits for the leader */
+    public static final String TIMEOUT_PROPERTY = "gwc.metatile.coalescing.timeout";
+
+    static final long DEFAULT_TIMEOUT = 60000;
+
+    private static final MetaTileCoalescer INSTANCE =
+            new MetaTileCoalescer(Long.getLong(TIMEOUT_PROPERTY, DEFAULT_TIMEOUT));
+
+    private final ConcurrentMap<String, CompletableFuture<Void>> inFlight =
+            new ConcurrentHashMap<>();
+
+    private final long timeout;
+
+    private final AtomicLong renders = new AtomicLong();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    MetaTileCoalescer(long timeout) {
+        this.timeout = timeout;
+    }
+
+    /** The coalescer shared by all the tile layers */
+    public static MetaTileCoalescer get() {
+        return INSTANCE;
+    }
+
+    /** Whether requests are coalesced at all */
+    public boolean isEnabled() {
+        return timeout > 0;
+    }
+
+    /**
+     * Registers the caller as the leader of the meta tile render, unless there is one already
+     *
+     * @param key the meta tile key
+     * @param flight the completion of the caller's render, should it become the leader
+     * @return the leader's flight, or {@code null} if the caller is the leader
+     */
+    CompletableFuture<Void> join(String key, CompletableFuture<Void> flight) {
+        CompletableFuture<Void> leader = inFlight.putIfAbsent(key, flight);
+        if (leader == null) {
+            renders.incrementAndGet();
+        }
+        return leader;
+    }
+
+    /** Called by the leader once the meta tile has been rendered and stored, or failed to */
+    void done(String key, CompletableFuture<Void> flight) {
+        inFlight.remove(key, flight);
+        flight.complete(null);
+    }
+
+    /**
+     * Waits for the leader's render to complete
+     *
+     * @return {@code true} if the leader completed in time, {@code false} otherwise
+     */
+    boolean await(String key, CompletableFuture<Void> leader) {
+        try {
+            leader.get(timeout, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (TimeoutException e) {
+            LOGGER.fine("Timed out waiting for the render of meta tile " + key);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.log(Level.FINE, "Render of meta tile " + key + " failed", e);
+        }
+        return false;
+    }
+
+    /** Records a follower served with the leader's result */
+    void coalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    /** Records a follower that had to go through the locking path anyways */
+    void fallback() {
+        fallbacks.incrementAndGet();
+    }
+
+    /** Number of meta tile renders led so far */
+    public long getRenders() {
+        return renders.get();
+    }
+
+    /** Number of tile requests served with the result of another request's meta tile render */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /** Number of tile requests that waited for another request's render, to no avail */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /** Number of meta tile renders currently in flight */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
@@ -12,8 +12,10 @@ import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableSet;
 import com.thoughtworks.xstream.XStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -39,6 +41,8 @@ public class DefaultTileLayerCatalogTest {
 
     private GeoServerResourceLoader resourceLoader;
 
+    private Supplier<XStream> xStream;
+
     private DefaultTileLayerCatalog catalog;
 
     @Before
@@ -48,7 +52,7 @@ public class DefaultTileLayerCatalogTest {
 
         new File(baseDirectory, "gwc-layers").mkdir();
 
-        Supplier<XStream> xStream =
+        xStream =
                 () ->
                         XMLConfiguration.getConfiguredXStreamWithContext(
                                 new SecureXStream(), (WebApplicationContext) null, Context.PERSIST);
@@ -235,6 +239,64 @@ public class DefaultTileLayerCatalogTest {
         assertNull(catalog.getLayerByName("newname"));
     }
 
+    @Test
+    public void testInitializeIndexesExistingLayers() throws Exception {
+        GeoServerTileLayerInfo info1 = new GeoServerTileLayerInfoImpl();
+        info1.setId("id1");
+        info1.setName("ws:name1");
+        info1.getMimeFormats().add("image/png");
+        catalog.save(info1);
+        GeoServerTileLayerInfo info2 = new GeoServerTileLayerInfoImpl();
+        info2.setId("id2");
+        info2.setName("name2 & <more>");
+        catalog.save(info2);
+
+        // a new instance only indexes the ids and names
+        DefaultTileLayerCatalog other =
+                new DefaultTileLayerCatalog(resourceLoader, xStream, 1);
+        other.initialize();
+        assertEquals(ImmutableSet.of("id1", "id2"), other.getLayerIds());
+        assertEquals(ImmutableSet.of("ws:name1", "name2 & <more>"), other.getLayerNames());
+        assertEquals("ws:name1", other.getLayerName("id1"));
+        assertEquals("id2", other.getLayerId("name2 & <more>"));
+        assertTrue(other.exists("id1"));
+
+        // the infos are depersisted on demand, and evicted from the cache as needed
+        for (int i = 0; i < 3; i++) {
+            assertEquals(info1, ModificationProxy.unwrap(other.getLayerById("id1")));
+            assertEquals(info2, ModificationProxy.unwrap(other.getLayerByName("name2 & <more>")));
+        }
+        assertNull(other.getLayerById("id3"));
+        assertNull(other.getLayerName("id3"));
+    }
+
+    @Test
+    public void testScanIdAndName() throws Exception {
+        String xml =
+                "<GeoServerTileLayer><enabled>true</enabled>"
+                        + "<parameterFilters><styleParameterFilter><key>STYLES</key>"
+                        + "<name>nested</name></styleParameterFilter></parameterFilters>"
+                        + "<name>the&amp;name</name><id>LayerInfoImpl--1</id>"
+                        + "</GeoServerTileLayer>";
+        String[] idAndName =
+                DefaultTileLayerCatalog.scanIdAndName(
+                        new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+        assertEquals("LayerInfoImpl--1", idAndName[0]);
+        assertEquals("the&name", idAndName[1]);
+    }
+
+    @Test
+    public void testCachedInfoIsNotShared() {
+        GeoServerTileLayerInfo info = new GeoServerTileLayerInfoImpl();
+        info.setId("id1");
+        info.setName("name1");
+        catalog.save(info);
+
+        GeoServerTileLayerInfo actual = catalog.getLayerById("id1");
+        actual.setName("modified");
+        assertEquals("name1", catalog.getLayerById("id1").getName());
+    }
+
     public void waitForFlag(AtomicBoolean flag, int maxMillis) throws InterruptedException {
         int counter = 0;
         while (!flag.get() && counter * 100 < maxMillis) {
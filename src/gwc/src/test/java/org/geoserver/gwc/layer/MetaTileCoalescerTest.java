@@ -0,0 +1,84 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.gwc.layer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+
+public class MetaTileCoalescerTest {
+
+    @Test
+    public void testFollowersWaitForLeader() throws Exception {
+        MetaTileCoalescer coalescer = new MetaTileCoalescer(10000);
+        assertTrue(coalescer.isEnabled());
+
+        CompletableFuture<Void> flight = new CompletableFuture<>();
+        assertNull(coalescer.join("key", flight));
+        assertEquals(1, coalescer.getInFlight());
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            CountDownLatch joined = new CountDownLatch(4);
+            @SuppressWarnings("unchecked")
+            Future<Boolean>[] followers = new Future[4];
+            for (int i = 0; i < followers.length; i++) {
+                followers[i] =
+                        executor.submit(
+                                () -> {
+                                    CompletableFuture<Void> leader =
+                                            coalescer.join("key", new CompletableFuture<>());
+                                    assertSame(flight, leader);
+                                    joined.countDown();
+                                    return coalescer.await("key", leader);
+                                });
+            }
+            assertTrue(joined.await(10, TimeUnit.SECONDS));
+            for (Future<Boolean> follower : followers) {
+                assertFalse(follower.isDone());
+            }
+
+            coalescer.done("key", flight);
+            for (Future<Boolean> follower : followers) {
+                assertTrue(follower.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(0, coalescer.getInFlight());
+        assertEquals(1, coalescer.getRenders());
+
+        // the next request leads a new render
+        assertNull(coalescer.join("key", new CompletableFuture<>()));
+        assertEquals(2, coalescer.getRenders());
+    }
+
+    @Test
+    public void testTimeout() throws Exception {
+        MetaTileCoalescer coalescer = new MetaTileCoalescer(10);
+        CompletableFuture<Void> flight = new CompletableFuture<>();
+        assertNull(coalescer.join("key", flight));
+        assertFalse(coalescer.await("key", coalescer.join("key", new CompletableFuture<>())));
+
+        // other meta tiles are not affected
+        assertNull(coalescer.join("other", new CompletableFuture<>()));
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(new MetaTileCoalescer(0).isEnabled());
+        assertFalse(new MetaTileCoalescer(-1).isEnabled());
+    }
+}
@@ -18,6 +18,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.net.URI;
@@ -26,6 +27,7 @@ import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -33,9 +35,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.measure.Unit;
@@ -198,6 +209,33 @@ public class ResourcePool {
     /** Default number of hard references */
     static int FEATURETYPE_CACHE_SIZE_DEFAULT = 100;
 
+    /**
+     * Max number of data stores kept open, unbounded by default.
+     *
+     * <p>Only the stores used by OWS requests are tracked, other users (e.g., asynchronous WPS
+     * processes, the importer, REST calls) are protected just by the {@link
+     * #EVICTION_GRACE_PERIOD}, and might see the store disposed while still using it.
+     */
+    public static final String MAX_OPEN_DATASTORES = "MAX_OPEN_DATASTORES";
+
+    /**
+     * Time after which an unused data store gets disposed, in seconds, disabled by default. Same
+     * as {@link #MAX_OPEN_DATASTORES}, only OWS requests are tracked as store users.
+     */
+    public static final String DATASTORE_IDLE_TIMEOUT = "DATASTORE_IDLE_TIMEOUT";
+
+    /** Data stores accessed more recently than this, in milliseconds, are never evicted */
+    static long EVICTION_GRACE_PERIOD = 10000;
+
+    /** The data stores used by the request being run in the current thread, if tracked */
+    static final ThreadLocal<List<DataStoreUsage>> TRACKED_USAGES = new ThreadLocal<>();
+
+    /** Runs the idle data store evictions, shut down when none is scheduled */
+    static ScheduledThreadPoolExecutor EVICTION_EXECUTOR;
+
+    /** Number of idle data store evictions scheduled */
+    static int EVICTION_TASKS;
+
     Catalog catalog;
     Map<String, CoordinateReferenceSystem> crsCache;
     DataStoreCache dataStoreCache;
@@ -291,6 +329,101 @@ public class ResourcePool {
     public Map<String, DataAccess> getDataStoreCache() {
         return dataStoreCache;
     }
+    /**
+     * Returns the activity statistics of the data store cache (open, evicted and re-opened stores,
+     * time taken to open them)
+     */
+    public DataStoreCacheStatistics getDataStoreCacheStatistics() {
+        return dataStoreCache.getStatistics();
+    }
+
+    /**
+     * Starts tracking the data stores used by the current thread, so that they won't be disposed
+     * until {@link #releaseDataStoreUsage()} is called, even if they get evicted from the cache
+     * meanwhile. Calls cannot be nested.
+     */
+    public static void trackDataStoreUsage() {
+        releaseDataStoreUsage();
+        TRACKED_USAGES.set(new ArrayList<>());
+    }
+
+    /**
+     * Releases the data stores used by the current thread since the last call to {@link
+     * #trackDataStoreUsage()}, disposing the ones evicted while in use
+     */
+    public static void releaseDataStoreUsage() {
+        List<DataStoreUsage> usages = TRACKED_USAGES.get();
+        if (usages != null) {
+            TRACKED_USAGES.remove();
+            for (DataStoreUsage usage : usages) {
+                usage.release();
+            }
+        }
+    }
+
+    static int getIntegerProperty(String name, int defaultValue) {
+        String value = GeoServerExtensions.getProperty(name);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + name + ": " + value);
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Periodically evicts the idle stores of the cache, without keeping it from being garbage
+     * collected
+     *
+     * @return the scheduled eviction, to be cancelled with {@link #cancelIdleEviction}
+     */
+    static synchronized ScheduledFuture<?> scheduleIdleEviction(
+            DataStoreCache cache, long idleTimeout) {
+        if (EVICTION_EXECUTOR == null) {
+            EVICTION_EXECUTOR =
+                    new ScheduledThreadPoolExecutor(
+                            1,
+                            r -> {
+                                Thread t = new Thread(r, "GeoServerDataStoreEviction");
+                                t.setDaemon(true);
+                                return t;
+                            });
+            EVICTION_EXECUTOR.setRemoveOnCancelPolicy(true);
+        }
+        WeakReference<DataStoreCache> reference = new WeakReference<>(cache);
+        long period = Math.max(1000, Math.min(idleTimeout / 2, 60000));
+        AtomicReference<ScheduledFuture<?>> future = new AtomicReference<>();
+        future.set(
+                EVICTION_EXECUTOR.scheduleWithFixedDelay(
+                        () -> {
+                            DataStoreCache c = reference.get();
+                            if (c == null) {
+                                cancelIdleEviction(future.get());
+                            } else {
+                                try {
+                                    c.evict();
+                                } catch (Exception e) {
+                                    LOGGER.log(Level.WARNING, "Failed to evict idle stores", e);
+                                }
+                            }
+                        },
+                        period,
+                        period,
+                        TimeUnit.MILLISECONDS));
+        EVICTION_TASKS++;
+        return future.get();
+    }
+
+    /** Cancels an idle eviction, and shuts down the executor once none is left */
+    static synchronized void cancelIdleEviction(ScheduledFuture<?> eviction) {
+        if (eviction.cancel(false) && --EVICTION_TASKS == 0) {
+            EVICTION_EXECUTOR.shutdown();
+            EVICTION_EXECUTOR = null;
+        }
+    }
+
     /**
      * DataStoreCache implementation responsible for freeing DataAccess resources when they are no
      * longer in use.
@@ -545,10 +678,15 @@ public class ResourcePool {
         try {
             String id = info.getId();
             dataStore = dataStoreCache.get(id);
-            if (dataStore == null) {
+            if (dataStore != null) {
+                dataStoreCache.accessed(id, dataStore);
+            } else {
                 synchronized (dataStoreCache) {
                     dataStore = dataStoreCache.get(id);
-                    if (dataStore == null) {
+                    if (dataStore != null) {
+                        dataStoreCache.accessed(id, dataStore);
+                    } else {
+                        long start = System.nanoTime();
                         // create data store
                         Map<String, Serializable> connectionParameters =
                                 expandedStore.getConnectionParameters();
@@ -652,9 +790,14 @@ public class ResourcePool {
                         // harmful, NPE when trying to dispose of them)
                         if (id != null) {
                             dataStoreCache.put(id, dataStore);
+                            dataStoreCache.opened(id, dataStore, System.nanoTime() - start);
                         }
                     }
                 }
+                // dispose the stores past the limit out of the lock, closing might be slow
+                if (dataStoreCache.isOverLimit()) {
+                    dataStoreCache.evict();
+                }
             }
 
             return dataStore;
@@ -2250,6 +2393,7 @@ public class ResourcePool {
     public void dispose() {
         crsCache.clear();
         dataStoreCache.clear();
+        dataStoreCache.cancelIdleEviction();
         featureTypeCache.clear();
         featureTypeAttributeCache.clear();
         hintCoverageReaderCache.clear();
@@ -2294,6 +2438,11 @@ public class ResourcePool {
             return object;
         }
 
+        /** Removes the entry without disposing its value, the caller takes care of that */
+        protected V detach(Object key) {
+            return super.remove(key);
+        }
+
         @Override
         public void clear() {
             for (Entry entry : entrySet()) {
@@ -2336,22 +2485,182 @@ public class ResourcePool {
      * Custom CatalogResourceCache responsible for disposing of DataAccess instances (allowing the
      * recovery of operating system resources).
      *
+     * <p>The cache can be bounded with the {@link #MAX_OPEN_DATASTORES} and {@link
+     * #DATASTORE_IDLE_TIMEOUT} variables, in which case the least recently used, or idle, stores
+     * get disposed and will be re-opened on the next access. Stores used by a request tracked via
+     * {@link ResourcePool#trackDataStoreUsage()} are disposed only once the request releases them.
+     *
      * @see ResourcePool#dataStoreCache
      */
     @SuppressWarnings("rawtypes")
     class DataStoreCache extends CatalogResourceCache<String, DataAccess> {
+
+        /** Max number of open stores, 0 or negative means unbounded */
+        final int maxOpen;
+
+        /** Time after which unused stores get disposed, in milliseconds, 0 or negative disables */
+        final long idleTimeout;
+
+        /** Usage of the open stores, by store id */
+        final Map<String, DataStoreUsage> usages = new ConcurrentHashMap<>();
+
+        /** Ids of the stores evicted, to track the re-opened ones */
+        final Set<String> evictedIds = ConcurrentHashMap.newKeySet();
+
+        /** Orders the store accesses, for the least recently used eviction */
+        final AtomicLong accessSequence = new AtomicLong();
+
+        final AtomicLong opened = new AtomicLong();
+        final AtomicLong evicted = new AtomicLong();
+        final AtomicLong reopened = new AtomicLong();
+        final AtomicLong openTime = new AtomicLong();
+        final AtomicLong maxOpenTime = new AtomicLong();
+
+        /** The idle eviction, scheduled on the first store opening */
+        ScheduledFuture<?> eviction;
+
+        DataStoreCache() {
+            this(
+                    getIntegerProperty(MAX_OPEN_DATASTORES, 0),
+                    getIntegerProperty(DATASTORE_IDLE_TIMEOUT, 0) * 1000L);
+        }
+
+        DataStoreCache(int maxOpen, long idleTimeout) {
+            this.maxOpen = maxOpen;
+            this.idleTimeout = idleTimeout;
+        }
+
+        /** Records the opening of a new store */
+        void opened(String id, DataAccess dataAccess, long nanos) {
+            opened.incrementAndGet();
+            openTime.addAndGet(nanos);
+            maxOpenTime.accumulateAndGet(nanos, Math::max);
+            if (evictedIds.remove(id)) {
+                reopened.incrementAndGet();
+            }
+            if (idleTimeout > 0) {
+                scheduleIdleEviction();
+            }
+            accessed(id, dataAccess);
+        }
+
+        synchronized void scheduleIdleEviction() {
+            if (eviction == null) {
+                eviction = ResourcePool.scheduleIdleEviction(this, idleTimeout);
+            }
+        }
+
+        /** Stops the idle eviction, until the next store opening */
+        synchronized void cancelIdleEviction() {
+            if (eviction != null) {
+                ResourcePool.cancelIdleEviction(eviction);
+                eviction = null;
+            }
+        }
+
+        /** Returns true if more stores than {@link #maxOpen} are open */
+        boolean isOverLimit() {
+            return maxOpen > 0 && usages.size() > maxOpen;
+        }
+
+        /** Records an access to a cached store, ignored if the store is no longer cached */
+        void accessed(String id, DataAccess dataAccess) {
+            DataStoreUsage usage = usages.get(id);
+            if (usage == null || usage.dataAccess != dataAccess) {
+                if (get(id) != dataAccess) {
+                    // disposed meanwhile, do not resurrect its usage
+                    return;
+                }
+                usage = new DataStoreUsage(this, id, dataAccess);
+                usages.put(id, usage);
+            }
+            usage.lastAccess = System.currentTimeMillis();
+            usage.accessOrder = accessSequence.incrementAndGet();
+            List<DataStoreUsage> tracked = TRACKED_USAGES.get();
+            if (tracked != null && !tracked.contains(usage)) {
+                usage.users.incrementAndGet();
+                tracked.add(usage);
+            }
+        }
+
+        /**
+         * Disposes the least recently used stores beyond the max open limit, and the ones idle
+         * for longer than the idle timeout. Stores in use, or accessed within the last {@link
+         * #EVICTION_GRACE_PERIOD} milliseconds, are left alone.
+         *
+         * <p>The stores are removed from the cache while holding its lock, but disposed after
+         * releasing it, so that slow closes do not hold up the lookups of the other stores.
+         */
+        void evict() {
+            List<DataStoreUsage> removed = new ArrayList<>();
+            synchronized (this) {
+                selectEvicted(removed);
+            }
+            for (DataStoreUsage usage : removed) {
+                dispose(usage.id, usage.dataAccess);
+            }
+        }
+
+        /** Removes the stores to be evicted from the cache, without disposing them */
+        private void selectEvicted(List<DataStoreUsage> removed) {
+            long now = System.currentTimeMillis();
+            List<DataStoreUsage> candidates = new ArrayList<>(usages.values());
+            candidates.sort(Comparator.comparingLong(u -> u.accessOrder));
+            int open = candidates.size();
+            for (DataStoreUsage usage : candidates) {
+                long unused = now - usage.lastAccess;
+                boolean idle = idleTimeout > 0 && unused > idleTimeout;
+                boolean excess = maxOpen > 0 && open > maxOpen;
+                if (!idle && !excess) {
+                    // sorted by access order, the following ones are all more recent
+                    break;
+                }
+                if (usage.users.get() > 0 || unused < EVICTION_GRACE_PERIOD) {
+                    continue;
+                }
+                if (get(usage.id) == usage.dataAccess) {
+                    LOGGER.fine(
+                            "Evicting "
+                                    + (idle ? "idle" : "least recently used")
+                                    + " data store "
+                                    + usage.id);
+                    evictedIds.add(usage.id);
+                    evicted.incrementAndGet();
+                    detach(usage.id);
+                    removed.add(usage);
+                }
+                open--;
+            }
+        }
+
         /**
          * Ensure data access entry is removed from catalog, and ensure DataAccess dispose is called
          * to return system resources.
          *
-         * <p>This method is used when cleaning up a weak reference and will immediately dispose of
-         * the indicated dataAccess.
+         * <p>This method is used when cleaning up a weak reference and will dispose of the
+         * indicated dataAccess, as soon as it's no longer used by tracked requests.
          *
          * @param id DataStore id, or null if not known
          * @param dataAccess DataAccess to dispose
          */
         protected void dispose(String id, final DataAccess dataAccess) {
-            DataStoreInfo info = catalog.getDataStore(id);
+            DataStoreUsage usage = id != null ? usages.get(id) : null;
+            if (usage != null && usage.dataAccess == dataAccess) {
+                usages.remove(id, usage);
+                usage.removed = true;
+                if (usage.users.get() > 0) {
+                    LOGGER.fine("Data store " + id + " in use, deferring its disposal");
+                    return;
+                }
+                if (!usage.disposed.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+            disposeDataAccess(id, dataAccess);
+        }
+
+        void disposeDataAccess(String id, final DataAccess dataAccess) {
+            DataStoreInfo info = id != null ? catalog.getDataStore(id) : null;
             final String name;
             if (info != null) {
                 name = info.getName();
@@ -2370,6 +2679,127 @@ public class ResourcePool {
                 LOGGER.log(Level.FINE, "", e);
             }
         }
+
+        DataStoreCacheStatistics getStatistics() {
+            return new DataStoreCacheStatistics(
+                    usages.size(),
+                    opened.get(),
+                    evicted.get(),
+                    reopened.get(),
+                    openTime.get(),
+                    maxOpenTime.get());
+        }
+    }
+
+    /** Tracks the usage of an open data store */
+    @SuppressWarnings("rawtypes")
+    static class DataStoreUsage {
+        final DataStoreCache cache;
+
+        final String id;
+
+        final DataAccess dataAccess;
+
+        /** Number of tracked requests using the store */
+        final AtomicInteger users = new AtomicInteger();
+
+        final AtomicBoolean disposed = new AtomicBoolean();
+
+        volatile long lastAccess;
+
+        volatile long accessOrder;
+
+        /** True if the store has been removed from the cache, and awaits disposal */
+        volatile boolean removed;
+
+        DataStoreUsage(DataStoreCache cache, String id, DataAccess dataAccess) {
+            this.cache = cache;
+            this.id = id;
+            this.dataAccess = dataAccess;
+        }
+
+        void release() {
+            if (users.decrementAndGet() <= 0 && removed && disposed.compareAndSet(false, true)) {
+                cache.disposeDataAccess(id, dataAccess);
+            }
+        }
+    }
+
+    /** Snapshot of the data store cache activity */
+    public static class DataStoreCacheStatistics {
+        final int open;
+
+        final long opened;
+
+        final long evicted;
+
+        final long reopened;
+
+        final long openTime;
+
+        final long maxOpenTime;
+
+        DataStoreCacheStatistics(
+                int open,
+                long opened,
+                long evicted,
+                long reopened,
+                long openTime,
+                long maxOpenTime) {
+            this.open = open;
+            this.opened = opened;
+            this.evicted = evicted;
+            this.reopened = reopened;
+            this.openTime = openTime;
+            this.maxOpenTime = maxOpenTime;
+        }
+
+        /** Number of stores currently open */
+        public int getOpen() {
+            return open;
+        }
+
+        /** Number of stores opened since startup */
+        public long getOpened() {
+            return opened;
+        }
+
+        /** Number of stores evicted because idle, or beyond the max open limit */
+        public long getEvicted() {
+            return evicted;
+        }
+
+        /** Number of stores opened again after having been evicted */
+        public long getReopened() {
+            return reopened;
+        }
+
+        /** Average time taken to open a store, in milliseconds */
+        public double getAverageOpenTime() {
+            return opened == 0 ? 0 : openTime / (opened * 1e6);
+        }
+
+        /** Max time taken to open a store, in milliseconds */
+        public double getMaxOpenTime() {
+            return maxOpenTime / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return "DataStoreCacheStatistics[open="
+                    + open
+                    + ", opened="
+                    + opened
+                    + ", evicted="
+                    + evicted
+                    + ", reopened="
+                    + reopened
+                    + ", averageOpenTime="
+                    + getAverageOpenTime()
+                    + "ms, maxOpenTime="
+                    + getMaxOpenTime()
+                    + "ms]";
+        }
     }
 
     class CoverageReaderCache extends CatalogResourceCache<String, GridCoverageReader> {
@@ -0,0 +1,326 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerReinitializer;
+import org.geoserver.ows.AbstractDispatcherCallback;
+import org.geoserver.ows.Request;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Optionally warms up the {@link ResourcePool} in the background at startup, opening the stores and
+ * caching the feature types, coordinate reference systems and styles of all enabled layers, so that
+ * the first requests do not have to pay the initialization costs. Requests are served normally
+ * while the warm-up is running.
+ *
+ * <p>The layers are initialized in order of usage, as reported by the {@link
+ * WarmUpPriorityProvider} extensions (e.g., the monitoring history), and the layers requested by
+ * OWS calls that are not warm yet get moved to the front of the queue.
+ *
+ * <p>The warm-up is enabled by setting the {@link #WARMUP_THREADS_KEY} variable to the number of
+ * threads to be used.
+ */
+public class ResourcePoolWarmer extends AbstractDispatcherCallback
+        implements GeoServerReinitializer, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(ResourcePoolWarmer.class);
+
+    /** Number of threads used to warm up the resource pool, 0 (the default) disables it */
+    public static final String WARMUP_THREADS_KEY = "RESOURCE_POOL_WARMUP_THREADS";
+
+    /** The request parameters containing layer names */
+    static final String[] LAYER_PARAMETERS = {
+        "LAYERS", "QUERY_LAYERS", "LAYER", "TYPENAME", "TYPENAMES", "COVERAGEID", "COVERAGE"
+    };
+
+    /** Priority of the tasks boosted by a request */
+    static final long BOOSTED = Long.MAX_VALUE - 1;
+
+    final Catalog catalog;
+
+    final AtomicLong sequence = new AtomicLong();
+
+    final AtomicInteger completed = new AtomicInteger();
+
+    final AtomicInteger failed = new AtomicInteger();
+
+    volatile Map<String, WarmUpTask> tasks = new ConcurrentHashMap<>();
+
+    volatile int total;
+
+    volatile ThreadPoolExecutor executor;
+
+    long startTime;
+
+    public ResourcePoolWarmer(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    @Override
+    public void initialize(GeoServer geoServer) throws Exception {
+        int threads = ResourcePool.getIntegerProperty(WARMUP_THREADS_KEY, 0);
+        if (threads > 0) {
+            start(threads);
+        }
+    }
+
+    /** Starts the warm-up, cancelling the one in progress, if any */
+    synchronized void start(int threads) {
+        cancel();
+        tasks = new ConcurrentHashMap<>();
+        completed.set(0);
+        failed.set(0);
+        total = 0;
+        startTime = System.currentTimeMillis();
+        executor =
+                new ThreadPoolExecutor(
+                        threads,
+                        threads,
+                        0,
+                        TimeUnit.MILLISECONDS,
+                        new PriorityBlockingQueue<>(),
+                        new WarmUpThreadFactory());
+        // collecting the layers and their priorities can take a while too, do it in background
+        executor.execute(new WarmUpTask(null, Long.MAX_VALUE, this::plan));
+    }
+
+    /** Queues the warm-up of all the enabled layers, by decreasing priority */
+    void plan() {
+        Map<String, Long> priorities = new HashMap<>();
+        for (WarmUpPriorityProvider provider :
+                GeoServerExtensions.extensions(WarmUpPriorityProvider.class)) {
+            try {
+                provider.getLayerPriorities().forEach((k, v) -> priorities.merge(k, v, Long::sum));
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Failed to compute the layers warm-up priorities", e);
+            }
+        }
+
+        List<WarmUpTask> queued = new ArrayList<>();
+        for (LayerInfo layer : catalog.getLayers()) {
+            if (layer.getResource() == null || !layer.enabled()) {
+                continue;
+            }
+            String name = layer.prefixedName();
+            long priority = priorities.getOrDefault(name, 0L);
+            WarmUpTask task = new WarmUpTask(name, priority, () -> warm(layer));
+            tasks.put(name, task);
+            queued.add(task);
+        }
+        total = queued.size();
+        LOGGER.info("Warming up the resource pool, " + total + " layers to be initialized");
+        ThreadPoolExecutor executor = this.executor;
+        if (total == 0) {
+            executor.shutdown();
+        }
+        for (WarmUpTask task : queued) {
+            executor.execute(task);
+        }
+    }
+
+    /** Initializes the resources needed to serve the given layer */
+    void warm(LayerInfo layer) {
+        ResourcePool pool = catalog.getResourcePool();
+        ResourceInfo resource = layer.getResource();
+        try {
+            if (resource.getSRS() != null) {
+                pool.getCRS(resource.getSRS());
+            }
+            if (resource instanceof FeatureTypeInfo) {
+                pool.getFeatureType((FeatureTypeInfo) resource);
+            } else if (resource instanceof CoverageInfo) {
+                pool.getGridCoverageReader((CoverageInfo) resource, null);
+            }
+            if (layer.getDefaultStyle() != null) {
+                pool.getStyle(layer.getDefaultStyle());
+            }
+            for (StyleInfo style : layer.getStyles()) {
+                pool.getStyle(style);
+            }
+        } catch (IOException | RuntimeException e) {
+            failed.incrementAndGet();
+            LOGGER.log(Level.FINE, "Failed to warm up layer " + layer.prefixedName(), e);
+        }
+    }
+
+    /** Records the completion of a layer warm-up, logging the progress */
+    void completed(ThreadPoolExecutor owner) {
+        if (owner != executor) {
+            // a task of a cancelled warm-up
+            return;
+        }
+        int done = completed.incrementAndGet();
+        int total = this.total;
+        if (done == total) {
+            LOGGER.info(
+                    "Resource pool warm-up completed in "
+                            + (System.currentTimeMillis() - startTime)
+                            + "ms, "
+                            + failed.get()
+                            + " layers failed to initialize");
+            owner.shutdown();
+        } else if (total >= 10 && done % (total / 10) == 0) {
+            LOGGER.info("Resource pool warm-up, initialized " + done + " of " + total + " layers");
+        }
+    }
+
+    /**
+     * Moves the warm-up of the given layer, or layer group, to the front of the queue, if not
+     * started yet
+     */
+    void boost(String name) {
+        ThreadPoolExecutor executor = this.executor;
+        if (executor == null) {
+            return;
+        }
+        WarmUpTask task = tasks.get(name);
+        if (task == null) {
+            LayerInfo layer = catalog.getLayerByName(name);
+            if (layer != null) {
+                task = tasks.get(layer.prefixedName());
+            } else {
+                LayerGroupInfo group = catalog.getLayerGroupByName(name);
+                if (group != null) {
+                    for (LayerInfo l : group.layers()) {
+                        boost(l.prefixedName());
+                    }
+                }
+            }
+        }
+        if (task != null && !task.started.get()) {
+            BlockingQueue<Runnable> queue = executor.getQueue();
+            // the priority cannot be changed while in the queue
+            if (queue.remove(task)) {
+                task.priority = BOOSTED;
+                queue.add(task);
+            }
+        }
+    }
+
+    @Override
+    public Request init(Request request) {
+        if (!isRunning() || request.getRawKvp() == null) {
+            return request;
+        }
+        Map<String, Object> kvp = request.getRawKvp();
+        for (String parameter : LAYER_PARAMETERS) {
+            Object value = kvp.get(parameter);
+            if (value instanceof String) {
+                for (String name : ((String) value).split(",")) {
+                    if (!name.trim().isEmpty()) {
+                        boost(name.trim());
+                    }
+                }
+            }
+        }
+        return request;
+    }
+
+    /** Returns true if the warm-up is in progress */
+    public boolean isRunning() {
+        ThreadPoolExecutor executor = this.executor;
+        return executor != null && !executor.isShutdown();
+    }
+
+    /** Number of layers to be warmed up, or 0 if not known yet */
+    public int getTotal() {
+        return total;
+    }
+
+    /** Number of layers warmed up so far */
+    public int getCompleted() {
+        return completed.get();
+    }
+
+    /** Cancels the warm-up in progress, if any */
+    synchronized void cancel() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        cancel();
+    }
+
+    /**
+     * A unit of warm-up work, ordered by decreasing priority and then by submission order. Runs
+     * at most once, even if queued again after a boost.
+     */
+    class WarmUpTask implements Runnable, Comparable<WarmUpTask> {
+
+        final String name;
+
+        final long order = sequence.getAndIncrement();
+
+        final Runnable action;
+
+        final AtomicBoolean started = new AtomicBoolean();
+
+        /** The executor of the warm-up the task is part of */
+        final ThreadPoolExecutor owner = executor;
+
+        volatile long priority;
+
+        WarmUpTask(String name, long priority, Runnable action) {
+            this.name = name;
+            this.priority = priority;
+            this.action = action;
+        }
+
+        @Override
+        public void run() {
+            if (!started.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                action.run();
+            } finally {
+                if (name != null) {
+                    completed(owner);
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(WarmUpTask other) {
+            int c = Long.compare(other.priority, priority);
+            return c != 0 ? c : Long.compare(order, other.order);
+        }
+    }
+
+    static class WarmUpThreadFactory implements ThreadFactory {
+
+        final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "GeoServerWarmUp-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
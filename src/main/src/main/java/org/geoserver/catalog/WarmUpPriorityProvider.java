@@ -0,0 +1,20 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import java.util.Map;
+
+/**
+ * Extension point providing the order in which {@link ResourcePoolWarmer} initializes the layers
+ * at startup, usually based on how often they have been requested recently.
+ */
+public interface WarmUpPriorityProvider {
+
+    /**
+     * Returns a usage score for the layers, keyed by prefixed name. Layers with higher scores are
+     * initialized first, the ones missing from the map are initialized last.
+     */
+    Map<String, Long> getLayerPriorities();
+}
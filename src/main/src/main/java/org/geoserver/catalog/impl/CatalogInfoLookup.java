@@ -8,8 +8,12 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
@@ -29,6 +33,11 @@ import org.opengis.feature.type.Name;
  * <p>The lookups by predicate have been tested and optimized for performance, in particular the
  * current for loops turned out to be significantly faster than building and returning streams
  *
+ * <p>Secondary indexes can be registered with {@link #addIndex(String, Function)}, mapping the
+ * identifiers of related objects (e.g., the workspace of a store) to the objects referring to
+ * them. The indexes are named after the property they index (e.g., "workspace.id") and are kept
+ * in sync on add, remove and update.
+ *
  * @param <T>
  */
 class CatalogInfoLookup<T extends CatalogInfo> {
@@ -39,11 +48,124 @@ class CatalogInfoLookup<T extends CatalogInfo> {
     Function<T, Name> nameMapper;
     static final Predicate TRUE = x -> true;
 
+    /** The functions extracting the keys of each secondary index */
+    Map<String, Function<T, Collection<String>>> indexMappers = new ConcurrentHashMap<>();
+
+    /** The secondary indexes, index name -> key -> object id -> object */
+    ConcurrentHashMap<String, ConcurrentHashMap<String, Map<String, T>>> indexes =
+            new ConcurrentHashMap<>();
+
     public CatalogInfoLookup(Function<T, Name> nameMapper) {
         super();
         this.nameMapper = nameMapper;
     }
 
+    /**
+     * Registers a secondary index. Should be called before any object is added to the lookup.
+     *
+     * @param property the indexed property, used as the index name (e.g., "workspace.id")
+     * @param keysMapper extracts the keys (usually, the ids of the referenced objects) from the
+     *     values
+     */
+    protected void addIndex(String property, Function<T, Collection<String>> keysMapper) {
+        indexMappers.put(property, keysMapper);
+        ConcurrentHashMap<String, Map<String, T>> index = new ConcurrentHashMap<>();
+        for (T value : values()) {
+            addToIndex(index, keysMapper.apply(value), value);
+        }
+        indexes.put(property, index);
+    }
+
+    /**
+     * Builds an index keys mapper extracting the id of a single referenced object
+     *
+     * @param referenceMapper returns the referenced object, can return null
+     */
+    static <T> Function<T, Collection<String>> referenceId(
+            Function<T, ? extends CatalogInfo> referenceMapper) {
+        return v -> {
+            CatalogInfo reference = referenceMapper.apply(v);
+            if (reference == null || reference.getId() == null) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(reference.getId());
+        };
+    }
+
+    /**
+     * Rebuilds the secondary indexes from scratch, to be used after the objects in the lookup have
+     * been modified in place (e.g., when resolving references after a catalog load)
+     */
+    public void reindex() {
+        for (Map.Entry<String, Function<T, Collection<String>>> entry : indexMappers.entrySet()) {
+            ConcurrentHashMap<String, Map<String, T>> index = new ConcurrentHashMap<>();
+            for (T value : values()) {
+                addToIndex(index, entry.getValue().apply(value), value);
+            }
+            indexes.put(entry.getKey(), index);
+        }
+    }
+
+    /** Returns true if a secondary index for the specified property is available */
+    public boolean hasIndex(String property) {
+        return indexes.containsKey(property);
+    }
+
+    private void addToIndex(
+            ConcurrentHashMap<String, Map<String, T>> index, Collection<String> keys, T value) {
+        for (String key : keys) {
+            index.computeIfAbsent(key, k -> new ConcurrentHashMap<>()).put(value.getId(), value);
+        }
+    }
+
+    private void removeFromIndex(
+            ConcurrentHashMap<String, Map<String, T>> index, Collection<String> keys, T value) {
+        for (String key : keys) {
+            index.computeIfPresent(
+                    key,
+                    (k, values) -> {
+                        values.remove(value.getId());
+                        return values.isEmpty() ? null : values;
+                    });
+        }
+    }
+
+    private void addToIndexes(T value) {
+        for (Map.Entry<String, Function<T, Collection<String>>> entry : indexMappers.entrySet()) {
+            addToIndex(indexes.get(entry.getKey()), entry.getValue().apply(value), value);
+        }
+    }
+
+    private void removeFromIndexes(T value) {
+        for (Map.Entry<String, Function<T, Collection<String>>> entry : indexMappers.entrySet()) {
+            removeFromIndex(indexes.get(entry.getKey()), entry.getValue().apply(value), value);
+        }
+    }
+
+    /**
+     * Returns the objects whose indexed property matches the specified key, in no particular
+     * order, or null if there is no index for the property. The result is a superset of the
+     * matches for multi-valued properties, the actual property value should be checked afterwards.
+     *
+     * @param property the indexed property
+     * @param key the key (e.g., the id of the referenced object), null keys (e.g., the id of an
+     *     object not added to the catalog yet) match nothing
+     */
+    public Collection<T> findByIndex(String property, String key) {
+        ConcurrentHashMap<String, Map<String, T>> index = indexes.get(property);
+        if (index == null) {
+            return null;
+        }
+        if (key == null) {
+            return Collections.emptyList();
+        }
+        Map<String, T> values = index.get(key);
+        if (values == null) {
+            return Collections.emptyList();
+        }
+        return new ArrayList<>(values.values());
+    }
+
     <K> Map<K, T> getMapForValue(ConcurrentHashMap<Class<T>, Map<K, T>> maps, T value) {
         Class<T> vc;
         if (Proxy.isProxyClass(value.getClass())) {
@@ -74,7 +196,12 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Name name = nameMapper.apply(value);
         nameMap.put(name, value);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.put(value.getId(), value);
+        T previous = idMap.put(value.getId(), value);
+        if (previous != null) {
+            removeFromIndexes(previous);
+        }
+        addToIndexes(value);
+        return previous;
     }
 
     public Collection<T> values() {
@@ -91,7 +218,9 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         Map<Name, T> nameMap = getMapForValue(nameMultiMap, value);
         nameMap.remove(name);
         Map<String, T> idMap = getMapForValue(idMultiMap, value);
-        return idMap.remove(value.getId());
+        T removed = idMap.remove(value.getId());
+        removeFromIndexes(removed != null ? removed : value);
+        return removed;
     }
 
     /** Updates the value in the name map. The new value must be a ModificationProxy */
@@ -106,11 +235,25 @@ class CatalogInfoLookup<T extends CatalogInfo> {
             nameMap.remove(oldName);
             nameMap.put(newName, actualValue);
         }
+
+        // the actual value has not been modified yet, the proxy returns the new values
+        for (Map.Entry<String, Function<T, Collection<String>>> entry : indexMappers.entrySet()) {
+            Collection<String> oldKeys = entry.getValue().apply(actualValue);
+            Collection<String> newKeys = entry.getValue().apply(proxiedValue);
+            if (!oldKeys.equals(newKeys)) {
+                ConcurrentHashMap<String, Map<String, T>> index = indexes.get(entry.getKey());
+                removeFromIndex(index, oldKeys, actualValue);
+                addToIndex(index, newKeys, actualValue);
+            }
+        }
     }
 
     public void clear() {
         idMultiMap.clear();
         nameMultiMap.clear();
+        for (ConcurrentHashMap<String, Map<String, T>> index : indexes.values()) {
+            index.clear();
+        }
     }
 
     /**
@@ -144,6 +287,40 @@ class CatalogInfoLookup<T extends CatalogInfo> {
         return result;
     }
 
+    /**
+     * Filters a list of candidates, usually obtained from the secondary indexes, by class and
+     * predicate. Candidates no longer in the lookup are skipped. The result is sorted by name, to
+     * provide a predictable order.
+     *
+     * @param clazz
+     * @param candidates
+     * @param predicate
+     */
+    <U extends CatalogInfo> List<U> list(
+            Class<U> clazz, Collection<? extends CatalogInfo> candidates, Predicate<U> predicate) {
+        List<U> result = new ArrayList<>();
+        Set<String> ids = new HashSet<>();
+        for (CatalogInfo candidate : candidates) {
+            if (clazz.isInstance(candidate)
+                    && ids.add(candidate.getId())
+                    && findById(candidate.getId(), clazz) == candidate) {
+                final U u = (U) candidate;
+                if (predicate == TRUE || predicate.test(u)) {
+                    result.add(u);
+                }
+            }
+        }
+        if (result.size() > 1) {
+            Comparator<U> byName =
+                    (u1, u2) ->
+                            ((Comparable) nameMapper.apply((T) u1))
+                                    .compareTo(nameMapper.apply((T) u2));
+            Collections.sort(result, byName);
+        }
+
+        return result;
+    }
+
     /**
      * Looks up a CatalogInfo by class and identifier
      *
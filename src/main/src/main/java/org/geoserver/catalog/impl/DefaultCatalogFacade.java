@@ -11,11 +11,14 @@ import java.lang.reflect.Method;
 import java.lang.reflect.Proxy;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Function;
@@ -35,12 +38,19 @@ import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.StoreInfo;
 import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.impl.CatalogPostModifyEventImpl;
 import org.geoserver.catalog.util.CloseableIterator;
 import org.geoserver.catalog.util.CloseableIteratorAdapter;
 import org.geoserver.ows.util.OwsUtils;
 import org.geotools.feature.NameImpl;
 import org.opengis.feature.type.Name;
+import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Literal;
+import org.opengis.filter.expression.PropertyName;
 import org.opengis.filter.sort.SortBy;
 import org.opengis.filter.sort.SortOrder;
 
@@ -91,10 +101,46 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
                             s.getWorkspace() != null ? s.getWorkspace().getId() : null,
                             s.getName());
 
+    /** Stores lookup, indexed by workspace */
+    static final class StoreInfoLookup extends CatalogInfoLookup<StoreInfo> {
+
+        public StoreInfoLookup() {
+            super(STORE_NAME_MAPPER);
+            addIndex("workspace.id", referenceId(StoreInfo::getWorkspace));
+        }
+    }
+
+    /** Resources lookup, indexed by store and namespace */
+    static final class ResourceInfoLookup extends CatalogInfoLookup<ResourceInfo> {
+
+        public ResourceInfoLookup() {
+            super(RESOURCE_NAME_MAPPER);
+            addIndex("store.id", referenceId(ResourceInfo::getStore));
+            addIndex("namespace.id", referenceId(ResourceInfo::getNamespace));
+        }
+    }
+
     static final class LayerInfoLookup extends CatalogInfoLookup<LayerInfo> {
 
         public LayerInfoLookup() {
             super(LAYER_NAME_MAPPER);
+            addIndex("resource.id", referenceId(LayerInfo::getResource));
+            addIndex("defaultStyle.id", referenceId(LayerInfo::getDefaultStyle));
+            addIndex(
+                    "styles.id",
+                    l -> {
+                        Set<StyleInfo> styles = l.getStyles();
+                        if (styles == null || styles.isEmpty()) {
+                            return Collections.emptyList();
+                        }
+                        Set<String> ids = new HashSet<>();
+                        for (StyleInfo style : styles) {
+                            if (style != null && style.getId() != null) {
+                                ids.add(style.getId());
+                            }
+                        }
+                        return ids;
+                    });
         }
 
         public void update(ResourceInfo proxiedValue) {
@@ -121,15 +167,14 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     /** Contains the stores keyed by implementation class */
-    protected CatalogInfoLookup<StoreInfo> stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+    protected CatalogInfoLookup<StoreInfo> stores = new StoreInfoLookup();
 
     /** The default store keyed by workspace id */
     protected Map<String, DataStoreInfo> defaultStores =
             new ConcurrentHashMap<String, DataStoreInfo>();
 
     /** resources */
-    protected CatalogInfoLookup<ResourceInfo> resources =
-            new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+    protected CatalogInfoLookup<ResourceInfo> resources = new ResourceInfoLookup();
 
     /** The default namespace */
     protected volatile NamespaceInfo defaultNamespace;
@@ -237,7 +282,11 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ws = workspace;
         }
 
-        List<T> matches = stores.list(clazz, s -> ws.equals(s.getWorkspace()));
+        List<T> matches =
+                stores.list(
+                        clazz,
+                        stores.findByIndex("workspace.id", ws.getId()),
+                        s -> ws.equals(s.getWorkspace()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -349,7 +398,11 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
             ns = namespace;
         }
 
-        List<T> matches = resources.list(clazz, r -> ns.equals(r.getNamespace()));
+        List<T> matches =
+                resources.list(
+                        clazz,
+                        resources.findByIndex("namespace.id", ns.getId()),
+                        r -> ns.equals(r.getNamespace()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -384,7 +437,11 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public <T extends ResourceInfo> List<T> getResourcesByStore(StoreInfo store, Class<T> clazz) {
-        List<T> matches = resources.list(clazz, r -> store.equals(r.getStore()));
+        List<T> matches =
+                resources.list(
+                        clazz,
+                        resources.findByIndex("store.id", store.getId()),
+                        r -> store.equals(r.getStore()));
         return ModificationProxy.createList(matches, clazz);
     }
 
@@ -452,9 +509,13 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
     }
 
     public List<LayerInfo> getLayers(StyleInfo style) {
+        List<LayerInfo> candidates = new ArrayList<>();
+        candidates.addAll(layers.findByIndex("defaultStyle.id", style.getId()));
+        candidates.addAll(layers.findByIndex("styles.id", style.getId()));
         List<LayerInfo> matches =
                 layers.list(
                         LayerInfo.class,
+                        candidates,
                         li -> style.equals(li.getDefaultStyle()) || li.getStyles().contains(style));
         return ModificationProxy.createList(matches, LayerInfo.class);
     }
@@ -872,6 +933,67 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return ModificationProxy.createList(matches, StyleInfo.class);
     }
 
+    /**
+     * Updates a catalog object in place, with the state of a detached copy of it, e.g. one read
+     * back from the data directory, without notifying the catalog listeners. Meant to apply the
+     * changes another GeoServer sharing the same configuration has persisted already.
+     *
+     * <p>Unlike a removal followed by an addition, the object can be looked up all along, under
+     * its new name as soon as it's renamed. All the properties are taken from the copy, the ones
+     * it has null are cleared, only collections and maps are kept when missing from it.
+     *
+     * <p>This is part of the public contract of this facade, for the clustering modules keeping
+     * several catalogs in sync, not a {@link CatalogFacade} method. The changes are neither
+     * validated nor persisted.
+     *
+     * @param info the object to update
+     * @param changed the detached copy, with the new state
+     * @return the post modify event describing the changes, for the caller to notify
+     */
+    public <T extends CatalogInfo> CatalogPostModifyEvent update(
+            T info, T changed, Class<T> clazz) {
+        resolve(changed);
+        T proxy = ModificationProxy.create(unwrap(info), clazz);
+        OwsUtils.copy(changed, proxy, clazz, true);
+
+        ModificationProxy h = (ModificationProxy) Proxy.getInvocationHandler(proxy);
+        CatalogPostModifyEventImpl event = new CatalogPostModifyEventImpl();
+        event.setPropertyNames(h.getPropertyNames());
+        event.setOldValues(h.getOldValues());
+        event.setNewValues(h.getNewValues());
+
+        if (proxy instanceof StoreInfo) {
+            stores.update((StoreInfo) proxy);
+        } else if (proxy instanceof ResourceInfo) {
+            resources.update((ResourceInfo) proxy);
+            layers.update((ResourceInfo) proxy);
+        } else if (proxy instanceof LayerInfo) {
+            layers.update((LayerInfo) proxy);
+        } else if (proxy instanceof LayerGroupInfo) {
+            layerGroups.update((LayerGroupInfo) proxy);
+        } else if (proxy instanceof StyleInfo) {
+            styles.update((StyleInfo) proxy);
+        } else {
+            throw new IllegalArgumentException("Unsupported catalog object " + info);
+        }
+        event.setSource(commitProxy(proxy));
+        return event;
+    }
+
+    private void resolve(CatalogInfo info) {
+        if (info instanceof StoreInfo) {
+            resolve((StoreInfo) info);
+        } else if (info instanceof ResourceInfo) {
+            resolve((ResourceInfo) info);
+        } else if (info instanceof LayerInfo) {
+            resolve((LayerInfo) info);
+        } else if (info instanceof LayerGroupInfo) {
+            resolve((LayerGroupInfo) info);
+        } else if (info instanceof StyleInfo) {
+            resolve((StyleInfo) info);
+        }
+    }
+
     public void dispose() {
         if (stores != null) stores.clear();
         if (defaultStores != null) defaultStores.clear();
@@ -906,7 +1028,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         // stores
         if (stores == null) {
-            stores = new CatalogInfoLookup<>(STORE_NAME_MAPPER);
+            stores = new StoreInfoLookup();
         }
         for (Object o : stores.values()) {
             resolve((StoreInfoImpl) o);
@@ -922,7 +1044,7 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
 
         // resources
         if (resources == null) {
-            resources = new CatalogInfoLookup<>(RESOURCE_NAME_MAPPER);
+            resources = new ResourceInfoLookup();
         }
         for (Object o : resources.values()) {
             resolve((ResourceInfo) o);
@@ -951,6 +1073,11 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         for (MapInfo m : maps) {
             resolve(m);
         }
+
+        // references might have been changed in place
+        stores.reindex();
+        resources.reindex();
+        layers.reindex();
     }
 
     public void syncTo(CatalogFacade dao) {
@@ -1089,23 +1216,23 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         List<T> all;
 
         if (NamespaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) namespaces.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(namespaces, of, filter);
         } else if (WorkspaceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) workspaces.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(workspaces, of, filter);
         } else if (StoreInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) stores.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(stores, of, filter);
         } else if (ResourceInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) resources.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(resources, of, filter);
         } else if (LayerInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layers.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(layers, of, filter);
         } else if (LayerGroupInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) layerGroups.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(layerGroups, of, filter);
         } else if (PublishedInfo.class.isAssignableFrom(of)) {
             all = new ArrayList<>();
-            all.addAll((List<T>) layers.list(LayerInfo.class, toPredicate(filter)));
-            all.addAll((List<T>) layerGroups.list(LayerGroupInfo.class, toPredicate(filter)));
+            all.addAll((List<T>) listByFilter(layers, LayerInfo.class, filter));
+            all.addAll((List<T>) listByFilter(layerGroups, LayerGroupInfo.class, filter));
         } else if (StyleInfo.class.isAssignableFrom(of)) {
-            all = (List<T>) styles.list(of, toPredicate(filter));
+            all = (List<T>) listByFilter(styles, of, filter);
         } else if (MapInfo.class.isAssignableFrom(of)) {
             all = (List<T>) new ArrayList<>(maps);
         } else {
@@ -1126,6 +1253,132 @@ public class DefaultCatalogFacade extends AbstractCatalogFacade implements Catal
         return ModificationProxy.createList(all, of);
     }
 
+    /**
+     * Lists the objects of the lookup matching the filter. If the filter is, or contains in a
+     * logical and, an equality check against a property that can be resolved using the lookup
+     * secondary indexes, only the objects found in the index are evaluated, otherwise the whole
+     * lookup is scanned.
+     */
+    private <T extends CatalogInfo> List<T> listByFilter(
+            CatalogInfoLookup<?> lookup, Class<T> of, Filter filter) {
+        Predicate<T> predicate = toPredicate(filter);
+        if (filter != null && filter != Filter.INCLUDE) {
+            List<Filter> candidates;
+            if (filter instanceof And) {
+                candidates = ((And) filter).getChildren();
+            } else {
+                candidates = Collections.singletonList(filter);
+            }
+            for (Filter candidate : candidates) {
+                Collection<? extends CatalogInfo> indexed = lookupByIndex(lookup, candidate);
+                if (indexed != null) {
+                    return lookup.list(of, indexed, predicate);
+                }
+            }
+        }
+        return lookup.list(of, predicate);
+    }
+
+    /**
+     * Returns the objects matching a case sensitive equality filter using the indexes, or null if
+     * the filter cannot be resolved using the indexes. The result can be a superset of the actual
+     * matches.
+     */
+    private Collection<? extends CatalogInfo> lookupByIndex(
+            CatalogInfoLookup<?> lookup, Filter filter) {
+        if (!(filter instanceof PropertyIsEqualTo)
+                || !((PropertyIsEqualTo) filter).isMatchingCase()) {
+            return null;
+        }
+        PropertyIsEqualTo equal = (PropertyIsEqualTo) filter;
+        Expression e1 = equal.getExpression1();
+        Expression e2 = equal.getExpression2();
+        if (e2 instanceof PropertyName && e1 instanceof Literal) {
+            Expression tmp = e1;
+            e1 = e2;
+            e2 = tmp;
+        }
+        if (!(e1 instanceof PropertyName) || !(e2 instanceof Literal)) {
+            return null;
+        }
+        String property = ((PropertyName) e1).getPropertyName();
+        Object value = ((Literal) e2).getValue();
+        if (value instanceof CatalogInfo) {
+            // comparison against a catalog object, equality is based on the id
+            property = property + ".id";
+            value = ((CatalogInfo) value).getId();
+        }
+        if (property == null || !(value instanceof String)) {
+            return null;
+        }
+
+        return lookupByIndex(lookup, property, (String) value);
+    }
+
+    /**
+     * Returns the objects of the lookup whose property has the specified value, using the ids,
+     * names and secondary indexes, eventually following references to other lookups (e.g.,
+     * "resource.store.workspace.name" for layers). Returns null if the property cannot be resolved
+     * that way.
+     */
+    private Collection<? extends CatalogInfo> lookupByIndex(
+            CatalogInfoLookup<?> lookup, String property, String value) {
+        if ("id".equals(property)) {
+            return asList(lookup.findById(value, CatalogInfo.class));
+        }
+        if ((lookup == workspaces && "name".equals(property))
+                || (lookup == namespaces && "prefix".equals(property))) {
+            return asList(lookup.findByName(new NameImpl(value), CatalogInfo.class));
+        }
+        if (lookup.hasIndex(property)) {
+            return lookup.findByIndex(property, value);
+        }
+        int idx = property.indexOf('.');
+        if (idx > 0) {
+            String reference = property.substring(0, idx);
+            CatalogInfoLookup<?> referenced = getReferencedLookup(lookup, reference);
+            String referenceIndex = reference + ".id";
+            if (referenced != null && lookup.hasIndex(referenceIndex)) {
+                Collection<? extends CatalogInfo> targets =
+                        lookupByIndex(referenced, property.substring(idx + 1), value);
+                if (targets == null) {
+                    return null;
+                }
+                List<CatalogInfo> result = new ArrayList<>();
+                for (CatalogInfo target : targets) {
+                    result.addAll(lookup.findByIndex(referenceIndex, target.getId()));
+                }
+                return result;
+            }
+        }
+
+        return null;
+    }
+
+    private Collection<? extends CatalogInfo> asList(CatalogInfo info) {
+        return info == null ? Collections.emptyList() : Collections.singletonList(info);
+    }
+
+    /** Returns the lookup containing the objects referenced by the specified property */
+    private CatalogInfoLookup<?> getReferencedLookup(CatalogInfoLookup<?> lookup, String property) {
+        if (lookup == layers) {
+            if ("resource".equals(property)) {
+                return resources;
+            } else if ("defaultStyle".equals(property) || "styles".equals(property)) {
+                return styles;
+            }
+        } else if (lookup == resources) {
+            if ("store".equals(property)) {
+                return stores;
+            } else if ("namespace".equals(property)) {
+                return namespaces;
+            }
+        } else if (lookup == stores && "workspace".equals(property)) {
+            return workspaces;
+        }
+        return null;
+    }
+
     private <T> Predicate<T> toPredicate(Filter filter) {
         if (filter != null && filter != Filter.INCLUDE) {
             return o -> filter.evaluate(o);
@@ -14,7 +14,7 @@ import org.geoserver.catalog.event.CatalogPostModifyEvent;
 import org.geoserver.catalog.event.CatalogRemoveEvent;
 
 /** Updates the updateSequence on Catalog events. */
-class UpdateSequenceListener implements CatalogListener, ConfigurationListener {
+public class UpdateSequenceListener implements CatalogListener, ConfigurationListener {
 
     GeoServer geoServer;
     boolean updating = false;
@@ -0,0 +1,576 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.CatalogInfo;
+import org.geoserver.catalog.DimensionInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.PublishedInfo;
+import org.geoserver.catalog.ResourceInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.config.ConfigurationListenerAdapter;
+import org.geoserver.config.GeoServer;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.ServiceInfo;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.ows.URLMangler.URLType;
+import org.geoserver.ows.util.ResponseUtils;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.util.logging.Logging;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Caches the SAX events making up the per layer sections of the capabilities documents (e.g., the
+ * WMS <code>Layer</code> and the WFS <code>FeatureType</code> elements), so that they can be
+ * streamed again to the output without recomputing them on the next request.
+ *
+ * <p>Fragments are keyed by the id of the catalog object they describe, a per object generation
+ * that is bumped by catalog events touching the object (or the objects it depends on), and a
+ * request "variant" that captures everything else the fragment depends on (service version, base
+ * URL, the current user roles, the virtual service in use). Configuration changes invalidate all
+ * fragments. Resources with enabled dimensions are not cached, as their domain can change without
+ * catalog events.
+ *
+ * <p>The memory used by the cache is bounded, and can be configured with the {@link
+ * #CACHE_SIZE_KEY} variable (in megabytes), setting it to zero disables the cache.
+ */
+public class CapabilitiesFragmentCache implements CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(CapabilitiesFragmentCache.class);
+
+    /** Name of the variable controlling the cache size, in megabytes */
+    public static final String CACHE_SIZE_KEY = "CAPABILITIES_FRAGMENT_CACHE_SIZE";
+
+    /** Default cache size, in megabytes */
+    static final int DEFAULT_CACHE_SIZE = 64;
+
+    private final Catalog catalog;
+
+    private final Cache<FragmentKey, Fragment> fragments;
+
+    private final boolean enabled;
+
+    /** Generation of each cached object, bumped when the object is modified */
+    private final ConcurrentHashMap<String, Long> generations = new ConcurrentHashMap<>();
+
+    /** Global generation, bumped when the whole cache needs to be invalidated */
+    private final AtomicLong globalGeneration = new AtomicLong();
+
+    /**
+     * Looks up the cache in the application context
+     *
+     * @return the cache, or null if not available
+     */
+    public static CapabilitiesFragmentCache get() {
+        return GeoServerExtensions.bean(CapabilitiesFragmentCache.class);
+    }
+
+    /**
+     * @param geoServer the configuration, whose changes invalidate all fragments
+     * @param catalog the raw catalog, used to look up the layers affected by a change
+     */
+    public CapabilitiesFragmentCache(GeoServer geoServer, Catalog catalog) {
+        this(geoServer, catalog, getConfiguredCacheSize());
+    }
+
+    CapabilitiesFragmentCache(GeoServer geoServer, Catalog catalog, long maxMemory) {
+        this.catalog = catalog;
+        this.enabled = maxMemory > 0;
+        this.fragments =
+                CacheBuilder.newBuilder()
+                        .maximumWeight(Math.max(1, maxMemory))
+                        .weigher((FragmentKey k, Fragment f) -> f.getWeight())
+                        .build();
+        catalog.addListener(this);
+        geoServer.addListener(
+                new ConfigurationListenerAdapter() {
+                    @Override
+                    public void handleGlobalChange(
+                            GeoServerInfo global,
+                            List<String> propertyNames,
+                            List<Object> oldValues,
+                            List<Object> newValues) {
+                        // the update sequence is bumped on each catalog change, that's
+                        // handled by the catalog listener already
+                        if (!Collections.singletonList("updateSequence").equals(propertyNames)) {
+                            clear();
+                        }
+                    }
+
+                    @Override
+                    public void handleSettingsModified(
+                            SettingsInfo settings,
+                            List<String> propertyNames,
+                            List<Object> oldValues,
+                            List<Object> newValues) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleSettingsRemoved(SettingsInfo settings) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleServiceChange(
+                            ServiceInfo service,
+                            List<String> propertyNames,
+                            List<Object> oldValues,
+                            List<Object> newValues) {
+                        clear();
+                    }
+
+                    @Override
+                    public void handleServiceRemove(ServiceInfo service) {
+                        clear();
+                    }
+
+                    @Override
+                    public void reloaded() {
+                        clear();
+                    }
+                });
+    }
+
+    private static long getConfiguredCacheSize() {
+        String value = GeoServerExtensions.getProperty(CACHE_SIZE_KEY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim()) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                LOGGER.warning(
+                        "Invalid value for "
+                                + CACHE_SIZE_KEY
+                                + ": "
+                                + value
+                                + ", using the default of "
+                                + DEFAULT_CACHE_SIZE
+                                + "MB");
+            }
+        }
+        return (long) DEFAULT_CACHE_SIZE * 1024 * 1024;
+    }
+
+    /**
+     * Returns true if the fragment describing the specified layer can be cached
+     *
+     * @param info a layer or a resource
+     */
+    public boolean isCacheable(CatalogInfo info) {
+        if (!enabled || info == null || info.getId() == null) {
+            return false;
+        }
+        ResourceInfo resource = null;
+        if (info instanceof LayerInfo) {
+            resource = ((LayerInfo) info).getResource();
+        } else if (info instanceof ResourceInfo) {
+            resource = (ResourceInfo) info;
+        }
+        if (resource != null && resource.getMetadata() != null) {
+            // dimension domains are read from the data, might change without notice
+            for (Serializable value : resource.getMetadata().values()) {
+                if (value instanceof DimensionInfo && ((DimensionInfo) value).isEnabled()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Builds the key for the fragment of the specified catalog object. The current user roles and
+     * virtual service are added to the variant automatically.
+     *
+     * @param info the catalog object described by the fragment
+     * @param baseUrl the request base URL, the key uses it as mangled in the fragment URLs, as the
+     *     proxy base might depend on the request headers
+     * @param variant the other request specific values the fragment depends on (e.g., service
+     *     version)
+     */
+    public FragmentKey getKey(CatalogInfo info, String baseUrl, Object... variant) {
+        String id = info.getId();
+        List<Object> values = new ArrayList<>(Arrays.asList(variant));
+        values.add(ResponseUtils.buildURL(baseUrl, null, null, URLType.SERVICE));
+        WorkspaceInfo localWorkspace = LocalWorkspace.get();
+        values.add(localWorkspace != null ? localWorkspace.getName() : null);
+        PublishedInfo localPublished = LocalPublished.get();
+        values.add(localPublished != null ? localPublished.getName() : null);
+        values.add(getRoles());
+        long generation = generations.getOrDefault(id, 0l);
+        return new FragmentKey(id, generation, globalGeneration.get(), values);
+    }
+
+    /**
+     * The security access rules are role based, users sharing the same roles share the fragments
+     * too
+     */
+    private String getRoles() {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth == null) {
+            return null;
+        }
+        TreeSet<String> roles = new TreeSet<>();
+        for (GrantedAuthority authority : auth.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        boolean anonymous = auth instanceof AnonymousAuthenticationToken;
+        return (anonymous ? "anonymous" : "authenticated") + roles;
+    }
+
+    /** Returns the fragment associated to the key, or null if not found */
+    public Fragment getFragment(FragmentKey key) {
+        if (!enabled) {
+            return null;
+        }
+        return fragments.getIfPresent(key);
+    }
+
+    /** Stores the fragment, unless the object has been modified since the key was built */
+    public void putFragment(FragmentKey key, Fragment fragment) {
+        if (enabled
+                && key.generation == generations.getOrDefault(key.id, 0l)
+                && key.globalGeneration == globalGeneration.get()) {
+            fragments.put(key, fragment);
+        }
+    }
+
+    /** Invalidates all fragments */
+    public void clear() {
+        globalGeneration.incrementAndGet();
+        generations.clear();
+        fragments.invalidateAll();
+    }
+
+    /** Invalidates the fragments describing the specified object */
+    void invalidate(CatalogInfo info) {
+        if (info != null && info.getId() != null) {
+            generations.merge(info.getId(), 1l, Long::sum);
+        }
+    }
+
+    /** Invalidates the fragments affected by a change in the specified object */
+    void handleChange(CatalogInfo source) {
+        if (source instanceof LayerInfo) {
+            LayerInfo layer = (LayerInfo) source;
+            invalidate(layer);
+            invalidate(layer.getResource());
+        } else if (source instanceof ResourceInfo) {
+            invalidate(source);
+            for (LayerInfo layer : catalog.getLayers((ResourceInfo) source)) {
+                invalidate(layer);
+            }
+        } else if (source instanceof StyleInfo) {
+            for (LayerInfo layer : catalog.getLayers((StyleInfo) source)) {
+                invalidate(layer);
+            }
+        } else if (!(source instanceof PublishedInfo)) {
+            // stores, workspaces, namespaces: rare changes affecting many layers.
+            // Layer groups are not cached
+            clear();
+        }
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        // new objects have no fragments yet
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        handleChange(event.getSource());
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        handleChange(event.getSource());
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        // fragments might have been built between the modify and post modify events
+        handleChange(event.getSource());
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    /**
+     * Wraps the specified content handler so that the events flowing through it can be recorded
+     * as fragments
+     */
+    public RecordingContentHandler wrap(ContentHandler delegate) {
+        return new RecordingContentHandler(delegate);
+    }
+
+    /** Key of a capabilities fragment */
+    public static final class FragmentKey {
+        final String id;
+
+        final long generation;
+
+        final long globalGeneration;
+
+        final List<Object> variant;
+
+        FragmentKey(String id, long generation, long globalGeneration, List<Object> variant) {
+            this.id = id;
+            this.generation = generation;
+            this.globalGeneration = globalGeneration;
+            this.variant = variant;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FragmentKey that = (FragmentKey) o;
+            return generation == that.generation
+                    && globalGeneration == that.globalGeneration
+                    && Objects.equals(id, that.id)
+                    && Objects.equals(variant, that.variant);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(id, generation, globalGeneration, variant);
+        }
+
+        @Override
+        public String toString() {
+            return "FragmentKey{"
+                    + "id="
+                    + id
+                    + ", generation="
+                    + generation
+                    + ", globalGeneration="
+                    + globalGeneration
+                    + ", variant="
+                    + variant
+                    + '}';
+        }
+    }
+
+    /** A recorded sequence of SAX events, that can be replayed on a content handler */
+    public static final class Fragment {
+
+        static final byte START = 0;
+
+        static final byte END = 1;
+
+        static final byte CHARACTERS = 2;
+
+        final byte[] types;
+
+        /** The uri, local name and qname of each element, and the text of character events */
+        final String[] strings;
+
+        final Attributes[] attributes;
+
+        final int weight;
+
+        Fragment(List<Byte> types, List<String> strings, List<Attributes> attributes) {
+            this.types = new byte[types.size()];
+            for (int i = 0; i < this.types.length; i++) {
+                this.types[i] = types.get(i);
+            }
+            this.strings = strings.toArray(new String[strings.size()]);
+            this.attributes = attributes.toArray(new Attributes[attributes.size()]);
+            int weight = this.types.length + 16 * (this.strings.length + this.attributes.length);
+            for (String s : this.strings) {
+                weight += s == null ? 0 : s.length() * 2;
+            }
+            for (Attributes atts : this.attributes) {
+                for (int i = 0; i < atts.getLength(); i++) {
+                    weight += (atts.getQName(i).length() + atts.getValue(i).length()) * 2;
+                }
+            }
+            this.weight = weight;
+        }
+
+        /** The approximate memory footprint of the fragment, in bytes */
+        public int getWeight() {
+            return weight;
+        }
+
+        /** Sends the recorded events to the content handler */
+        public void replay(ContentHandler handler) throws SAXException {
+            int s = 0;
+            int a = 0;
+            for (byte type : types) {
+                switch (type) {
+                    case START:
+                        handler.startElement(
+                                strings[s], strings[s + 1], strings[s + 2], attributes[a++]);
+                        s += 3;
+                        break;
+                    case END:
+                        handler.endElement(strings[s], strings[s + 1], strings[s + 2]);
+                        s += 3;
+                        break;
+                    default:
+                        char[] chars = strings[s++].toCharArray();
+                        handler.characters(chars, 0, chars.length);
+                }
+            }
+        }
+    }
+
+    /**
+     * A content handler delegating to another one, that can record the element and text events
+     * flowing through it into a {@link Fragment}
+     */
+    public static final class RecordingContentHandler implements ContentHandler {
+
+        final ContentHandler delegate;
+
+        List<Byte> types;
+
+        List<String> strings;
+
+        List<Attributes> attributes;
+
+        RecordingContentHandler(ContentHandler delegate) {
+            this.delegate = delegate;
+        }
+
+        /** Starts recording events */
+        public void startRecording() {
+            types = new ArrayList<>();
+            strings = new ArrayList<>();
+            attributes = new ArrayList<>();
+        }
+
+        /**
+         * Stops recording events
+         *
+         * @return the recorded fragment, or null if the recording was not started
+         */
+        public Fragment stopRecording() {
+            if (types == null) {
+                return null;
+            }
+            Fragment fragment = new Fragment(types, strings, attributes);
+            types = null;
+            strings = null;
+            attributes = null;
+            return fragment;
+        }
+
+        /** Discards the events recorded so far */
+        public void cancelRecording() {
+            types = null;
+            strings = null;
+            attributes = null;
+        }
+
+        /** Replays the fragment, without recording it */
+        public void replay(Fragment fragment) throws SAXException {
+            fragment.replay(delegate);
+        }
+
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            delegate.setDocumentLocator(locator);
+        }
+
+        @Override
+        public void startDocument() throws SAXException {
+            delegate.startDocument();
+        }
+
+        @Override
+        public void endDocument() throws SAXException {
+            delegate.endDocument();
+        }
+
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            delegate.startPrefixMapping(prefix, uri);
+        }
+
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            delegate.endPrefixMapping(prefix);
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts)
+                throws SAXException {
+            if (types != null) {
+                types.add(Fragment.START);
+                strings.add(uri);
+                strings.add(localName);
+                strings.add(qName);
+                attributes.add(new AttributesImpl(atts));
+            }
+            delegate.startElement(uri, localName, qName, atts);
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            if (types != null) {
+                types.add(Fragment.END);
+                strings.add(uri);
+                strings.add(localName);
+                strings.add(qName);
+            }
+            delegate.endElement(uri, localName, qName);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            if (types != null) {
+                types.add(Fragment.CHARACTERS);
+                strings.add(new String(ch, start, length));
+            }
+            delegate.characters(ch, start, length);
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            delegate.ignorableWhitespace(ch, start, length);
+        }
+
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            delegate.processingInstruction(target, data);
+        }
+
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            delegate.skippedEntity(name);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.ows;
+
+import org.geoserver.catalog.ResourcePool;
+
+/**
+ * Tracks the data stores used by each OWS request, so that the {@link ResourcePool} won't dispose
+ * them while the request is running, even if they get evicted from its cache
+ */
+public class DataStoreUsageCallback extends AbstractDispatcherCallback {
+
+    @Override
+    public Request init(Request request) {
+        ResourcePool.trackDataStoreUsage();
+        return request;
+    }
+
+    @Override
+    public void finished(Request request) {
+        ResourcePool.releaseDataStoreUsage();
+    }
+}
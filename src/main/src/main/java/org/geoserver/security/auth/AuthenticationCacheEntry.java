@@ -61,6 +61,12 @@ public class AuthenticationCacheEntry {
         this.lastAccessed = lastAccessed;
     }
 
+    /** Time stamp in milliseconds after which the entry has expired, unless accessed again */
+    public long getExpirationTime() {
+        return Math.min(
+                lastAccessed + timeToIdleSeconds * 1000L, created + timeToLiveSeconds * 1000L);
+    }
+
     /**
      * returns true if the entry has expired, false otherwise
      *
@@ -0,0 +1,399 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.auth;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.core.Authentication;
+
+/**
+ * {@link AuthenticationCache} implementation meant for high request rates.
+ *
+ * <p>The entries are spread over a number of segments, each one being a small LRU map guarded by
+ * its own lock, so that lookups for different keys rarely contend with each other (in {@link
+ * LRUAuthenticationCacheImpl} every lookup updates the access order of a single map, and thus has
+ * to be serialized with all the others). The max number of entries is enforced per segment, the
+ * cache as a whole may hold slightly more, or start evicting slightly earlier, than the configured
+ * max.
+ *
+ * <p>Expired entries are never returned, and are removed in the background by a hashed timer
+ * wheel with one second ticks: each entry is scheduled in the slot of its expiration time when
+ * added, and on each tick only the entries of the current slot are looked at. Entries accessed in
+ * the meantime have their expiration time moved forward, and are just scheduled again. The wheel
+ * only holds the keys of the entries, along with a stamp telling them from the entries replacing
+ * them, so that removed entries, and their authentications, do not linger until their expiration.
+ *
+ * <p>Hit, miss, eviction and expiration counts are kept to help sizing the cache.
+ */
+public class ConcurrentAuthenticationCacheImpl implements AuthenticationCache, DisposableBean {
+
+    static Logger LOGGER = Logging.getLogger("org.geoserver.security");
+
+    /** Default number of segments, should be in the order of the number of concurrent requests */
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /** Number of slots in the timer wheel, one per second, must be a power of two */
+    static final int WHEEL_SIZE = 512;
+
+    // Use a counter to ensure a unique prefix for each pool.
+    private static AtomicInteger poolCounter = new AtomicInteger();
+
+    private final int timeToIdleSeconds, timeToLiveSeconds, maxEntries;
+
+    private final Segment[] segments;
+
+    private final Queue<Expiration>[] wheel;
+
+    /** Source of the entry stamps */
+    private final AtomicLong stamps = new AtomicLong();
+
+    /** The last wheel tick processed, in seconds */
+    private volatile long currentTick;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder expirations = new LongAdder();
+
+    public ConcurrentAuthenticationCacheImpl(int maxEntries) {
+        this(maxEntries, DEFAULT_IDLE_TIME, DEFAULT_LIVE_TIME, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    @SuppressWarnings("unchecked")
+    public ConcurrentAuthenticationCacheImpl(
+            int maxEntries, int timeToIdleSeconds, int timeToLiveSeconds, int concurrencyLevel) {
+        this.timeToIdleSeconds = timeToIdleSeconds;
+        this.timeToLiveSeconds = timeToLiveSeconds;
+        this.maxEntries = maxEntries;
+
+        // power of two segments, no more than the entries, so that each can hold at least one
+        int count = Integer.highestOneBit(Math.max(1, Math.min(concurrencyLevel, maxEntries)));
+        int capacity = Math.max(1, (maxEntries + count - 1) / count);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(capacity);
+        }
+
+        wheel = new Queue[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new ConcurrentLinkedQueue<>();
+        }
+        currentTick = System.currentTimeMillis() / 1000;
+
+        CustomizableThreadFactory tFactory =
+                new CustomizableThreadFactory(
+                        String.format("AuthCache-%d-", poolCounter.getAndIncrement()));
+        tFactory.setDaemon(true);
+        scheduler = Executors.newScheduledThreadPool(1, tFactory);
+        scheduler.scheduleAtFixedRate(
+                () -> expire(System.currentTimeMillis()), 1, 1, TimeUnit.SECONDS);
+
+        if (LOGGER.isLoggable(Level.INFO)) {
+            LOGGER.info(
+                    "AuthenticationCache Initialized with "
+                            + maxEntries
+                            + " Max Entries, "
+                            + timeToIdleSeconds
+                            + " seconds idle time, "
+                            + timeToLiveSeconds
+                            + " seconds time to live and "
+                            + count
+                            + " segments");
+        }
+    }
+
+    public int getTimeToIdleSeconds() {
+        return timeToIdleSeconds;
+    }
+
+    public int getTimeToLiveSeconds() {
+        return timeToLiveSeconds;
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    @Override
+    public void removeAll() {
+        // the wheel first, entries put meanwhile are either cleared or scheduled again
+        for (Queue<Expiration> slot : wheel) {
+            slot.clear();
+        }
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.entries.clear();
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void removeAll(String filterName) {
+        if (filterName == null) return;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                segment.entries.keySet().removeIf(key -> filterName.equals(key.getFilterName()));
+            } finally {
+                segment.unlock();
+            }
+        }
+    }
+
+    @Override
+    public void remove(String filterName, String cacheKey) {
+        AuthenticationCacheKey key = new AuthenticationCacheKey(filterName, cacheKey);
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            segment.entries.remove(key);
+        } finally {
+            segment.unlock();
+        }
+    }
+
+    @Override
+    public Authentication get(String filterName, String cacheKey) {
+        AuthenticationCacheKey key = new AuthenticationCacheKey(filterName, cacheKey);
+        Segment segment = segmentFor(key);
+        long currentTime = System.currentTimeMillis();
+        Entry entry;
+        segment.lock();
+        try {
+            entry = segment.entries.get(key);
+            if (entry != null) {
+                if (entry.hasExpired(currentTime)) {
+                    segment.entries.remove(key);
+                    expirations.increment();
+                    entry = null;
+                } else {
+                    entry.setLastAccessed(currentTime);
+                }
+            }
+        } finally {
+            segment.unlock();
+        }
+
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return entry.getAuthentication();
+    }
+
+    @Override
+    public void put(
+            String filterName,
+            String cacheKey,
+            Authentication auth,
+            Integer timeToIdleSeconds,
+            Integer timeToLiveSeconds) {
+        timeToIdleSeconds = timeToIdleSeconds != null ? timeToIdleSeconds : this.timeToIdleSeconds;
+        timeToLiveSeconds = timeToLiveSeconds != null ? timeToLiveSeconds : this.timeToLiveSeconds;
+
+        AuthenticationCacheKey key = new AuthenticationCacheKey(filterName, cacheKey);
+        Entry entry =
+                new Entry(auth, timeToIdleSeconds, timeToLiveSeconds, stamps.incrementAndGet());
+        Segment segment = segmentFor(key);
+        segment.lock();
+        try {
+            segment.entries.put(key, entry);
+        } finally {
+            segment.unlock();
+        }
+        schedule(new Expiration(key, entry.stamp), entry.getExpirationTime());
+    }
+
+    @Override
+    public void put(String filterName, String cacheKey, Authentication auth) {
+        put(filterName, cacheKey, auth, timeToIdleSeconds, timeToLiveSeconds);
+    }
+
+    /** Number of lookups that found a valid entry */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /** Number of lookups that found no entry, or an expired one */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /** Ratio of lookups that found a valid entry, {@code 1.0} if there were no lookups yet */
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long requestCount = hitCount + misses.sum();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    /** Number of entries removed to make room for new ones */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /** Number of entries removed because expired */
+    public long getExpirationCount() {
+        return expirations.sum();
+    }
+
+    /** Number of expirations scheduled in the timer wheel, stale ones included */
+    int getScheduledCount() {
+        int count = 0;
+        for (Queue<Expiration> slot : wheel) {
+            count += slot.size();
+        }
+        return count;
+    }
+
+    /** Current number of entries, expired ones not removed yet included */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            segment.lock();
+            try {
+                size += segment.entries.size();
+            } finally {
+                segment.unlock();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+
+    /**
+     * Advances the timer wheel up to the given time, removing the expired entries found in the
+     * slots passed by
+     */
+    synchronized void expire(long currentTime) {
+        long tick = currentTime / 1000;
+        // a full turn of the wheel looks at all the slots already
+        long from = Math.max(currentTick + 1, tick - WHEEL_SIZE + 1);
+        for (long t = from; t <= tick; t++) {
+            Queue<Expiration> slot = wheel[(int) (t & (WHEEL_SIZE - 1))];
+            List<Expiration> due = new ArrayList<>();
+            for (Expiration e = slot.poll(); e != null; e = slot.poll()) {
+                due.add(e);
+            }
+            currentTick = t;
+            for (Expiration e : due) {
+                expire(e, currentTime);
+            }
+        }
+        currentTick = Math.max(currentTick, tick);
+    }
+
+    private void expire(Expiration expiration, long currentTime) {
+        Segment segment = segmentFor(expiration.key);
+        long expirationTime;
+        segment.lock();
+        try {
+            // replaced or removed entries are just dropped from the wheel
+            Entry entry = segment.entries.get(expiration.key);
+            if (entry == null || entry.stamp != expiration.stamp) {
+                return;
+            }
+            if (entry.hasExpired(currentTime)) {
+                segment.entries.remove(expiration.key);
+                expirations.increment();
+                return;
+            }
+            expirationTime = entry.getExpirationTime();
+        } finally {
+            segment.unlock();
+        }
+        // accessed since scheduled, or too far in the future for a single turn of the wheel
+        schedule(expiration, expirationTime);
+    }
+
+    private void schedule(Expiration expiration, long expirationTime) {
+        // hasExpired compares strictly, so an entry is due the millisecond after its deadline
+        long tick = (expirationTime + 1000) / 1000;
+        tick = Math.max(tick, currentTick + 1);
+        tick = Math.min(tick, currentTick + WHEEL_SIZE);
+        wheel[(int) (tick & (WHEEL_SIZE - 1))].add(expiration);
+    }
+
+    private Segment segmentFor(AuthenticationCacheKey key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[h & (segments.length - 1)];
+    }
+
+    /** A LRU map of entries, guarded by its own lock */
+    private final class Segment extends ReentrantLock {
+        private static final long serialVersionUID = 1L;
+
+        final Map<AuthenticationCacheKey, Entry> entries;
+
+        Segment(int capacity) {
+            super();
+            entries =
+                    new LinkedHashMap<AuthenticationCacheKey, Entry>(capacity + 1, 1.1f, true) {
+                        private static final long serialVersionUID = 1L;
+
+                        @Override
+                        protected boolean removeEldestEntry(
+                                Map.Entry<AuthenticationCacheKey, Entry> eldest) {
+                            if (size() > capacity) {
+                                evictions.increment();
+                                return true;
+                            }
+                            return false;
+                        }
+                    };
+        }
+    }
+
+    /** A cache entry, with the stamp its expirations refer to */
+    private static final class Entry extends AuthenticationCacheEntry {
+        final long stamp;
+
+        Entry(Authentication auth, int timeToIdleSeconds, int timeToLiveSeconds, long stamp) {
+            super(auth, timeToIdleSeconds, timeToLiveSeconds);
+            this.stamp = stamp;
+        }
+    }
+
+    /** An entry scheduled in the timer wheel, referred to by key and stamp */
+    private static final class Expiration {
+        final AuthenticationCacheKey key;
+
+        final long stamp;
+
+        Expiration(AuthenticationCacheKey key, long stamp) {
+            this.key = key;
+            this.stamp = stamp;
+        }
+    }
+}
@@ -11,6 +11,7 @@ import java.util.HashSet;
 import java.util.Set;
 import java.util.SortedSet;
 import org.geoserver.platform.resource.Resource;
+import org.geoserver.security.GeoServerRoleService;
 import org.geoserver.security.GeoServerUserGroupService;
 import org.geoserver.security.GeoServerUserGroupStore;
 import org.geoserver.security.event.UserGroupLoadedEvent;
@@ -31,6 +32,7 @@ public abstract class AbstractUserGroupService extends AbstractGeoServerSecurity
             Collections.synchronizedSet(new HashSet<UserGroupLoadedListener>());
     protected String passwordEncoderName, passwordValidatorName;
     protected UserGroupStoreHelper helper;
+    protected volatile EffectiveRoleIndex roleIndex;
 
     protected AbstractUserGroupService() {
         helper = new UserGroupStoreHelper();
@@ -171,8 +173,9 @@ public abstract class AbstractUserGroupService extends AbstractGeoServerSecurity
         try {
             user = getUserByUsername(username);
             if (user == null) throw new UsernameNotFoundException(userNotFoundMessage(username));
-            RoleCalculator calculator =
-                    new RoleCalculator(this, getSecurityManager().getActiveRoleService());
+            GeoServerRoleService roleService = getSecurityManager().getActiveRoleService();
+            RoleCalculator calculator = new RoleCalculator(this, roleService);
+            calculator.setRoleIndex(getRoleIndex(roleService));
             user.setAuthorities(calculator.calculateRoles(user));
         } catch (IOException e) {
             throw new UsernameNotFoundException(userNotFoundMessage(username), e);
@@ -181,6 +184,26 @@ public abstract class AbstractUserGroupService extends AbstractGeoServerSecurity
         return user;
     }
 
+    /**
+     * The index of the effective roles of the users of this service, as assigned by the given role
+     * service, or <code>null</code> if they should not be indexed
+     *
+     * @param roleService
+     */
+    protected EffectiveRoleIndex getRoleIndex(GeoServerRoleService roleService) {
+        if (!EffectiveRoleIndex.canIndex(roleService)) return null;
+
+        EffectiveRoleIndex index = roleIndex;
+        if (index != null && index.getRoleService() == roleService) return index;
+        synchronized (this) {
+            if (roleIndex == null || roleIndex.getRoleService() != roleService) {
+                if (roleIndex != null) roleIndex.dispose();
+                roleIndex = new EffectiveRoleIndex(this, roleService);
+            }
+            return roleIndex;
+        }
+    }
+
     protected String userNotFoundMessage(String username) {
         return "User  " + username + " not found in usergroupservice: " + getName();
     }
@@ -7,12 +7,19 @@ package org.geoserver.security.impl;
 
 import static org.geoserver.security.impl.DataAccessRule.ANY;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableSet;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -30,13 +37,20 @@ import org.geoserver.catalog.StyleInfo;
 import org.geoserver.catalog.WMSLayerInfo;
 import org.geoserver.catalog.WMTSLayerInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
 import org.geoserver.ows.Dispatcher;
 import org.geoserver.ows.Request;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.security.AccessMode;
 import org.geoserver.security.AdminRequest;
 import org.geoserver.security.CatalogMode;
 import org.geoserver.security.CoverageAccessLimits;
 import org.geoserver.security.DataAccessLimits;
+import org.geoserver.security.GeoServerSecurityFilterChainProxy;
 import org.geoserver.security.InMemorySecurityFilter;
 import org.geoserver.security.LayerGroupAccessLimits;
 import org.geoserver.security.ResourceAccessManager;
@@ -49,6 +63,7 @@ import org.geoserver.security.impl.LayerGroupContainmentCache.LayerGroupSummary;
 import org.geotools.util.logging.Logging;
 import org.opengis.filter.Filter;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 /**
  * Default implementation of {@link ResourceAccessManager}, loads simple access rules from a
@@ -73,6 +88,12 @@ import org.springframework.security.core.Authentication;
  * security proposal&lt;/a&gt; on the &lt;a
  * href=&quot;www.geoserver.org&quot;&gt;GeoServer&lt;/a&gt; web site.
  *
+ * <p>The access decisions are memoized, by set of user roles, catalog object and access mode, so
+ * that the same rules are not evaluated over and over for users sharing the same roles. The cached
+ * decisions are dropped when the rules or the catalog change. The max number of cached decisions
+ * can be configured with the {@link #DECISION_CACHE_SIZE_KEY} variable, setting it to zero
+ * disables the cache.
+ *
  * <p>If no {@link Properties} is provided, one will be looked upon in <code>
  * GEOSERVER_DATA_DIR/security/layers.properties, and the class will
  * keep up to date vs changes in the file</code>
@@ -82,6 +103,12 @@ import org.springframework.security.core.Authentication;
 public class DefaultResourceAccessManager implements ResourceAccessManager {
     static final Logger LOGGER = Logging.getLogger(DefaultResourceAccessManager.class);
 
+    /** Name of the variable controlling the max number of cached access decisions */
+    public static final String DECISION_CACHE_SIZE_KEY = "ACCESS_DECISION_CACHE_SIZE";
+
+    /** Default max number of cached access decisions */
+    static final int DEFAULT_DECISION_CACHE_SIZE = 100000;
+
     /** A {@link LayerGroupSummary} extended with the associated secure tree node */
     static class SecuredGroupSummary extends LayerGroupSummary {
 
@@ -111,6 +138,14 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
 
     LayerGroupContainmentCache groupsCache;
 
+    /** The memoized access decisions */
+    final Cache<DecisionKey, Boolean> decisions;
+
+    final boolean decisionCacheEnabled;
+
+    /** Bumped when the rules or the catalog change, making the cached decisions stale */
+    final AtomicLong generation = new AtomicLong();
+
     /**
      * Pass a reference to the raw, unsecured catalog. The reference is used to evaluate the
      * relationship between layers and the groups containing them
@@ -119,10 +154,85 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
      * @param rawCatalog
      */
     public DefaultResourceAccessManager(DataAccessRuleDAO dao, Catalog rawCatalog) {
+        this(dao, rawCatalog, getConfiguredCacheSize());
+    }
+
+    DefaultResourceAccessManager(DataAccessRuleDAO dao, Catalog rawCatalog, int decisionCacheSize) {
         this.dao = dao;
         this.rawCatalog = rawCatalog;
         this.root = buildAuthorizationTree(dao);
         this.groupsCache = new LayerGroupContainmentCache(rawCatalog);
+        this.decisionCacheEnabled = decisionCacheSize > 0;
+        this.decisions =
+                CacheBuilder.newBuilder().maximumSize(Math.max(0, decisionCacheSize)).build();
+        rawCatalog.addListener(new DecisionCacheInvalidator());
+    }
+
+    private static int getConfiguredCacheSize() {
+        String value = GeoServerExtensions.getProperty(DECISION_CACHE_SIZE_KEY);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning(
+                        "Invalid value for "
+                                + DECISION_CACHE_SIZE_KEY
+                                + ": "
+                                + value
+                                + ", using the default of "
+                                + DEFAULT_DECISION_CACHE_SIZE);
+            }
+        }
+        return DEFAULT_DECISION_CACHE_SIZE;
+    }
+
+    /** Drops all the memoized access decisions */
+    void clearDecisions() {
+        generation.incrementAndGet();
+        decisions.invalidateAll();
+    }
+
+    /**
+     * Returns the memoized access decision, computing it if missing. Decisions are not memoized for
+     * objects that have no id yet.
+     */
+    private boolean decide(
+            Authentication user,
+            CatalogInfo info,
+            AccessMode mode,
+            boolean directAccess,
+            boolean groupContainment,
+            BooleanSupplier decision) {
+        if (!decisionCacheEnabled || info.getId() == null) {
+            return decision.getAsBoolean();
+        }
+        DecisionKey key =
+                new DecisionKey(
+                        generation.get(),
+                        roles(user),
+                        info.getId(),
+                        mode,
+                        directAccess,
+                        groupContainment,
+                        GeoServerSecurityFilterChainProxy.isSecurityEnabledForCurrentRequest());
+        Boolean result = decisions.getIfPresent(key);
+        if (result == null) {
+            result = decision.getAsBoolean();
+            decisions.put(key, result);
+        }
+        return result;
+    }
+
+    /** The role set fingerprint of the user, the only thing the access rules depend on */
+    static Set<String> roles(Authentication user) {
+        if (user == null || user.getAuthorities() == null) {
+            return Collections.emptySet();
+        }
+        ImmutableSet.Builder<String> roles = ImmutableSet.builder();
+        for (GrantedAuthority authority : user.getAuthorities()) {
+            roles.add(authority.getAuthority());
+        }
+        return roles.build();
     }
 
     public CatalogMode getMode() {
@@ -131,6 +241,17 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
 
     public boolean canAccess(Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         checkPropertyFile();
+        return decide(
+                user,
+                workspace,
+                mode,
+                true,
+                false,
+                () -> canAccessWorkspace(user, workspace, mode));
+    }
+
+    private boolean canAccessWorkspace(
+            Authentication user, WorkspaceInfo workspace, AccessMode mode) {
         SecureTreeNode node = root.getDeepestNode(new String[] {workspace.getName()});
         if (node.canAccess(user, mode)) {
             return true;
@@ -190,6 +311,17 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
     public boolean canAccess(
             Authentication user, ResourceInfo resource, AccessMode mode, boolean directAccess) {
         checkPropertyFile();
+        return decide(
+                user,
+                resource,
+                mode,
+                directAccess,
+                layerGroupContainmentCheckRequired(),
+                () -> canAccessResource(user, resource, mode, directAccess));
+    }
+
+    private boolean canAccessResource(
+            Authentication user, ResourceInfo resource, AccessMode mode, boolean directAccess) {
         String workspace;
         final String resourceName = resource.getName();
         try {
@@ -333,6 +465,7 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
         if (lastLoaded < daoLastModified || force) {
             root = buildAuthorizationTree(dao);
             lastLoaded = daoLastModified;
+            clearDecisions();
         }
     }
 
@@ -468,6 +601,17 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
 
     private boolean canAccess(
             Authentication user, LayerGroupInfo layerGroup, boolean directAccess) {
+        return decide(
+                user,
+                layerGroup,
+                AccessMode.READ,
+                directAccess,
+                false,
+                () -> canAccessGroup(user, layerGroup, directAccess));
+    }
+
+    private boolean canAccessGroup(
+            Authentication user, LayerGroupInfo layerGroup, boolean directAccess) {
         String[] path = getLayerGroupPath(layerGroup);
         SecureTreeNode node = root.getDeepestNode(path);
         boolean catalogNodeAllowsAccess = node.canAccess(user, AccessMode.READ);
@@ -671,4 +815,105 @@ public class DefaultResourceAccessManager implements ResourceAccessManager {
     public LayerGroupAccessLimits getAccessLimits(Authentication user, LayerGroupInfo layerGroup) {
         return getAccessLimits(user, layerGroup, Collections.emptyList());
     }
+
+    /** Key of a memoized access decision */
+    static final class DecisionKey {
+
+        final long generation;
+
+        final Set<String> roles;
+
+        final String id;
+
+        final AccessMode mode;
+
+        final boolean directAccess;
+
+        final boolean groupContainment;
+
+        final boolean securityEnabled;
+
+        final int hashCode;
+
+        DecisionKey(
+                long generation,
+                Set<String> roles,
+                String id,
+                AccessMode mode,
+                boolean directAccess,
+                boolean groupContainment,
+                boolean securityEnabled) {
+            this.generation = generation;
+            this.roles = roles;
+            this.id = id;
+            this.mode = mode;
+            this.directAccess = directAccess;
+            this.groupContainment = groupContainment;
+            this.securityEnabled = securityEnabled;
+            this.hashCode =
+                    Objects.hash(
+                            generation,
+                            roles,
+                            id,
+                            mode,
+                            directAccess,
+                            groupContainment,
+                            securityEnabled);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof DecisionKey)) {
+                return false;
+            }
+            DecisionKey other = (DecisionKey) o;
+            return generation == other.generation
+                    && directAccess == other.directAccess
+                    && groupContainment == other.groupContainment
+                    && securityEnabled == other.securityEnabled
+                    && mode == other.mode
+                    && id.equals(other.id)
+                    && roles.equals(other.roles);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Drops the memoized decisions on catalog changes, names and group containment are part of the
+     * decisions
+     */
+    class DecisionCacheInvalidator implements CatalogListener {
+
+        @Override
+        public void handleAddEvent(CatalogAddEvent event) {
+            clearDecisions();
+        }
+
+        @Override
+        public void handleRemoveEvent(CatalogRemoveEvent event) {
+            clearDecisions();
+        }
+
+        @Override
+        public void handleModifyEvent(CatalogModifyEvent event) {
+            // wait for the post modify event
+        }
+
+        @Override
+        public void handlePostModifyEvent(CatalogPostModifyEvent event) {
+            clearDecisions();
+        }
+
+        @Override
+        public void reloaded() {
+            clearDecisions();
+        }
+    }
 }
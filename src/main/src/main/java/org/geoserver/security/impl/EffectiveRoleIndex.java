@@ -0,0 +1,323 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.impl;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.security.GeoServerRoleService;
+import org.geoserver.security.GeoServerUserGroupService;
+import org.geoserver.security.concurrent.LockingRoleService;
+import org.geoserver.security.event.RoleLoadedEvent;
+import org.geoserver.security.event.RoleLoadedListener;
+import org.geoserver.security.event.UserGroupLoadedEvent;
+import org.geoserver.security.event.UserGroupLoadedListener;
+import org.geotools.util.logging.Logging;
+
+/**
+ * Index of the effective roles of the users of a {@link GeoServerUserGroupService}, as assigned by
+ * a {@link GeoServerRoleService}: the roles of the user, the roles of its enabled groups, and all
+ * their ancestors.
+ *
+ * <p>Entries are calculated on first use and kept until the assignments they depend on change.
+ * When either service is reloaded its assignments are compared with the ones found on the previous
+ * load, and only the entries of the users affected by the differences are dropped. Each reload
+ * increments the {@link #getVersion() version} of the index.
+ *
+ * <p>Only in memory role services, reloaded by their stores on changes, can be indexed, see {@link
+ * #canIndex(GeoServerRoleService)}.
+ *
+ * <p>Role personalization and mapped system roles are left to {@link RoleCalculator}, as they
+ * depend on the user properties.
+ */
+public class EffectiveRoleIndex implements RoleLoadedListener, UserGroupLoadedListener {
+
+    static final Logger LOGGER = Logging.getLogger("org.geoserver.security");
+
+    final GeoServerUserGroupService userGroupService;
+
+    final GeoServerRoleService roleService;
+
+    final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    final AtomicLong version = new AtomicLong();
+
+    /** Assignments found on the last load, null if they could not be read */
+    RoleAssignments roleAssignments;
+
+    GroupAssignments groupAssignments;
+
+    public EffectiveRoleIndex(
+            GeoServerUserGroupService userGroupService, GeoServerRoleService roleService) {
+        this.userGroupService = userGroupService;
+        this.roleService = roleService;
+        this.roleAssignments = readRoleAssignments();
+        this.groupAssignments = readGroupAssignments();
+        userGroupService.registerUserGroupLoadedListener(this);
+        roleService.registerRoleLoadedListener(this);
+    }
+
+    /**
+     * Whether the assignments of the role service can be indexed, that is, the service is reloaded,
+     * and its listeners notified, whenever its assignments are changed
+     *
+     * @param roleService
+     */
+    public static boolean canIndex(GeoServerRoleService roleService) {
+        while (roleService instanceof LockingRoleService) {
+            roleService = ((LockingRoleService) roleService).getService();
+        }
+        return roleService instanceof AbstractRoleService;
+    }
+
+    /** Stops following the changes of the services */
+    public void dispose() {
+        userGroupService.unregisterUserGroupLoadedListener(this);
+        roleService.unregisterRoleLoadedListener(this);
+        entries.clear();
+    }
+
+    public GeoServerUserGroupService getUserGroupService() {
+        return userGroupService;
+    }
+
+    public GeoServerRoleService getRoleService() {
+        return roleService;
+    }
+
+    /** Number of reloads of the services seen so far */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /** Number of users currently indexed */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the effective roles of the user, calculating them if not indexed yet
+     *
+     * @param user
+     * @throws IOException
+     */
+    public Set<GeoServerRole> getRoles(GeoServerUser user) throws IOException {
+        String username = user.getUsername();
+        Entry entry = entries.get(username);
+        if (entry != null) {
+            return entry.roles;
+        }
+
+        long current = version.get();
+        Set<String> groupnames = new HashSet<String>();
+        Set<GeoServerRole> roles =
+                new RoleCalculator(userGroupService, roleService)
+                        .calculateEffectiveRoles(user, groupnames);
+        entry = new Entry(roles, groupnames);
+        entries.put(username, entry);
+        // the services got reloaded meanwhile, the entry might be stale already
+        if (version.get() != current) {
+            entries.remove(username, entry);
+        }
+        return entry.roles;
+    }
+
+    @Override
+    public synchronized void rolesChanged(RoleLoadedEvent event) {
+        RoleAssignments previous = roleAssignments;
+        roleAssignments = readRoleAssignments();
+        version.incrementAndGet();
+        if (previous == null || roleAssignments == null) {
+            entries.clear();
+            return;
+        }
+
+        Set<String> roles = new HashSet<String>();
+        Set<String> groups = new HashSet<String>();
+        Set<String> users = new HashSet<String>();
+        previous.compare(roleAssignments, roles, groups, users);
+        invalidate(roles, groups, users);
+    }
+
+    @Override
+    public synchronized void usersAndGroupsChanged(UserGroupLoadedEvent event) {
+        GroupAssignments previous = groupAssignments;
+        groupAssignments = readGroupAssignments();
+        version.incrementAndGet();
+        if (previous == null || groupAssignments == null) {
+            entries.clear();
+            return;
+        }
+
+        Set<String> groups = new HashSet<String>();
+        Set<String> users = new HashSet<String>();
+        previous.compare(groupAssignments, groups, users);
+        invalidate(Collections.emptySet(), groups, users);
+    }
+
+    /** Drops the entries of the given users, and of the ones depending on the roles or groups */
+    void invalidate(Set<String> roles, Set<String> groups, Set<String> users) {
+        if (roles.isEmpty() && groups.isEmpty() && users.isEmpty()) {
+            return;
+        }
+        int size = entries.size();
+        entries.entrySet()
+                .removeIf(e -> users.contains(e.getKey()) || e.getValue().dependsOn(roles, groups));
+        if (LOGGER.isLoggable(Level.FINE)) {
+            LOGGER.fine(
+                    "Dropped "
+                            + (size - entries.size())
+                            + " of "
+                            + size
+                            + " indexed users after changes to "
+                            + roles.size()
+                            + " roles, "
+                            + groups.size()
+                            + " groups and "
+                            + users.size()
+                            + " users");
+        }
+    }
+
+    private RoleAssignments readRoleAssignments() {
+        try {
+            return new RoleAssignments(roleService);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Could not read the roles of " + roleService.getName(), e);
+            return null;
+        }
+    }
+
+    private GroupAssignments readGroupAssignments() {
+        try {
+            return new GroupAssignments(userGroupService);
+        } catch (IOException e) {
+            LOGGER.log(
+                    Level.WARNING, "Could not read the groups of " + userGroupService.getName(), e);
+            return null;
+        }
+    }
+
+    /** Adds to the target the elements found in only one of the two sets */
+    static void addDifferences(Set<String> s1, Set<String> s2, Set<String> target) {
+        s1 = s1 != null ? s1 : Collections.emptySet();
+        s2 = s2 != null ? s2 : Collections.emptySet();
+        for (String s : s1) {
+            if (!s2.contains(s)) target.add(s);
+        }
+        for (String s : s2) {
+            if (!s1.contains(s)) target.add(s);
+        }
+    }
+
+    static <T> Set<String> union(Map<String, T> m1, Map<String, T> m2) {
+        Set<String> keys = new HashSet<String>(m1.keySet());
+        keys.addAll(m2.keySet());
+        return keys;
+    }
+
+    /** The effective roles of a user, along with the groups they were calculated from */
+    static class Entry {
+        final Set<GeoServerRole> roles;
+
+        final Set<String> rolenames = new HashSet<String>();
+
+        final Set<String> groupnames;
+
+        Entry(Set<GeoServerRole> roles, Set<String> groupnames) {
+            this.roles = Collections.unmodifiableSet(roles);
+            this.groupnames = groupnames;
+            for (GeoServerRole role : roles) {
+                rolenames.add(role.getAuthority());
+            }
+        }
+
+        boolean dependsOn(Set<String> roles, Set<String> groups) {
+            return !Collections.disjoint(rolenames, roles)
+                    || !Collections.disjoint(groupnames, groups);
+        }
+    }
+
+    /** The roles of a role service, with their parents, properties, users and groups */
+    static class RoleAssignments {
+        final Map<String, String> parents;
+
+        final Map<String, Properties> properties = new HashMap<String, Properties>();
+
+        final Map<String, Set<String>> users = new HashMap<String, Set<String>>();
+
+        final Map<String, Set<String>> groups = new HashMap<String, Set<String>>();
+
+        RoleAssignments(GeoServerRoleService service) throws IOException {
+            parents = new HashMap<String, String>(service.getParentMappings());
+            for (GeoServerRole role : service.getRoles()) {
+                String rolename = role.getAuthority();
+                Properties props = new Properties();
+                props.putAll(role.getProperties());
+                properties.put(rolename, props);
+                users.put(rolename, new HashSet<String>(service.getUserNamesForRole(role)));
+                groups.put(rolename, new HashSet<String>(service.getGroupNamesForRole(role)));
+            }
+        }
+
+        /**
+         * Collects the roles whose definition changed, and the groups and users whose roles
+         * changed
+         */
+        void compare(
+                RoleAssignments other,
+                Set<String> roles,
+                Set<String> groupnames,
+                Set<String> usernames) {
+            for (String rolename : union(properties, other.properties)) {
+                if (!Objects.equals(parents.get(rolename), other.parents.get(rolename))
+                        || !Objects.equals(
+                                properties.get(rolename), other.properties.get(rolename))) {
+                    roles.add(rolename);
+                }
+                addDifferences(users.get(rolename), other.users.get(rolename), usernames);
+                addDifferences(groups.get(rolename), other.groups.get(rolename), groupnames);
+            }
+        }
+    }
+
+    /** The groups of a user group service, with their members */
+    static class GroupAssignments {
+        final Map<String, Boolean> enabled = new HashMap<String, Boolean>();
+
+        final Map<String, Set<String>> members = new HashMap<String, Set<String>>();
+
+        GroupAssignments(GeoServerUserGroupService service) throws IOException {
+            for (GeoServerUserGroup group : service.getUserGroups()) {
+                enabled.put(group.getGroupname(), group.isEnabled());
+                Set<String> usernames = new HashSet<String>();
+                for (GeoServerUser user : service.getUsersForGroup(group)) {
+                    usernames.add(user.getUsername());
+                }
+                members.put(group.getGroupname(), usernames);
+            }
+        }
+
+        /** Collects the groups whose definition changed, and the users whose groups changed */
+        void compare(GroupAssignments other, Set<String> groupnames, Set<String> usernames) {
+            for (String groupname : union(enabled, other.enabled)) {
+                if (!Objects.equals(enabled.get(groupname), other.enabled.get(groupname))) {
+                    groupnames.add(groupname);
+                }
+                addDifferences(members.get(groupname), other.members.get(groupname), usernames);
+            }
+        }
+    }
+}
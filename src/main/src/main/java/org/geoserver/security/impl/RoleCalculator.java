@@ -24,6 +24,7 @@ public class RoleCalculator {
 
     protected GeoServerRoleService roleService;
     protected GeoServerUserGroupService userGroupService;
+    protected EffectiveRoleIndex roleIndex;
 
     /**
      * Constructor
@@ -64,6 +65,20 @@ public class RoleCalculator {
         return userGroupService;
     }
 
+    /**
+     * Sets the index to look up the effective roles of users from, it must be built on the same
+     * user group and role services as this calculator
+     *
+     * @param index
+     */
+    public void setRoleIndex(EffectiveRoleIndex index) {
+        roleIndex = index;
+    }
+
+    public EffectiveRoleIndex getRoleIndex() {
+        return roleIndex;
+    }
+
     /** Check if the role service is not null */
     protected void assertRoleServiceNotNull() {
         if (roleService == null) {
@@ -103,6 +118,30 @@ public class RoleCalculator {
      */
     public SortedSet<GeoServerRole> calculateRoles(GeoServerUser user) throws IOException {
 
+        Set<GeoServerRole> set1 =
+                roleIndex != null
+                        ? roleIndex.getRoles(user)
+                        : calculateEffectiveRoles(user, new HashSet<String>());
+
+        // personalize roles
+        SortedSet<GeoServerRole> set2 = personalizeRoles(user, set1);
+
+        // add mapped system roles
+        addMappedSystemRoles(set2);
+
+        return set2;
+    }
+
+    /**
+     * Calculates the roles of a user, and of its enabled groups, including inherited roles
+     *
+     * @param user
+     * @param groupnames collects the names of all the groups of the user
+     * @throws IOException
+     */
+    Set<GeoServerRole> calculateEffectiveRoles(GeoServerUser user, Set<String> groupnames)
+            throws IOException {
+
         Set<GeoServerRole> set1 = new HashSet<GeoServerRole>();
 
         // alle roles for the user
@@ -112,17 +151,11 @@ public class RoleCalculator {
         // add all roles for enabled groups
         if (getUserGroupService() != null) {
             for (GeoServerUserGroup group : getUserGroupService().getGroupsForUser(user)) {
+                groupnames.add(group.getGroupname());
                 if (group.isEnabled()) set1.addAll(calculateRoles(group));
             }
         }
-
-        // personalize roles
-        SortedSet<GeoServerRole> set2 = personalizeRoles(user, set1);
-
-        // add mapped system roles
-        addMappedSystemRoles(set2);
-
-        return set2;
+        return set1;
     }
 
     public void addMappedSystemRoles(Collection<GeoServerRole> set) {
@@ -21,8 +21,11 @@ import java.io.OutputStream;
 import java.lang.reflect.Field;
 import java.net.URI;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.media.jai.PlanarImage;
 import javax.xml.namespace.QName;
@@ -837,6 +840,94 @@ public class ResourcePoolTest extends GeoServerSystemTestSupport {
         }
     }
 
+    @Test
+    public void testDataStoreEviction() throws IOException {
+        List<String> disposed = new ArrayList<>();
+        Catalog catalog = getCatalog();
+        ResourcePool pool =
+                new ResourcePool(catalog) {
+                    {
+                        dataStoreCache =
+                                new DataStoreCache(1, 0) {
+                                    @Override
+                                    void disposeDataAccess(String id, DataAccess dataAccess) {
+                                        // slow closes must not block the other lookups
+                                        assertFalse(Thread.holdsLock(this));
+                                        disposed.add(id);
+                                        super.disposeDataAccess(id, dataAccess);
+                                    }
+                                };
+                    }
+                };
+        long gracePeriod = ResourcePool.EVICTION_GRACE_PERIOD;
+        ResourcePool.EVICTION_GRACE_PERIOD = 0;
+        try {
+            List<DataStoreInfo> stores = catalog.getDataStores();
+            DataStoreInfo first = stores.get(0);
+            DataStoreInfo second = stores.get(1);
+
+            // opening the second store evicts the least recently used one
+            pool.getDataStore(first);
+            pool.getDataStore(second);
+            assertEquals(Arrays.asList(first.getId()), disposed);
+
+            // stores in use by a tracked request are not evicted
+            ResourcePool.trackDataStoreUsage();
+            try {
+                pool.getDataStore(first);
+                assertEquals(Arrays.asList(first.getId(), second.getId()), disposed);
+                pool.getDataStore(second);
+                // over the limit, but both in use
+                assertEquals(Arrays.asList(first.getId(), second.getId()), disposed);
+
+                // and if cleared, they are disposed only once released
+                pool.clear(first);
+                assertEquals(Arrays.asList(first.getId(), second.getId()), disposed);
+            } finally {
+                ResourcePool.releaseDataStoreUsage();
+            }
+            assertEquals(Arrays.asList(first.getId(), second.getId(), first.getId()), disposed);
+
+            ResourcePool.DataStoreCacheStatistics stats = pool.getDataStoreCacheStatistics();
+            assertEquals(1, stats.getOpen());
+            assertEquals(4, stats.getOpened());
+            assertEquals(2, stats.getEvicted());
+            assertEquals(2, stats.getReopened());
+        } finally {
+            ResourcePool.EVICTION_GRACE_PERIOD = gracePeriod;
+            pool.dispose();
+        }
+    }
+
+    @Test
+    public void testDataStoreDisposal() throws IOException {
+        Catalog catalog = getCatalog();
+        ResourcePool pool =
+                new ResourcePool(catalog) {
+                    {
+                        dataStoreCache = new DataStoreCache(0, 60000);
+                    }
+                };
+        DataStoreInfo store = catalog.getDataStores().get(0);
+        DataAccess dataAccess = pool.getDataStore(store);
+        ScheduledFuture<?> eviction = pool.dataStoreCache.eviction;
+        assertNotNull(eviction);
+        assertEquals(1, pool.getDataStoreCacheStatistics().getOpen());
+
+        // a late access to a disposed store is not tracked anymore
+        pool.clear(store);
+        pool.dataStoreCache.accessed(store.getId(), dataAccess);
+        assertEquals(0, pool.getDataStoreCacheStatistics().getOpen());
+
+        // the idle eviction is stopped with the pool, and resumes with the next opening
+        pool.dispose();
+        assertTrue(eviction.isCancelled());
+        assertNull(pool.dataStoreCache.eviction);
+        pool.getDataStore(store);
+        assertNotNull(pool.dataStoreCache.eviction);
+        pool.dispose();
+    }
+
     @Test
     public void testDefaultGeometry() throws IOException {
         FeatureTypeInfo featureType =
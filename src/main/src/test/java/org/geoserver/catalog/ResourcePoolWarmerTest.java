@@ -0,0 +1,64 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.geoserver.data.test.MockData;
+import org.geoserver.test.GeoServerSystemTestSupport;
+import org.junit.Test;
+
+public class ResourcePoolWarmerTest extends GeoServerSystemTestSupport {
+
+    @Test
+    public void testWarmUp() throws Exception {
+        Catalog catalog = getCatalog();
+        ResourcePool pool = catalog.getResourcePool();
+        pool.dispose();
+        assertTrue(pool.getFeatureTypeCache().isEmpty());
+
+        ResourcePoolWarmer warmer = new ResourcePoolWarmer(catalog);
+        warmer.start(2);
+        long timeout = System.currentTimeMillis() + 60000;
+        while (warmer.isRunning() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(50);
+        }
+        assertFalse(warmer.isRunning());
+        assertTrue(warmer.getTotal() > 0);
+        assertEquals(warmer.getTotal(), warmer.getCompleted());
+
+        // the feature types are already cached, as well as the stores
+        FeatureTypeInfo buildings = catalog.getFeatureTypeByName(getLayerId(MockData.BUILDINGS));
+        assertTrue(pool.getDataStoreCache().containsKey(buildings.getStore().getId()));
+        assertFalse(pool.getFeatureTypeCache().isEmpty());
+    }
+
+    @Test
+    public void testTaskOrder() throws Exception {
+        ResourcePoolWarmer warmer = new ResourcePoolWarmer(getCatalog());
+        List<ResourcePoolWarmer.WarmUpTask> tasks = new ArrayList<>();
+        ResourcePoolWarmer.WarmUpTask low = warmer.new WarmUpTask("low", 1, () -> {});
+        ResourcePoolWarmer.WarmUpTask high = warmer.new WarmUpTask("high", 10, () -> {});
+        ResourcePoolWarmer.WarmUpTask lowToo = warmer.new WarmUpTask("lowToo", 1, () -> {});
+        tasks.add(lowToo);
+        tasks.add(low);
+        tasks.add(high);
+        Collections.sort(tasks);
+        // by priority, then by creation order
+        assertEquals("high", tasks.get(0).name);
+        assertEquals("low", tasks.get(1).name);
+        assertEquals("lowToo", tasks.get(2).name);
+
+        // boosted ones go first
+        lowToo.priority = ResourcePoolWarmer.BOOSTED;
+        Collections.sort(tasks);
+        assertEquals("lowToo", tasks.get(0).name);
+    }
+}
@@ -2810,6 +2810,110 @@ public class CatalogImplTest extends GeoServerSystemTestSupport {
                 Lists.newArrayList(catalog.list(LayerInfo.class, filter, offset, limit, null)));
     }
 
+    @Test
+    public void testListIndexedPredicates() {
+        addDataStore();
+        addNamespace();
+        catalog.add(wsA);
+        catalog.add(dsA);
+
+        FeatureTypeInfo ft1, ft2, ft3;
+        catalog.add(ft1 = newFeatureType("ft1", ds));
+        catalog.add(ft2 = newFeatureType("ft2", ds));
+        catalog.add(ft3 = newFeatureType("ft3", dsA));
+
+        StyleInfo s1, s2;
+        catalog.add(s1 = newStyle("s1", "s1Filename"));
+        catalog.add(s2 = newStyle("s2", "s2Filename"));
+
+        LayerInfo l1, l2, l3;
+        catalog.add(l1 = newLayer(ft1, s1));
+        catalog.add(l2 = newLayer(ft2, s2, s1));
+        catalog.add(l3 = newLayer(ft3, s2));
+        ft1 = catalog.getFeatureType(ft1.getId());
+        ft2 = catalog.getFeatureType(ft2.getId());
+        ft3 = catalog.getFeatureType(ft3.getId());
+        l1 = catalog.getLayer(l1.getId());
+        l2 = catalog.getLayer(l2.getId());
+        l3 = catalog.getLayer(l3.getId());
+
+        assertEquals(
+                newHashSet(ds),
+                newHashSet(catalog.list(StoreInfo.class, equal("workspace.id", ws.getId()))));
+        assertEquals(
+                newHashSet(dsA),
+                newHashSet(catalog.list(StoreInfo.class, equal("workspace.name", "aaa"))));
+        assertEquals(
+                newHashSet(ft1, ft2),
+                newHashSet(catalog.list(FeatureTypeInfo.class, equal("store.id", ds.getId()))));
+        assertEquals(
+                newHashSet(ft2),
+                newHashSet(
+                        catalog.list(
+                                FeatureTypeInfo.class,
+                                Predicates.and(
+                                        equal("store.id", ds.getId()), equal("name", "ft2")))));
+        assertEquals(
+                newHashSet(l3),
+                newHashSet(
+                        catalog.list(
+                                LayerInfo.class,
+                                equal("resource.store.workspace.name", wsA.getName()))));
+        // l1 uses s1 only as its default style
+        assertEquals(
+                newHashSet(l2),
+                newHashSet(catalog.list(LayerInfo.class, equal("styles.id", s1.getId()))));
+        assertEquals(
+                newHashSet(l2, l3),
+                newHashSet(catalog.list(LayerInfo.class, equal("defaultStyle", s2))));
+        assertEquals(2, catalog.count(ResourceInfo.class, equal("store.id", ds.getId())));
+
+        // move a feature type to another store, the indexes should follow
+        ft2.setStore(dsA);
+        catalog.save(ft2);
+        assertEquals(
+                newHashSet(ft1),
+                newHashSet(catalog.list(FeatureTypeInfo.class, equal("store.id", ds.getId()))));
+        assertEquals(
+                newHashSet(ft2, ft3),
+                newHashSet(catalog.getResourcesByStore(dsA, FeatureTypeInfo.class)));
+        assertEquals(
+                newHashSet(l2, l3),
+                newHashSet(
+                        catalog.list(
+                                LayerInfo.class,
+                                equal("resource.store.workspace.name", wsA.getName()))));
+
+        // change styles and remove a layer
+        l2.setDefaultStyle(s1);
+        l2.getStyles().clear();
+        catalog.save(l2);
+        catalog.remove(l1);
+        assertEquals(newHashSet(l2), newHashSet(catalog.getLayers(s1)));
+        assertEquals(newHashSet(l3), newHashSet(catalog.getLayers(s2)));
+    }
+
+    @Test
+    public void testIndexedLookupsUnsavedObjects() {
+        addLayer();
+
+        // objects not added to the catalog have no id, and are not referenced by anything
+        StyleInfo style = newStyle("unsaved", "unsaved.sld");
+        assertNull(style.getId());
+        assertTrue(catalog.getLayers(style).isEmpty());
+
+        DataStoreInfo store = catalog.getFactory().createDataStore();
+        store.setName("unsaved");
+        store.setWorkspace(ws);
+        assertNull(store.getId());
+        assertTrue(catalog.getResourcesByStore(store, ResourceInfo.class).isEmpty());
+
+        WorkspaceInfo workspace = catalog.getFactory().createWorkspace();
+        workspace.setName("unsaved");
+        assertNull(workspace.getId());
+        assertTrue(catalog.getStoresByWorkspace(workspace, StoreInfo.class).isEmpty());
+    }
+
     /**
      * This tests more advanced filters: multi-valued filters, opposite equations, field equations
      */
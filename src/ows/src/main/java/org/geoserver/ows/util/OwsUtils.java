@@ -285,6 +285,20 @@ public class OwsUtils {
      * @param clazz The class of source and target.
      */
     public static <T> void copy(T source, T target, Class<T> clazz) {
+        copy(source, target, clazz, false);
+    }
+
+    /**
+     * Copies properties from one object to another.
+     *
+     * @param source The source object.
+     * @param target The target object.
+     * @param clazz The class of source and target.
+     * @param copyNulls If true, the properties that are null in the source are cleared in the
+     *     target as well, otherwise they are left untouched. Collections and maps are never
+     *     cleared.
+     */
+    public static <T> void copy(T source, T target, Class<T> clazz, boolean copyNulls) {
         ClassProperties properties = getClassProperties(clazz);
         for (String p : properties.properties()) {
             Method getter = properties.getter(p, null);
@@ -306,8 +320,10 @@ public class OwsUtils {
             try {
                 Object newValue = getter.invoke(source, null);
                 if (newValue == null) {
+                    if (copyNulls && setter != null && getter.invoke(target, null) != null) {
+                        setter.invoke(target, new Object[] {null});
+                    }
                     continue;
-                    // TODO: make this a flag whether to overwrite with null values
                 }
                 if (setter == null) {
                     if (Collection.class.isAssignableFrom(type)) {
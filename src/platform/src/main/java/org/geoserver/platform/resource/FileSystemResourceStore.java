@@ -22,6 +22,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.geotools.util.logging.Logging;
@@ -48,6 +49,12 @@ public class FileSystemResourceStore implements ResourceStore {
     // lazily initialized by getResourceNotificationDispatcher()
     final AtomicReference<FileSystemWatcher> watcher = new AtomicReference<>(null);
 
+    /**
+     * When true changes are tracked using the operating system file change notifications, instead
+     * of polling the file system
+     */
+    protected boolean watchServiceEnabled = false;
+
     protected FileSystemResourceStore() {
         // Used by Spring, baseDirectory set by subclass
     }
@@ -563,6 +570,21 @@ public class FileSystemResourceStore implements ResourceStore {
         }
     }
 
+    /**
+     * Enables tracking file system changes with {@link WatchServiceFileSystemWatcher} instead of
+     * the polling {@link FileSystemWatcher}. Has no effect once the notification dispatcher has
+     * been created.
+     *
+     * @param watchServiceEnabled
+     */
+    public void setWatchServiceEnabled(boolean watchServiceEnabled) {
+        this.watchServiceEnabled = watchServiceEnabled;
+    }
+
+    public boolean isWatchServiceEnabled() {
+        return watchServiceEnabled;
+    }
+
     @Override
     public ResourceNotificationDispatcher getResourceNotificationDispatcher() {
         FileSystemWatcher instance = this.watcher.get();
@@ -572,11 +594,16 @@ public class FileSystemResourceStore implements ResourceStore {
             instance =
                     watcher.updateAndGet(
                             v ->
-                                    v == null
-                                            ? new FileSystemWatcher(
-                                                    path -> Paths.toFile(baseDirectory, path))
-                                            : v);
+                                    v == null ? createWatcher() : v);
         }
         return instance;
     }
+
+    private FileSystemWatcher createWatcher() {
+        Function<String, File> fileExtractor = path -> Paths.toFile(baseDirectory, path);
+        if (watchServiceEnabled) {
+            return new WatchServiceFileSystemWatcher(fileExtractor);
+        }
+        return new FileSystemWatcher(fileExtractor);
+    }
 }
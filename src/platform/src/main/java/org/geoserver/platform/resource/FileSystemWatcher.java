@@ -105,7 +105,7 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
     }
 
     /** Record of a ResourceListener that wishes to be notified of changes to a path. */
-    private class Watch implements Comparable<Watch> {
+    class Watch implements Comparable<Watch> {
         /** File being watched */
         final File file;
 
@@ -327,9 +327,15 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
                 @Override
                 public void run() {
                     long now = System.currentTimeMillis();
+                    beforeSync();
                     for (Watch watch : watchers) {
                         if (watch.getListeners().isEmpty()) {
-                            watchers.remove(watch);
+                            if (watchers.remove(watch)) {
+                                watchRemoved(watch);
+                            }
+                            continue;
+                        }
+                        if (!isCheckRequired(watch)) {
                             continue;
                         }
                         final boolean directory = watch.file.isDirectory();
@@ -343,6 +349,7 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
                             LOGGER.log(Level.WARNING, "Error polling contents of " + watch.file, e);
                             return;
                         }
+                        afterCheck(watch);
                         if (directory && LOGGER.isLoggable(level)) {
                             long ellapsedMicros =
                                     MICROSECONDS.convert(System.nanoTime() - start, NANOSECONDS);
@@ -454,6 +461,7 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         if (watch == null) {
             watch = new Watch(file, path);
             watchers.add(watch);
+            watchAdded(watch);
             if (monitor == null) {
                 monitor = pool.scheduleWithFixedDelay(sync, delay, delay, unit);
             }
@@ -472,6 +480,9 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
             watch.removeListener(listener);
             if (watch.getListeners().isEmpty()) {
                 removed = watchers.remove(watch);
+                if (removed) {
+                    watchRemoved(watch);
+                }
             }
         }
         if (removed && watchers.isEmpty()) {
@@ -483,6 +494,34 @@ public class FileSystemWatcher implements ResourceNotificationDispatcher, Dispos
         return removed;
     }
 
+    /** Hook for subclasses, called when a new path starts being watched */
+    void watchAdded(Watch watch) {
+        // nothing to do, the watch will be polled
+    }
+
+    /** Hook for subclasses, called when a path is no longer watched */
+    void watchRemoved(Watch watch) {
+        // nothing to do
+    }
+
+    /** Hook for subclasses, called at the beginning of each pass over the watches */
+    void beforeSync() {
+        // nothing to do
+    }
+
+    /**
+     * Returns true if the watch needs to be checked for changes in the current pass. This
+     * implementation polls all watches on every pass.
+     */
+    boolean isCheckRequired(Watch watch) {
+        return true;
+    }
+
+    /** Hook for subclasses, called after the watch has been checked for changes */
+    void afterCheck(Watch watch) {
+        // nothing to do
+    }
+
     /**
      * To allow test cases to set a shorter delay for testing.
      *
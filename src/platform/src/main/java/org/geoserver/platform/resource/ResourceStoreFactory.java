@@ -17,9 +17,15 @@ import org.springframework.context.ApplicationContextAware;
 /**
  * Factory for ResourceStore creation. Looks for a resourceStoreImpl bean before falling back to the
  * dataDirectoryResourceStore bean. Used to override ResourceStore implementation if desired.
+ *
+ * <p>For file system based stores, setting the {@link #WATCH_SERVICE_KEY} variable to true makes
+ * the store track changes using the operating system notifications instead of polling.
  */
 public class ResourceStoreFactory implements FactoryBean<ResourceStore>, ApplicationContextAware {
 
+    /** Variable enabling the {@link WatchServiceFileSystemWatcher} */
+    public static final String WATCH_SERVICE_KEY = "GEOSERVER_FILESYSTEM_WATCH_SERVICE";
+
     final Logger LOGGER = Logging.getLogger("org.geoserver.platform");
 
     private ApplicationContext applicationContext;
@@ -44,6 +50,11 @@ public class ResourceStoreFactory implements FactoryBean<ResourceStore>, Applica
                             GeoServerExtensions.bean(
                                     "dataDirectoryResourceStore", applicationContext);
         }
+        if (resourceStore instanceof FileSystemResourceStore
+                && Boolean.parseBoolean(
+                        GeoServerExtensions.getProperty(WATCH_SERVICE_KEY, applicationContext))) {
+            ((FileSystemResourceStore) resourceStore).setWatchServiceEnabled(true);
+        }
 
         return resourceStore;
     }
@@ -0,0 +1,247 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform.resource;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+
+/**
+ * {@link FileSystemWatcher} relying on the operating system file change notifications, through
+ * {@link WatchService}, to find out which watched paths need to be checked for changes.
+ *
+ * <p>Instead of walking all watched files and directories on each pass, only the watches whose
+ * directories received an event since the last pass are checked, the deltas are still computed by
+ * {@link FileSystemWatcher} so the {@link ResourceNotification} semantics are unchanged. Multiple
+ * events received for the same path during a pass are coalesced in a single notification.
+ *
+ * <p>Directory watches register the directory and its immediate sub-directories (whose last
+ * modified time is reported as a change by the polling watcher), file watches register their
+ * parent directory, watches on paths that do not exist yet register the nearest existing ancestor
+ * and move down the tree as directories get created. Watches on file systems that do not support
+ * change notifications (network file systems such as NFS or CIFS) or that cannot be registered
+ * fall back on polling.
+ */
+public class WatchServiceFileSystemWatcher extends FileSystemWatcher {
+
+    private static final Logger LOGGER = Logging.getLogger(WatchServiceFileSystemWatcher.class);
+
+    /** File store types that do not deliver (remote) change events */
+    static final Set<String> POLLED_FILE_STORE_TYPES =
+            new HashSet<>(
+                    Arrays.asList(
+                            "nfs", "nfs4", "cifs", "smbfs", "smb2", "afs", "fuse.sshfs", "9p"));
+
+    private WatchService watchService;
+
+    /** The registered directories and the watches interested in them */
+    private final Map<Path, Set<Watch>> watchesByDirectory = new ConcurrentHashMap<>();
+
+    /** The directories registered on behalf of each watch */
+    private final Map<Watch, Set<Path>> directoriesByWatch = new ConcurrentHashMap<>();
+
+    private final Map<Path, WatchKey> keys = new ConcurrentHashMap<>();
+
+    /** Watches that need to be polled, as their directories cannot be registered */
+    private final Set<Watch> polled = ConcurrentHashMap.newKeySet();
+
+    /** Watches that received an event since the last pass */
+    private final Set<Watch> dirty = ConcurrentHashMap.newKeySet();
+
+    WatchServiceFileSystemWatcher(Function<String, File> fileExtractor) {
+        super(fileExtractor);
+        try {
+            this.watchService = FileSystems.getDefault().newWatchService();
+        } catch (IOException | UnsupportedOperationException e) {
+            LOGGER.log(
+                    Level.WARNING,
+                    "File system change notifications are not available, falling back on polling",
+                    e);
+        }
+        // events are cheap to drain, check often and coalesce what arrived in the meantime
+        schedule(1, TimeUnit.SECONDS);
+    }
+
+    WatchServiceFileSystemWatcher() {
+        this(path -> new File(path.replace('/', File.separatorChar)));
+    }
+
+    @Override
+    void watchAdded(Watch watch) {
+        register(watch);
+    }
+
+    @Override
+    void watchRemoved(Watch watch) {
+        release(watch, directoriesByWatch.remove(watch));
+        polled.remove(watch);
+        dirty.remove(watch);
+    }
+
+    @Override
+    void beforeSync() {
+        if (watchService == null) {
+            return;
+        }
+        WatchKey key;
+        while ((key = watchService.poll()) != null) {
+            // the event details are not needed, the delta is computed by the watch itself
+            key.pollEvents();
+            Path directory = (Path) key.watchable();
+            Set<Watch> watches = watchesByDirectory.get(directory);
+            if (watches != null) {
+                dirty.addAll(watches);
+            }
+            if (!key.reset()) {
+                // directory removed or otherwise no longer accessible, the watches
+                // will be registered again against the nearest existing ancestor
+                keys.remove(directory, key);
+            }
+        }
+    }
+
+    @Override
+    boolean isCheckRequired(Watch watch) {
+        return watchService == null || polled.contains(watch) || dirty.remove(watch);
+    }
+
+    @Override
+    void afterCheck(Watch watch) {
+        if (watchService == null || polled.contains(watch)) {
+            return;
+        }
+        // directories might have been created or removed, update the registrations
+        Set<Path> current = directoriesByWatch.get(watch);
+        Set<Path> expected = getDirectories(watch.file);
+        boolean invalid = false;
+        if (current != null) {
+            for (Path directory : current) {
+                WatchKey key = keys.get(directory);
+                invalid |= key == null || !key.isValid();
+            }
+        }
+        if (invalid || !expected.equals(current)) {
+            register(watch);
+            // changes might have happened before the registration, check again on next pass
+            dirty.add(watch);
+        }
+    }
+
+    /** Registers the directories the watch depends on, or falls back on polling */
+    private synchronized void register(Watch watch) {
+        Set<Path> previous = directoriesByWatch.remove(watch);
+        release(watch, previous);
+        if (watchService == null) {
+            polled.add(watch);
+            return;
+        }
+        Set<Path> directories = getDirectories(watch.file);
+        try {
+            for (Path directory : directories) {
+                if (!isWatchable(directory)) {
+                    throw new IOException(directory + " does not support change notifications");
+                }
+                WatchKey key = keys.get(directory);
+                if (key == null || !key.isValid()) {
+                    key =
+                            directory.register(
+                                    watchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+                    keys.put(directory, key);
+                }
+                watchesByDirectory
+                        .computeIfAbsent(directory, d -> ConcurrentHashMap.newKeySet())
+                        .add(watch);
+            }
+            directoriesByWatch.put(watch, directories);
+            polled.remove(watch);
+        } catch (IOException | UnsupportedOperationException | SecurityException e) {
+            LOGGER.log(Level.FINE, "Falling back on polling for " + watch.file, e);
+            release(watch, directories);
+            polled.add(watch);
+        }
+    }
+
+    /** Removes the watch from the directories, cancelling registrations no longer in use */
+    private synchronized void release(Watch watch, Set<Path> directories) {
+        if (directories == null) {
+            return;
+        }
+        for (Path directory : directories) {
+            Set<Watch> watches = watchesByDirectory.get(directory);
+            if (watches != null) {
+                watches.remove(watch);
+                if (watches.isEmpty()) {
+                    watchesByDirectory.remove(directory);
+                    WatchKey key = keys.remove(directory);
+                    if (key != null) {
+                        key.cancel();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * The directories to register in order to be notified of changes to the file: the directory
+     * itself and its children for directories, the parent directory for files, the nearest
+     * existing ancestor for missing files
+     */
+    static Set<Path> getDirectories(File file) {
+        if (file.isDirectory()) {
+            Set<Path> result = new HashSet<>();
+            result.add(file.toPath());
+            File[] children = file.listFiles(File::isDirectory);
+            if (children != null) {
+                for (File child : children) {
+                    result.add(child.toPath());
+                }
+            }
+            return result;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        while (parent != null && !parent.isDirectory()) {
+            parent = parent.getParentFile();
+        }
+        if (parent == null) {
+            return Collections.emptySet();
+        }
+        return Collections.singleton(parent.toPath());
+    }
+
+    /** Returns false for file systems known not to report changes */
+    static boolean isWatchable(Path directory) throws IOException {
+        FileStore store = java.nio.file.Files.getFileStore(directory);
+        String type = store.type();
+        return type == null || !POLLED_FILE_STORE_TYPES.contains(type.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        super.destroy();
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@
 package org.geoserver.platform.resource;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
@@ -148,4 +149,15 @@ public class FileSystemResourceStoreTest {
             executorService.shutdownNow();
         }
     }
+
+    @Test
+    public void testWatchServiceDispatcher() throws Exception {
+        store.setWatchServiceEnabled(true);
+        ResourceNotificationDispatcher dispatcher = store.getResourceNotificationDispatcher();
+        try {
+            assertTrue(dispatcher instanceof WatchServiceFileSystemWatcher);
+        } finally {
+            ((FileSystemWatcher) dispatcher).destroy();
+        }
+    }
 }
@@ -0,0 +1,122 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.platform.resource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.geoserver.platform.resource.ResourceNotification.Kind;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WatchServiceFileSystemWatcherTest {
+
+    @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+    private WatchServiceFileSystemWatcher watcher;
+
+    private BlockingQueue<ResourceNotification> notifications = new ArrayBlockingQueue<>(100);
+
+    private ResourceListener listener = notify -> notifications.add(notify);
+
+    @Before
+    public void setUp() {
+        watcher = new WatchServiceFileSystemWatcher(path -> Paths.toFile(folder.getRoot(), path));
+        watcher.schedule(100, TimeUnit.MILLISECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        watcher.destroy();
+    }
+
+    @Test
+    public void testDirectoryCreate() throws Exception {
+        File styles = folder.newFolder("styles");
+        watcher.addListener("styles", listener);
+
+        new File(styles, "test.sld").createNewFile();
+
+        ResourceNotification notification = notifications.poll(10, TimeUnit.SECONDS);
+        assertNotNull(notification);
+        assertEquals("styles", notification.getPath());
+        assertEquals(Kind.ENTRY_MODIFY, notification.getKind());
+        assertEquals(1, notification.events().size());
+        assertEquals("test.sld", notification.events().get(0).getPath());
+        assertEquals(Kind.ENTRY_CREATE, notification.events().get(0).getKind());
+    }
+
+    @Test
+    public void testFileModify() throws Exception {
+        File file = folder.newFile("global.xml");
+        // make sure the modification time changes
+        file.setLastModified(System.currentTimeMillis() - 10000);
+        watcher.addListener("global.xml", listener);
+
+        write(file, "<global/>");
+
+        ResourceNotification notification = notifications.poll(10, TimeUnit.SECONDS);
+        assertNotNull(notification);
+        assertEquals("global.xml", notification.getPath());
+        assertEquals(Kind.ENTRY_MODIFY, notification.getKind());
+    }
+
+    @Test
+    public void testMissingDirectoryCreated() throws Exception {
+        // the watch starts on a path that does not exist yet
+        watcher.addListener("workspaces/topp", listener);
+
+        File workspace = new File(folder.getRoot(), "workspaces/topp");
+        assertTrue(workspace.mkdirs());
+        new File(workspace, "workspace.xml").createNewFile();
+
+        // depending on timing, the directory and file creation might be reported
+        // in one or more notifications
+        boolean found = false;
+        ResourceNotification notification;
+        while (!found && (notification = notifications.poll(10, TimeUnit.SECONDS)) != null) {
+            assertEquals("workspaces/topp", notification.getPath());
+            for (ResourceNotification.Event event : notification.events()) {
+                found |= "workspace.xml".equals(event.getPath());
+            }
+        }
+        assertTrue(found);
+    }
+
+    @Test
+    public void testDirectories() throws Exception {
+        File styles = folder.newFolder("styles");
+        File images = new File(styles, "images");
+        images.mkdir();
+        File sld = new File(styles, "test.sld");
+        sld.createNewFile();
+
+        assertEquals(2, WatchServiceFileSystemWatcher.getDirectories(styles).size());
+        assertEquals(
+                styles.toPath(),
+                WatchServiceFileSystemWatcher.getDirectories(sld).iterator().next());
+        assertEquals(
+                styles.toPath(),
+                WatchServiceFileSystemWatcher.getDirectories(new File(styles, "missing/a.sld"))
+                        .iterator()
+                        .next());
+    }
+
+    private void write(File file, String contents) throws IOException {
+        try (FileOutputStream fos = new FileOutputStream(file)) {
+            fos.write(contents.getBytes());
+        }
+    }
+}
@@ -0,0 +1,161 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.security.auth;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geotools.util.logging.Logging;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+/** Unit tests for the lock striped AuthenticationCache implementation. */
+public class ConcurrentAuthenticationCacheTest extends BaseAuthenticationCacheTest {
+
+    static final Logger LOGGER = Logging.getLogger(ConcurrentAuthenticationCacheTest.class);
+
+    private static final int CONCURRENCY = 4;
+
+    @Override
+    protected AuthenticationCache createAuthenticationCache() {
+        return new ConcurrentAuthenticationCacheImpl(
+                MAX_ENTRIES, TIME_IDLE, TIME_LIVE, CONCURRENCY);
+    }
+
+    @Override
+    public void tearDown() {
+        ((ConcurrentAuthenticationCacheImpl) cache).destroy();
+    }
+
+    public void testHitRatio() {
+        ConcurrentAuthenticationCacheImpl impl = (ConcurrentAuthenticationCacheImpl) cache;
+        assertEquals(1.0, impl.getHitRatio(), 0d);
+
+        putAuthenticationInCache();
+        assertNotNull(cache.get(SAMPLE_FILTER, SAMPLE_CACHE_KEY));
+        assertNotNull(cache.get(SAMPLE_FILTER, SAMPLE_CACHE_KEY));
+        assertNotNull(cache.get(SAMPLE_FILTER, SAMPLE_CACHE_KEY));
+        assertNull(cache.get(SAMPLE_FILTER, OTHER_CACHE_KEY));
+        assertEquals(3, impl.getHitCount());
+        assertEquals(1, impl.getMissCount());
+        assertEquals(0.75, impl.getHitRatio(), 0d);
+    }
+
+    public void testEviction() {
+        // a single segment behaves as a plain LRU cache
+        ConcurrentAuthenticationCacheImpl impl = new ConcurrentAuthenticationCacheImpl(3, 5, 10, 1);
+        try {
+            for (int i = 1; i <= 3; i++) {
+                impl.put("filter", "key" + i, authentication(i));
+            }
+            assertNotNull(impl.get("filter", "key1"));
+            impl.put("filter", "key4", authentication(4));
+
+            assertEquals(3, impl.size());
+            assertEquals(1, impl.getEvictionCount());
+            assertNotNull(impl.get("filter", "key1"));
+            assertNull(impl.get("filter", "key2"));
+            assertNotNull(impl.get("filter", "key3"));
+            assertNotNull(impl.get("filter", "key4"));
+        } finally {
+            impl.destroy();
+        }
+    }
+
+    public void testTimerWheel() {
+        ConcurrentAuthenticationCacheImpl impl = (ConcurrentAuthenticationCacheImpl) cache;
+        putAuthenticationInCache();
+        cache.put(SAMPLE_FILTER, OTHER_CACHE_KEY, authentication(1), 1000, 1000);
+        long now = System.currentTimeMillis();
+
+        // nothing due yet
+        impl.expire(now);
+        assertEquals(2, impl.size());
+
+        // the first entry is gone, the other one is still there after a full turn of the wheel
+        impl.expire(now + (ConcurrentAuthenticationCacheImpl.WHEEL_SIZE + 10) * 1000L);
+        assertEquals(1, impl.size());
+        assertEquals(1, impl.getExpirationCount());
+        assertNotNull(cache.get(SAMPLE_FILTER, OTHER_CACHE_KEY));
+    }
+
+    public void testReplacedEntryNotExpired() {
+        ConcurrentAuthenticationCacheImpl impl = (ConcurrentAuthenticationCacheImpl) cache;
+        cache.put(SAMPLE_FILTER, OTHER_CACHE_KEY, authentication(1), 1, 1);
+        cache.put(SAMPLE_FILTER, OTHER_CACHE_KEY, authentication(2), 1000, 1000);
+        assertEquals(2, impl.getScheduledCount());
+
+        // the expiration of the replaced entry is dropped, the new entry stays
+        impl.expire(System.currentTimeMillis() + 5000);
+        assertEquals(1, impl.getScheduledCount());
+        assertEquals(0, impl.getExpirationCount());
+        assertEquals(authentication(2), cache.get(SAMPLE_FILTER, OTHER_CACHE_KEY));
+    }
+
+    public void testRemoveAllClearsTheWheel() {
+        ConcurrentAuthenticationCacheImpl impl = (ConcurrentAuthenticationCacheImpl) cache;
+        putAuthenticationInCache();
+        cache.put(SAMPLE_FILTER, OTHER_CACHE_KEY, authentication(1), 1000, 1000);
+        assertEquals(2, impl.getScheduledCount());
+
+        cache.removeAll();
+        assertEquals(0, impl.getScheduledCount());
+        assertEquals(0, impl.size());
+    }
+
+    public void testConcurrentAccess() throws Exception {
+        final int threads = 8;
+        final int lookups = 100000;
+        final int keys = 2000;
+        ConcurrentAuthenticationCacheImpl impl =
+                new ConcurrentAuthenticationCacheImpl(keys / 2, 60, 60, threads * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            long start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                                    for (int j = 0; j < lookups; j++) {
+                                        // skewed key distribution, as with real users
+                                        int k = (int) (keys * Math.pow(random.nextDouble(), 3));
+                                        String key = "key" + k;
+                                        if (impl.get("filter", key) == null) {
+                                            impl.put("filter", key, authentication(k));
+                                        }
+                                    }
+                                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long elapsed = System.nanoTime() - start;
+
+            assertEquals((long) threads * lookups, impl.getHitCount() + impl.getMissCount());
+            assertTrue(impl.size() <= keys / 2 + threads * 2);
+            assertTrue(impl.getHitRatio() > 0.5);
+            if (LOGGER.isLoggable(Level.INFO)) {
+                LOGGER.info(
+                        String.format(
+                                "%d lookups in %d ms, hit ratio %.3f",
+                                threads * lookups, elapsed / 1000000, impl.getHitRatio()));
+            }
+        } finally {
+            executor.shutdownNow();
+            impl.destroy();
+        }
+    }
+
+    private static Authentication authentication(int i) {
+        return new UsernamePasswordAuthenticationToken("user" + i, "password" + i);
+    }
+}
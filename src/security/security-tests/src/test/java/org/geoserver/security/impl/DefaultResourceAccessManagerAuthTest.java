@@ -7,15 +7,19 @@ package org.geoserver.security.impl;
 
 import static org.junit.Assert.*;
 
+import java.util.Arrays;
 import org.geoserver.catalog.LayerGroupInfo;
 import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.ResourceInfo;
 import org.geoserver.catalog.WorkspaceInfo;
+import org.geoserver.catalog.event.impl.CatalogPostModifyEventImpl;
 import org.geoserver.security.*;
 import org.junit.Before;
 import org.junit.Test;
 import org.opengis.filter.Filter;
+import org.springframework.security.authentication.TestingAuthenticationToken;
 import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
 
 public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationTest {
 
@@ -339,6 +343,33 @@ public class DefaultResourceAccessManagerAuthTest extends AbstractAuthorizationT
         }
     }
 
+    @Test
+    public void testMemoizedDecisions() throws Exception {
+        DefaultResourceAccessManager manager = buildAccessManager("complex.properties");
+        assertTrue(manager.canAccess(roUser, statesLayer, AccessMode.READ, true));
+        long cached = manager.decisions.size();
+        assertTrue(cached > 0);
+
+        // users with the same roles share the decisions
+        Authentication sameRoles =
+                new TestingAuthenticationToken(
+                        "ro2",
+                        "supersecret",
+                        Arrays.asList(new GrantedAuthority[] {new GeoServerRole("READER")}));
+        assertTrue(manager.canAccess(sameRoles, statesLayer, AccessMode.READ, true));
+        assertEquals(cached, manager.decisions.size());
+
+        // but not with the ones having different roles
+        assertFalse(manager.canAccess(anonymous, statesLayer, AccessMode.READ, true));
+        assertTrue(manager.decisions.size() > cached);
+
+        // catalog changes drop them all
+        manager.new DecisionCacheInvalidator()
+                .handlePostModifyEvent(new CatalogPostModifyEventImpl());
+        assertEquals(0, manager.decisions.size());
+        assertFalse(manager.canAccess(anonymous, statesLayer, AccessMode.READ, true));
+    }
+
     private boolean canAccess(
             ResourceAccessManager manager,
             Authentication user,
@@ -6,6 +6,7 @@
 
 package org.geoserver.security.impl;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
@@ -110,4 +111,57 @@ public class MemoryRoleServiceTest extends AbstractRoleServiceTest {
         assertTrue(roles.size() == 1);
         assertTrue(roles.contains(role1));
     }
+
+    @Test
+    public void testEffectiveRoleIndex() throws Exception {
+        GeoServerRoleService service = createRoleService("testIndex");
+        GeoServerRoleStore store = service.createStore();
+        GeoServerRole parent = store.createRoleObject("parent");
+        GeoServerRole role1 = store.createRoleObject("role1");
+        GeoServerRole role2 = store.createRoleObject("role2");
+        store.addRole(parent);
+        store.addRole(role1);
+        store.addRole(role2);
+        store.setParentRole(role1, parent);
+        store.associateRoleToUser(role1, "user1");
+        store.associateRoleToUser(role2, "user2");
+        store.store();
+
+        MemoryUserGroupServiceConfigImpl ugconfig = new MemoryUserGroupServiceConfigImpl();
+        ugconfig.setName("testIndex");
+        ugconfig.setClassName(MemoryUserGroupService.class.getName());
+        ugconfig.setPasswordEncoderName(getPBEPasswordEncoder().getName());
+        ugconfig.setPasswordPolicyName(PasswordValidator.DEFAULT_NAME);
+        GeoServerUserGroupService ugService = new MemoryUserGroupService();
+        ugService.setSecurityManager(getSecurityManager());
+        ugService.initializeFromConfig(ugconfig);
+        GeoServerUser user1 = ugService.createUserObject("user1", "abc", true);
+        GeoServerUser user2 = ugService.createUserObject("user2", "abc", true);
+
+        EffectiveRoleIndex index = new EffectiveRoleIndex(ugService, service);
+        try {
+            RoleCalculator calc = new RoleCalculator(ugService, service);
+            calc.setRoleIndex(index);
+            SortedSet<GeoServerRole> roles = calc.calculateRoles(user1);
+            assertEquals(2, roles.size());
+            assertTrue(roles.contains(role1));
+            assertTrue(roles.contains(parent));
+            roles = calc.calculateRoles(user2);
+            assertEquals(1, roles.size());
+            assertTrue(roles.contains(role2));
+            assertEquals(2, index.size());
+
+            // changing the hierarchy of role1 affects user1 only
+            store.setParentRole(role1, null);
+            store.store();
+            assertEquals(1, index.getVersion());
+            assertEquals(1, index.size());
+            roles = calc.calculateRoles(user1);
+            assertEquals(1, roles.size());
+            assertTrue(roles.contains(role1));
+            assertEquals(2, index.size());
+        } finally {
+            index.dispose();
+        }
+    }
 }
@@ -12,7 +12,9 @@ import javax.media.jai.OpImage;
 import javax.media.jai.RenderedOp;
 import org.apache.commons.io.FileUtils;
 import org.geoserver.platform.ServiceException;
+import org.geotools.coverage.CoverageFactoryFinder;
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridCoverageFactory;
 import org.geotools.coverage.grid.io.AbstractGridCoverage2DReader;
 import org.geotools.coverage.grid.io.AbstractGridCoverageWriter;
 import org.geotools.coverage.grid.io.AbstractGridFormat;
@@ -23,6 +25,7 @@ import org.geotools.gce.geotiff.GeoTiffWriteParams;
 import org.geotools.geometry.GeneralEnvelope;
 import org.geotools.image.ImageWorker;
 import org.geotools.image.util.ImageUtilities;
+import org.opengis.coverage.grid.GridCoverage;
 import org.opengis.coverage.grid.GridEnvelope;
 import org.opengis.geometry.Envelope;
 import org.opengis.parameter.GeneralParameterValue;
@@ -42,6 +45,15 @@ public class GeoTiffWriterHelper {
 
     private static final GeoTiffFormat TIFF_FORMAT = new GeoTiffFormat();
 
+    private static final GridCoverageFactory COVERAGE_FACTORY =
+            CoverageFactoryFinder.getGridCoverageFactory(null);
+
+    /**
+     * System property setting how many tiles of a processed coverage are computed ahead of the
+     * encoder, zero or a negative value disables prefetching. Defaults to the number of processors
+     */
+    public static final String PREFETCH_TILES_KEY = "wcs.geotiff.prefetchTiles";
+
     private GridCoverage2D coverage;
 
     private File sourceFile;
@@ -153,9 +165,9 @@ public class GeoTiffWriterHelper {
         } else {
             CoordinateReferenceSystem crs = coverage.getCoordinateReferenceSystem();
             boolean unreferenced = crs == null || crs instanceof EngineeringCRS;
+            RenderedImage ri = prefetchTiles(coverage.getRenderedImage());
 
             if (unreferenced) {
-                RenderedImage ri = coverage.getRenderedImage();
                 int tileWidth, tileHeight;
                 if (imageIoWriteParams.getTilingMode() == GeoToolsWriteParams.MODE_EXPLICIT) {
                     tileWidth = imageIoWriteParams.getTileWidth();
@@ -187,8 +199,19 @@ public class GeoTiffWriterHelper {
                 if (writer == null)
                     throw new ServiceException(
                             "Could not find the GeoTIFF writer, please check it's in the classpath");
+                GridCoverage2D output = coverage;
+                if (ri != coverage.getRenderedImage()) {
+                    output =
+                            COVERAGE_FACTORY.create(
+                                    coverage.getName(),
+                                    ri,
+                                    coverage.getGridGeometry(),
+                                    coverage.getSampleDimensions(),
+                                    new GridCoverage[] {coverage},
+                                    coverage.getProperties());
+                }
                 try {
-                    writer.write(coverage, wps);
+                    writer.write(output, wps);
                 } finally {
                     try {
                         writer.dispose();
@@ -200,6 +223,21 @@ public class GeoTiffWriterHelper {
         }
     }
 
+    /**
+     * Wraps the image so that its tiles get computed ahead of the encoder, if it's the result of
+     * a processing chain made of more than one tile
+     */
+    private RenderedImage prefetchTiles(RenderedImage ri) {
+        int prefetch =
+                Integer.getInteger(PREFETCH_TILES_KEY, Runtime.getRuntime().availableProcessors());
+        if (prefetch <= 0
+                || ri.getNumXTiles() * ri.getNumYTiles() <= 1
+                || !TilePrefetchingImage.isComputed(ri)) {
+            return ri;
+        }
+        return new TilePrefetchingImage(ri, prefetch);
+    }
+
     /**
      * Returns true if the coverage has not been processed in any way since it has been read
      *
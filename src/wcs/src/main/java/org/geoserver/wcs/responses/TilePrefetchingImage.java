@@ -0,0 +1,108 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs.responses;
+
+import java.awt.Point;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.OpImage;
+import javax.media.jai.PlanarImage;
+import javax.media.jai.RenderedOp;
+
+/**
+ * Wraps the last image of a processing chain so that, as the encoder pulls its tiles in row-major
+ * order, the next ones are already being computed, in parallel, by the JAI tile scheduler.
+ *
+ * <p>Without it the chain (crop, scale, reproject, ...) is computed one tile at a time, on the
+ * encoder thread, each tile being requested only once the previous one has been written out. Only
+ * a fixed number of tiles is computed ahead, so the memory used stays bounded regardless of the
+ * size of the output.
+ */
+public class TilePrefetchingImage extends PlanarImage {
+
+    private final PlanarImage source;
+
+    private final OpImage target;
+
+    private final int prefetch;
+
+    private final long tileCount;
+
+    /** Row-major index of the first tile not queued for computation yet */
+    private long queued;
+
+    /**
+     * Builds a new prefetching image
+     *
+     * @param image the image to pull tiles from, the tiles can be computed ahead only if it is
+     *     backed by an {@link OpImage}, see {@link #isComputed(RenderedImage)}
+     * @param prefetch the number of tiles to compute ahead of the encoder
+     */
+    public TilePrefetchingImage(RenderedImage image, int prefetch) {
+        super(new ImageLayout(image), null, null);
+        this.source = PlanarImage.wrapRenderedImage(image);
+        this.target = getOpImage(image);
+        this.prefetch = prefetch;
+        this.tileCount = (long) getNumXTiles() * getNumYTiles();
+    }
+
+    /** Returns true if the tiles of the image are computed by a JAI operation */
+    public static boolean isComputed(RenderedImage image) {
+        return getOpImage(image) != null;
+    }
+
+    private static OpImage getOpImage(RenderedImage image) {
+        if (image instanceof RenderedOp) {
+            image = ((RenderedOp) image).getRendering();
+        }
+        return image instanceof OpImage ? (OpImage) image : null;
+    }
+
+    @Override
+    public Raster getTile(int tileX, int tileY) {
+        prefetch(tileX, tileY);
+        return source.getTile(tileX, tileY);
+    }
+
+    /** Queues the computation of the tiles following the requested one, in row-major order */
+    private synchronized void prefetch(int tileX, int tileY) {
+        if (target == null) {
+            return;
+        }
+        int numXTiles = getNumXTiles();
+        long next = (long) (tileY - getMinTileY()) * numXTiles + (tileX - getMinTileX()) + 1;
+        // the tiles before the requested one won't be needed anymore
+        queued = Math.max(queued, next);
+        long end = Math.min(next + prefetch, tileCount);
+        if (queued >= end) {
+            return;
+        }
+
+        Point[] indices = new Point[(int) (end - queued)];
+        for (int i = 0; i < indices.length; i++, queued++) {
+            indices[i] =
+                    new Point(
+                            getMinTileX() + (int) (queued % numXTiles),
+                            getMinTileY() + (int) (queued / numXTiles));
+        }
+        target.queueTiles(indices);
+    }
+
+    /** Number of tiles queued for computation so far, including the skipped ones */
+    long getQueued() {
+        return queued;
+    }
+
+    @Override
+    public Object getProperty(String name) {
+        return source.getProperty(name);
+    }
+
+    @Override
+    public String[] getPropertyNames() {
+        return source.getPropertyNames();
+    }
+}
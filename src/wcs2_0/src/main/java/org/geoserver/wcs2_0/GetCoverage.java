@@ -10,9 +10,11 @@ import java.awt.geom.AffineTransform;
 import java.awt.image.SampleModel;
 import java.io.IOException;
 import java.text.DecimalFormat;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -20,6 +22,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -49,6 +60,7 @@ import org.geoserver.catalog.LayerInfo;
 import org.geoserver.catalog.util.ReaderDimensionsAccessor;
 import org.geoserver.data.util.CoverageUtils;
 import org.geoserver.platform.ServiceException;
+import org.geoserver.threadlocals.ThreadLocalsTransfer;
 import org.geoserver.wcs.CoverageCleanerCallback;
 import org.geoserver.wcs.WCSInfo;
 import org.geoserver.wcs2_0.exception.WCS20Exception;
@@ -115,6 +127,7 @@ import org.opengis.referencing.datum.PixelInCell;
 import org.opengis.referencing.operation.MathTransform;
 import org.opengis.referencing.operation.NoninvertibleTransformException;
 import org.opengis.referencing.operation.TransformException;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.vfny.geoserver.util.WCSUtils;
 import org.vfny.geoserver.wcs.WcsException;
 
@@ -162,6 +175,16 @@ public class GetCoverage {
 
     private static final double EPS = 1e-6;
 
+    /**
+     * System property setting the max number of granules of multidimensional requests read in
+     * parallel, both by each request and by all of them together, defaults to the number of
+     * available processors, 1 reads them one after the other
+     */
+    public static final String GRANULE_READERS_KEY = "wcs.granuleReaders";
+
+    /** The pool used to read the granules of multidimensional requests in parallel */
+    static volatile ThreadPoolExecutor GRANULE_READERS_POOL;
+
     public GetCoverage(
             WCSInfo serviceInfo,
             Catalog catalog,
@@ -292,18 +315,21 @@ public class GetCoverage {
                 final int numRequests = requests.size();
                 final Iterator<GridCoverageRequest> requestsIterator = requests.iterator();
                 GridCoverageRequest firstRequest = requestsIterator.next();
-                GridCoverage2D firstCoverage =
-                        setupCoverage(
-                                helper,
-                                firstRequest,
-                                request,
-                                reader,
-                                hints,
-                                extensions,
-                                dimensions,
-                                incrementalOutputSize,
-                                incrementalInputSize,
-                                coverageFactory);
+                // each granule gets its own copy of the hints, as the scaling alters them
+                final GranuleReader granuleReader =
+                        subRequest ->
+                                setupCoverage(
+                                        helper,
+                                        subRequest,
+                                        request,
+                                        reader,
+                                        new Hints(hints),
+                                        extensions,
+                                        dimensions,
+                                        incrementalOutputSize,
+                                        incrementalInputSize,
+                                        coverageFactory);
+                GridCoverage2D firstCoverage = granuleReader.read(firstRequest);
                 // check the first coverage memory usage
                 long actual = incrementalInputSize.finalSize();
                 // Estimated size
@@ -324,22 +350,7 @@ public class GetCoverage {
                 stack.addCoverage(firstCoverage);
 
                 // Get a coverage for each subrequest
-                while (requestsIterator.hasNext()) {
-                    GridCoverageRequest subRequest = requestsIterator.next();
-                    GridCoverage2D singleCoverage =
-                            setupCoverage(
-                                    helper,
-                                    subRequest,
-                                    request,
-                                    reader,
-                                    hints,
-                                    extensions,
-                                    dimensions,
-                                    incrementalOutputSize,
-                                    incrementalInputSize,
-                                    coverageFactory);
-                    stack.addCoverage(singleCoverage);
-                }
+                readGranules(requestsIterator, granuleReader, stack);
                 coverage = stack;
             } else {
                 // IncrementalSize not used
@@ -370,6 +381,124 @@ public class GetCoverage {
         return coverage;
     }
 
+    /**
+     * Reads the granules of the given requests and adds them to the stack, in the same order as the
+     * requests. Up to {@link #GRANULE_READERS_KEY} granules are read in parallel, the ones read
+     * ahead of the first one still missing are held in memory until it's added to the stack.
+     */
+    private void readGranules(
+            Iterator<GridCoverageRequest> requests,
+            GranuleReader granuleReader,
+            GranuleStackImpl stack)
+            throws Exception {
+        int parallelism =
+                Integer.getInteger(GRANULE_READERS_KEY, Runtime.getRuntime().availableProcessors());
+        if (parallelism <= 1) {
+            while (requests.hasNext()) {
+                stack.addCoverage(granuleReader.read(requests.next()));
+            }
+            return;
+        }
+
+        ExecutorService pool = getGranuleReadersPool();
+        AtomicBoolean failed = new AtomicBoolean();
+        Deque<CompletableFuture<GridCoverage2D>> window = new ArrayDeque<>();
+        try {
+            while (requests.hasNext() || !window.isEmpty()) {
+                while (requests.hasNext() && window.size() < parallelism) {
+                    GridCoverageRequest subRequest = requests.next();
+                    ThreadLocalsTransfer threadLocalTransfer = new ThreadLocalsTransfer();
+                    window.add(
+                            CompletableFuture.supplyAsync(
+                                    () -> {
+                                        if (failed.get()) {
+                                            return null;
+                                        }
+                                        threadLocalTransfer.apply();
+                                        try {
+                                            return granuleReader.read(subRequest);
+                                        } catch (Exception e) {
+                                            throw new CompletionException(e);
+                                        } finally {
+                                            threadLocalTransfer.cleanup();
+                                        }
+                                    },
+                                    pool));
+                }
+                stack.addCoverage(getGranule(window.poll()));
+            }
+        } finally {
+            if (!window.isEmpty()) {
+                // the request failed, skip the granules not read yet, and dispose the ones read
+                // meanwhile. Don't interrupt the running reads, an interrupted channel gets
+                // closed, breaking the shared reader
+                failed.set(true);
+                for (CompletableFuture<GridCoverage2D> future : window) {
+                    future.thenAccept(
+                            coverage -> {
+                                if (coverage != null) {
+                                    CoverageCleanerCallback.disposeCoverage(coverage);
+                                }
+                            });
+                }
+            }
+        }
+    }
+
+    private GridCoverage2D getGranule(Future<GridCoverage2D> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the app wide pool used to read the granules of multidimensional requests, with up to
+     * {@link #GRANULE_READERS_KEY} threads, the reads exceeding them are queued
+     */
+    static ThreadPoolExecutor getGranuleReadersPool() {
+        if (GRANULE_READERS_POOL == null) {
+            synchronized (GetCoverage.class) {
+                if (GRANULE_READERS_POOL == null) {
+                    int threads =
+                            Math.max(
+                                    1,
+                                    Integer.getInteger(
+                                            GRANULE_READERS_KEY,
+                                            Runtime.getRuntime().availableProcessors()));
+                    CustomizableThreadFactory threadFactory =
+                            new CustomizableThreadFactory("WCSGranuleReader-");
+                    threadFactory.setDaemon(true);
+                    // the reads never wait for each other, queueing them cannot deadlock
+                    ThreadPoolExecutor pool =
+                            new ThreadPoolExecutor(
+                                    threads,
+                                    threads,
+                                    60L,
+                                    TimeUnit.SECONDS,
+                                    new LinkedBlockingQueue<>(),
+                                    threadFactory);
+                    pool.allowCoreThreadTimeOut(true);
+                    GRANULE_READERS_POOL = pool;
+                }
+            }
+        }
+        return GRANULE_READERS_POOL;
+    }
+
+    /** Reads the coverage of a single granule of a multidimensional request */
+    @FunctionalInterface
+    private interface GranuleReader {
+        GridCoverage2D read(GridCoverageRequest request) throws Exception;
+    }
+
     /**
      * Setup a coverage on top of the specified gridCoverageRequest
      *
@@ -2010,7 +2139,7 @@ public class GetCoverage {
          *
          * @param GridCoverage2D
          */
-        public void addSize(GridCoverage2D coverage) {
+        public synchronized void addSize(GridCoverage2D coverage) {
             incrementalSize +=
                     getCoverageSize(
                             coverage.getGridGeometry().getGridRange2D(),
@@ -2019,7 +2148,7 @@ public class GetCoverage {
         }
 
         /** Return the total size accumulated */
-        public long finalSize() {
+        public synchronized long finalSize() {
             return incrementalSize;
         }
 
@@ -2038,7 +2167,7 @@ public class GetCoverage {
         }
 
         /** Reset the total size stored to 0 */
-        public void reset() {
+        public synchronized void reset() {
             incrementalSize = 0;
         }
 
@@ -0,0 +1,76 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wcs.responses;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import javax.media.jai.ImageLayout;
+import javax.media.jai.JAI;
+import javax.media.jai.RenderedOp;
+import javax.media.jai.operator.ConstantDescriptor;
+import javax.media.jai.operator.InvertDescriptor;
+import org.junit.Test;
+
+public class TilePrefetchingImageTest {
+
+    /** A 256x256 chain made of 4x4 tiles */
+    private RenderedOp newChain() {
+        ImageLayout layout = new ImageLayout();
+        layout.setTileWidth(64);
+        layout.setTileHeight(64);
+        RenderingHints hints = new RenderingHints(JAI.KEY_IMAGE_LAYOUT, layout);
+        RenderedOp constant = ConstantDescriptor.create(256f, 256f, new Byte[] {10}, hints);
+        return InvertDescriptor.create(constant, hints);
+    }
+
+    @Test
+    public void testIsComputed() {
+        assertTrue(TilePrefetchingImage.isComputed(newChain()));
+        assertFalse(
+                TilePrefetchingImage.isComputed(
+                        new BufferedImage(256, 256, BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    public void testPrefetch() {
+        RenderedOp chain = newChain();
+        TilePrefetchingImage image = new TilePrefetchingImage(chain, 4);
+        assertEquals(4, image.getNumXTiles());
+        assertEquals(4, image.getNumYTiles());
+        assertEquals(0, image.getQueued());
+
+        // the 4 tiles following the requested one are queued
+        assertTile(chain, image.getTile(0, 0));
+        assertEquals(5, image.getQueued());
+        // and then the ones not queued yet, in row-major order
+        assertTile(chain, image.getTile(1, 0));
+        assertEquals(6, image.getQueued());
+        assertTile(chain, image.getTile(1, 1));
+        assertEquals(10, image.getQueued());
+        // never past the last tile
+        assertTile(chain, image.getTile(3, 3));
+        assertEquals(16, image.getQueued());
+    }
+
+    @Test
+    public void testNotComputed() {
+        RenderedImage buffered = new BufferedImage(256, 256, BufferedImage.TYPE_BYTE_GRAY);
+        TilePrefetchingImage image = new TilePrefetchingImage(buffered, 4);
+        image.getTile(0, 0);
+        assertEquals(0, image.getQueued());
+    }
+
+    private void assertTile(RenderedImage expected, Raster tile) {
+        Raster source = expected.getTile(tile.getMinX() / 64, tile.getMinY() / 64);
+        assertEquals(source.getBounds(), tile.getBounds());
+        assertEquals(255 - 10, tile.getSample(tile.getMinX(), tile.getMinY(), 0));
+    }
+}
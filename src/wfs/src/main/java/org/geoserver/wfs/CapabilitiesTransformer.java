@@ -37,6 +37,10 @@ import org.geoserver.catalog.NamespaceInfo;
 import org.geoserver.config.ContactInfo;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.ResourceErrorHandling;
+import org.geoserver.ows.CapabilitiesFragmentCache;
+import org.geoserver.ows.CapabilitiesFragmentCache.Fragment;
+import org.geoserver.ows.CapabilitiesFragmentCache.FragmentKey;
+import org.geoserver.ows.CapabilitiesFragmentCache.RecordingContentHandler;
 import org.geoserver.ows.URLMangler.URLType;
 import org.geoserver.ows.xml.v1_0.OWS;
 import org.geoserver.platform.GeoServerExtensions;
@@ -64,6 +68,7 @@ import org.vfny.geoserver.global.FeatureTypeInfoTitleComparator;
 import org.vfny.geoserver.util.ResponseUtils;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
+import org.xml.sax.SAXException;
 import org.xml.sax.helpers.AttributesImpl;
 
 /**
@@ -140,6 +145,26 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
         this.catalog = catalog;
     }
 
+    /**
+     * Wraps the handler so that the feature type elements can be recorded and replayed by the
+     * {@link CapabilitiesFragmentCache}, if available
+     */
+    protected static ContentHandler wrapForFragmentCache(ContentHandler handler) {
+        CapabilitiesFragmentCache fragmentCache = CapabilitiesFragmentCache.get();
+        if (fragmentCache == null || handler instanceof RecordingContentHandler) {
+            return handler;
+        }
+        return fragmentCache.wrap(handler);
+    }
+
+    /** Returns the fragment cache to be used with the handler, or null if not available */
+    protected static CapabilitiesFragmentCache getFragmentCache(ContentHandler handler) {
+        if (handler instanceof RecordingContentHandler) {
+            return CapabilitiesFragmentCache.get();
+        }
+        return null;
+    }
+
     /**
      * It turns out that the he WFS 1.0 and 1.1 specifications don't actually support an
      * updatesequence-based getcapabilities operation. There's no mention of an updatesequence
@@ -308,14 +333,18 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
         }
 
         public Translator createTranslator(ContentHandler handler) {
-            return new CapabilitiesTranslator1_0(handler);
+            return new CapabilitiesTranslator1_0(wrapForFragmentCache(handler));
         }
 
         protected class CapabilitiesTranslator1_0 extends TranslatorSupport {
             protected GetCapabilitiesRequest request;
+            private final CapabilitiesFragmentCache fragmentCache;
+            private final RecordingContentHandler recorder;
 
             public CapabilitiesTranslator1_0(ContentHandler handler) {
                 super(handler, null, null);
+                this.fragmentCache = getFragmentCache(handler);
+                this.recorder = fragmentCache != null ? (RecordingContentHandler) handler : null;
             }
 
             public void encode(Object object) throws IllegalArgumentException {
@@ -763,11 +792,31 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
                 Collections.sort(featureTypes, new FeatureTypeInfoTitleComparator());
                 for (Iterator it = featureTypes.iterator(); it.hasNext(); ) {
                     FeatureTypeInfo ftype = (FeatureTypeInfo) it.next();
+                    FragmentKey key = null;
+                    if (fragmentCache != null && fragmentCache.isCacheable(ftype)) {
+                        key = fragmentCache.getKey(ftype, request.getBaseUrl(), "WFS 1.0.0");
+                    }
                     try {
+                        if (key != null) {
+                            Fragment fragment = fragmentCache.getFragment(key);
+                            if (fragment != null) {
+                                recorder.replay(fragment);
+                                continue;
+                            }
+                            recorder.startRecording();
+                        }
                         mark();
                         handleFeatureType(ftype);
                         commit();
+                        if (key != null) {
+                            fragmentCache.putFragment(key, recorder.stopRecording());
+                        }
+                    } catch (SAXException e) {
+                        throw new RuntimeException(e);
                     } catch (RuntimeException e) {
+                        if (key != null) {
+                            recorder.cancelRecording();
+                        }
                         if (skipMisconfigured) {
                             reset();
                             LOGGER.log(
@@ -966,7 +1015,8 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
         }
 
         public Translator createTranslator(ContentHandler handler) {
-            return new CapabilitiesTranslator1_1(handler, baseUrl, wfs, extCapsProviders);
+            return new CapabilitiesTranslator1_1(
+                    wrapForFragmentCache(handler), baseUrl, wfs, extCapsProviders);
         }
 
         protected class CapabilitiesTranslator1_1 extends TranslatorSupport {
@@ -975,6 +1025,8 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
             protected Collection<WFSExtendedCapabilitiesProvider> extCapsProviders;
             protected final WFSInfo wfs;
             protected final String schemaBaseURL;
+            private final CapabilitiesFragmentCache fragmentCache;
+            private final RecordingContentHandler recorder;
 
             public CapabilitiesTranslator1_1(
                     ContentHandler handler,
@@ -982,6 +1034,8 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
                     WFSInfo wfs,
                     Collection<WFSExtendedCapabilitiesProvider> extCapsProviders) {
                 super(handler, null, null);
+                this.fragmentCache = getFragmentCache(handler);
+                this.recorder = fragmentCache != null ? (RecordingContentHandler) handler : null;
                 this.wfs = wfs;
                 this.extCapsProviders = extCapsProviders;
                 this.schemaBaseURL = baseUrl;
@@ -1555,11 +1609,37 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
                 for (Iterator i = featureTypes.iterator(); i.hasNext(); ) {
                     FeatureTypeInfo featureType = (FeatureTypeInfo) i.next();
                     if (featureType.enabled()) {
+                        FragmentKey key = null;
+                        if (fragmentCache != null && fragmentCache.isCacheable(featureType)) {
+                            key =
+                                    fragmentCache.getKey(
+                                            featureType,
+                                            request.getBaseUrl(),
+                                            getClass().getName(),
+                                            version,
+                                            crs);
+                        }
                         try {
+                            if (key != null) {
+                                Fragment fragment = fragmentCache.getFragment(key);
+                                if (fragment != null) {
+                                    recorder.replay(fragment);
+                                    continue;
+                                }
+                                recorder.startRecording();
+                            }
                             mark();
                             featureType(featureType, crs);
                             commit();
+                            if (key != null) {
+                                fragmentCache.putFragment(key, recorder.stopRecording());
+                            }
+                        } catch (SAXException e) {
+                            throw new RuntimeException(e);
                         } catch (RuntimeException ex) {
+                            if (key != null) {
+                                recorder.cancelRecording();
+                            }
                             if (skipMisconfigured) {
                                 reset();
                                 LOGGER.log(
@@ -2128,7 +2208,8 @@ public abstract class CapabilitiesTransformer extends TransformerBase {
 
         @Override
         public Translator createTranslator(ContentHandler handler) {
-            return new CapabilitiesTranslator2_0(handler, baseUrl, wfs, this.extCapsProviders);
+            return new CapabilitiesTranslator2_0(
+                    wrapForFragmentCache(handler), baseUrl, wfs, this.extCapsProviders);
         }
 
         protected class CapabilitiesTranslator2_0 extends TranslatorSupport {
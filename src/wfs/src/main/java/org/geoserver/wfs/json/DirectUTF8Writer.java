@@ -0,0 +1,226 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import net.sf.json.util.JSONUtils;
+
+/**
+ * A {@link Writer} encoding characters straight into UTF-8 bytes in a reusable buffer, without
+ * going through a {@link java.nio.charset.CharsetEncoder}, and able to write rounded numbers
+ * without allocating intermediate strings.
+ *
+ * <p>The output is the same as an {@link java.io.OutputStreamWriter} using the UTF-8 charset
+ * (unpaired surrogates are replaced by a question mark) and the numbers are written exactly as
+ * json-lib would (see {@link JSONUtils#numberToString(Number)}).
+ */
+public class DirectUTF8Writer extends Writer {
+
+    static final int BUFFER_SIZE = 16 * 1024;
+
+    /** Max number of decimals handled by the allocation free number formatting */
+    static final int MAX_FAST_DECIMALS = 8;
+
+    static final long[] POWERS_OF_TEN = {
+        1L,
+        10L,
+        100L,
+        1000L,
+        10000L,
+        100000L,
+        1000000L,
+        10000000L,
+        100000000L,
+        1000000000L,
+        10000000000L,
+        100000000000L,
+        1000000000000L,
+        10000000000000L,
+        100000000000000L,
+        1000000000000000L
+    };
+
+    /** Numbers with more significant digits are formatted by the JDK */
+    static final long MAX_FAST_UNITS = POWERS_OF_TEN[15];
+
+    private final OutputStream out;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+
+    private int count;
+
+    /** Pending high surrogate, from a previous write call */
+    private char highSurrogate;
+
+    public DirectUTF8Writer(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        if (count + 4 > buffer.length) {
+            drain();
+        }
+        encode((char) c);
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            if (count + 4 > buffer.length) {
+                drain();
+            }
+            encode(cbuf[i]);
+        }
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        for (int i = off, end = off + len; i < end; i++) {
+            if (count + 4 > buffer.length) {
+                drain();
+            }
+            encode(str.charAt(i));
+        }
+    }
+
+    private void encode(char c) {
+        if (highSurrogate != 0) {
+            char high = highSurrogate;
+            highSurrogate = 0;
+            if (Character.isLowSurrogate(c)) {
+                int cp = Character.toCodePoint(high, c);
+                buffer[count++] = (byte) (0xF0 | (cp >> 18));
+                buffer[count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                buffer[count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                buffer[count++] = (byte) (0x80 | (cp & 0x3F));
+                return;
+            }
+            // unpaired high surrogate
+            buffer[count++] = '?';
+        }
+        if (c < 0x80) {
+            buffer[count++] = (byte) c;
+        } else if (c < 0x800) {
+            buffer[count++] = (byte) (0xC0 | (c >> 6));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c)) {
+            highSurrogate = c;
+        } else if (Character.isLowSurrogate(c)) {
+            // unpaired low surrogate
+            buffer[count++] = '?';
+        } else {
+            buffer[count++] = (byte) (0xE0 | (c >> 12));
+            buffer[count++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+    }
+
+    /**
+     * Writes the value rounded to the given number of decimals, in the same format as json-lib,
+     * that is, the output of {@link Double#toString(double)} with trailing zeroes (and dot)
+     * removed from the decimal part
+     *
+     * @throws net.sf.json.JSONException if the value is not finite
+     */
+    public void writeRounded(double value, int numDecimals) throws IOException {
+        double rounded = RoundingUtil.round(value, numDecimals);
+        if (!writeFast(rounded, numDecimals)) {
+            write(JSONUtils.numberToString(rounded));
+        }
+    }
+
+    /**
+     * Writes the value without allocations, if it has a plain (not scientific) representation and
+     * few enough significant digits to be sure it matches the JDK formatting
+     */
+    private boolean writeFast(double value, int numDecimals) throws IOException {
+        if (value == 0) {
+            write(Double.doubleToRawLongBits(value) < 0 ? "-0" : "0");
+            return true;
+        }
+        double abs = Math.abs(value);
+        // Double.toString switches to scientific notation outside of this range
+        if (numDecimals < 0
+                || numDecimals > MAX_FAST_DECIMALS
+                || Double.isNaN(abs)
+                || abs < 1e-3
+                || abs >= 1e7) {
+            return false;
+        }
+        long scale = POWERS_OF_TEN[numDecimals];
+        long units = Math.round(abs * scale);
+        // the decimal representation must map back to the very same double
+        if (units >= MAX_FAST_UNITS || (double) units / scale != abs) {
+            return false;
+        }
+
+        // strip the trailing zeroes of the decimal part
+        int decimals = numDecimals;
+        while (decimals > 0 && units % 10 == 0) {
+            units /= 10;
+            decimals--;
+        }
+        scale = POWERS_OF_TEN[decimals];
+        long integerPart = units / scale;
+        long decimalPart = units % scale;
+
+        if (count + 24 > buffer.length) {
+            drain();
+        }
+        if (value < 0) {
+            buffer[count++] = '-';
+        }
+        writeDigits(integerPart, 1);
+        if (decimals > 0) {
+            buffer[count++] = '.';
+            writeDigits(decimalPart, decimals);
+        }
+        return true;
+    }
+
+    /** Writes the digits of a non negative number, left padded with zeroes */
+    private void writeDigits(long value, int minDigits) {
+        int digits = 1;
+        while (digits < POWERS_OF_TEN.length && value >= POWERS_OF_TEN[digits]) {
+            digits++;
+        }
+        digits = Math.max(digits, minDigits);
+        for (int i = count + digits - 1; i >= count; i--) {
+            buffer[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        count += digits;
+    }
+
+    /** Writes out the buffered bytes, without flushing the underlying stream */
+    private void drain() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (highSurrogate != 0) {
+            highSurrogate = 0;
+            if (count + 1 > buffer.length) {
+                drain();
+            }
+            buffer[count++] = '?';
+        }
+        flush();
+        out.close();
+    }
+}
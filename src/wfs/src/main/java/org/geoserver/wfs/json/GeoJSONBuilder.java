@@ -5,6 +5,7 @@
  */
 package org.geoserver.wfs.json;
 
+import java.io.IOException;
 import java.io.Writer;
 import java.util.Calendar;
 import java.util.List;
@@ -39,8 +40,12 @@ public class GeoJSONBuilder extends JSONBuilder {
 
     private boolean encodeMeasures = false;
 
+    /** Not null if the coordinates can be written directly, bypassing the JSONBuilder machinery */
+    private final DirectUTF8Writer directWriter;
+
     public GeoJSONBuilder(Writer w) {
         super(w);
+        this.directWriter = w instanceof DirectUTF8Writer ? (DirectUTF8Writer) w : null;
     }
 
     /**
@@ -153,7 +158,23 @@ public class GeoJSONBuilder extends JSONBuilder {
             // let's see if we need to encode measures, NaN values will not be encoded
             double m = encodeMeasures ? coordinates.getM(i) : Double.NaN;
             // encode the coordinate ordinates to the JSON output
-            writeCoordinate(coordinates.getX(i), coordinates.getY(i), coordinates.getZ(i), m);
+            double x = coordinates.getX(i);
+            double y = coordinates.getY(i);
+            double z = coordinates.getZ(i);
+            if (directWriter != null) {
+                try {
+                    if (i > 0) {
+                        directWriter.write(',');
+                    }
+                    directWriter.write('[');
+                    writeOrdinatesDirect(x, y, z, m);
+                    directWriter.write(']');
+                } catch (IOException e) {
+                    throw new JSONException(e);
+                }
+            } else {
+                writeCoordinate(x, y, z, m);
+            }
         }
         // we are done with the array
         return this.endArray();
@@ -176,6 +197,14 @@ public class GeoJSONBuilder extends JSONBuilder {
     private JSONBuilder writeCoordinate(double x, double y, double z, double m) {
         // start encoding JSON array
         this.array();
+        if (directWriter != null) {
+            try {
+                writeOrdinatesDirect(x, y, z, m);
+            } catch (IOException e) {
+                throw new JSONException(e);
+            }
+            return this.endArray();
+        }
         // adjust the order of X and Y ordinates if needed
         if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
             // encode latitude first and then longitude
@@ -204,6 +233,36 @@ public class GeoJSONBuilder extends JSONBuilder {
         return this.endArray();
     }
 
+    /**
+     * Writes the comma separated ordinates straight to the {@link DirectUTF8Writer}, following the
+     * same rules as {@link #writeCoordinate(double, double, double, double)}. The caller is in
+     * charge of the enclosing array.
+     */
+    private void writeOrdinatesDirect(double x, double y, double z, double m) throws IOException {
+        if (axisOrder == CRS.AxisOrder.NORTH_EAST) {
+            if (!Double.isNaN(y)) { // for 1d linear referencing cases
+                directWriter.writeRounded(y, numDecimals);
+                directWriter.write(',');
+            }
+            directWriter.writeRounded(x, numDecimals);
+        } else {
+            directWriter.writeRounded(x, numDecimals);
+            if (!Double.isNaN(y)) { // for 1d linear referencing cases
+                directWriter.write(',');
+                directWriter.writeRounded(y, numDecimals);
+            }
+        }
+        z = Double.isNaN(z) && !Double.isNaN(m) ? 0 : z;
+        if (!Double.isNaN(z)) {
+            directWriter.write(',');
+            directWriter.writeRounded(z, numDecimals);
+        }
+        if (!Double.isNaN(m)) {
+            directWriter.write(',');
+            directWriter.writeRounded(m, numDecimals);
+        }
+    }
+
     private void roundedValue(double value) {
         super.value(RoundingUtil.round(value, numDecimals));
     }
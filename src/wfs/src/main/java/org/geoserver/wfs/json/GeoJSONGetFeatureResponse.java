@@ -11,6 +11,8 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -54,6 +56,12 @@ import org.opengis.referencing.crs.CoordinateReferenceSystem;
 public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
     private final Logger LOGGER = org.geotools.util.logging.Logging.getLogger(this.getClass());
 
+    /**
+     * Name of the variable that can be set to false to disable the direct UTF-8 encoding of the
+     * output, in case of troubles
+     */
+    public static final String DIRECT_ENCODING_KEY = "GEOJSON_DIRECT_ENCODING";
+
     // store the response type
     protected final boolean jsonp;
 
@@ -97,7 +105,6 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
         if (LOGGER.isLoggable(Level.INFO)) LOGGER.info("about to encode JSON");
 
         // prepare to write out
-        OutputStreamWriter osw = null;
         Writer outWriter = null;
 
         // get feature count for request
@@ -108,8 +115,7 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
                         : totalNumberOfFeatures;
 
         try {
-            osw = new OutputStreamWriter(output, gs.getGlobal().getSettings().getCharset());
-            outWriter = new BufferedWriter(osw);
+            outWriter = getWriter(output, gs.getGlobal().getSettings().getCharset());
 
             if (jsonp) {
                 outWriter.write(getCallbackFunction() + "(");
@@ -160,6 +166,22 @@ public class GeoJSONGetFeatureResponse extends WFSGetFeatureOutputFormat {
         }
     }
 
+    /**
+     * Returns the writer used to encode the response. UTF-8 output is encoded with a {@link
+     * DirectUTF8Writer}, which allows the {@link GeoJSONBuilder} to write coordinates without
+     * allocating intermediate strings, unless disabled with the {@link #DIRECT_ENCODING_KEY}
+     * variable.
+     */
+    protected Writer getWriter(OutputStream output, String charset) throws IOException {
+        String direct = GeoServerExtensions.getProperty(DIRECT_ENCODING_KEY);
+        if (charset != null
+                && StandardCharsets.UTF_8.equals(Charset.forName(charset))
+                && !"false".equalsIgnoreCase(direct)) {
+            return new DirectUTF8Writer(output);
+        }
+        return new BufferedWriter(new OutputStreamWriter(output, charset));
+    }
+
     /**
      * Builds, configures and returns {@link GeoJSONBuilder}
      *
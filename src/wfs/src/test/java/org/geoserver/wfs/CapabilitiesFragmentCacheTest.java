@@ -0,0 +1,75 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.data.test.CiteTestData;
+import org.geoserver.ows.CapabilitiesFragmentCache;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CapabilitiesFragmentCacheTest extends WFSTestSupport {
+
+    static final String[] VERSIONS = {"1.0.0", "1.1.0", "2.0.0"};
+
+    @Before
+    public void clearCache() {
+        CapabilitiesFragmentCache cache = CapabilitiesFragmentCache.get();
+        assertNotNull(cache);
+        cache.clear();
+    }
+
+    @Test
+    public void testCachedOutputMatches() throws Exception {
+        for (String version : VERSIONS) {
+            String request = capabilitiesRequest(version);
+            String cold = getAsString(request);
+            String warm = getAsString(request);
+            assertEquals(cold, warm);
+
+            // and the other way around, the cached output matches a fresh one
+            CapabilitiesFragmentCache.get().clear();
+            assertEquals(warm, getAsString(request));
+        }
+    }
+
+    @Test
+    public void testFeatureTypeChangeInvalidates() throws Exception {
+        for (String version : VERSIONS) {
+            getAsString(capabilitiesRequest(version));
+        }
+
+        Catalog catalog = getCatalog();
+        FeatureTypeInfo buildings =
+                catalog.getFeatureTypeByName(getLayerId(CiteTestData.BUILDINGS));
+        String title = buildings.getTitle();
+        try {
+            buildings.setTitle("Cached buildings");
+            catalog.save(buildings);
+
+            for (String version : VERSIONS) {
+                String capabilities = getAsString(capabilitiesRequest(version));
+                assertTrue(capabilities.contains("Cached buildings"));
+            }
+        } finally {
+            buildings.setTitle(title);
+            catalog.save(buildings);
+        }
+
+        for (String version : VERSIONS) {
+            assertFalse(getAsString(capabilitiesRequest(version)).contains("Cached buildings"));
+        }
+    }
+
+    private String capabilitiesRequest(String version) {
+        return "wfs?service=WFS&request=GetCapabilities&version=" + version;
+    }
+}
@@ -0,0 +1,85 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wfs.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import net.sf.json.JSONException;
+import net.sf.json.util.JSONUtils;
+import org.junit.Test;
+
+public class DirectUTF8WriterTest {
+
+    @Test
+    public void testNumbersSameAsJsonLib() throws IOException {
+        Random random = new Random(42);
+        double[] magnitudes = {1e-5, 1e-3, 0.5, 1, 180, 1e4, 1e6, 1e7, 1e10};
+        for (int i = 0; i < 100000; i++) {
+            double value =
+                    (random.nextDouble() * 2 - 1) * magnitudes[random.nextInt(magnitudes.length)];
+            assertNumber(value, random.nextInt(17));
+        }
+    }
+
+    @Test
+    public void testSpecialNumbers() throws IOException {
+        double[] values = {0, -0d, 1, -1, 0.001, 0.0005, 9999999.5, 1e7, -0.1, 0.1 + 0.2};
+        for (double value : values) {
+            for (int numDecimals = 0; numDecimals < 10; numDecimals++) {
+                assertNumber(value, numDecimals);
+            }
+        }
+    }
+
+    @Test(expected = JSONException.class)
+    public void testNaN() throws IOException {
+        new DirectUTF8Writer(new ByteArrayOutputStream()).writeRounded(Double.NaN, 6);
+    }
+
+    @Test
+    public void testStringsSameAsOutputStreamWriter() throws IOException {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder("ascii, \u00e0\u00e8, \u20ac, \ud83c\udf0d, ");
+        // random chars, including unpaired surrogates
+        for (int i = 0; i < 100000; i++) {
+            sb.append((char) random.nextInt(0x10000));
+        }
+        String text = sb.toString();
+
+        ByteArrayOutputStream direct = new ByteArrayOutputStream();
+        try (Writer writer = new DirectUTF8Writer(direct)) {
+            // small chunks, so that surrogate pairs get split across calls
+            for (int i = 0; i < text.length(); ) {
+                int length = Math.min(random.nextInt(50), text.length() - i);
+                writer.write(text, i, length);
+                i += length;
+            }
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(expected, StandardCharsets.UTF_8)) {
+            writer.write(text);
+        }
+        assertArrayEquals(expected.toByteArray(), direct.toByteArray());
+    }
+
+    private void assertNumber(double value, int numDecimals) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DirectUTF8Writer writer = new DirectUTF8Writer(bos);
+        writer.writeRounded(value, numDecimals);
+        writer.flush();
+        String expected = JSONUtils.numberToString(RoundingUtil.round(value, numDecimals));
+        assertEquals(
+                value + " with " + numDecimals + " decimals",
+                expected,
+                new String(bos.toByteArray(), StandardCharsets.UTF_8));
+    }
+}
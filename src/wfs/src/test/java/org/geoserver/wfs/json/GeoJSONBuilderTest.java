@@ -7,10 +7,13 @@ package org.geoserver.wfs.json;
 
 import static org.junit.Assert.assertEquals;
 
+import java.io.ByteArrayOutputStream;
 import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import net.sf.json.JSONArray;
 import net.sf.json.JSONObject;
+import org.geotools.referencing.CRS;
 import org.junit.Before;
 import org.junit.Test;
 import org.locationtech.jts.geom.Coordinate;
@@ -51,6 +54,47 @@ public class GeoJSONBuilderTest {
         assertEquals("{\"type\":\"Point\",\"coordinates\":[1,2]}", writer.toString());
     }
 
+    @Test
+    public void testDirectWriterSameOutput() throws Exception {
+        String[] wkts = {
+            "POINT (1.5 -2.25)",
+            "MULTIPOINT ZM (2 0 20 2, 1 1 1 1)",
+            "LINESTRING (0.1234567 1e-5, 12345678.9 -0.0001, 1e10 3)",
+            "LINESTRING M (0 0 1, 10 10 2)",
+            "POLYGON ((0 0, 0 10, 10 10, 0 0), (1 1, 1 2, 2 2, 1 1))",
+            "MULTIPOLYGON (((0 0, 0 1, 1 1, 0 0)), ((2 2, 2 3, 3 3, 2 2)))",
+            "GEOMETRYCOLLECTION (POINT (1 2), LINESTRING (0 0, 1 1))"
+        };
+        for (CRS.AxisOrder axisOrder : CRS.AxisOrder.values()) {
+            for (String wkt : wkts) {
+                Geometry g = new WKTReader().read(wkt);
+                StringWriter expected = new StringWriter();
+                GeoJSONBuilder reference = new GeoJSONBuilder(expected);
+                reference.setEncodeMeasures(true);
+                reference.setAxisOrder(axisOrder);
+                reference.setNumberOfDecimals(4);
+                reference.object().key("geometry");
+                reference.writeGeom(g);
+                reference.key("bbox").value(1).endObject();
+
+                ByteArrayOutputStream bos = new ByteArrayOutputStream();
+                DirectUTF8Writer writer = new DirectUTF8Writer(bos);
+                GeoJSONBuilder direct = new GeoJSONBuilder(writer);
+                direct.setEncodeMeasures(true);
+                direct.setAxisOrder(axisOrder);
+                direct.setNumberOfDecimals(4);
+                direct.object().key("geometry");
+                direct.writeGeom(g);
+                direct.key("bbox").value(1).endObject();
+                writer.flush();
+
+                assertEquals(
+                        expected.toString(),
+                        new String(bos.toByteArray(), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
     class MyPoint extends Point {
 
         public MyPoint(double x, double y) {
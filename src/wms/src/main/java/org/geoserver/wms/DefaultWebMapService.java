@@ -9,6 +9,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import net.opengis.wfs.FeatureCollectionType;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
@@ -23,6 +24,7 @@ import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.geotools.styling.Style;
 import org.geotools.styling.StyledLayerDescriptor;
 import org.geotools.util.SuppressFBWarnings;
+import org.geotools.util.logging.Logging;
 import org.geotools.xml.transform.TransformerBase;
 import org.locationtech.jts.geom.Envelope;
 import org.springframework.beans.BeansException;
@@ -58,6 +60,9 @@ import org.springframework.context.ApplicationContextAware;
  */
 public class DefaultWebMapService
         implements WebMapService, ApplicationContextAware, DisposableBean {
+
+    static final Logger LOGGER = Logging.getLogger(DefaultWebMapService.class);
+
     /** default for 'format' parameter. */
     public static String FORMAT = "image/png";
 
@@ -108,6 +113,12 @@ public class DefaultWebMapService
     /** Use a global rendering pool, or use a new pool each time */
     private static Boolean USE_GLOBAL_RENDERING_POOL = null;
 
+    /** Max number of threads rendering the layers of GetMap requests in parallel, 0 to disable */
+    private static Integer PARALLEL_LAYER_RENDERING_THREADS = null;
+
+    /** The pool used to render the layers of a GetMap request in parallel */
+    static volatile ExecutorService LAYER_RENDERING_POOL;
+
     private GetCapabilities getCapabilities;
 
     private DescribeLayer describeLayer;
@@ -186,6 +197,23 @@ public class DefaultWebMapService
             if (usePool == null) USE_GLOBAL_RENDERING_POOL = true;
             else USE_GLOBAL_RENDERING_POOL = Boolean.valueOf(usePool);
         }
+
+        // parallel rendering of the layers in a GetMap, off by default
+        if (PARALLEL_LAYER_RENDERING_THREADS == null) {
+            String threads =
+                    GeoServerExtensions.getProperty("PARALLEL_LAYER_RENDERING_THREADS", context);
+            PARALLEL_LAYER_RENDERING_THREADS = 0;
+            if (threads != null) {
+                try {
+                    PARALLEL_LAYER_RENDERING_THREADS = Integer.valueOf(threads.trim());
+                } catch (NumberFormatException e) {
+                    LOGGER.warning(
+                            "Invalid PARALLEL_LAYER_RENDERING_THREADS value "
+                                    + threads
+                                    + ", parallel layer rendering disabled");
+                }
+            }
+        }
     }
 
     /**
@@ -350,11 +378,37 @@ public class DefaultWebMapService
         return RENDERING_POOL;
     }
 
+    /**
+     * Returns the app wide bounded pool used to render the layers of a GetMap request in parallel,
+     * or null if parallel layer rendering is disabled (the default, it can be enabled by setting
+     * the PARALLEL_LAYER_RENDERING_THREADS property to a positive number of threads)
+     */
+    public static ExecutorService getLayerRenderingPool() {
+        Integer threads = PARALLEL_LAYER_RENDERING_THREADS;
+        if (threads == null || threads <= 0) {
+            return null;
+        }
+        if (LAYER_RENDERING_POOL == null) {
+            synchronized (DefaultWebMapService.class) {
+                if (LAYER_RENDERING_POOL == null) {
+                    LAYER_RENDERING_POOL = new ThreadLocalTransferExecutor(threads);
+                }
+            }
+        }
+
+        return LAYER_RENDERING_POOL;
+    }
+
     public void destroy() throws Exception {
         if (RENDERING_POOL != null) {
             RENDERING_POOL.shutdown();
             RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
             RENDERING_POOL = null;
         }
+        if (LAYER_RENDERING_POOL != null) {
+            LAYER_RENDERING_POOL.shutdown();
+            LAYER_RENDERING_POOL.awaitTermination(10, TimeUnit.SECONDS);
+            LAYER_RENDERING_POOL = null;
+        }
     }
 }
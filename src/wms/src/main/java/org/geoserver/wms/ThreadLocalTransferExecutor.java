@@ -7,6 +7,7 @@ package org.geoserver.wms;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -23,6 +24,12 @@ class ThreadLocalTransferExecutor extends ThreadPoolExecutor {
         super(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>());
     }
 
+    /** Builds a pool with the given max number of threads, queueing the tasks in excess */
+    public ThreadLocalTransferExecutor(int threads) {
+        super(threads, threads, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>());
+        allowCoreThreadTimeOut(true);
+    }
+
     @Override
     public Future<?> submit(Runnable task) {
         ThreadLocalsTransfer threadLocalTransfer = new ThreadLocalsTransfer();
@@ -56,6 +56,10 @@ import org.geoserver.catalog.util.CloseableIterator;
 import org.geoserver.config.ContactInfo;
 import org.geoserver.config.GeoServer;
 import org.geoserver.config.ResourceErrorHandling;
+import org.geoserver.ows.CapabilitiesFragmentCache;
+import org.geoserver.ows.CapabilitiesFragmentCache.Fragment;
+import org.geoserver.ows.CapabilitiesFragmentCache.FragmentKey;
+import org.geoserver.ows.CapabilitiesFragmentCache.RecordingContentHandler;
 import org.geoserver.ows.URLMangler.URLType;
 import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
@@ -171,8 +175,10 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
 
     @Override
     public Translator createTranslator(ContentHandler handler) {
+        CapabilitiesFragmentCache fragmentCache = CapabilitiesFragmentCache.get();
         return new Capabilities_1_3_0_Translator(
-                handler,
+                fragmentCache != null ? fragmentCache.wrap(handler) : handler,
+                fragmentCache,
                 wmsConfig,
                 getMapFormats,
                 extCapsProviders,
@@ -220,21 +226,57 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
         /** if true, forces always including a root Layer element * */
         private Boolean includeRootLayer;
 
+        /** Caches the layer elements, might be null */
+        private CapabilitiesFragmentCache fragmentCache;
+
+        /** Records the layer elements for the fragment cache, might be null */
+        private RecordingContentHandler recorder;
+
+        /**
+         * Creates a new CapabilitiesTranslator object, not caching the layer elements.
+         *
+         * @param handler content handler to send sax events to.
+         * @param schemaBaseURL
+         */
+        public Capabilities_1_3_0_Translator(
+                ContentHandler handler,
+                WMS wmsConfig,
+                Collection<GetMapOutputFormat> getMapFormats,
+                Collection<ExtendedCapabilitiesProvider> extCapsProviders,
+                String schemaBaseURL,
+                Boolean includeRootLayer) {
+            this(
+                    handler,
+                    null,
+                    wmsConfig,
+                    getMapFormats,
+                    extCapsProviders,
+                    schemaBaseURL,
+                    includeRootLayer);
+        }
+
         /**
          * Creates a new CapabilitiesTranslator object.
          *
          * @param handler content handler to send sax events to.
+         * @param fragmentCache the layer elements cache, used only if the handler is the one
+         *     returned by {@link CapabilitiesFragmentCache#wrap(ContentHandler)}
          * @param schemaBaseURL
          * @param schemaLoc
          */
         public Capabilities_1_3_0_Translator(
                 ContentHandler handler,
+                CapabilitiesFragmentCache fragmentCache,
                 WMS wmsConfig,
                 Collection<GetMapOutputFormat> getMapFormats,
                 Collection<ExtendedCapabilitiesProvider> extCapsProviders,
                 String schemaBaseURL,
                 Boolean includeRootLayer) {
             super(handler, null, null);
+            if (handler instanceof RecordingContentHandler) {
+                this.fragmentCache = fragmentCache;
+                this.recorder = (RecordingContentHandler) handler;
+            }
             this.wmsConfig = wmsConfig;
             this.getMapFormats = getMapFormats;
             this.extCapsProviders = extCapsProviders;
@@ -1030,11 +1072,30 @@ public class Capabilities_1_3_0_Transformer extends TransformerBase {
         }
 
         private void doHandleLayer(LayerInfo layer, boolean isRoot) {
+            FragmentKey key = null;
+            if (fragmentCache != null && fragmentCache.isCacheable(layer)) {
+                key = fragmentCache.getKey(layer, request.getBaseUrl(), "WMS 1.3.0", isRoot);
+            }
             try {
+                if (key != null) {
+                    Fragment fragment = fragmentCache.getFragment(key);
+                    if (fragment != null) {
+                        recorder.replay(fragment);
+                        return;
+                    }
+                    recorder.startRecording();
+                }
                 mark();
                 handleLayer(layer, isRoot);
+                // the buffered events flow through the recorder on commit
                 commit();
+                if (key != null) {
+                    fragmentCache.putFragment(key, recorder.stopRecording());
+                }
             } catch (Exception e) {
+                if (key != null) {
+                    recorder.cancelRecording();
+                }
                 // report what layer we failed on to help the admin locate and fix it
 
                 if (skipping) {
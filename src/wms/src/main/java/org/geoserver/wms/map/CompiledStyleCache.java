@@ -0,0 +1,331 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.CatalogException;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.catalog.event.CatalogAddEvent;
+import org.geoserver.catalog.event.CatalogListener;
+import org.geoserver.catalog.event.CatalogModifyEvent;
+import org.geoserver.catalog.event.CatalogPostModifyEvent;
+import org.geoserver.catalog.event.CatalogRemoveEvent;
+import org.geoserver.platform.GeoServerExtensions;
+import org.geotools.filter.function.EnvFunction;
+import org.geotools.filter.visitor.DefaultFilterVisitor;
+import org.geotools.filter.visitor.SimplifyingFilterVisitor;
+import org.geotools.styling.FeatureTypeStyle;
+import org.geotools.styling.FeatureTypeStyleImpl;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.visitor.DuplicatingStyleVisitor;
+import org.geotools.util.logging.Logging;
+import org.opengis.filter.Filter;
+import org.opengis.filter.expression.Expression;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.VolatileFunction;
+
+/**
+ * Caches a rendering oriented, pre-processed version of the styles used in GetMap requests, shared
+ * across requests, with the rule filters and expressions simplified (constant sub-expressions
+ * folded) and the rules pre-selected by scale range, so that the renderer only has to deal with
+ * the rules that can be active at the requested scale.
+ *
+ * <p>Styles are tracked by identity, the ones coming from the catalog are shared across requests
+ * by the {@link org.geoserver.catalog.ResourcePool} and get compiled the second time they are
+ * used, while one-off styles (e.g. SLD_BODY ones) are used as is. The cache is cleared when a
+ * style is modified or removed, and its size can be configured with the {@link #CACHE_SIZE_KEY}
+ * variable (number of styles, zero disables the cache).
+ */
+public class CompiledStyleCache implements CatalogListener {
+
+    static final Logger LOGGER = Logging.getLogger(CompiledStyleCache.class);
+
+    /** Name of the variable controlling the max number of compiled styles */
+    public static final String CACHE_SIZE_KEY = "COMPILED_STYLE_CACHE_SIZE";
+
+    /** Default max number of compiled styles */
+    static final int DEFAULT_CACHE_SIZE = 1000;
+
+    /**
+     * Relative tolerance used when selecting the rules by scale, the renderer makes the final
+     * decision anyways, this only has to account for small differences in scale computation
+     */
+    static final double SCALE_TOLERANCE = 0.01;
+
+    private final Cache<Style, StyleEntry> styles;
+
+    private final boolean enabled;
+
+    /**
+     * Looks up the cache in the application context
+     *
+     * @return the cache, or null if not available
+     */
+    public static CompiledStyleCache get() {
+        return GeoServerExtensions.bean(CompiledStyleCache.class);
+    }
+
+    public CompiledStyleCache(Catalog catalog) {
+        this(catalog, getConfiguredCacheSize());
+    }
+
+    CompiledStyleCache(Catalog catalog, int maxStyles) {
+        this.enabled = maxStyles > 0;
+        // weak keys are compared by identity
+        this.styles =
+                CacheBuilder.newBuilder().weakKeys().maximumSize(Math.max(1, maxStyles)).build();
+        if (catalog != null) {
+            catalog.addListener(this);
+        }
+    }
+
+    private static int getConfiguredCacheSize() {
+        String value = GeoServerExtensions.getProperty(CACHE_SIZE_KEY);
+        if (value != null) {
+            try {
+                return Integer.parseInt(value.trim());
+            } catch (NumberFormatException e) {
+                LOGGER.warning("Invalid value for " + CACHE_SIZE_KEY + ": " + value);
+            }
+        }
+        return DEFAULT_CACHE_SIZE;
+    }
+
+    /**
+     * Returns a style equivalent to the given one at the specified scale denominator, containing
+     * only the rules possibly active at that scale, or the style itself if not compiled (yet)
+     */
+    public Style getStyle(Style style, double scaleDenominator) {
+        if (!enabled || style == null || Double.isNaN(scaleDenominator)) {
+            return style;
+        }
+        try {
+            StyleEntry entry = styles.get(style, StyleEntry::new);
+            CompiledStyle compiled = entry.getCompiled(style);
+            return compiled != null ? compiled.getStyle(scaleDenominator) : style;
+        } catch (ExecutionException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Failed to compile style, using it as is", e);
+            return style;
+        }
+    }
+
+    /** Clears the cache */
+    public void clear() {
+        styles.invalidateAll();
+    }
+
+    void handleChange(Object source) {
+        if (source instanceof StyleInfo) {
+            clear();
+        }
+    }
+
+    @Override
+    public void handleAddEvent(CatalogAddEvent event) throws CatalogException {
+        // new styles have not been compiled yet
+    }
+
+    @Override
+    public void handleRemoveEvent(CatalogRemoveEvent event) throws CatalogException {
+        handleChange(event.getSource());
+    }
+
+    @Override
+    public void handleModifyEvent(CatalogModifyEvent event) throws CatalogException {
+        handleChange(event.getSource());
+    }
+
+    @Override
+    public void handlePostModifyEvent(CatalogPostModifyEvent event) throws CatalogException {
+        // the style contents might have been written after the modify event
+        handleChange(event.getSource());
+    }
+
+    @Override
+    public void reloaded() {
+        clear();
+    }
+
+    /** Tracks the usage of a style, compiling it on the second use */
+    static class StyleEntry {
+
+        final AtomicInteger uses = new AtomicInteger();
+
+        volatile CompiledStyle compiled;
+
+        CompiledStyle getCompiled(Style style) {
+            CompiledStyle result = compiled;
+            if (result == null && uses.incrementAndGet() >= 2) {
+                synchronized (this) {
+                    result = compiled;
+                    if (result == null) {
+                        result = compiled = new CompiledStyle(style);
+                    }
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A simplified copy of a style, along with the copies containing only the rules active in
+     * each scale range
+     */
+    static class CompiledStyle {
+
+        final Style simplified;
+
+        /** The sorted, distinct, scale denominators at which the set of active rules changes */
+        final double[] breakpoints;
+
+        /** The rule selections, keyed by the indexes of the scale ranges they cover */
+        final ConcurrentHashMap<Long, Style> selections = new ConcurrentHashMap<>();
+
+        CompiledStyle(Style style) {
+            StyleSimplifier simplifier = new StyleSimplifier();
+            style.accept(simplifier);
+            this.simplified = (Style) simplifier.getCopy();
+
+            TreeSet<Double> scales = new TreeSet<>();
+            for (FeatureTypeStyle fts : simplified.featureTypeStyles()) {
+                for (Rule rule : fts.rules()) {
+                    addBreakpoint(scales, rule.getMinScaleDenominator());
+                    addBreakpoint(scales, rule.getMaxScaleDenominator());
+                }
+            }
+            this.breakpoints = scales.stream().mapToDouble(d -> d).toArray();
+        }
+
+        private void addBreakpoint(TreeSet<Double> scales, double scale) {
+            if (scale > 0 && !Double.isInfinite(scale)) {
+                scales.add(scale);
+            }
+        }
+
+        Style getStyle(double scaleDenominator) {
+            double min = scaleDenominator * (1 - SCALE_TOLERANCE);
+            double max = scaleDenominator * (1 + SCALE_TOLERANCE);
+            // the selection only changes when the bounds cross a breakpoint
+            long key = ((long) range(min) << 32) | range(max);
+            return selections.computeIfAbsent(key, k -> select(min, max));
+        }
+
+        /** Returns the index of the scale range containing the scale denominator */
+        int range(double scale) {
+            int idx = Arrays.binarySearch(breakpoints, scale);
+            return idx >= 0 ? idx + 1 : -idx - 1;
+        }
+
+        /** Builds a copy of the style with only the rules active between the given scales */
+        Style select(double min, double max) {
+            RuleSelector selector = new RuleSelector(min, max);
+            simplified.accept(selector);
+            return (Style) selector.getCopy();
+        }
+    }
+
+    /**
+     * Copies a style simplifying filters and expressions, but leaving alone the ones depending on
+     * the request context (environment variables, volatile functions) and the rendering
+     * transformations
+     */
+    static class StyleSimplifier extends DuplicatingStyleVisitor {
+
+        final SimplifyingFilterVisitor simplifier = new SimplifyingFilterVisitor();
+
+        @Override
+        protected Filter copy(Filter filter) {
+            Filter copy = super.copy(filter);
+            if (copy == null || isVolatile(copy)) {
+                return copy;
+            }
+            return (Filter) copy.accept(simplifier, null);
+        }
+
+        @Override
+        protected Expression copy(Expression expression) {
+            Expression copy = super.copy(expression);
+            if (copy == null || isVolatile(copy)) {
+                return copy;
+            }
+            return (Expression) copy.accept(simplifier, null);
+        }
+
+        @Override
+        public void visit(FeatureTypeStyle fts) {
+            super.visit(fts);
+            // transformations are evaluated by the renderer against the data, never fold them
+            FeatureTypeStyle copy = (FeatureTypeStyle) pages.peek();
+            copy.setTransformation(fts.getTransformation());
+        }
+
+        private boolean isVolatile(Object filterOrExpression) {
+            VolatileFunctionFinder finder = new VolatileFunctionFinder();
+            if (filterOrExpression instanceof Filter) {
+                ((Filter) filterOrExpression).accept(finder, null);
+            } else {
+                ((Expression) filterOrExpression).accept(finder, null);
+            }
+            return finder.found;
+        }
+    }
+
+    /** Looks for functions whose value is not constant across requests */
+    static class VolatileFunctionFinder extends DefaultFilterVisitor {
+
+        boolean found;
+
+        @Override
+        public Object visit(Function function, Object data) {
+            if (function instanceof VolatileFunction || function instanceof EnvFunction) {
+                found = true;
+                return data;
+            }
+            return super.visit(function, data);
+        }
+    }
+
+    /**
+     * Copies a style keeping only the rules whose scale range intersects the given one. The rules
+     * themselves are shared with the original style.
+     */
+    static class RuleSelector extends DuplicatingStyleVisitor {
+
+        final double min;
+
+        final double max;
+
+        RuleSelector(double min, double max) {
+            this.min = min;
+            this.max = max;
+        }
+
+        @Override
+        public void visit(FeatureTypeStyle fts) {
+            FeatureTypeStyle copy = new FeatureTypeStyleImpl((FeatureTypeStyleImpl) fts);
+            List<Rule> active = new ArrayList<>();
+            for (Rule r : fts.rules()) {
+                if (r.getMinScaleDenominator() <= max && r.getMaxScaleDenominator() > min) {
+                    active.add(r);
+                }
+            }
+            copy.rules().clear();
+            copy.rules().addAll(active);
+            pages.push(copy);
+        }
+    }
+}
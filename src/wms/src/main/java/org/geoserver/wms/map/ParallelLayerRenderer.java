@@ -0,0 +1,244 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.map.Layer;
+import org.geotools.map.MapContent;
+import org.geotools.renderer.RenderListener;
+import org.geotools.renderer.lite.StreamingRenderer;
+import org.opengis.feature.simple.SimpleFeature;
+
+/**
+ * A {@link StreamingRenderer} that paints each layer of the map content with a separate renderer,
+ * in parallel, on a private surface, and then composites the surfaces in z-order on the target
+ * graphics. The overall latency becomes the one of the slowest layer, instead of the sum of them.
+ *
+ * <p>Render listeners and {@link #stopRendering()} calls are forwarded to all the per layer
+ * renderers, so the usual timeout and error enforcers keep working. The caller is responsible to
+ * check that the layers are independent (no labels, no composition or z-ordering across layers)
+ * and that there is enough memory for the extra surfaces, see {@link
+ * RenderedImageMapOutputFormat}.
+ */
+class ParallelLayerRenderer extends StreamingRenderer {
+
+    private final Supplier<StreamingRenderer> rendererFactory;
+
+    private final ExecutorService layerPool;
+
+    private final List<RenderListener> listeners = new CopyOnWriteArrayList<>();
+
+    private final Set<StreamingRenderer> activeRenderers = ConcurrentHashMap.newKeySet();
+
+    private ExecutorService paintingPool;
+
+    private volatile boolean stopped;
+
+    /**
+     * @param rendererFactory builds the per layer renderers
+     * @param layerPool the pool the layers are rendered in, must not be the one painting requests
+     *     are submitted to, as the layer tasks wait for the painting ones
+     */
+    public ParallelLayerRenderer(
+            Supplier<StreamingRenderer> rendererFactory, ExecutorService layerPool) {
+        this.rendererFactory = rendererFactory;
+        this.layerPool = layerPool;
+    }
+
+    @Override
+    public void setThreadPool(ExecutorService threadPool) {
+        super.setThreadPool(threadPool);
+        this.paintingPool = threadPool;
+    }
+
+    @Override
+    public void addRenderListener(RenderListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void removeRenderListener(RenderListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public void stopRendering() {
+        stopped = true;
+        super.stopRendering();
+        for (StreamingRenderer renderer : activeRenderers) {
+            renderer.stopRendering();
+        }
+    }
+
+    @Override
+    public void paint(
+            Graphics2D graphics,
+            Rectangle paintArea,
+            ReferencedEnvelope mapArea,
+            AffineTransform worldToScreen) {
+        stopped = false;
+        RenderListener forwarder = new ForwardingListener();
+        RenderingHints graphicsHints = graphics.getRenderingHints();
+        List<Future<BufferedImage>> futures = new ArrayList<>();
+        try {
+            for (Layer layer : getMapContent().layers()) {
+                if (layer.isVisible()) {
+                    futures.add(
+                            layerPool.submit(
+                                    () ->
+                                            paintLayer(
+                                                    layer,
+                                                    forwarder,
+                                                    graphicsHints,
+                                                    paintArea,
+                                                    mapArea,
+                                                    worldToScreen)));
+                }
+            }
+            // composite in z-order as soon as each layer is ready, so that the surfaces
+            // of the bottom layers can be released while the others are still rendering
+            for (Future<BufferedImage> future : futures) {
+                BufferedImage image = future.get();
+                if (image != null && !stopped) {
+                    graphics.drawImage(image, 0, 0, null);
+                }
+            }
+        } catch (InterruptedException e) {
+            stopRendering();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            stopRendering();
+            Throwable cause = e.getCause();
+            forwarder.errorOccurred(
+                    cause instanceof Exception ? (Exception) cause : new RuntimeException(cause));
+        } finally {
+            for (Future<BufferedImage> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    private BufferedImage paintLayer(
+            Layer layer,
+            RenderListener forwarder,
+            RenderingHints graphicsHints,
+            Rectangle paintArea,
+            ReferencedEnvelope mapArea,
+            AffineTransform worldToScreen) {
+        if (stopped) {
+            return null;
+        }
+        StreamingRenderer renderer = rendererFactory.get();
+        renderer.setThreadPool(paintingPool);
+        renderer.setJava2DHints(getJava2DHints());
+        renderer.setRendererHints(new HashMap<>(getRendererHints()));
+        renderer.addRenderListener(forwarder);
+        renderer.setMapContent(new SingleLayerContent(layer, mapArea));
+
+        BufferedImage image =
+                new BufferedImage(
+                        paintArea.x + paintArea.width,
+                        paintArea.y + paintArea.height,
+                        BufferedImage.TYPE_INT_ARGB_PRE);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHints(graphicsHints);
+        activeRenderers.add(renderer);
+        try {
+            // might have been stopped while setting up the renderer
+            if (stopped) {
+                return null;
+            }
+            renderer.paint(graphics, paintArea, mapArea, worldToScreen);
+        } finally {
+            activeRenderers.remove(renderer);
+            graphics.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * A map content exposing a single layer of the parent one, without taking ownership of it (the
+     * parent map content is the one disposing the layers)
+     */
+    static class SingleLayerContent extends MapContent {
+
+        private final List<Layer> layers;
+
+        SingleLayerContent(Layer layer, ReferencedEnvelope mapArea) {
+            this.layers = Collections.singletonList(layer);
+            getViewport().setBounds(mapArea);
+        }
+
+        @Override
+        public List<Layer> layers() {
+            return layers;
+        }
+    }
+
+    /**
+     * Forwards the events of the per layer renderers to the listeners of this one, serializing
+     * them as the listeners are not meant to be called concurrently
+     */
+    class ForwardingListener implements RenderListener {
+
+        @Override
+        public synchronized void featureRenderer(SimpleFeature feature) {
+            for (RenderListener listener : listeners) {
+                listener.featureRenderer(feature);
+            }
+        }
+
+        @Override
+        public synchronized void errorOccurred(Exception e) {
+            for (RenderListener listener : listeners) {
+                listener.errorOccurred(e);
+            }
+        }
+
+        @Override
+        public synchronized void layerStart(Layer layer) {
+            for (RenderListener listener : listeners) {
+                listener.layerStart(layer);
+            }
+        }
+
+        @Override
+        public synchronized void layerEnd(Layer layer) {
+            for (RenderListener listener : listeners) {
+                listener.layerEnd(layer);
+            }
+        }
+
+        @Override
+        public synchronized void labellingStart() {
+            for (RenderListener listener : listeners) {
+                listener.labellingStart();
+            }
+        }
+
+        @Override
+        public synchronized void labellingEnd() {
+            for (RenderListener listener : listeners) {
+                listener.labellingEnd();
+            }
+        }
+    }
+}
@@ -8,13 +8,22 @@ package org.geoserver.wms.map;
 import java.awt.Point;
 import java.awt.geom.Point2D;
 import java.awt.image.RenderedImage;
+import java.awt.image.SampleModel;
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.xml.namespace.QName;
 import org.apache.commons.lang3.builder.EqualsBuilder;
 import org.apache.commons.lang3.builder.HashCodeBuilder;
 import org.geoserver.config.ConfigurationListenerAdapter;
@@ -22,18 +31,51 @@ import org.geoserver.config.GeoServer;
 import org.geoserver.config.GeoServerInfo;
 import org.geoserver.config.ServiceInfo;
 import org.geoserver.config.impl.GeoServerLifecycleHandler;
+import org.geoserver.platform.GeoServerExtensions;
 import org.geoserver.platform.ServiceException;
 import org.geoserver.wfs.TransactionEvent;
 import org.geoserver.wfs.TransactionListener;
 import org.geoserver.wfs.WFSException;
 import org.geoserver.wms.GetMapRequest;
+import org.geoserver.wms.MapLayerInfo;
 import org.geotools.geometry.jts.ReferencedEnvelope;
 import org.geotools.referencing.CRS;
 import org.geotools.referencing.CRS.AxisOrder;
 import org.geotools.util.CanonicalSet;
+import org.geotools.util.logging.Logging;
 import org.locationtech.jts.geom.Envelope;
 
-public class QuickTileCache implements TransactionListener, GeoServerLifecycleHandler {
+/**
+ * Keeps the meta-tiles rendered for tiled=true GetMap requests in a bounded, concurrent cache.
+ *
+ * <p>The cache is split in a number of stripes, each one an access ordered map protected by its
+ * own lock, so that concurrent requests for different meta-tiles do not contend with each other.
+ * The memory budget is counted in raster bytes and can be configured with the {@link
+ * #CACHE_SIZE_KEY} system/environment variable (in megabytes). The budget is shared by all the
+ * stripes, when it's exceeded the least recently used meta-tiles of the stripe being added to are
+ * evicted first, then the ones of the following stripes, approximating a global LRU without any
+ * state shared by the stripes.
+ * WFS transactions only evict the meta-tiles of the affected layers intersecting the modified area.
+ *
+ * <p>Hit, miss and eviction counters are exposed via JMX as {@link #OBJECT_NAME}.
+ */
+public class QuickTileCache
+        implements TransactionListener, GeoServerLifecycleHandler, QuickTileCacheMBean {
+
+    static final Logger LOGGER = Logging.getLogger(QuickTileCache.class);
+
+    /** Name of the variable controlling the cache size, in megabytes */
+    public static final String CACHE_SIZE_KEY = "QUICK_TILE_CACHE_SIZE";
+
+    /** Default cache size, in megabytes */
+    static final int DEFAULT_CACHE_SIZE = 64;
+
+    /** Number of independently locked stripes */
+    static final int STRIPES = 16;
+
+    /** The name the cache statistics are registered with in the platform MBean server */
+    public static final String OBJECT_NAME = "org.geoserver.wms:type=QuickTileCache";
+
     /**
      * Set of parameters that we can ignore, since they do not define a map, are either unrelated,
      * or define the tiling instead
@@ -55,9 +97,24 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     /** Canonicalizer used to return the same object when two threads ask for the same meta-tile */
     private CanonicalSet<MetaTileKey> metaTileKeys = CanonicalSet.newInstance(MetaTileKey.class);
 
-    private WeakHashMap tileCache = new WeakHashMap();
+    private final CacheStripe[] stripes = new CacheStripe[STRIPES];
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    /** Raster bytes held by all the stripes */
+    private final AtomicLong memory = new AtomicLong();
+
+    private long maxMemory;
+
+    private ObjectName registeredName;
 
     public QuickTileCache(GeoServer geoServer) {
+        this(getConfiguredCacheSize());
+        registerMBean();
         geoServer.addListener(
                 new ConfigurationListenerAdapter() {
                     public void handleGlobalChange(
@@ -65,7 +122,7 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
                             List<String> propertyNames,
                             List<Object> oldValues,
                             List<Object> newValues) {
-                        tileCache.clear();
+                        clear();
                     }
 
                     public void handleServiceChange(
@@ -73,17 +130,75 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
                             List<String> propertyNames,
                             List<Object> oldValues,
                             List<Object> newValues) {
-                        tileCache.clear();
+                        clear();
                     }
 
                     public void reloaded() {
-                        tileCache.clear();
+                        clear();
                     }
                 });
     }
 
     /** For testing only */
-    QuickTileCache() {}
+    QuickTileCache() {
+        this((long) DEFAULT_CACHE_SIZE * 1024 * 1024);
+    }
+
+    /**
+     * Builds a cache with the given memory budget, for testing purposes (and for the other
+     * constructors)
+     *
+     * @param maxMemory the maximum amount of raster bytes kept in the cache
+     */
+    QuickTileCache(long maxMemory) {
+        this.maxMemory = maxMemory;
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new CacheStripe();
+        }
+    }
+
+    private static long getConfiguredCacheSize() {
+        String value = GeoServerExtensions.getProperty(CACHE_SIZE_KEY);
+        if (value != null) {
+            try {
+                return Long.parseLong(value.trim()) * 1024 * 1024;
+            } catch (NumberFormatException e) {
+                LOGGER.warning(
+                        "Invalid value for "
+                                + CACHE_SIZE_KEY
+                                + ": "
+                                + value
+                                + ", using the default of "
+                                + DEFAULT_CACHE_SIZE
+                                + "MB");
+            }
+        }
+        return (long) DEFAULT_CACHE_SIZE * 1024 * 1024;
+    }
+
+    private void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(this, name);
+                registeredName = name;
+            }
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not register the meta tile cache MBean", e);
+        }
+    }
+
+    private void unregisterMBean() {
+        if (registeredName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(registeredName);
+            } catch (Exception e) {
+                LOGGER.log(Level.FINE, "Could not unregister the meta tile cache MBean", e);
+            }
+            registeredName = null;
+        }
+    }
 
     /**
      * Given a tiled request, builds a key that can be used to access the cache looking for a
@@ -111,7 +226,11 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
             }
         }
         MapKey mapKey =
-                new MapKey(mapDefinition, normalize(bbox.getWidth() / request.getWidth()), origin);
+                new MapKey(
+                        mapDefinition,
+                        normalize(bbox.getWidth() / request.getWidth()),
+                        origin,
+                        getLayerNames(request));
         Point tileCoords = getTileCoordinates(bbox, origin);
         Point metaTileCoords = getMetaTileCoordinates(tileCoords);
         ReferencedEnvelope metaTileEnvelope = getMetaTileEnvelope(bbox, tileCoords, metaTileCoords);
@@ -123,6 +242,25 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
         return metaTileKeys.unique(key);
     }
 
+    /**
+     * Collects the names of the layers involved in the request, or returns null if any of them
+     * cannot be identified (in that case the meta tiles will be evicted on any transaction)
+     */
+    private Set<String> getLayerNames(GetMapRequest request) {
+        List<MapLayerInfo> layers = request.getLayers();
+        if (layers == null || layers.isEmpty()) {
+            return null;
+        }
+        Set<String> names = new HashSet<>();
+        for (MapLayerInfo layer : layers) {
+            if (layer.getName() == null) {
+                return null;
+            }
+            names.add(layer.getName());
+        }
+        return names;
+    }
+
     private ReferencedEnvelope getMetaTileEnvelope(
             ReferencedEnvelope bbox, Point tileCoords, Point metaTileCoords) {
         double minx = bbox.getMinX() + (metaTileCoords.x - tileCoords.x) * bbox.getWidth();
@@ -240,11 +378,45 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
         Point2D origin;
 
+        /** The prefixed names of the layers in the map, or null if unknown */
+        Set<String> layerNames;
+
         public MapKey(String mapDefinition, double resolution, Point2D origin) {
+            this(mapDefinition, resolution, origin, null);
+        }
+
+        public MapKey(
+                String mapDefinition, double resolution, Point2D origin, Set<String> layerNames) {
             super();
             this.mapDefinition = mapDefinition;
             this.resolution = resolution;
             this.origin = origin;
+            this.layerNames = layerNames == null ? null : Collections.unmodifiableSet(layerNames);
+        }
+
+        /**
+         * Returns true if the map might contain the specified layer. The namespace prefix is
+         * matched only if available in the layer name
+         */
+        boolean mightContain(QName layerName) {
+            if (layerNames == null || layerName == null) {
+                return true;
+            }
+            String localName = layerName.getLocalPart();
+            String prefix = layerName.getPrefix();
+            for (String name : layerNames) {
+                int idx = name.indexOf(':');
+                String namePrefix = idx > 0 ? name.substring(0, idx) : null;
+                String nameLocal = idx > 0 ? name.substring(idx + 1) : name;
+                if (nameLocal.equals(localName)
+                        && (prefix == null
+                                || prefix.isEmpty()
+                                || namePrefix == null
+                                || prefix.equals(namePrefix))) {
+                    return true;
+                }
+            }
+            return false;
         }
 
         public int hashCode() {
@@ -331,6 +503,32 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
             return 3;
         }
 
+        /**
+         * Returns true if changes in the specified area might affect the meta tile. The meta tile
+         * envelope is expanded by one tile on each side to account for symbols and labels
+         * spilling over from nearby features
+         */
+        boolean mightIntersect(ReferencedEnvelope bounds) {
+            if (bounds == null || metaTileEnvelope == null) {
+                return true;
+            }
+            try {
+                ReferencedEnvelope target = bounds;
+                if (bounds.getCoordinateReferenceSystem() != null
+                        && metaTileEnvelope.getCoordinateReferenceSystem() != null) {
+                    target = bounds.transform(metaTileEnvelope.getCoordinateReferenceSystem(), true);
+                }
+                Envelope expanded = new Envelope(metaTileEnvelope);
+                expanded.expandBy(
+                        metaTileEnvelope.getWidth() / getMetaFactor(),
+                        metaTileEnvelope.getHeight() / getMetaFactor());
+                return expanded.intersects(target);
+            } catch (Exception e) {
+                // be conservative, if we cannot tell, evict
+                return true;
+            }
+        }
+
         public int getTileSize() {
             return 256;
         }
@@ -346,14 +544,29 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
      * @param key
      * @param request
      */
-    public synchronized RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
-        CacheElement ce = (CacheElement) tileCache.get(key);
+    public RenderedImage getTile(MetaTileKey key, GetMapRequest request) {
+        RenderedImage[] tiles = getTiles(key);
 
-        if (ce == null) {
+        if (tiles == null) {
             return null;
         }
 
-        return getTile(key, request, ce.tiles);
+        return getTile(key, request, tiles);
+    }
+
+    /**
+     * Returns the tiles of the specified meta tile, or null if not found
+     *
+     * @param key
+     */
+    RenderedImage[] getTiles(MetaTileKey key) {
+        RenderedImage[] tiles = getStripe(key).get(key);
+        if (tiles == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return tiles;
     }
 
     /**
@@ -373,41 +586,246 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
     }
 
     /**
-     * Puts the specified tile array in the cache, and returns the tile the request was looking for
+     * Puts the specified tile array in the cache, eventually evicting the least recently used
+     * meta-tiles to stay within the memory budget
      *
      * @param key
-     * @param request
      * @param tiles
      */
-    public synchronized void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
-        tileCache.put(key, new CacheElement(tiles));
+    public void storeTiles(MetaTileKey key, RenderedImage[] tiles) {
+        long size = 0;
+        for (RenderedImage tile : tiles) {
+            size += getRasterSize(tile);
+        }
+        // a meta tile larger than the whole budget cannot be cached
+        if (size > maxMemory) {
+            return;
+        }
+        CacheElement element = new CacheElement(tiles, size);
+        int index = getStripeIndex(key);
+        stripes[index].put(key, element);
+        evictions.addAndGet(evict(index, element));
     }
 
-    class CacheElement {
+    /**
+     * Evicts meta-tiles until the cache is back within the memory budget, starting from the
+     * stripe just added to, returns the number of evicted meta-tiles
+     *
+     * @param index the index of the stripe the element has been added to
+     * @param added the element just added, never evicted
+     */
+    private int evict(int index, CacheElement added) {
+        int evicted = 0;
+        for (int i = 0; i < stripes.length && memory.get() > maxMemory; i++) {
+            evicted += stripes[(index + i) % stripes.length].evict(added);
+        }
+        return evicted;
+    }
+
+    /** Estimates the amount of memory used by the raster data of the specified image */
+    static long getRasterSize(RenderedImage image) {
+        if (image == null) {
+            return 0;
+        }
+        SampleModel sm = image.getSampleModel();
+        long bits = 0;
+        if (sm != null) {
+            for (int sampleSize : sm.getSampleSize()) {
+                bits += sampleSize;
+            }
+        } else {
+            // assume RGBA
+            bits = 32;
+        }
+        return (long) image.getWidth() * image.getHeight() * bits / 8;
+    }
+
+    private CacheStripe getStripe(MetaTileKey key) {
+        return stripes[getStripeIndex(key)];
+    }
+
+    int getStripeIndex(MetaTileKey key) {
+        // spread the hash a bit, the low bits of HashCodeBuilder output are not very random
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return (h & 0x7fffffff) % stripes.length;
+    }
+
+    static class CacheElement {
         RenderedImage[] tiles;
 
-        public CacheElement(RenderedImage[] tiles) {
+        long size;
+
+        public CacheElement(RenderedImage[] tiles, long size) {
             this.tiles = tiles;
+            this.size = size;
+        }
+    }
+
+    /**
+     * A portion of the cache, an access ordered map with its own lock. The memory budget is shared
+     * with the other stripes, see {@link QuickTileCache#evict(int, CacheElement)}
+     */
+    class CacheStripe {
+
+        final LinkedHashMap<MetaTileKey, CacheElement> elements =
+                new LinkedHashMap<>(16, 0.75f, true);
+
+        synchronized RenderedImage[] get(MetaTileKey key) {
+            CacheElement ce = elements.get(key);
+            if (ce == null) {
+                return null;
+            }
+            return ce.tiles;
+        }
+
+        synchronized void put(MetaTileKey key, CacheElement element) {
+            CacheElement previous = elements.put(key, element);
+            if (previous != null) {
+                memory.addAndGet(-previous.size);
+            }
+            memory.addAndGet(element.size);
+        }
+
+        /**
+         * Removes the least recently used elements until the cache is back within the memory
+         * budget, or the stripe has no more elements, returns the number of removed elements
+         */
+        synchronized int evict(CacheElement skip) {
+            int evicted = 0;
+            Iterator<CacheElement> it = elements.values().iterator();
+            while (it.hasNext() && memory.get() > maxMemory) {
+                CacheElement ce = it.next();
+                if (ce != skip) {
+                    it.remove();
+                    memory.addAndGet(-ce.size);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        /** Removes the elements matching the layer and intersecting the bounds, if any */
+        synchronized int invalidate(QName layerName, ReferencedEnvelope bounds) {
+            int evicted = 0;
+            Iterator<Map.Entry<MetaTileKey, CacheElement>> it = elements.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<MetaTileKey, CacheElement> entry = it.next();
+                MetaTileKey key = entry.getKey();
+                if (key.mapKey.mightContain(layerName) && key.mightIntersect(bounds)) {
+                    it.remove();
+                    memory.addAndGet(-entry.getValue().size);
+                    evicted++;
+                }
+            }
+            return evicted;
+        }
+
+        synchronized void clear() {
+            for (CacheElement ce : elements.values()) {
+                memory.addAndGet(-ce.size);
+            }
+            elements.clear();
+        }
+
+        synchronized int size() {
+            return elements.size();
         }
     }
 
     public void dataStoreChange(TransactionEvent event) throws WFSException {
-        // if anything changes we just wipe out the cache. the mapkey
-        // contains a string with part of the map request where the layer
-        // name is included, but we would have to parse it and consider
-        // also that the namespace may be missing in the getmap request
-        tileCache.clear();
+        // the mapkey contains the list of layers in the map, only the meta tiles containing
+        // the modified layer and touching the modified area get evicted
+        QName layerName = event.getLayerName();
+        ReferencedEnvelope bounds = null;
+        try {
+            if (event.getAffectedFeatures() != null) {
+                bounds = event.getAffectedFeatures().getBounds();
+            }
+        } catch (Exception e) {
+            LOGGER.log(
+                    Level.FINE,
+                    "Could not compute the transaction bounds, evicting the whole layer",
+                    e);
+        }
+        if (bounds != null && bounds.isEmpty()) {
+            // nothing really touched (e.g., update/delete matching no features)
+            return;
+        }
+        invalidate(layerName, bounds);
+    }
+
+    /**
+     * Removes from the cache all meta-tiles containing the specified layer and intersecting the
+     * specified bounds
+     *
+     * @param layerName the layer name, or null to match all layers
+     * @param bounds the modified area, or null to match all meta-tiles of the layer
+     */
+    void invalidate(QName layerName, ReferencedEnvelope bounds) {
+        for (CacheStripe stripe : stripes) {
+            evictions.addAndGet(stripe.invalidate(layerName, bounds));
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (CacheStripe stripe : stripes) {
+            stripe.clear();
+        }
+    }
+
+    @Override
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    @Override
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    @Override
+    public double getHitRatio() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : ((double) h) / total;
+    }
+
+    @Override
+    public int getSize() {
+        int size = 0;
+        for (CacheStripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    @Override
+    public long getMemoryUsage() {
+        return memory.get();
+    }
+
+    @Override
+    public long getMaxMemory() {
+        return maxMemory;
     }
 
     @Override
     public void onReset() {
         // data might have changed in the meantime
-        tileCache.clear();
+        clear();
     }
 
     @Override
     public void onDispose() {
-        tileCache.clear();
+        clear();
+        unregisterMBean();
     }
 
     public void beforeReload() {
@@ -416,6 +834,6 @@ public class QuickTileCache implements TransactionListener, GeoServerLifecycleHa
 
     @Override
     public void onReload() {
-        tileCache.clear();
+        clear();
     }
 }
@@ -0,0 +1,33 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+/** JMX view of the {@link QuickTileCache} statistics */
+public interface QuickTileCacheMBean {
+
+    /** Number of meta tile lookups that found the meta tile in the cache */
+    long getHitCount();
+
+    /** Number of meta tile lookups that did not find the meta tile in the cache */
+    long getMissCount();
+
+    /** Number of meta tiles evicted due to memory pressure or data changes */
+    long getEvictionCount();
+
+    /** Ratio between hits and total lookups */
+    double getHitRatio();
+
+    /** Number of meta tiles currently in the cache */
+    int getSize();
+
+    /** Raster bytes currently held in the cache */
+    long getMemoryUsage();
+
+    /** Maximum raster bytes the cache is allowed to hold */
+    long getMaxMemory();
+
+    /** Empties the cache */
+    void clear();
+}
@@ -22,9 +22,12 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -82,8 +85,12 @@ import org.geotools.referencing.operation.transform.AffineTransform2D;
 import org.geotools.renderer.lite.*;
 import org.geotools.renderer.lite.gridcoverage2d.ChannelSelectionUpdateStyleVisitor;
 import org.geotools.renderer.lite.gridcoverage2d.GridCoverageRenderer;
+import org.geotools.styling.FeatureTypeStyle;
 import org.geotools.styling.RasterSymbolizer;
+import org.geotools.styling.Rule;
 import org.geotools.styling.Style;
+import org.geotools.styling.Symbolizer;
+import org.geotools.styling.TextSymbolizer;
 import org.geotools.util.logging.Logging;
 import org.opengis.coverage.grid.Format;
 import org.opengis.feature.Feature;
@@ -209,6 +216,9 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
     private final Map<String, MapProducerCapabilities> capabilities =
             new HashMap<String, MapProducerCapabilities>();
 
+    /** The pool used for parallel layer rendering, if null the global one is used */
+    private ExecutorService layerRenderingPool;
+
     /** */
     public RenderedImageMapOutputFormat(WMS wms) {
         this(DEFAULT_MAP_FORMAT, wms);
@@ -438,7 +448,15 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         graphic.setRenderingHints(hintsMap);
 
         RenderingHints hints = new RenderingHints(hintsMap);
-        StreamingRenderer renderer = buildRenderer();
+        StreamingRenderer renderer;
+        ExecutorService layerPool = getLayerRenderingPool();
+        if (layerPool != null
+                && isParallelRenderingSupported(
+                        mapContent, preparedImage, paintArea, memory, maxMemory)) {
+            renderer = new ParallelLayerRenderer(this::buildRenderer, layerPool);
+        } else {
+            renderer = buildRenderer();
+        }
         renderer.setThreadPool(DefaultWebMapService.getRenderingPool());
         renderer.setMapContent(mapContent);
         renderer.setJava2DHints(hints);
@@ -602,12 +620,17 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
                 };
         timeout.start();
         try {
-            // finally render the image;
-            renderer.paint(
-                    graphic,
-                    paintArea,
-                    mapContent.getRenderingArea(),
-                    mapContent.getRenderingTransform());
+            // finally render the image, using the pre-processed styles
+            Map<StyleLayer, Style> originalStyles = applyCompiledStyles(mapContent);
+            try {
+                renderer.paint(
+                        graphic,
+                        paintArea,
+                        mapContent.getRenderingArea(),
+                        mapContent.getRenderingTransform());
+            } finally {
+                originalStyles.forEach((layer, style) -> layer.setStyle(style));
+            }
 
             // apply watermarking
             if (layout != null) {
@@ -682,6 +705,100 @@ public class RenderedImageMapOutputFormat extends AbstractMapOutputFormat {
         return new StreamingRenderer();
     }
 
+    /** Returns the pool used to render layers in parallel, or null if disabled */
+    ExecutorService getLayerRenderingPool() {
+        if (layerRenderingPool != null) {
+            return layerRenderingPool;
+        }
+        return DefaultWebMapService.getLayerRenderingPool();
+    }
+
+    /** Sets the pool used to render layers in parallel, overriding the global one */
+    void setLayerRenderingPool(ExecutorService layerRenderingPool) {
+        this.layerRenderingPool = layerRenderingPool;
+    }
+
+    /**
+     * Replaces the layer styles with the compiled ones for the current scale, see {@link
+     * CompiledStyleCache}, returning the original styles so that they can be restored after
+     * rendering
+     */
+    Map<StyleLayer, Style> applyCompiledStyles(WMSMapContent mapContent) {
+        CompiledStyleCache cache = CompiledStyleCache.get();
+        if (cache == null) {
+            return Collections.emptyMap();
+        }
+        double scaleDenominator;
+        try {
+            // same scale computation used by the renderer
+            scaleDenominator = mapContent.getScaleDenominator(true);
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Could not compute the scale denominator", e);
+            return Collections.emptyMap();
+        }
+        Map<StyleLayer, Style> originals = new IdentityHashMap<>();
+        for (Layer layer : mapContent.layers()) {
+            if (layer instanceof StyleLayer) {
+                StyleLayer styleLayer = (StyleLayer) layer;
+                Style style = styleLayer.getStyle();
+                Style compiled = cache.getStyle(style, scaleDenominator);
+                if (compiled != style) {
+                    originals.put(styleLayer, style);
+                    styleLayer.setStyle(compiled);
+                }
+            }
+        }
+        return originals;
+    }
+
+    /**
+     * Checks if the layers can be rendered in parallel on separate surfaces, and then composited,
+     * with the same result as rendering them sequentially: labels are not involved (they need to
+     * be resolved for conflicts across layers), there is no composition or z-ordering across
+     * layers, the output is not palette based, and the extra surfaces fit in the memory limits.
+     */
+    boolean isParallelRenderingSupported(
+            WMSMapContent mapContent,
+            RenderedImage preparedImage,
+            Rectangle paintArea,
+            long memory,
+            long maxMemory) {
+        List<Layer> layers = mapContent.layers();
+        if (layers.size() < 2
+                || labelCache != null
+                || preparedImage.getColorModel() instanceof IndexColorModel) {
+            return false;
+        }
+        long surfaceMemory =
+                (long) (paintArea.x + paintArea.width) * (paintArea.y + paintArea.height) * 4;
+        if (maxMemory > 0 && memory + surfaceMemory * layers.size() > maxMemory) {
+            return false;
+        }
+        for (Layer layer : layers) {
+            Style style = layer.getStyle();
+            if (style == null) {
+                continue;
+            }
+            for (FeatureTypeStyle fts : style.featureTypeStyles()) {
+                Map<String, String> options = fts.getOptions();
+                if (options != null
+                        && (options.containsKey(FeatureTypeStyle.COMPOSITE)
+                                || options.containsKey(FeatureTypeStyle.COMPOSITE_BASE)
+                                || options.containsKey(FeatureTypeStyle.SORT_BY_GROUP))) {
+                    return false;
+                }
+                for (Rule rule : fts.rules()) {
+                    for (Symbolizer symbolizer : rule.symbolizers()) {
+                        if (symbolizer instanceof TextSymbolizer) {
+                            return false;
+                        }
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
     private boolean getFormatOptionAsBoolean(
             final GetMapRequest request, final String formatOptionKey) {
         if (request.getFormatOptions().get(formatOptionKey) != null) {
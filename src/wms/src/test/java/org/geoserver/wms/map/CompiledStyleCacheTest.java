@@ -0,0 +1,124 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import org.geotools.factory.CommonFactoryFinder;
+import org.geotools.styling.Rule;
+import org.geotools.styling.Style;
+import org.geotools.styling.StyleBuilder;
+import org.junit.Test;
+import org.opengis.filter.FilterFactory2;
+import org.opengis.filter.PropertyIsEqualTo;
+import org.opengis.filter.expression.Function;
+import org.opengis.filter.expression.Literal;
+
+public class CompiledStyleCacheTest {
+
+    static final FilterFactory2 FF = CommonFactoryFinder.getFilterFactory2();
+
+    StyleBuilder sb = new StyleBuilder();
+
+    @Test
+    public void testCompiledOnSecondUse() {
+        CompiledStyleCache cache = new CompiledStyleCache(null, 10);
+        Style style = buildStyle();
+        assertSame(style, cache.getStyle(style, 500));
+        Style compiled = cache.getStyle(style, 500);
+        assertNotSame(style, compiled);
+        // and then reused
+        assertSame(compiled, cache.getStyle(style, 600));
+
+        // clearing starts over
+        cache.clear();
+        assertSame(style, cache.getStyle(style, 500));
+    }
+
+    @Test
+    public void testRulesSelectedByScale() {
+        CompiledStyleCache cache = new CompiledStyleCache(null, 10);
+        Style style = buildStyle();
+        cache.getStyle(style, 500);
+
+        assertEquals("large,always", String.join(",", getRuleNames(cache.getStyle(style, 500))));
+        assertEquals("small,always", String.join(",", getRuleNames(cache.getStyle(style, 5000))));
+        // close to the boundary both are kept, the renderer will make the final choice
+        assertEquals(
+                "large,small,always", String.join(",", getRuleNames(cache.getStyle(style, 999))));
+    }
+
+    @Test
+    public void testFiltersSimplified() {
+        CompiledStyleCache cache = new CompiledStyleCache(null, 10);
+        Style style = buildStyle();
+        cache.getStyle(style, 500);
+        Style compiled = cache.getStyle(style, 500);
+
+        // the constant function has been folded
+        Rule large = getRule(compiled, "large");
+        PropertyIsEqualTo constant = (PropertyIsEqualTo) large.getFilter();
+        assertTrue(constant.getExpression2() instanceof Literal);
+        assertEquals("ab", constant.getExpression2().evaluate(null, String.class));
+
+        // but the environment dependent one has not
+        Rule always = getRule(compiled, "always");
+        PropertyIsEqualTo env = (PropertyIsEqualTo) always.getFilter();
+        assertTrue(env.getExpression2() instanceof Function);
+    }
+
+    @Test
+    public void testDisabled() {
+        CompiledStyleCache cache = new CompiledStyleCache(null, 0);
+        Style style = buildStyle();
+        assertSame(style, cache.getStyle(style, 500));
+        assertSame(style, cache.getStyle(style, 500));
+    }
+
+    Style buildStyle() {
+        Rule large = sb.createRule(sb.createPointSymbolizer());
+        large.setName("large");
+        large.setMaxScaleDenominator(1000);
+        large.setFilter(
+                FF.equals(
+                        FF.property("name"),
+                        FF.function("strConcat", FF.literal("a"), FF.literal("b"))));
+        Rule small = sb.createRule(sb.createPointSymbolizer());
+        small.setName("small");
+        small.setMinScaleDenominator(1000);
+        Rule always = sb.createRule(sb.createPointSymbolizer());
+        always.setName("always");
+        always.setFilter(FF.equals(FF.property("name"), FF.function("env", FF.literal("name"))));
+
+        Style style = sb.createStyle();
+        Rule[] rules = {large, small, always};
+        style.featureTypeStyles().add(sb.createFeatureTypeStyle(null, rules));
+        return style;
+    }
+
+    List<String> getRuleNames(Style style) {
+        return style.featureTypeStyles()
+                .get(0)
+                .rules()
+                .stream()
+                .map(r -> r.getName())
+                .collect(Collectors.toList());
+    }
+
+    Rule getRule(Style style, String name) {
+        return style.featureTypeStyles()
+                .get(0)
+                .rules()
+                .stream()
+                .filter(r -> name.equals(r.getName()))
+                .findFirst()
+                .get();
+    }
+}
@@ -6,9 +6,21 @@
 package org.geoserver.wms.map;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 
 import java.awt.Point;
 import java.awt.geom.Point2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import javax.xml.namespace.QName;
+import org.geoserver.wms.map.QuickTileCache.MapKey;
+import org.geoserver.wms.map.QuickTileCache.MetaTileKey;
+import org.geotools.geometry.jts.ReferencedEnvelope;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
 import org.junit.Test;
 import org.locationtech.jts.geom.Envelope;
 
@@ -68,4 +80,109 @@ public class QuickTileCacheTest {
         assertEquals(new Point(0, 2), cache.getTileOffsetsInMeta(box1, meta));
         assertEquals(new Point(1, 2), cache.getTileOffsetsInMeta(box2, meta));
     }
+
+    @Test
+    public void testRasterSize() {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        assertEquals(256 * 256 * 4, QuickTileCache.getRasterSize(image));
+    }
+
+    @Test
+    public void testMemoryBoundedEviction() {
+        // each meta tile is 9 * 256 * 256 * 4 bytes, the budget allows for four of them
+        long metaTileSize = 9 * 256 * 256 * 4;
+        QuickTileCache cache = new QuickTileCache(metaTileSize * 4);
+        for (int i = 0; i < 100; i++) {
+            cache.storeTiles(buildKey("topp:states", i, 0), buildTiles());
+        }
+        assertEquals(4, cache.getSize());
+        assertEquals(metaTileSize * 4, cache.getMemoryUsage());
+        assertEquals(96, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        // the least recently used meta tiles of the stripe being added to go first, even if
+        // another stripe holds older ones
+        long metaTileSize = 9 * 256 * 256 * 4;
+        QuickTileCache cache = new QuickTileCache(metaTileSize * 3);
+        MetaTileKey other = buildKey("topp:states", 0, 0);
+        int stripe = (cache.getStripeIndex(other) + 1) % QuickTileCache.STRIPES;
+        List<MetaTileKey> keys = new ArrayList<>();
+        for (int i = 1; keys.size() < 3; i++) {
+            MetaTileKey key = buildKey("topp:states", i * 3, 0);
+            if (cache.getStripeIndex(key) == stripe) {
+                keys.add(key);
+            }
+        }
+        cache.storeTiles(other, buildTiles());
+        cache.storeTiles(keys.get(0), buildTiles());
+        cache.storeTiles(keys.get(1), buildTiles());
+        assertNotNull(cache.getTiles(keys.get(0)));
+        cache.storeTiles(keys.get(2), buildTiles());
+
+        assertEquals(3, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertNotNull(cache.getTiles(other));
+        assertNotNull(cache.getTiles(keys.get(0)));
+        assertNull(cache.getTiles(keys.get(1)));
+        assertNotNull(cache.getTiles(keys.get(2)));
+
+        // if the stripe has nothing else to evict, the following stripes are looked into
+        MetaTileKey empty = null;
+        for (int i = 1; empty == null; i++) {
+            MetaTileKey key = buildKey("topp:states", 0, i * 3);
+            int index = cache.getStripeIndex(key);
+            if (index != stripe && index != cache.getStripeIndex(other)) {
+                empty = key;
+            }
+        }
+        cache.storeTiles(empty, buildTiles());
+        assertNotNull(cache.getTiles(empty));
+        assertEquals(3, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testInvalidateByLayerAndBounds() {
+        MetaTileKey states = buildKey("topp:states", 0, 0);
+        MetaTileKey statesFar = buildKey("topp:states", 30, 30);
+        MetaTileKey roads = buildKey("tiger:roads", 0, 0);
+        cache.storeTiles(states, buildTiles());
+        cache.storeTiles(statesFar, buildTiles());
+        cache.storeTiles(roads, buildTiles());
+
+        ReferencedEnvelope modified =
+                new ReferencedEnvelope(1, 2, 1, 2, DefaultGeographicCRS.WGS84);
+        cache.invalidate(new QName("http://www.openplans.org/topp", "states", "topp"), modified);
+
+        assertNull(cache.getTiles(states));
+        assertNotNull(cache.getTiles(statesFar));
+        assertNotNull(cache.getTiles(roads));
+
+        // no bounds, the whole layer goes
+        cache.invalidate(new QName("http://www.openplans.org/topp", "states"), null);
+        assertNull(cache.getTiles(statesFar));
+        assertNotNull(cache.getTiles(roads));
+    }
+
+    private MetaTileKey buildKey(String layer, int x, int y) {
+        MapKey mapKey =
+                new MapKey(
+                        "LAYERS=" + layer,
+                        1,
+                        new Point2D.Double(0, 0),
+                        Collections.singleton(layer));
+        ReferencedEnvelope envelope =
+                new ReferencedEnvelope(x, x + 3, y, y + 3, DefaultGeographicCRS.WGS84);
+        return new MetaTileKey(mapKey, new Point(x, y), envelope);
+    }
+
+    private RenderedImage[] buildTiles() {
+        RenderedImage[] tiles = new RenderedImage[9];
+        for (int i = 0; i < tiles.length; i++) {
+            tiles[i] = new BufferedImage(256, 256, BufferedImage.TYPE_4BYTE_ABGR);
+        }
+        return tiles;
+    }
 }
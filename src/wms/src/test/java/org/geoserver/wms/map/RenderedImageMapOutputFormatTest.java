@@ -8,6 +8,7 @@ package org.geoserver.wms.map;
 import static org.geoserver.data.test.CiteTestData.STREAMS;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -38,6 +39,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Vector;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -1119,6 +1122,81 @@ public class RenderedImageMapOutputFormatTest extends WMSTestSupport {
         assertEquals(expected, actual);
     }
 
+    @Test
+    public void testParallelLayerRendering() throws Exception {
+        BufferedImage sequential = renderPolygonsAndLines();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            this.rasterMapProducer.setLayerRenderingPool(pool);
+            BufferedImage parallel = renderPolygonsAndLines();
+            assertNotBlank("testParallelLayerRendering", parallel);
+            // compositing antialiased edges might round differently, allow a few pixels off
+            ImageAssert.assertEquals(sequential, parallel, 100);
+        } finally {
+            this.rasterMapProducer.setLayerRenderingPool(null);
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testParallelLayerRenderingSupport() throws Exception {
+        WMSMapContent map = new WMSMapContent();
+        map.setMapWidth(100);
+        map.setMapHeight(100);
+        addToMap(map, MockData.LAKES);
+        RenderedImage image = new BufferedImage(100, 100, BufferedImage.TYPE_4BYTE_ABGR);
+        Rectangle area = new Rectangle(0, 0, 100, 100);
+        // a single layer, nothing to parallelize
+        assertFalse(rasterMapProducer.isParallelRenderingSupported(map, image, area, 0, 0));
+
+        addToMap(map, MockData.STREAMS);
+        assertTrue(rasterMapProducer.isParallelRenderingSupported(map, image, area, 0, 0));
+        // not enough memory for the extra surfaces
+        assertFalse(
+                rasterMapProducer.isParallelRenderingSupported(map, image, area, 0, 100 * 100));
+        // labels need to be resolved across layers
+        StyleBuilder sb = new StyleBuilder();
+        Style labels = sb.createStyle(sb.createTextSymbolizer());
+        map.addLayer(new FeatureLayer(getFeatureSource(MockData.NAMED_PLACES), labels));
+        assertFalse(rasterMapProducer.isParallelRenderingSupported(map, image, area, 0, 0));
+        map.dispose();
+    }
+
+    private BufferedImage renderPolygonsAndLines() throws Exception {
+        Envelope env = new Envelope(getFeatureSource(MockData.FORESTS).getBounds());
+        env.expandToInclude(getFeatureSource(MockData.LAKES).getBounds());
+        env.expandToInclude(getFeatureSource(MockData.STREAMS).getBounds());
+
+        GetMapRequest request = new GetMapRequest();
+        request.setFormat(getMapFormat());
+        final WMSMapContent map = new WMSMapContent();
+        int w = 400;
+        int h = (int) Math.round((env.getHeight() * w) / env.getWidth());
+        map.setMapWidth(w);
+        map.setMapHeight(h);
+        map.setBgColor(BG_COLOR);
+        map.setTransparent(true);
+        map.setRequest(request);
+
+        addToMap(map, MockData.FORESTS);
+        addToMap(map, MockData.LAKES);
+        addToMap(map, MockData.STREAMS);
+        addToMap(map, MockData.BUILDINGS);
+        map.getViewport().setBounds(new ReferencedEnvelope(env, DefaultGeographicCRS.WGS84));
+
+        RenderedImageMap imageMap = this.rasterMapProducer.produceMap(map);
+        BufferedImage image = (BufferedImage) imageMap.getImage();
+        imageMap.dispose();
+        return image;
+    }
+
+    private FeatureSource getFeatureSource(QName typeName) throws IOException {
+        return getCatalog()
+                .getFeatureTypeByName(typeName.getNamespaceURI(), typeName.getLocalPart())
+                .getFeatureSource(null, null);
+    }
+
     private WMSMapContent createWMSMap(Envelope bounds) throws Exception {
         WMSMapContent map = new WMSMapContent();
 
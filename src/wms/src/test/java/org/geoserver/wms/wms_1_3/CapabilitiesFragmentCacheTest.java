@@ -0,0 +1,188 @@
+/* (c) 2020 Open Source Geospatial Foundation - all rights reserved
+ * This code is licensed under the GPL 2.0 license, available at the root
+ * application directory.
+ */
+package org.geoserver.wms.wms_1_3;
+
+import static org.custommonkey.xmlunit.XMLAssert.assertXpathEvaluatesTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import org.geoserver.catalog.Catalog;
+import org.geoserver.catalog.FeatureTypeInfo;
+import org.geoserver.catalog.LayerInfo;
+import org.geoserver.catalog.StyleInfo;
+import org.geoserver.config.GeoServerInfo;
+import org.geoserver.config.SettingsInfo;
+import org.geoserver.data.test.MockData;
+import org.geoserver.ows.CapabilitiesFragmentCache;
+import org.geoserver.ows.CapabilitiesFragmentCache.FragmentKey;
+import org.geoserver.wms.WMSInfo;
+import org.geoserver.wms.WMSTestSupport;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.w3c.dom.Document;
+
+public class CapabilitiesFragmentCacheTest extends WMSTestSupport {
+
+    static final String CAPABILITIES_REQUEST =
+            "wms?service=WMS&request=getCapabilities&version=1.3.0";
+
+    @Before
+    public void clearCache() {
+        CapabilitiesFragmentCache cache = CapabilitiesFragmentCache.get();
+        assertNotNull(cache);
+        cache.clear();
+    }
+
+    @Test
+    public void testCachedOutputMatches() throws Exception {
+        String cold = getAsString(CAPABILITIES_REQUEST);
+        String warm = getAsString(CAPABILITIES_REQUEST);
+        assertEquals(cold, warm);
+
+        // and the other way around, the cached output matches a fresh one
+        CapabilitiesFragmentCache.get().clear();
+        assertEquals(warm, getAsString(CAPABILITIES_REQUEST));
+    }
+
+    @Test
+    public void testLayerChangeInvalidates() throws Exception {
+        getAsDOM(CAPABILITIES_REQUEST, true);
+
+        Catalog catalog = getCatalog();
+        FeatureTypeInfo points = catalog.getFeatureTypeByName(getLayerId(MockData.POINTS));
+        String title = points.getTitle();
+        try {
+            points.setTitle("Cached points");
+            catalog.save(points);
+
+            Document doc = getAsDOM(CAPABILITIES_REQUEST, true);
+            assertXpathEvaluatesTo(
+                    "Cached points",
+                    "//wms:Layer[wms:Name='" + getLayerId(MockData.POINTS) + "']/wms:Title",
+                    doc);
+        } finally {
+            points.setTitle(title);
+            catalog.save(points);
+        }
+    }
+
+    @Test
+    public void testStyleChangeInvalidates() throws Exception {
+        getAsDOM(CAPABILITIES_REQUEST, true);
+
+        Catalog catalog = getCatalog();
+        LayerInfo layer = catalog.getLayerByName(getLayerId(MockData.LINES));
+        StyleInfo style = catalog.getStyle(layer.getDefaultStyle().getId());
+        String name = style.getName();
+        try {
+            style.setName("cachedStyle");
+            catalog.save(style);
+
+            Document doc = getAsDOM(CAPABILITIES_REQUEST, true);
+            assertXpathEvaluatesTo(
+                    "cachedStyle",
+                    "//wms:Layer[wms:Name='"
+                            + getLayerId(MockData.LINES)
+                            + "']/wms:Style[1]/wms:Name",
+                    doc);
+        } finally {
+            style.setName(name);
+            catalog.save(style);
+        }
+    }
+
+    @Test
+    public void testServiceChangeInvalidates() throws Exception {
+        getAsDOM(CAPABILITIES_REQUEST, true);
+
+        WMSInfo wms = getGeoServer().getService(WMSInfo.class);
+        boolean bboxForEachCRS = Boolean.TRUE.equals(wms.isBBOXForEachCRS());
+        wms.getSRS().add("EPSG:3857");
+        wms.setBBOXForEachCRS(true);
+        getGeoServer().save(wms);
+        try {
+            Document doc = getAsDOM(CAPABILITIES_REQUEST, true);
+            assertXpathEvaluatesTo(
+                    "1",
+                    "count(//wms:Layer[wms:Name='"
+                            + getLayerId(MockData.POINTS)
+                            + "']/wms:BoundingBox[@CRS='EPSG:3857'])",
+                    doc);
+        } finally {
+            wms.getSRS().remove("EPSG:3857");
+            wms.setBBOXForEachCRS(bboxForEachCRS);
+            getGeoServer().save(wms);
+        }
+    }
+
+    @Test
+    public void testProxyHeadersVaryTheKey() throws Exception {
+        GeoServerInfo global = getGeoServer().getGlobal();
+        SettingsInfo settings = global.getSettings();
+        Boolean useHeaders = global.isUseHeadersProxyURL();
+        String proxyBase = settings.getProxyBaseUrl();
+        global.setUseHeadersProxyURL(true);
+        settings.setProxyBaseUrl("http://${X-Forwarded-Host}/geoserver");
+        getGeoServer().save(global);
+        try {
+            // the layer legend URLs depend on the headers, must not be shared among clients
+            String first = getWithForwardedHost("one.example.com");
+            assertTrue(first.contains("http://one.example.com/geoserver/ows"));
+            String second = getWithForwardedHost("two.example.com");
+            assertTrue(second.contains("http://two.example.com/geoserver/ows"));
+            assertFalse(second.contains("one.example.com"));
+        } finally {
+            global.setUseHeadersProxyURL(useHeaders);
+            settings.setProxyBaseUrl(proxyBase);
+            getGeoServer().save(global);
+        }
+    }
+
+    @Test
+    public void testRolesVaryTheKey() throws Exception {
+        LayerInfo layer = getCatalog().getLayerByName(getLayerId(MockData.POINTS));
+        try {
+            // users with the same roles share the fragments
+            FragmentKey first = getKey(layer, user("first", "ROLE_A", "ROLE_B"));
+            FragmentKey second = getKey(layer, user("second", "ROLE_B", "ROLE_A"));
+            assertEquals(first, second);
+            assertNotEquals(first, getKey(layer, user("second", "ROLE_A")));
+            // but not with the anonymous user
+            Authentication anonymous =
+                    new AnonymousAuthenticationToken(
+                            "key", "anonymous", AuthorityUtils.createAuthorityList("ROLE_A"));
+            assertNotEquals(getKey(layer, user("first", "ROLE_A")), getKey(layer, anonymous));
+        } finally {
+            SecurityContextHolder.getContext().setAuthentication(null);
+        }
+    }
+
+    private Authentication user(String name, String... roles) {
+        return new UsernamePasswordAuthenticationToken(
+                name, null, AuthorityUtils.createAuthorityList(roles));
+    }
+
+    private FragmentKey getKey(LayerInfo layer, Authentication auth) {
+        SecurityContextHolder.getContext().setAuthentication(auth);
+        return CapabilitiesFragmentCache.get().getKey(layer, "http://localhost/geoserver", "1.3.0");
+    }
+
+    private String getWithForwardedHost(String host) throws Exception {
+        MockHttpServletRequest request = createRequest(CAPABILITIES_REQUEST);
+        request.setMethod("GET");
+        request.setContent(new byte[] {});
+        request.addHeader("X-Forwarded-Host", host);
+        return dispatch(request).getContentAsString();
+    }
+}